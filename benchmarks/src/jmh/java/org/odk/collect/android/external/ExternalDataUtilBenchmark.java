@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.odk.collect.android.external;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import au.com.bytecode.opencsv.CSVReader;
+
+/**
+ * The handling of each CSV row when importing the external data of a form, without the inserts:
+ * what {@link ExternalSQLiteOpenHelper} does before handing a row to SQLite.
+ */
+@State(Scope.Benchmark)
+public class ExternalDataUtilBenchmark {
+
+    private static final char DELIMITING_CHAR = ',';
+    private static final char QUOTE_CHAR = '"';
+    private static final char ESCAPE_CHAR = '\0';
+
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"8"})
+    public int columns;
+
+    private String csv;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        StringBuilder text = new StringBuilder("name,label::English,label::French,c_sortby");
+        for (int i = 4; i < columns; i++) {
+            text.append(",column ").append(i);
+        }
+        text.append('\n');
+
+        for (int row = 0; row < rows; row++) {
+            // some rows are empty or short, as they can be in the wild
+            if (row % 50 == 0) {
+                text.append(",,,\n");
+                continue;
+            }
+
+            text.append("name").append(row).append(",\"Label ").append(row)
+                    .append(", English\",Label ").append(row).append(',').append(row);
+            int filled = row % 10 == 0 ? columns - 2 : columns;
+            for (int i = 4; i < filled; i++) {
+                text.append(',').append(Integer.toString(random.nextInt(100000), 36));
+            }
+            text.append('\n');
+        }
+        csv = text.toString();
+    }
+
+    @Benchmark
+    public int readRows() throws IOException {
+        CSVReader reader = new CSVReader(new StringReader(csv), DELIMITING_CHAR, QUOTE_CHAR,
+                ESCAPE_CHAR);
+        try {
+            String[] headerRow = reader.readNext();
+            Map<String, String> columnNamesCache = new HashMap<String, String>();
+
+            int hash = 0;
+            String[] row = reader.readNext();
+            while (row != null) {
+                if (!ExternalDataUtil.containsAnyData(row)) {
+                    row = reader.readNext();
+                    continue;
+                }
+                if (row.length < headerRow.length) {
+                    row = ExternalDataUtil.fillUpNullValues(row, headerRow);
+                }
+
+                for (int i = 0; i < row.length && i < headerRow.length; i++) {
+                    String columnName = headerRow[i].trim();
+                    if (columnName.length() == 0) {
+                        continue;
+                    }
+                    String safeColumnName = ExternalDataUtil.toSafeColumnName(columnName,
+                            columnNamesCache);
+                    hash = 31 * hash + safeColumnName.hashCode() + row[i].hashCode();
+                }
+                row = reader.readNext();
+            }
+            return hash;
+        } finally {
+            reader.close();
+        }
+    }
+}
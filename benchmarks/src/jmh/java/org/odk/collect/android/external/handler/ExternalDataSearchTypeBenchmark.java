@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.odk.collect.android.external.handler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The LIKE arguments built for every search() query, for each of the searched columns.
+ */
+@State(Scope.Benchmark)
+public class ExternalDataSearchTypeBenchmark {
+
+    // by name, the generated benchmark code can't see the package-private enum
+    @Param({"CONTAINS", "MATCHES", "STARTS", "ENDS"})
+    public String typeName;
+
+    @Param({"1", "5"})
+    public int columns;
+
+    private final String queriedValue = "Kampala";
+    private ExternalDataSearchType type;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        type = ExternalDataSearchType.valueOf(typeName);
+    }
+
+    @Benchmark
+    public String[] constructLikeArguments() {
+        return type.constructLikeArguments(queriedValue, columns);
+    }
+}
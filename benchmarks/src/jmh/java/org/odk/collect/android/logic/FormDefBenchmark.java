@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.odk.collect.android.logic;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.util.externalizable.DeserializationException;
+import org.javarosa.core.util.externalizable.ExtUtil;
+import org.javarosa.xform.util.XFormUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The two ways a form gets loaded: parsing its XML the first time it's opened, and reading the
+ * FormDef serialized to the cache after that. Generated forms stand in for large real ones.
+ */
+@State(Scope.Benchmark)
+public class FormDefBenchmark {
+
+    private static final int CHOICES = 5;
+    private static final int REPEAT_QUESTIONS = 10;
+
+    @Param({"100", "1000"})
+    public int questions;
+
+    private byte[] xml;
+    private byte[] serialized;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        FormController.initializeJavaRosa(null);
+
+        xml = generateForm(questions).getBytes("UTF-8");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(out);
+        parse().writeExternal(dos);
+        dos.close();
+        serialized = out.toByteArray();
+    }
+
+    @Benchmark
+    public FormDef parse() {
+        return XFormUtils.getFormFromInputStream(new ByteArrayInputStream(xml));
+    }
+
+    @Benchmark
+    public FormDef readExternal() throws IOException, DeserializationException {
+        FormDef formDef = new FormDef();
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(serialized));
+        formDef.readExternal(dis, ExtUtil.defaultPrototypes());
+        dis.close();
+        return formDef;
+    }
+
+    /**
+     * Returns a form cycling through integer, text and select one questions, each with a label
+     * in two languages and the integers with a constraint and the texts with a relevance, and
+     * ending with a repeat.
+     */
+    static String generateForm(int questions) {
+        StringBuilder itextEnglish = new StringBuilder();
+        StringBuilder itextFrench = new StringBuilder();
+        StringBuilder instance = new StringBuilder();
+        StringBuilder binds = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+
+        for (int i = 0; i < questions; i++) {
+            String ref = "/data/q" + i;
+            appendQuestion(i, ref, "q" + i, itextEnglish, itextFrench, instance, binds, body);
+        }
+
+        instance.append("<people jr:template=\"\">");
+        body.append("<group ref=\"/data/people\"><label>People</label>")
+                .append("<repeat nodeset=\"/data/people\">");
+        for (int i = 0; i < REPEAT_QUESTIONS; i++) {
+            String ref = "/data/people/p" + i;
+            appendQuestion(i, ref, "p" + i, itextEnglish, itextFrench, instance, binds, body);
+        }
+        instance.append("</people>");
+        body.append("</repeat></group>");
+
+        return "<?xml version=\"1.0\"?>"
+                + "<h:html xmlns=\"http://www.w3.org/2002/xforms\""
+                + " xmlns:h=\"http://www.w3.org/1999/xhtml\""
+                + " xmlns:jr=\"http://openrosa.org/javarosa\">"
+                + "<h:head><h:title>Benchmark</h:title><model>"
+                + "<itext>"
+                + "<translation lang=\"English\" default=\"true()\">" + itextEnglish
+                + "</translation>"
+                + "<translation lang=\"French\">" + itextFrench + "</translation>"
+                + "</itext>"
+                + "<instance><data id=\"benchmark\" version=\"1\">" + instance
+                + "<meta><instanceID/></meta></data></instance>"
+                + binds
+                + "<bind nodeset=\"/data/meta/instanceID\" type=\"string\" readonly=\"true()\""
+                + " calculate=\"concat('uuid:', uuid())\"/>"
+                + "</model></h:head>"
+                + "<h:body>" + body + "</h:body></h:html>";
+    }
+
+    private static void appendQuestion(int i, String ref, String name,
+            StringBuilder itextEnglish, StringBuilder itextFrench, StringBuilder instance,
+            StringBuilder binds, StringBuilder body) {
+        String labelId = ref + ":label";
+        itextEnglish.append("<text id=\"").append(labelId).append("\"><value>Question ")
+                .append(i).append("</value></text>");
+        itextFrench.append("<text id=\"").append(labelId).append("\"><value>Question ")
+                .append(i).append(" (fr)</value></text>");
+        instance.append('<').append(name).append("/>");
+
+        String label = "<label ref=\"jr:itext('" + labelId + "')\"/>";
+        switch (i % 3) {
+            case 0:
+                binds.append("<bind nodeset=\"").append(ref).append("\" type=\"int\"")
+                        .append(" constraint=\". &gt;= 0 and . &lt; 1000\" required=\"true()\"/>");
+                body.append("<input ref=\"").append(ref).append("\">").append(label)
+                        .append("</input>");
+                break;
+            case 1:
+                String previous = ref.substring(0, ref.lastIndexOf('/') + 2) + (i - 1);
+                binds.append("<bind nodeset=\"").append(ref).append("\" type=\"string\"")
+                        .append(" relevant=\"").append(previous).append(" &gt; 10\"/>");
+                body.append("<input ref=\"").append(ref).append("\">").append(label)
+                        .append("</input>");
+                break;
+            default:
+                binds.append("<bind nodeset=\"").append(ref).append("\" type=\"select1\"/>");
+                body.append("<select1 ref=\"").append(ref).append("\">").append(label);
+                for (int c = 0; c < CHOICES; c++) {
+                    body.append("<item><label>Choice ").append(c).append("</label><value>c")
+                            .append(c).append("</value></item>");
+                }
+                body.append("</select1>");
+                break;
+        }
+    }
+}
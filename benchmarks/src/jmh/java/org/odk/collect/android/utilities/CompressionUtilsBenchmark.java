@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+
+/**
+ * Compression of the settings shared through QR codes.
+ */
+@State(Scope.Benchmark)
+public class CompressionUtilsBenchmark {
+
+    @Param({"20", "200"})
+    public int settings;
+
+    private String data;
+    private String compressed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // shaped like the JSON of exported settings, with some randomness so it doesn't
+        // compress unrealistically well
+        Random random = new Random(1);
+        StringBuilder json = new StringBuilder("{\"general\":{");
+        for (int i = 0; i < settings; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("\"setting_").append(i).append("\":\"")
+                    .append(Long.toHexString(random.nextLong())).append('"');
+        }
+        json.append("},\"admin\":{}}");
+
+        data = json.toString();
+        compressed = CompressionUtils.compress(data);
+    }
+
+    @Benchmark
+    public String compress() throws IOException {
+        return CompressionUtils.compress(data);
+    }
+
+    @Benchmark
+    public String decompress() throws IOException, DataFormatException {
+        return CompressionUtils.decompress(compressed);
+    }
+}
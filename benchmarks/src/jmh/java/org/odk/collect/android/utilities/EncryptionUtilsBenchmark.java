@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.utilities;
+
+import com.google.api.client.repackaged.org.apache.commons.codec.binary.Base64;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.odk.collect.android.logic.FormController.InstanceMetadata;
+import org.odk.collect.android.utilities.EncryptionUtils.EncryptedFormInformation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.Random;
+
+/**
+ * Encryption of a finalized instance of an encrypted form, with one media file.
+ */
+@State(Scope.Benchmark)
+public class EncryptionUtilsBenchmark {
+
+    @Param({"1048576"})
+    public int mediaSize;
+
+    private File instanceDir;
+    private File instanceXml;
+    private File submissionXml;
+    private byte[] submissionData;
+    private PublicKey publicKey;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        // the ciphers come from Bouncy Castle on a device too
+        Security.addProvider(new BouncyCastleProvider());
+
+        SecureRandom keyRandom = SecureRandom.getInstance("SHA1PRNG");
+        keyRandom.setSeed(1);
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(EncryptionUtils.RSA_ALGORITHM);
+        generator.initialize(2048, keyRandom);
+        publicKey = generator.generateKeyPair().getPublic();
+
+        instanceDir = File.createTempFile("instance", "");
+        instanceDir.delete();
+        instanceDir.mkdirs();
+        instanceXml = new File(instanceDir, "instance.xml");
+        submissionXml = new File(instanceDir, "submission.xml");
+
+        StringBuilder xml = new StringBuilder("<data id=\"benchmark\">");
+        for (int i = 0; i < 200; i++) {
+            xml.append("<q").append(i).append(">answer ").append(i).append("</q")
+                    .append(i).append('>');
+        }
+        xml.append("<photo>photo.jpg</photo></data>");
+        submissionData = xml.toString().getBytes("UTF-8");
+        write(instanceXml, submissionData);
+
+        byte[] media = new byte[mediaSize];
+        new Random(1).nextBytes(media);
+        write(new File(instanceDir, "photo.jpg"), media);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = instanceDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        instanceDir.delete();
+    }
+
+    @Benchmark
+    public File generateEncryptedSubmission() throws Exception {
+        // a new symmetric key for every instance, as when finalizing
+        EncryptedFormInformation formInfo = new EncryptedFormInformation("benchmark", "1",
+                new InstanceMetadata("uuid:benchmark", "benchmark", false), publicKey,
+                new JvmBase64Wrapper());
+        EncryptionUtils.generateEncryptedSubmission(instanceXml, submissionXml, submissionData,
+                formInfo);
+        return submissionXml;
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * The android.jar on the class path only has stubs, so encode without android.util.Base64.
+     */
+    private static class JvmBase64Wrapper extends Base64Wrapper {
+
+        JvmBase64Wrapper() throws ClassNotFoundException {
+            super();
+        }
+
+        @Override
+        public String encodeToString(byte[] ba) {
+            return Base64.encodeBase64String(ba);
+        }
+    }
+}
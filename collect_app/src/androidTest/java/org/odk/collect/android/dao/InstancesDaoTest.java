@@ -16,7 +16,13 @@
 
 package org.odk.collect.android.dao;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
+import android.net.Uri;
 import android.support.test.runner.AndroidJUnit4;
 
 import org.junit.After;
@@ -27,9 +33,16 @@ import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.dto.Instance;
 import org.odk.collect.android.provider.InstanceProviderAPI;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 @RunWith(AndroidJUnit4.class)
 /**
@@ -176,6 +189,119 @@ public class InstancesDaoTest {
         assertEquals(InstanceProviderAPI.STATUS_SUBMITTED, instances.get(0).getStatus());
     }
 
+    @Test
+    public void getStatusCountsTest() {
+        Map<String, Integer> statusCounts = instancesDao.getStatusCounts();
+        assertEquals(3, statusCounts.size());
+        assertEquals(3, (int) statusCounts.get(InstanceProviderAPI.STATUS_INCOMPLETE));
+        assertEquals(1, (int) statusCounts.get(InstanceProviderAPI.STATUS_COMPLETE));
+        assertEquals(2, (int) statusCounts.get(InstanceProviderAPI.STATUS_SUBMITTED));
+
+        ContentValues values = new ContentValues();
+        values.put(InstanceProviderAPI.InstanceColumns.STATUS,
+                InstanceProviderAPI.STATUS_SUBMISSION_FAILED);
+        instancesDao.updateInstance(values,
+                InstanceProviderAPI.InstanceColumns.STATUS + "=?",
+                new String[]{InstanceProviderAPI.STATUS_COMPLETE});
+
+        statusCounts = instancesDao.getStatusCounts();
+        assertNull(statusCounts.get(InstanceProviderAPI.STATUS_COMPLETE));
+        assertEquals(1, (int) statusCounts.get(InstanceProviderAPI.STATUS_SUBMISSION_FAILED));
+
+        instancesDao.deleteInstancesFromIDs(Collections.singletonList(Collect.INSTANCES_PATH
+                + "/sample_2017-02-20_14-07-03/sample_2017-02-20_14-07-03.xml"));
+
+        statusCounts = instancesDao.getStatusCounts();
+        assertEquals(2, (int) statusCounts.get(InstanceProviderAPI.STATUS_INCOMPLETE));
+        assertEquals(2, (int) statusCounts.get(InstanceProviderAPI.STATUS_SUBMITTED));
+
+        instancesDao.deleteInstancesDatabase();
+        assertEquals(0, instancesDao.getStatusCounts().size());
+    }
+
+    @Test
+    public void cachedStatusCountsShouldFollowChangesToSingleInstances() {
+        // counted once, so that the changes below adjust the cached counts
+        assertEquals(countStatusesOfRows(), instancesDao.getStatusCounts());
+
+        ContentValues values = new ContentValues();
+        values.put(InstanceProviderAPI.InstanceColumns.STATUS,
+                InstanceProviderAPI.STATUS_COMPLETE);
+        resolver().update(getInstanceUri("sample"), values, null, null);
+        assertEquals(countStatusesOfRows(), instancesDao.getStatusCounts());
+        assertEquals(2, (int) instancesDao.getStatusCounts()
+                .get(InstanceProviderAPI.STATUS_COMPLETE));
+
+        resolver().delete(getInstanceUri("Cascading Select Form"), null, null);
+        assertEquals(countStatusesOfRows(), instancesDao.getStatusCounts());
+        assertEquals(1, (int) instancesDao.getStatusCounts()
+                .get(InstanceProviderAPI.STATUS_INCOMPLETE));
+
+        // sent instances are only marked as deleted, so they are still counted
+        resolver().delete(getInstanceUri("Widgets"), null, null);
+        assertEquals(countStatusesOfRows(), instancesDao.getStatusCounts());
+        assertEquals(2, (int) instancesDao.getStatusCounts()
+                .get(InstanceProviderAPI.STATUS_SUBMITTED));
+    }
+
+    @Test
+    public void aFailedBatchShouldLeaveTheStatusCountsAsTheyWere() throws Exception {
+        Map<String, Integer> before = instancesDao.getStatusCounts();
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newDelete(getInstanceUri("sample")).build());
+        operations.add(ContentProviderOperation.newUpdate(getInstanceUri("Widgets"))
+                .withValue(InstanceProviderAPI.InstanceColumns.STATUS,
+                        InstanceProviderAPI.STATUS_SUBMISSION_FAILED)
+                .withExpectedCount(2)
+                .build());
+        try {
+            resolver().applyBatch(InstanceProviderAPI.AUTHORITY, operations);
+            fail();
+        } catch (OperationApplicationException e) {
+            // expected, the update only matches one instance
+        }
+
+        assertEquals(before, countStatusesOfRows());
+        assertEquals(before, instancesDao.getStatusCounts());
+    }
+
+    private static ContentResolver resolver() {
+        return Collect.getInstance().getContentResolver();
+    }
+
+    private Uri getInstanceUri(String displayName) {
+        Cursor cursor = instancesDao.getInstancesCursor(
+                InstanceProviderAPI.InstanceColumns.DISPLAY_NAME + "=?", new String[]{displayName});
+        try {
+            assertTrue(cursor.moveToFirst());
+            return ContentUris.withAppendedId(InstanceProviderAPI.InstanceColumns.CONTENT_URI,
+                    cursor.getLong(cursor.getColumnIndex(InstanceProviderAPI.InstanceColumns._ID)));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Counts the statuses of the rows themselves, bypassing the cached counts.
+     */
+    private Map<String, Integer> countStatusesOfRows() {
+        Map<String, Integer> counts = new HashMap<>();
+        Cursor cursor = instancesDao.getInstancesCursor(null, null);
+        try {
+            int statusColumnIndex =
+                    cursor.getColumnIndex(InstanceProviderAPI.InstanceColumns.STATUS);
+            while (cursor.moveToNext()) {
+                String status = cursor.getString(statusColumnIndex);
+                Integer count = counts.get(status);
+                counts.put(status, count == null ? 1 : count + 1);
+            }
+        } finally {
+            cursor.close();
+        }
+        return counts;
+    }
+
     private void fillDatabase() {
         Instance instance1 = new Instance.Builder()
                 .displayName("Hypertension Screening")
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.spatial;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The connection pool and the tile cache of {@link MBTileArchive}, against a real MBTiles file.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MBTileArchivePoolTest {
+
+    private static final int ZOOM = 2;
+
+    private File file;
+    private MBTileArchive archive;
+
+    @Before
+    public void setUp() {
+        file = new File(InstrumentationRegistry.getTargetContext().getCacheDir(), "test.mbtiles");
+        FileUtils.deleteQuietly(file);
+
+        SQLiteDatabase database = SQLiteDatabase.openOrCreateDatabase(file, null);
+        try {
+            database.execSQL("CREATE TABLE metadata (name TEXT, value TEXT)");
+            database.execSQL("CREATE TABLE tiles (zoom_level INTEGER, tile_column INTEGER,"
+                    + " tile_row INTEGER, tile_data BLOB)");
+            database.execSQL("INSERT INTO metadata VALUES ('name', 'test')");
+            int tilesPerSide = 1 << ZOOM;
+            for (int x = 0; x < tilesPerSide; x++) {
+                for (int y = 0; y < tilesPerSide; y++) {
+                    ContentValues values = new ContentValues();
+                    values.put("zoom_level", ZOOM);
+                    values.put("tile_column", x);
+                    values.put("tile_row", MBTileArchive.getTmsRow(ZOOM, y));
+                    values.put("tile_data", tile(x, y));
+                    database.insert("tiles", null, values);
+                }
+            }
+        } finally {
+            database.close();
+        }
+
+        archive = MBTileArchive.acquire(file);
+    }
+
+    @After
+    public void tearDown() {
+        if (archive != null) {
+            archive.release();
+        }
+        FileUtils.deleteQuietly(file);
+    }
+
+    @Test
+    public void tilesShouldBeReadInXyzCoordinates() {
+        assertArrayEquals(tile(1, 3), archive.getTile(ZOOM, 1, 3));
+        assertNull(archive.getTile(ZOOM + 1, 0, 0));
+        assertEquals(ZOOM, archive.getMinimumTileZoom());
+        assertEquals(ZOOM, archive.getMaximumTileZoom());
+    }
+
+    @Test
+    public void concurrentReadsShouldShareASmallPoolOfConnections() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final int x = i % 4;
+                final int y = i / 4 % 4;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return "test".equals(archive.getMetadata("name"))
+                                && archive.getTile(ZOOM, x, y) != null;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(archive.getConnectionCount() <= 3);
+    }
+
+    @Test
+    public void tilesShouldBeServedFromTheCacheOnceRead() {
+        byte[] tile = archive.getTile(ZOOM, 1, 1);
+        deleteAllTiles();
+
+        assertSame(tile, archive.getTile(ZOOM, 1, 1));
+    }
+
+    @Test
+    public void theNeighboursOfATileShouldBePrefetched() throws Exception {
+        archive.getTile(ZOOM, 1, 1);
+        // the prefetch runs in the background
+        Thread.sleep(500);
+        deleteAllTiles();
+
+        assertArrayEquals(tile(2, 2), archive.getTile(ZOOM, 2, 2));
+        assertArrayEquals(tile(0, 0), archive.getTile(ZOOM, 0, 0));
+        assertNull(archive.getTile(ZOOM, 3, 3));
+    }
+
+    @Test
+    public void archivesShouldBeSharedUntilReleased() {
+        MBTileArchive second = MBTileArchive.acquire(file);
+        assertSame(archive, second);
+        second.release();
+        assertEquals("test", archive.getMetadata("name"));
+
+        archive.release();
+        MBTileArchive reopened = MBTileArchive.acquire(file);
+        archive = reopened;
+        assertNotSame(second, reopened);
+        assertNull(second.getMetadata("name"));
+    }
+
+    @Test
+    public void aFileThatCannotBeOpenedShouldNotLeaveAPrefetchThread() throws Exception {
+        File broken = new File(file.getParentFile(), "broken.mbtiles");
+        FileUtils.writeStringToFile(broken, "not a database", "UTF-8");
+        int prefetchThreads = countPrefetchThreads();
+        try {
+            MBTileArchive.acquire(broken);
+            fail();
+        } catch (SQLiteException e) {
+            // expected
+        } finally {
+            FileUtils.deleteQuietly(broken);
+        }
+
+        assertEquals(prefetchThreads, countPrefetchThreads());
+    }
+
+    private void deleteAllTiles() {
+        SQLiteDatabase database = SQLiteDatabase.openDatabase(file.getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE);
+        try {
+            database.delete("tiles", null, null);
+        } finally {
+            database.close();
+        }
+    }
+
+    private static int countPrefetchThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("MBTilePrefetch") && thread.isAlive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static byte[] tile(int x, int y) {
+        return new byte[] {ZOOM, (byte) x, (byte) y};
+    }
+}
@@ -0,0 +1,256 @@
+package org.odk.collect.android.tasks;
+
+import android.net.Uri;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.odk.collect.android.R;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.dao.InstancesDao;
+import org.odk.collect.android.dto.Instance;
+import org.odk.collect.android.logic.FormDetails;
+import org.odk.collect.android.provider.InstanceProviderAPI;
+import org.odk.collect.android.tasks.InstanceUploader.Outcome;
+import org.odk.collect.android.test.OpenRosaServer;
+import org.odk.collect.android.test.OpenRosaServer.Failure;
+import org.odk.collect.android.test.OpenRosaServer.Submission;
+import org.odk.collect.android.utilities.WebUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import timber.log.Timber;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.odk.collect.android.test.TestUtils.backupPreferences;
+import static org.odk.collect.android.test.TestUtils.resetFormsContentProvider;
+import static org.odk.collect.android.test.TestUtils.resetInstancesContentProvider;
+import static org.odk.collect.android.test.TestUtils.restorePreferences;
+
+/**
+ * Downloads and submissions against {@link OpenRosaServer}, timed so that changes to the way
+ * they're made can be compared.
+ */
+public class OpenRosaServerTest {
+    private static final int MEDIA_FILES = 4;
+    private static final int MEDIA_FILE_SIZE = 256 * 1024;
+
+    private final List<File> instanceDirs = new ArrayList<>();
+    private Map<String, ?> prefsBackup;
+    private OpenRosaServer server;
+    private InstancesDao dao;
+
+    @Before
+    public void setUp() throws Exception {
+        prefsBackup = backupPreferences();
+        resetFormsContentProvider();
+        resetInstancesContentProvider();
+        dao = new InstancesDao();
+
+        server = new OpenRosaServer();
+        server.addForm("plain", formXml("plain"), Collections.<String, byte[]>emptyMap());
+        Map<String, byte[]> media = new LinkedHashMap<>();
+        for (int i = 0; i < MEDIA_FILES; i++) {
+            media.put("image" + i + ".jpg", bytes(MEDIA_FILE_SIZE, i));
+        }
+        server.addForm("with_media", formXml("with_media"), media);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        WebUtils.clearAllCredentials();
+        resetFormsContentProvider();
+        resetInstancesContentProvider();
+        for (File dir : instanceDirs) {
+            FileUtils.deleteQuietly(dir);
+        }
+        restorePreferences(prefsBackup);
+    }
+
+    @Test
+    public void shouldListTheFormsOnTheServer() throws Exception {
+        Map<String, FormDetails> fetched = new DownloadFormListTask().doInBackground();
+
+        assertEquals(2, fetched.size());
+        assertNull(fetched.get("plain").errorStr);
+        assertNull(fetched.get("plain").manifestUrl);
+        assertNotNull(fetched.get("with_media").manifestUrl);
+        assertEquals(1, server.getRequestCount(OpenRosaServer.FORM_LIST));
+    }
+
+    @Test
+    public void shouldDownloadFormsAndMediaOverASlowLink() throws Exception {
+        server.setLatency(100);
+        server.setBandwidth(512 * 1024);
+
+        long start = System.currentTimeMillis();
+        assertEquals(success(), downloadForm("with_media"));
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(MEDIA_FILES, server.getRequestCount(OpenRosaServer.MEDIA));
+        long bytes = server.getBytesSent();
+        Timber.i("Downloaded %d bytes in %d ms, %d bytes/s", bytes, elapsed,
+                bytes * 1000 / Math.max(1, elapsed));
+        // the link is the bottleneck
+        assertTrue(elapsed >= bytes * 1000 / (512 * 1024) / 2);
+    }
+
+    @Test
+    public void aMediaFileFailingOnceShouldBeFetchedAgain() throws Exception {
+        server.failNext(OpenRosaServer.MEDIA, 1, Failure.TRUNCATED_BODY);
+
+        assertEquals(success(), downloadForm("with_media"));
+        assertEquals(MEDIA_FILES + 1, server.getRequestCount(OpenRosaServer.MEDIA));
+    }
+
+    @Test
+    public void aFailedDownloadShouldBeResumedWithoutFetchingTheMediaAgain() throws Exception {
+        server.failNext(OpenRosaServer.MEDIA, 2, Failure.SERVER_ERROR);
+        assertNotEquals(success(), downloadForm("with_media"));
+
+        server.resetStatistics();
+        assertEquals(success(), downloadForm("with_media"));
+        Timber.i("Retrying the download took %d media requests",
+                server.getRequestCount(OpenRosaServer.MEDIA));
+
+        // the media already downloaded is kept
+        server.resetStatistics();
+        assertEquals(success(), downloadForm("with_media"));
+        assertEquals(0, server.getRequestCount(OpenRosaServer.MEDIA));
+    }
+
+    @Test
+    public void submissionsShouldBeAcceptedWithACreatedOrAcceptedStatus() throws Exception {
+        long created = createStoredInstance(0);
+        assertEquals("success", upload(created).results.get(String.valueOf(created)));
+
+        server.setSubmissionStatus(202);
+        long accepted = createStoredInstance(0);
+        assertEquals("success", upload(accepted).results.get(String.valueOf(accepted)));
+
+        assertEquals(2, server.getSubmissions().size());
+    }
+
+    @Test
+    public void submissionsShouldAskForCredentialsAndThenUseThem() throws Exception {
+        server.requireCredentials("collector", "secret");
+        long id = createStoredInstance(0);
+
+        Outcome outcome = upload(id);
+        assertNotNull(outcome.authRequestingServer);
+        assertTrue(server.getSubmissions().isEmpty());
+
+        WebUtils.addCredentials("collector", "secret", server.getHostName());
+        outcome = upload(id);
+        assertNull(outcome.authRequestingServer);
+        assertEquals("success", outcome.results.get(String.valueOf(id)));
+    }
+
+    @Test
+    public void submissionsShouldFollowTheLocationOfTheHeadResponse() throws Exception {
+        server.redirectSubmissionsTo("/redirected/submission");
+        long id = createStoredInstance(0);
+
+        assertEquals("success", upload(id).results.get(String.valueOf(id)));
+        assertEquals(1, server.getSubmissions().size());
+    }
+
+    @Test
+    public void aFailedSubmissionShouldSucceedWhenSentAgain() throws Exception {
+        server.failNext(OpenRosaServer.SUBMISSION, 1, Failure.SERVER_ERROR);
+        long id = createStoredInstance(0);
+
+        assertNotEquals("success", upload(id).results.get(String.valueOf(id)));
+        assertEquals("success", upload(id).results.get(String.valueOf(id)));
+        assertEquals(1, server.getSubmissions().size());
+    }
+
+    @Test
+    public void largeSubmissionsShouldBeSplitIntoSeveralPosts() throws Exception {
+        // 12 MB of attachments, more than the 10 MB a single POST can take
+        long id = createStoredInstance(12);
+
+        long start = System.currentTimeMillis();
+        assertEquals("success", upload(id).results.get(String.valueOf(id)));
+        long elapsed = System.currentTimeMillis() - start;
+        Timber.i("Uploaded %d bytes in %d ms", server.getBytesReceived(), elapsed);
+
+        List<Submission> submissions = server.getSubmissions();
+        assertEquals(2, submissions.size());
+        assertTrue(submissions.get(0).isIncomplete());
+        assertFalse(submissions.get(1).isIncomplete());
+        assertTrue(submissions.get(1).getPartNames().contains("xml_submission_file"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private String downloadForm(String formId) {
+        Map<String, FormDetails> formList = new DownloadFormListTask().doInBackground();
+        FormDetails form = formList.get(formId);
+        ArrayList<FormDetails> toDownload = new ArrayList<>(Arrays.asList(form));
+
+        HashMap<FormDetails, String> result = new DownloadFormsTask().doInBackground(toDownload);
+        return result.get(form);
+    }
+
+    private Outcome upload(long id) {
+        return new InstanceServerUploader().doInBackground(id);
+    }
+
+    private long createStoredInstance(int attachments) throws Exception {
+        File dir = new File(Collect.INSTANCES_PATH, "openrosa-test-" + System.nanoTime());
+        instanceDirs.add(dir);
+        File xml = new File(dir, dir.getName() + ".xml");
+        FileUtils.writeStringToFile(xml, "<data id=\"plain\"><q>answer</q></data>", "UTF-8");
+        for (int i = 0; i < attachments; i++) {
+            FileUtils.writeByteArrayToFile(new File(dir, "photo" + i + ".jpg"),
+                    bytes(1000 * 1000, i));
+        }
+
+        Instance instance = new Instance.Builder()
+                .displayName("plain")
+                .instanceFilePath(xml.getAbsolutePath())
+                .jrFormId("plain")
+                .status(InstanceProviderAPI.STATUS_COMPLETE)
+                .lastStatusChangeDate(System.currentTimeMillis())
+                .build();
+
+        Uri uri = dao.saveInstance(dao.getValuesFromInstanceObject(instance));
+        return Long.parseLong(uri.getLastPathSegment());
+    }
+
+    private static String success() {
+        return Collect.getInstance().getString(R.string.success);
+    }
+
+    private static byte[] bytes(int size, int seed) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (i * 31 + seed);
+        }
+        return bytes;
+    }
+
+    private static String formXml(String formId) {
+        return "<h:html xmlns=\"http://www.w3.org/2002/xforms\""
+                + " xmlns:h=\"http://www.w3.org/1999/xhtml\"><h:head>"
+                + "<h:title>" + formId + "</h:title><model><instance>"
+                + "<data id=\"" + formId + "\"><q/></data></instance>"
+                + "<bind nodeset=\"/data/q\" type=\"string\"/></model></h:head>"
+                + "<h:body><input ref=\"/data/q\"><label>Q</label></input></h:body></h:html>";
+    }
+}
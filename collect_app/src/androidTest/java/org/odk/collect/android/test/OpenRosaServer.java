@@ -0,0 +1,442 @@
+package org.odk.collect.android.test;
+
+import android.content.SharedPreferences.Editor;
+import android.preference.PreferenceManager;
+
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.preferences.PreferenceKeys;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+
+/**
+ * An in-process stand-in for an OpenRosa server such as Aggregate, so that form downloads and
+ * submissions can be exercised, and timed, without a network.
+ *
+ * <p>It serves the forms added to it through {@code /formList}, {@code /formXml},
+ * {@code /xformsManifest} and {@code /media}, and accepts submissions on {@code /submission}
+ * the way Aggregate does: a HEAD answered with 204 and the location to post to, then
+ * multipart POSTs answered with 201 (or 202). The latency and bandwidth of the link, digest
+ * authentication and failures of the next requests to an endpoint can be configured.</p>
+ */
+public class OpenRosaServer {
+
+    public static final String FORM_LIST = "formList";
+    public static final String FORM_XML = "formXml";
+    public static final String MANIFEST = "xformsManifest";
+    public static final String MEDIA = "media";
+    public static final String SUBMISSION = "submission";
+
+    /**
+     * The ways a request can be made to fail.
+     */
+    public enum Failure {
+        /** answered with a 500 */
+        SERVER_ERROR,
+        /** the connection is closed once the request has been read */
+        DROPPED_CONNECTION,
+        /** the connection is closed half way through the response body */
+        TRUNCATED_BODY
+    }
+
+    private static final String REALM = "OpenRosa";
+    private static final Pattern AUTH_PARAM =
+            Pattern.compile("(\\w+)=(?:\"([^\"]*)\"|([^,\\s]*))");
+
+    private final MockWebServer server = new MockWebServer();
+    private final Map<String, Form> forms = new LinkedHashMap<>();
+    private final Map<String, Integer> requestCounts = new HashMap<>();
+    private final Map<String, List<Failure>> failures = new HashMap<>();
+    private final List<Submission> submissions = new ArrayList<>();
+    private final String nonce = Long.toHexString(System.nanoTime());
+
+    private long latencyMs;
+    private long bytesPerSecond;
+    private int submissionStatus = 201;
+    private String submissionPath = "/" + SUBMISSION;
+    private String username;
+    private String password;
+    private long bytesReceived;
+    private long bytesSent;
+
+    public OpenRosaServer() {
+        server.setDispatcher(new OpenRosaDispatcher());
+    }
+
+    /**
+     * Starts the server and points the app at it.
+     */
+    public void start() throws IOException {
+        server.start();
+
+        Editor prefs = PreferenceManager
+                .getDefaultSharedPreferences(Collect.getInstance().getBaseContext()).edit();
+        prefs.putString(PreferenceKeys.KEY_SERVER_URL, getUrl());
+        if (!prefs.commit()) {
+            throw new RuntimeException("Failed to set up SharedPreferences for OpenRosaServer");
+        }
+    }
+
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    public String getUrl() {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+
+    public String getHostName() {
+        return server.url("/").host();
+    }
+
+    public synchronized void addForm(String formId, String xml, Map<String, byte[]> media) {
+        forms.put(formId, new Form(formId, xml, media));
+    }
+
+    /**
+     * Delays every response by the given time, on top of the time taken to send it.
+     */
+    public synchronized void setLatency(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    /**
+     * Limits the rate at which request and response bodies are read and written, 0 for none.
+     */
+    public synchronized void setBandwidth(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Makes the next {@code count} requests to the given endpoint fail the given way. For
+     * submissions, these are the POSTs. Note that HttpClient retries GETs and HEADs whose
+     * connection was dropped on its own.
+     */
+    public synchronized void failNext(String endpoint, int count, Failure failure) {
+        List<Failure> pending = failures.get(endpoint);
+        if (pending == null) {
+            pending = new ArrayList<>();
+            failures.put(endpoint, pending);
+        }
+        pending.addAll(Collections.nCopies(count, failure));
+    }
+
+    /**
+     * Sets the status the submissions are accepted with, 201 or 202.
+     */
+    public synchronized void setSubmissionStatus(int status) {
+        submissionStatus = status;
+    }
+
+    /**
+     * Sends the submissions to another path on this server through the Location of the HEAD
+     * response, as Aggregate does when it moves the client to https.
+     */
+    public synchronized void redirectSubmissionsTo(String path) {
+        submissionPath = path;
+    }
+
+    /**
+     * Answers 401 with a digest challenge to any request not made with these credentials.
+     */
+    public synchronized void requireCredentials(String username, String password) {
+        this.username = username;
+        this.password = password;
+    }
+
+    public synchronized int getRequestCount(String endpoint) {
+        Integer count = requestCounts.get(endpoint);
+        return count == null ? 0 : count;
+    }
+
+    public synchronized long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public synchronized long getBytesSent() {
+        return bytesSent;
+    }
+
+    public synchronized List<Submission> getSubmissions() {
+        return new ArrayList<>(submissions);
+    }
+
+    public synchronized void resetStatistics() {
+        requestCounts.clear();
+        bytesReceived = 0;
+        bytesSent = 0;
+    }
+
+    private synchronized MockResponse respond(RecordedRequest request) {
+        String path = request.getPath();
+        String query = "";
+        int queryStart = path.indexOf('?');
+        if (queryStart >= 0) {
+            query = path.substring(queryStart + 1);
+            path = path.substring(0, queryStart);
+        }
+        path = path.replaceAll("/+", "/");
+
+        String endpoint = endpointOf(path);
+        Integer count = requestCounts.get(endpoint);
+        requestCounts.put(endpoint, count == null ? 1 : count + 1);
+        bytesReceived += request.getBodySize();
+
+        // the HEAD of a submission only finds where to post it
+        List<Failure> pending = failures.get(endpoint);
+        boolean head = SUBMISSION.equals(endpoint) && "HEAD".equals(request.getMethod());
+        if (pending != null && !pending.isEmpty() && !head) {
+            return fail(pending.remove(0));
+        }
+
+        if (username != null && !isAuthorized(request)) {
+            return openRosaResponse(401).addHeader("WWW-Authenticate", "Digest realm=\"" + REALM
+                    + "\", qop=\"auth\", nonce=\"" + nonce + "\"");
+        }
+
+        if (FORM_LIST.equals(endpoint)) {
+            return xmlResponse(formList());
+        } else if (FORM_XML.equals(endpoint)) {
+            Form form = forms.get(parameter(query, "formId"));
+            return form == null ? openRosaResponse(404) : xmlResponse(form.xml);
+        } else if (MANIFEST.equals(endpoint)) {
+            Form form = forms.get(parameter(query, "formId"));
+            return form == null ? openRosaResponse(404) : xmlResponse(manifest(form));
+        } else if (MEDIA.equals(endpoint)) {
+            // /media/<form id>/<file name>
+            String[] parts = path.split("/", 4);
+            Form form = parts.length == 4 ? forms.get(parts[2]) : null;
+            byte[] file = form == null ? null : form.media.get(parts[3]);
+            if (file == null) {
+                return openRosaResponse(404);
+            }
+            bytesSent += file.length;
+            return openRosaResponse(200)
+                    .addHeader("Content-Type", "application/octet-stream")
+                    .setBody(new Buffer().write(file));
+        } else if (path.equals("/" + SUBMISSION) && "HEAD".equals(request.getMethod())) {
+            return openRosaResponse(204)
+                    .addHeader("X-OpenRosa-Accept-Content-Length", "10485760")
+                    .addHeader("Location", getUrl() + submissionPath);
+        } else if (path.equals(submissionPath) && "POST".equals(request.getMethod())) {
+            submissions.add(
+                    new Submission(request.getBody().readUtf8(), request.getBodySize()));
+            return openRosaResponse(submissionStatus)
+                    .addHeader("Content-Type", "text/xml; charset=utf-8")
+                    .setBody("<OpenRosaResponse xmlns=\"http://openrosa.org/http/response\">"
+                            + "<message>success</message></OpenRosaResponse>");
+        }
+        return openRosaResponse(404);
+    }
+
+    private String endpointOf(String path) {
+        String[] parts = path.split("/");
+        if (parts.length > 1 && (path.equals(submissionPath) || parts[1].equals(SUBMISSION))) {
+            return SUBMISSION;
+        }
+        return parts.length > 1 ? parts[1] : "";
+    }
+
+    private MockResponse fail(Failure failure) {
+        switch (failure) {
+            case DROPPED_CONNECTION:
+                return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+            case TRUNCATED_BODY:
+                return openRosaResponse(200)
+                        .setBody(new Buffer().write(new byte[64 * 1024]))
+                        .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+            default:
+                return openRosaResponse(500);
+        }
+    }
+
+    private MockResponse openRosaResponse(int status) {
+        MockResponse response = new MockResponse()
+                .setResponseCode(status)
+                .addHeader("X-OpenRosa-Version", "1.0");
+        if (bytesPerSecond > 0) {
+            // in tenths of a second, for a steady rate on small bodies too
+            response.throttleBody(Math.max(1, bytesPerSecond / 10), 100, TimeUnit.MILLISECONDS);
+        }
+        return response;
+    }
+
+    private MockResponse xmlResponse(String xml) {
+        bytesSent += xml.length();
+        return openRosaResponse(200)
+                .addHeader("Content-Type", "text/xml; charset=utf-8")
+                .setBody(xml);
+    }
+
+    private String formList() {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<xforms xmlns=\"http://openrosa.org/xforms/xformsList\">");
+        for (Form form : forms.values()) {
+            xml.append("<xform><formID>").append(form.id).append("</formID>")
+                    .append("<name>").append(form.id).append("</name>")
+                    .append("<majorMinorVersion></majorMinorVersion><version></version>")
+                    .append("<hash>md5:").append(md5(utf8(form.xml))).append("</hash>")
+                    .append("<downloadUrl>").append(getUrl()).append("/formXml?formId=")
+                    .append(form.id).append("</downloadUrl>");
+            if (!form.media.isEmpty()) {
+                xml.append("<manifestUrl>").append(getUrl()).append("/xformsManifest?formId=")
+                        .append(form.id).append("</manifestUrl>");
+            }
+            xml.append("</xform>");
+        }
+        return xml.append("</xforms>").toString();
+    }
+
+    private String manifest(Form form) {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<manifest xmlns=\"http://openrosa.org/xforms/xformsManifest\">");
+        for (Map.Entry<String, byte[]> file : form.media.entrySet()) {
+            xml.append("<mediaFile><filename>").append(file.getKey()).append("</filename>")
+                    .append("<hash>md5:").append(md5(file.getValue())).append("</hash>")
+                    .append("<downloadUrl>").append(getUrl()).append("/media/").append(form.id)
+                    .append('/').append(file.getKey()).append("</downloadUrl></mediaFile>");
+        }
+        return xml.append("</manifest>").toString();
+    }
+
+    /**
+     * Checks the digest authentication of RFC 2617, with and without qop.
+     */
+    private boolean isAuthorized(RecordedRequest request) {
+        String authorization = request.getHeader("Authorization");
+        if (authorization == null || !authorization.startsWith("Digest ")) {
+            return false;
+        }
+
+        Map<String, String> params = new HashMap<>();
+        Matcher matcher = AUTH_PARAM.matcher(authorization.substring("Digest ".length()));
+        while (matcher.find()) {
+            params.put(matcher.group(1),
+                    matcher.group(2) != null ? matcher.group(2) : matcher.group(3));
+        }
+        if (!username.equals(params.get("username")) || !nonce.equals(params.get("nonce"))) {
+            return false;
+        }
+
+        String ha1 = md5(utf8(username + ":" + REALM + ":" + password));
+        String ha2 = md5(utf8(request.getMethod() + ":" + params.get("uri")));
+        String expected = params.containsKey("qop")
+                ? md5(utf8(ha1 + ":" + nonce + ":" + params.get("nc") + ":"
+                        + params.get("cnonce") + ":" + params.get("qop") + ":" + ha2))
+                : md5(utf8(ha1 + ":" + nonce + ":" + ha2));
+        return expected.equals(params.get("response"));
+    }
+
+    private static String parameter(String query, String name) {
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return pair.substring(name.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    private static byte[] utf8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String md5(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(data);
+            return String.format("%032x", new BigInteger(1, digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private class OpenRosaDispatcher extends Dispatcher {
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            long latency;
+            synchronized (OpenRosaServer.this) {
+                latency = latencyMs;
+            }
+            if (latency > 0) {
+                Thread.sleep(latency);
+            }
+            return respond(request);
+        }
+
+        @Override
+        public MockResponse peek() {
+            // the request bodies are read at the rate of this response
+            synchronized (OpenRosaServer.this) {
+                return openRosaResponse(200);
+            }
+        }
+    }
+
+    private static class Form {
+        final String id;
+        final String xml;
+        final Map<String, byte[]> media;
+
+        Form(String id, String xml, Map<String, byte[]> media) {
+            this.id = id;
+            this.xml = xml;
+            this.media = new LinkedHashMap<>(media);
+        }
+    }
+
+    /**
+     * One of the multipart POSTs a submission was sent in.
+     */
+    public static class Submission {
+        private static final Pattern PART_NAME = Pattern.compile("name=\"([^\"]*)\"");
+
+        private final List<String> partNames = new ArrayList<>();
+        private final long size;
+
+        Submission(String body, long size) {
+            this.size = size;
+            Matcher matcher = PART_NAME.matcher(body);
+            while (matcher.find()) {
+                partNames.add(matcher.group(1));
+            }
+        }
+
+        public List<String> getPartNames() {
+            return partNames;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Whether more POSTs are to follow, because the attachments didn't fit in this one.
+         */
+        public boolean isIncomplete() {
+            return partNames.contains("*isIncomplete*");
+        }
+    }
+}
@@ -4,6 +4,7 @@ import android.os.Environment;
 
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.preferences.GeneralSharedPreferences;
+import org.odk.collect.android.provider.FormsProviderAPI;
 import org.odk.collect.android.provider.InstanceProviderAPI;
 
 import java.io.Closeable;
@@ -81,6 +82,10 @@ public final class TestUtils {
         Collect.getInstance().getContentResolver().delete(InstanceProviderAPI.InstanceColumns.CONTENT_URI, null, null);
     }
 
+    public static void resetFormsContentProvider() {
+        Collect.getInstance().getContentResolver().delete(FormsProviderAPI.FormsColumns.CONTENT_URI, null, null);
+    }
+
     public static void assertMatches(String expectedPattern, Object actual) {
         if (!testMatches(expectedPattern, actual)) {
             throw new AssertionError(String.format("Expected <%s> to match <%s>.", actual, expectedPattern));
@@ -18,6 +18,7 @@ package org.odk.collect.android.activities;
 
 import android.database.Cursor;
 import android.os.Bundle;
+import android.os.Handler;
 import android.preference.PreferenceManager;
 import android.support.annotation.Nullable;
 import android.support.design.widget.BottomSheetDialog;
@@ -58,6 +59,7 @@ abstract class AppListActivity extends AppCompatActivity {
     private static final String IS_SEARCH_BOX_SHOWN = "isSearchBoxShown";
     private static final String IS_BOTTOM_DIALOG_SHOWN = "isBottomDialogShown";
     private static final String SEARCH_TEXT = "searchText";
+    private static final long FILTER_DELAY_MS = 300;
 
     protected final ActivityLogger logger = Collect.getInstance().getActivityLogger();
     protected SimpleCursorAdapter listAdapter;
@@ -75,6 +77,14 @@ abstract class AppListActivity extends AppCompatActivity {
 
     private SearchView searchView;
 
+    private final Handler handler = new Handler();
+    private final Runnable filter = new Runnable() {
+        @Override
+        public void run() {
+            updateAdapter();
+        }
+    };
+
     // toggles to all checked or all unchecked
     // returns:
     // true if result is all checked
@@ -139,6 +149,12 @@ abstract class AppListActivity extends AppCompatActivity {
         setupBottomSheet();
     }
 
+    @Override
+    protected void onDestroy() {
+        handler.removeCallbacks(filter);
+        super.onDestroy();
+    }
+
     @Override
     protected void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
@@ -182,6 +198,7 @@ abstract class AppListActivity extends AppCompatActivity {
             @Override
             public boolean onQueryTextSubmit(String query) {
                 filterText = query;
+                handler.removeCallbacks(filter);
                 updateAdapter();
                 searchView.clearFocus();
                 return false;
@@ -190,7 +207,9 @@ abstract class AppListActivity extends AppCompatActivity {
             @Override
             public boolean onQueryTextChange(String newText) {
                 filterText = newText;
-                updateAdapter();
+                // filter once typing pauses rather than on every keystroke
+                handler.removeCallbacks(filter);
+                handler.postDelayed(filter, FILTER_DELAY_MS);
                 return false;
             }
         });
@@ -252,6 +271,16 @@ abstract class AppListActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Remembers the checked rows, so that they stay checked when the list is loaded again.
+     */
+    protected void updateSelectedInstances() {
+        selectedInstances.clear();
+        for (long id : listView.getCheckedItemIds()) {
+            selectedInstances.add(id);
+        }
+    }
+
     protected abstract void updateAdapter();
 
     protected abstract String getSortingOrderKey();
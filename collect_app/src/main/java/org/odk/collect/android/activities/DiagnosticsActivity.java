@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.activities;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.Toolbar;
+import android.widget.TextView;
+
+import org.odk.collect.android.R;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.tracing.Span;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shows how long the start-up took and the last traces recorded, so that slowness reported
+ * from the field can be put down to a phase of the work.
+ */
+public class DiagnosticsActivity extends AppCompatActivity {
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_diagnostics);
+
+        Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
+        setTitle(getString(R.string.diagnostics));
+        setSupportActionBar(toolbar);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        StringBuilder text = new StringBuilder();
+        text.append(getString(R.string.diagnostics_startup)).append('\n');
+        for (Map.Entry<String, Long> timing
+                : Collect.getInstance().getStartupTimings().entrySet()) {
+            text.append("    ").append(timing.getKey()).append(' ')
+                    .append(timing.getValue()).append(" ms\n");
+        }
+
+        text.append('\n').append(getString(R.string.diagnostics_traces)).append('\n');
+        List<Span> traces = Collect.getInstance().getRecentTraces().getTraces();
+        if (traces.isEmpty()) {
+            text.append(getString(R.string.diagnostics_no_traces)).append('\n');
+        }
+        for (Span trace : traces) {
+            text.append(trace.format()).append('\n');
+        }
+
+        ((TextView) findViewById(R.id.diagnostics)).setText(text);
+    }
+}
@@ -18,10 +18,10 @@ import android.app.AlertDialog;
 import android.content.ContentUris;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.support.v4.content.CursorLoader;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.TextView;
@@ -33,6 +33,7 @@ import org.odk.collect.android.listeners.DiskSyncListener;
 import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
 import org.odk.collect.android.tasks.DiskSyncTask;
 import org.odk.collect.android.utilities.ApplicationConstants;
+import org.odk.collect.android.utilities.CursorListPager;
 import org.odk.collect.android.utilities.VersionHidingCursorAdapter;
 
 import timber.log.Timber;
@@ -44,13 +45,15 @@ import timber.log.Timber;
  * @author Yaw Anokwa (yanokwa@gmail.com)
  * @author Carl Hartung (carlhartung@gmail.com)
  */
-public class FormChooserList extends FormListActivity implements DiskSyncListener, AdapterView.OnItemClickListener {
+public class FormChooserList extends FormListActivity implements DiskSyncListener,
+        AdapterView.OnItemClickListener, CursorListPager.Callbacks {
     private static final String FORM_CHOOSER_LIST_SORTING_ORDER = "formChooserListSortingOrder";
 
     private static final boolean EXIT = true;
     private static final String syncMsgKey = "syncmsgkey";
 
     private DiskSyncTask diskSyncTask;
+    private CursorListPager listPager;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -184,9 +187,12 @@ public class FormChooserList extends FormListActivity implements DiskSyncListene
         };
 
         listAdapter =
-                new VersionHidingCursorAdapter(FormsColumns.JR_VERSION, this, R.layout.two_item, getCursor(), data, view);
+                new VersionHidingCursorAdapter(FormsColumns.JR_VERSION, this, R.layout.two_item,
+                        null, data, view);
 
         listView.setAdapter(listAdapter);
+        listPager = new CursorListPager(getSupportLoaderManager(), 0, listView, listAdapter, this);
+        updateAdapter();
     }
 
     @Override
@@ -196,11 +202,16 @@ public class FormChooserList extends FormListActivity implements DiskSyncListene
 
     @Override
     protected void updateAdapter() {
-        listAdapter.changeCursor(getCursor());
+        listPager.reload();
     }
 
-    private Cursor getCursor() {
-        return new FormsDao().getFormsCursor(getFilterText(), getSortingOrder());
+    @Override
+    public CursorLoader onCreateCursorLoader(int limit) {
+        return new FormsDao().getFormsCursorLoader(getFilterText(), getSortingOrder(), limit);
+    }
+
+    @Override
+    public void onCursorLoaded() {
     }
 
     /**
@@ -21,8 +21,6 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
@@ -86,9 +84,11 @@ import org.odk.collect.android.fragments.dialogs.NumberPickerDialog;
 import org.odk.collect.android.listeners.AdvanceToNextListener;
 import org.odk.collect.android.listeners.FormLoaderListener;
 import org.odk.collect.android.listeners.FormSavedListener;
-import org.odk.collect.android.listeners.SavePointListener;
+import org.odk.collect.android.listeners.ImageScalingListener;
+import org.odk.collect.android.listeners.WidgetCreatedListener;
 import org.odk.collect.android.logic.FormController;
 import org.odk.collect.android.logic.FormController.FailedConstraint;
+import org.odk.collect.android.logic.NextScreenPrefetcher;
 import org.odk.collect.android.preferences.AdminKeys;
 import org.odk.collect.android.preferences.AdminSharedPreferences;
 import org.odk.collect.android.preferences.GeneralSharedPreferences;
@@ -98,17 +98,18 @@ import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
 import org.odk.collect.android.provider.InstanceProviderAPI;
 import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
 import org.odk.collect.android.tasks.FormLoaderTask;
-import org.odk.collect.android.tasks.SavePointTask;
+import org.odk.collect.android.tasks.SavePointScheduler;
 import org.odk.collect.android.tasks.SaveResult;
 import org.odk.collect.android.tasks.SaveToDiskTask;
+import org.odk.collect.android.tasks.ScaleImageTask;
 import org.odk.collect.android.utilities.ApplicationConstants;
 import org.odk.collect.android.utilities.DialogUtils;
 import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.android.utilities.ImageDownscaler;
 import org.odk.collect.android.utilities.MediaUtils;
 import org.odk.collect.android.utilities.TimerLogger;
 import org.odk.collect.android.utilities.ToastUtils;
 import org.odk.collect.android.views.ODKView;
-import org.odk.collect.android.widgets.BinaryWidget;
 import org.odk.collect.android.widgets.QuestionWidget;
 import org.odk.collect.android.widgets.RangeWidget;
 import org.odk.collect.android.widgets.StringWidget;
@@ -117,9 +118,11 @@ import java.io.File;
 import java.io.FileFilter;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import timber.log.Timber;
 
@@ -138,13 +141,8 @@ import static org.odk.collect.android.utilities.ApplicationConstants.XML_OPENROS
  */
 public class FormEntryActivity extends AppCompatActivity implements AnimationListener,
         FormLoaderListener, FormSavedListener, AdvanceToNextListener,
-        OnGestureListener, SavePointListener, NumberPickerDialog.NumberPickerListener {
-
-    // save with every swipe forward or back. Timings indicate this takes .25
-    // seconds.
-    // if it ever becomes an issue, this value can be changed to save every n'th
-    // screen.
-    private static final int SAVEPOINT_INTERVAL = 1;
+        OnGestureListener, SavePointScheduler.Listener, NumberPickerDialog.NumberPickerListener,
+        WidgetCreatedListener, ImageScalingListener {
 
     // Defines for FormEntryActivity
     private static final boolean EXIT = true;
@@ -232,10 +230,10 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
     private boolean beenSwiped;
 
     private final Object saveDialogLock = new Object();
-    private int viewCount = 0;
 
     private FormLoaderTask formLoaderTask;
     private SaveToDiskTask saveToDiskTask;
+    private ScaleImageTask scaleImageTask;
 
     private ImageButton nextButton;
     private ImageButton backButton;
@@ -250,6 +248,10 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
 
     private FormsDao formsDao;
 
+    private NextScreenPrefetcher nextScreenPrefetcher;
+
+    private final SavePointScheduler savePointScheduler = new SavePointScheduler(this);
+
     /**
      * Called when the activity is first created.
      */
@@ -270,6 +272,9 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
 
         formsDao = new FormsDao();
 
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        nextScreenPrefetcher = new NextScreenPrefetcher(metrics.widthPixels, metrics.heightPixels);
+
         errorMessage = null;
 
         beenSwiped = false;
@@ -346,6 +351,8 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
             formLoaderTask = (FormLoaderTask) data;
         } else if (data instanceof SaveToDiskTask) {
             saveToDiskTask = (SaveToDiskTask) data;
+        } else if (data instanceof ScaleImageTask) {
+            scaleImageTask = (ScaleImageTask) data;
         } else if (data == null) {
             if (!newForm) {
                 if (Collect.getInstance().getFormController() != null) {
@@ -560,19 +567,6 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
         setSupportActionBar(toolbar);
     }
 
-    /**
-     * Create save-points asynchronously in order to not affect swiping performance
-     * on larger forms.
-     */
-    private void nonblockingCreateSavePointData() {
-        try {
-            SavePointTask savePointTask = new SavePointTask(this);
-            savePointTask.execute();
-        } catch (Exception e) {
-            Timber.e("Could not schedule SavePointTask. Perhaps a lot of swiping is taking place?");
-        }
-    }
-
     @Override
     protected void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
@@ -590,7 +584,7 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
                         formController.getXPath(waiting));
             }
             // save the instance to a temp path...
-            nonblockingCreateSavePointData();
+            savePointScheduler.flush();
         }
         outState.putBoolean(NEWFORM, false);
         outState.putString(KEY_ERROR, errorMessage);
@@ -689,22 +683,16 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
                  */
                 // The intent is empty, but we know we saved the image to the temp
                 // file
-                scaleDownImageIfNeeded(Collect.TMPFILE_PATH);
-                File fi = new File(Collect.TMPFILE_PATH);
-                String instanceFolder = formController.getInstancePath()
-                        .getParent();
-                String s = instanceFolder + File.separator
-                        + System.currentTimeMillis() + ".jpg";
-
-                File nf = new File(s);
-                if (!fi.renameTo(nf)) {
-                    Timber.e("Failed to rename %s", fi.getAbsolutePath());
-                } else {
-                    Timber.i("Renamed %s to %s", fi.getAbsolutePath(), nf.getAbsolutePath());
+                Integer maxPixels = getMaxPixelsForWidgetWaitingForBinaryData();
+                if (maxPixels != null) {
+                    // scaling a full resolution photo takes a while, so do it in the background
+                    showDialog(SAVING_IMAGE_DIALOG);
+                    scaleImageTask = new ScaleImageTask(maxPixels);
+                    scaleImageTask.setImageScalingListener(this);
+                    scaleImageTask.execute(new File(Collect.TMPFILE_PATH));
+                    return;
                 }
-
-                ((ODKView) currentView).setBinaryData(nf);
-                saveAnswersForCurrentScreen(DO_NOT_EVALUATE_CONSTRAINTS);
+                saveCapturedImage();
                 break;
             case ALIGNED_IMAGE:
                 /*
@@ -714,12 +702,12 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
                  */
                 String path = intent
                         .getStringExtra(android.provider.MediaStore.EXTRA_OUTPUT);
-                fi = new File(path);
-                instanceFolder = formController.getInstancePath().getParent();
-                s = instanceFolder + File.separator + System.currentTimeMillis()
+                File fi = new File(path);
+                String instanceFolder = formController.getInstancePath().getParent();
+                String s = instanceFolder + File.separator + System.currentTimeMillis()
                         + ".jpg";
 
-                nf = new File(s);
+                File nf = new File(s);
                 if (!fi.renameTo(nf)) {
                     Timber.e("Failed to rename %s", fi.getAbsolutePath());
                 } else {
@@ -739,10 +727,11 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
                  */
 
                 showDialog(SAVING_IMAGE_DIALOG);
+                final Integer chosenImageMaxPixels = getMaxPixelsForWidgetWaitingForBinaryData();
                 Runnable runnable = new Runnable() {
                     @Override
                     public void run() {
-                        saveChosenImage(intent.getData());
+                        saveChosenImage(intent.getData(), chosenImageMaxPixels);
                     }
                 };
                 new Thread(runnable).start();
@@ -798,7 +787,37 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
         refreshCurrentView();
     }
 
-    private void saveChosenImage(Uri selectedImage) {
+    @Override
+    public void scalingComplete(File image) {
+        scaleImageTask = null;
+        dismissDialog(SAVING_IMAGE_DIALOG);
+        saveCapturedImage();
+        refreshCurrentView();
+    }
+
+    /**
+     * Moves the image saved to the temp file into the instance folder and sets it as the
+     * answer of the widget that requested it.
+     */
+    private void saveCapturedImage() {
+        File fi = new File(Collect.TMPFILE_PATH);
+        String instanceFolder = Collect.getInstance().getFormController().getInstancePath()
+                .getParent();
+        String s = instanceFolder + File.separator
+                + System.currentTimeMillis() + ".jpg";
+
+        File nf = new File(s);
+        if (!fi.renameTo(nf)) {
+            Timber.e("Failed to rename %s", fi.getAbsolutePath());
+        } else {
+            Timber.i("Renamed %s to %s", fi.getAbsolutePath(), nf.getAbsolutePath());
+        }
+
+        ((ODKView) currentView).setBinaryData(nf);
+        saveAnswersForCurrentScreen(DO_NOT_EVALUATE_CONSTRAINTS);
+    }
+
+    private void saveChosenImage(Uri selectedImage, Integer maxPixels) {
         // Copy file to sdcard
         String instanceFolder1 = Collect.getInstance().getFormController().getInstancePath()
                 .getParent();
@@ -811,7 +830,9 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
             if (chosenImage != null) {
                 final File newImage = new File(destImagePath);
                 FileUtils.copyFile(chosenImage, newImage);
-                scaleDownImageIfNeeded(newImage.getPath());
+                if (maxPixels != null) {
+                    ImageDownscaler.scaleDownImage(newImage, maxPixels);
+                }
                 runOnUiThread(new Runnable() {
                     @Override
                     public void run() {
@@ -843,25 +864,30 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
         }
     }
 
-    private void scaleDownImageIfNeeded(String path) {
-        QuestionWidget questionWidget = getWidgetWaitingForBinaryData();
-        if (questionWidget != null) {
-            Integer maxPixels = getMaxPixelsForImageIfDefined(questionWidget);
-            if (maxPixels != null) {
-                scaleDownImage(path, maxPixels);
+    @Override
+    public void widgetCreated(QuestionWidget qw) {
+        if (!qw.getPrompt().isReadOnly()) {
+            // If it's a StringWidget register all its elements apart from EditText as
+            // we want to enable paste option after long click on the EditText
+            if (qw instanceof StringWidget) {
+                for (int i = 0; i < qw.getChildCount(); i++) {
+                    if (!(qw.getChildAt(i) instanceof EditText)) {
+                        registerForContextMenu(qw.getChildAt(i));
+                    }
+                }
+            } else {
+                registerForContextMenu(qw);
             }
         }
     }
 
-    private QuestionWidget getWidgetWaitingForBinaryData() {
-        QuestionWidget questionWidget = null;
-        for (QuestionWidget qw :  ((ODKView) currentView).getWidgets()) {
-            if (qw instanceof BinaryWidget && ((BinaryWidget) qw).isWaitingForBinaryData()) {
-                questionWidget = qw;
-            }
-        }
+    private Integer getMaxPixelsForWidgetWaitingForBinaryData() {
+        QuestionWidget questionWidget = getWidgetWaitingForBinaryData();
+        return questionWidget != null ? getMaxPixelsForImageIfDefined(questionWidget) : null;
+    }
 
-        return questionWidget;
+    private QuestionWidget getWidgetWaitingForBinaryData() {
+        return ((ODKView) currentView).getWidgetWaitingForBinaryData();
     }
 
     private Integer getMaxPixelsForImageIfDefined(QuestionWidget questionWidget) {
@@ -878,31 +904,6 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
         return maxPixels;
     }
 
-    /*
-    This method is used to reduce an original picture size.
-    maxPixels refers to the max pixels of the long edge, the short edge is scaled proportionately.
-     */
-    private void scaleDownImage(String path, int maxPixels) {
-        Bitmap originalImage = FileUtils.getBitmap(path, new BitmapFactory.Options());
-
-        if (originalImage != null) {
-            double originalWidth = originalImage.getWidth();
-            double originalHeight = originalImage.getHeight();
-
-            if (originalWidth > originalHeight && originalWidth > maxPixels) {
-                int newHeight = (int) (originalHeight / (originalWidth / maxPixels));
-
-                Bitmap scaledImage = Bitmap.createScaledBitmap(originalImage, maxPixels, newHeight, false);
-                FileUtils.saveBitmapToFile(scaledImage, path);
-            } else if (originalHeight > maxPixels) {
-                int newWidth = (int) (originalWidth / (originalHeight / maxPixels));
-
-                Bitmap scaledImage = Bitmap.createScaledBitmap(originalImage, newWidth, maxPixels, false);
-                FileUtils.saveBitmapToFile(scaledImage, path);
-            }
-        }
-    }
-
     private void saveAudioVideoAnswer(Uri media) {
         // For audio/video capture/chooser, we get the URI from the content
         // provider
@@ -1145,6 +1146,12 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
             return saveToDiskTask;
         }
 
+        // if a captured image is being scaled, pass the task so that its answer isn't lost
+        if (scaleImageTask != null
+                && scaleImageTask.getStatus() != AsyncTask.Status.FINISHED) {
+            return scaleImageTask;
+        }
+
         // mFormEntryController is static so we don't need to pass it.
         if (formController != null && formController.currentPromptIsQuestion()) {
             saveAnswersForCurrentScreen(DO_NOT_EVALUATE_CONSTRAINTS);
@@ -1305,7 +1312,13 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
                 ODKView odkv = null;
                 // should only be a group here if the event_group is a field-list
                 try {
-                    FormEntryPrompt[] prompts = formController.getQuestionPrompts();
+                    FormEntryPrompt[] prompts =
+                            nextScreenPrefetcher.take(formController.getFormIndex());
+                    if (prompts == null) {
+                        prompts = formController.getQuestionPrompts();
+                    } else {
+                        Timber.d("Showing the prefetched screen");
+                    }
                     FormEntryCaption[] groups = formController
                             .getGroupsForCurrentIndex();
                     odkv = new ODKView(this, prompts, groups, advancingPage);
@@ -1328,20 +1341,10 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
 
                 // Makes a "clear answer" menu pop up on long-click
                 for (QuestionWidget qw : odkv.getWidgets()) {
-                    if (!qw.getPrompt().isReadOnly()) {
-                        // If it's a StringWidget register all its elements apart from EditText as
-                        // we want to enable paste option after long click on the EditText
-                        if (qw instanceof StringWidget) {
-                            for (int i = 0; i < qw.getChildCount(); i++) {
-                                if (!(qw.getChildAt(i) instanceof EditText)) {
-                                    registerForContextMenu(qw.getChildAt(i));
-                                }
-                            }
-                        } else {
-                            registerForContextMenu(qw);
-                        }
-                    }
+                    widgetCreated(qw);
                 }
+                // large field-lists create their widgets as they are scrolled into view
+                odkv.setWidgetCreatedListener(this);
 
                 if (showNavigationButtons) {
                     adjustBackNavigationButtonVisibility();
@@ -1457,10 +1460,6 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
             switch (event) {
                 case FormEntryController.EVENT_QUESTION:
                 case FormEntryController.EVENT_GROUP:
-                    // create a savepoint
-                    if ((++viewCount) % SAVEPOINT_INTERVAL == 0) {
-                        nonblockingCreateSavePointData();
-                    }
                     next = createView(event, true);
                     showView(next, AnimationType.RIGHT);
                     break;
@@ -1514,13 +1513,6 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
                         }
                     }
 
-                    if (event == FormEntryController.EVENT_GROUP
-                            || event == FormEntryController.EVENT_QUESTION) {
-                        // create savepoint
-                        if ((++viewCount) % SAVEPOINT_INTERVAL == 0) {
-                            nonblockingCreateSavePointData();
-                        }
-                    }
                     formController.getTimerLogger().exitView();    // Close timer events
                     View next = createView(event, false);
                     showView(next, AnimationType.LEFT);
@@ -1639,6 +1631,9 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
                 }
             }
         }
+
+        // get the images of the next screen ready while this one is being answered
+        nextScreenPrefetcher.schedule();
     }
 
     // Hopefully someday we can use managed dialogs when the bugs are fixed
@@ -2049,11 +2044,7 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
                 .getFormController();
 
         // attempt to remove any scratch file
-        File temp = SaveToDiskTask.savepointFile(formController
-                .getInstancePath());
-        if (temp.exists()) {
-            temp.delete();
-        }
+        savePointScheduler.discard(SaveToDiskTask.savepointFile(formController.getInstancePath()));
 
         boolean erase = false;
         {
@@ -2329,6 +2320,7 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
                 saveAnswersForCurrentScreen(DO_NOT_EVALUATE_CONSTRAINTS);
             }
         }
+        savePointScheduler.flush();
         if (currentView != null && currentView instanceof ODKView) {
             // stop audio if it's playing
             ((ODKView) currentView).stopAudio();
@@ -2376,6 +2368,7 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
                 startActivity(new Intent(this, MainMenuActivity.class));
                 return;
             } else {
+                formController.setAnswerChangeListener(savePointScheduler);
                 refreshCurrentView();
             }
         }
@@ -2384,6 +2377,10 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
             saveToDiskTask.setFormSavedListener(this);
         }
 
+        if (scaleImageTask != null) {
+            scaleImageTask.setImageScalingListener(this);
+        }
+
         // only check the buttons if it's enabled in preferences
         String navigation = (String) GeneralSharedPreferences.getInstance().get(PreferenceKeys.KEY_NAVIGATION);
         if (navigation.contains(PreferenceKeys.NAVIGATION_BUTTONS)) {
@@ -2456,6 +2453,17 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
                 saveToDiskTask = null;
             }
         }
+        if (scaleImageTask != null) {
+            scaleImageTask.setImageScalingListener(null);
+        }
+        if (nextScreenPrefetcher != null) {
+            nextScreenPrefetcher.cancel();
+        }
+        savePointScheduler.stop();
+        FormController formController = Collect.getInstance().getFormController();
+        if (formController != null) {
+            formController.setAnswerChangeListener(null);
+        }
 
         super.onDestroy();
 
@@ -2534,6 +2542,7 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
         t.cancel(true);
         t.destroy();
         Collect.getInstance().setFormController(formController);
+        formController.setAnswerChangeListener(savePointScheduler);
         supportInvalidateOptionsMenu();
 
         Collect.getInstance().setExternalDataManager(task.getExternalDataManager());
@@ -2935,6 +2944,25 @@ public class FormEntryActivity extends AppCompatActivity implements AnimationLis
         this.sendBroadcast(i);
     }
 
+    @Override
+    public void onUserInteraction() {
+        super.onUserInteraction();
+        if (Collect.getInstance().getFormController() != null) {
+            savePointScheduler.onUserInteraction();
+        }
+    }
+
+    @Override
+    public Map<FormIndex, IAnswerData> getCurrentAnswers() {
+        FormController formController = Collect.getInstance().getFormController();
+        if ((saveToDiskTask == null || saveToDiskTask.getStatus() == AsyncTask.Status.FINISHED)
+                && currentView instanceof ODKView && formController != null
+                && formController.currentPromptIsQuestion()) {
+            return ((ODKView) currentView).getAnswers();
+        }
+        return Collections.<FormIndex, IAnswerData>emptyMap();
+    }
+
     @Override
     public void onSavePointError(String errorMessage) {
         if (errorMessage != null && errorMessage.trim().length() > 0) {
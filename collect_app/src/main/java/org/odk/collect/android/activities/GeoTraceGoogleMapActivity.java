@@ -23,6 +23,7 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.provider.Settings;
 import android.support.v4.app.FragmentActivity;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.Window;
@@ -51,11 +52,15 @@ import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.location.LocationClient;
 import org.odk.collect.android.location.LocationClients;
+import org.odk.collect.android.spatial.GeoTrace;
 import org.odk.collect.android.spatial.MapHelper;
 import org.odk.collect.android.utilities.ToastUtils;
 import org.odk.collect.android.widgets.GeoTraceWidget;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -69,7 +74,11 @@ import java.util.concurrent.TimeUnit;
  * @author jonnordling@gmail.com
  */
 public class GeoTraceGoogleMapActivity extends FragmentActivity implements LocationListener,
-        OnMarkerDragListener, OnMapLongClickListener, LocationClient.LocationClientListener {
+        OnMarkerDragListener, OnMapLongClickListener, GoogleMap.OnCameraIdleListener,
+        LocationClient.LocationClientListener {
+
+    // beyond this many visible points only the line is drawn, zoom in to drag individual points
+    private static final int MAX_VISIBLE_MARKERS = 100;
 
     private ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
     private ScheduledFuture schedulerHandler;
@@ -95,9 +104,12 @@ public class GeoTraceGoogleMapActivity extends FragmentActivity implements Locat
     private LocationClient locationClient;
     private Location curLocation;
     private LatLng curlatLng;
-    private PolylineOptions polylineOptions;
-    private Polyline polyline;
-    private ArrayList<Marker> markerArray = new ArrayList<Marker>();
+    private final GeoTrace trace = new GeoTrace();
+    private final List<Polyline> polylines = new ArrayList<>();
+    private final SparseArray<Marker> visibleMarkers = new SparseArray<>();
+    private final Map<Marker, Integer> markerIndices = new HashMap<>();
+    private boolean markersCulled;
+    private double simplifyTolerance;
     private MapHelper helper;
 
     private AlertDialog zoomDialog;
@@ -147,17 +159,15 @@ public class GeoTraceGoogleMapActivity extends FragmentActivity implements Locat
         map.setMyLocationEnabled(true);
         map.setOnMapLongClickListener(GeoTraceGoogleMapActivity.this);
         map.setOnMarkerDragListener(GeoTraceGoogleMapActivity.this);
+        map.setOnCameraIdleListener(GeoTraceGoogleMapActivity.this);
         map.getUiSettings().setZoomControlsEnabled(true);
         map.getUiSettings().setMyLocationButtonEnabled(false);
         map.getUiSettings().setZoomControlsEnabled(false);
 
-        polylineOptions = new PolylineOptions();
-        polylineOptions.color(Color.RED);
-
         clearButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                if (markerArray.size() != 0) {
+                if (!trace.isEmpty()) {
                     showClearDialog();
                 }
             }
@@ -174,7 +184,7 @@ public class GeoTraceGoogleMapActivity extends FragmentActivity implements Locat
             @Override
             public void onClick(final View v) {
                 playButton.setVisibility(View.VISIBLE);
-                if (markerArray != null && markerArray.size() > 0) {
+                if (!trace.isEmpty()) {
                     clearButton.setEnabled(true);
                 }
                 pauseButton.setVisibility(View.GONE);
@@ -194,7 +204,7 @@ public class GeoTraceGoogleMapActivity extends FragmentActivity implements Locat
         saveButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                if (markerArray.size() != 0) {
+                if (!trace.isEmpty()) {
                     alertDialog.show();
                 } else {
                     saveGeoTrace();
@@ -230,7 +240,7 @@ public class GeoTraceGoogleMapActivity extends FragmentActivity implements Locat
             }
         });
 
-        if (markerArray == null || markerArray.size() == 0) {
+        if (trace.isEmpty()) {
             clearButton.setEnabled(false);
         }
 
@@ -245,7 +255,7 @@ public class GeoTraceGoogleMapActivity extends FragmentActivity implements Locat
         polygonSave.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                if (markerArray.size() > 2) {
+                if (trace.size() > 2) {
                     createPolygon();
                     alertDialog.dismiss();
                     saveGeoTrace();
@@ -303,6 +313,7 @@ public class GeoTraceGoogleMapActivity extends FragmentActivity implements Locat
 
         Intent intent = getIntent();
         if (intent != null && intent.getExtras() != null) {
+            simplifyTolerance = intent.getDoubleExtra(GeoTraceWidget.SIMPLIFY_TOLERANCE, 0);
             if (intent.hasExtra(GeoTraceWidget.TRACE_LOCATION)) {
                 playButton.setEnabled(false);
                 clearButton.setEnabled(true);
@@ -323,23 +334,12 @@ public class GeoTraceGoogleMapActivity extends FragmentActivity implements Locat
 
     private void overlayIntentTrace(String str) {
         map.setOnMapLongClickListener(null);
-        String s = str.replace("; ", ";");
-        for (String sa : s.split(";")) {
-            String[] sp = sa.split(" ");
-            double[] gp = new double[4];
-            String lat = sp[0].replace(" ", "");
-            String lng = sp[1].replace(" ", "");
-            gp[0] = Double.parseDouble(lat);
-            gp[1] = Double.parseDouble(lng);
-            LatLng point = new LatLng(gp[0], gp[1]);
-            polylineOptions.add(point);
-            MarkerOptions markerOptions = new MarkerOptions().position(point).draggable(true);
-            Marker marker = map.addMarker(markerOptions);
-            markerArray.add(marker);
+        GeoTrace intentTrace = GeoTrace.parse(str);
+        for (int i = 0; i < intentTrace.size(); i++) {
+            trace.add(intentTrace.get(i));
         }
-        polyline = map.addPolyline(polylineOptions);
-        update_polyline();
-
+        updateSegments(0, trace.getSegmentCount() - 1);
+        updateVisibleMarkers();
     }
 
     @Override
@@ -378,15 +378,8 @@ public class GeoTraceGoogleMapActivity extends FragmentActivity implements Locat
     }
 
     private String generateReturnString() {
-        String tempString = "";
-        for (int i = 0; i < markerArray.size(); i++) {
-            String lat = Double.toString(markerArray.get(i).getPosition().latitude);
-            String lng = Double.toString(markerArray.get(i).getPosition().longitude);
-            String alt = "0.0";
-            String acu = "0.0";
-            tempString = tempString + lat + " " + lng + " " + alt + " " + acu + ";";
-        }
-        return tempString;
+        GeoTrace result = simplifyTolerance > 0 ? trace.simplify(simplifyTolerance) : trace;
+        return result.toAnswerString();
     }
 
     private void buildDialogs() {
@@ -544,8 +537,9 @@ public class GeoTraceGoogleMapActivity extends FragmentActivity implements Locat
     }
 
     private void createPolygon() {
-        markerArray.add(markerArray.get(0));
-        update_polyline();
+        trace.close();
+        int index = trace.size() - 1;
+        updateSegments(trace.getFirstSegmentOf(index), trace.getLastSegmentOf(index));
     }
 
     /*
@@ -567,32 +561,110 @@ public class GeoTraceGoogleMapActivity extends FragmentActivity implements Locat
 
     }
 
-    private void update_polyline() {
-        ArrayList<LatLng> tempLat = new ArrayList<LatLng>();
-        for (int i = 0; i < markerArray.size(); i++) {
-            LatLng latLng = markerArray.get(i).getPosition();
-            tempLat.add(latLng);
+    /**
+     * Redraws the given segments of the trace, adding polylines for new segments.
+     */
+    private void updateSegments(int firstSegment, int lastSegment) {
+        for (int segment = firstSegment; segment <= lastSegment; segment++) {
+            List<GeoTrace.Point> points = trace.getSegment(segment);
+            List<LatLng> latLngs = new ArrayList<>(points.size());
+            for (GeoTrace.Point point : points) {
+                latLngs.add(new LatLng(point.latitude, point.longitude));
+            }
+
+            if (segment < polylines.size()) {
+                polylines.get(segment).setPoints(latLngs);
+            } else {
+                polylines.add(map.addPolyline(new PolylineOptions()
+                        .color(Color.RED)
+                        .addAll(latLngs)));
+            }
         }
-        polyline.setPoints(tempLat);
     }
 
-    private void addLocationMarker() {
-        if (curLocation == null) {
-            // avoid app crash
+    /**
+     * Only keeps markers for the points inside the current viewport, and none at all when
+     * there are too many of them to be usable.
+     */
+    private void updateVisibleMarkers() {
+        LatLngBounds viewport = map.getProjection().getVisibleRegion().latLngBounds;
+        List<Integer> indices = trace.getIndicesWithin(viewport.northeast.latitude,
+                viewport.southwest.latitude, viewport.northeast.longitude,
+                viewport.southwest.longitude, MAX_VISIBLE_MARKERS);
+        markersCulled = indices == null;
+
+        SparseArray<Marker> markers = new SparseArray<>();
+        if (indices != null) {
+            for (int index : indices) {
+                Marker marker = visibleMarkers.get(index);
+                if (marker == null) {
+                    marker = createMarker(index);
+                } else {
+                    visibleMarkers.remove(index);
+                }
+                markers.put(index, marker);
+            }
+        }
+
+        // whatever is left has scrolled out of view
+        for (int i = 0; i < visibleMarkers.size(); i++) {
+            Marker marker = visibleMarkers.valueAt(i);
+            marker.remove();
+            markerIndices.remove(marker);
+        }
+        visibleMarkers.clear();
+        for (int i = 0; i < markers.size(); i++) {
+            visibleMarkers.put(markers.keyAt(i), markers.valueAt(i));
+        }
+    }
+
+    /**
+     * Shows a marker for a newly added point if it is in view, without rescanning the trace.
+     */
+    private void showMarkerIfVisible(int index) {
+        GeoTrace.Point point = trace.get(index);
+        LatLngBounds viewport = map.getProjection().getVisibleRegion().latLngBounds;
+        if (markersCulled
+                || !viewport.contains(new LatLng(point.latitude, point.longitude))) {
             return;
         }
-        LatLng latLng = new LatLng(curLocation.getLatitude(), curLocation.getLongitude());
-        MarkerOptions markerOptions = new MarkerOptions().position(latLng).draggable(true);
-        Marker marker = map.addMarker(markerOptions);
-        markerArray.add(marker);
-        if (polyline == null) {
-            polylineOptions.add(latLng);
-            polyline = map.addPolyline(polylineOptions);
+
+        if (visibleMarkers.size() < MAX_VISIBLE_MARKERS) {
+            visibleMarkers.put(index, createMarker(index));
         } else {
-            update_polyline();
+            updateVisibleMarkers();
         }
+    }
 
+    private Marker createMarker(int index) {
+        GeoTrace.Point point = trace.get(index);
+        MarkerOptions markerOptions = new MarkerOptions()
+                .position(new LatLng(point.latitude, point.longitude))
+                .draggable(true);
+        Marker marker = map.addMarker(markerOptions);
+        markerIndices.put(marker, index);
+        return marker;
+    }
+
+    private void addLocationMarker() {
+        if (curLocation == null) {
+            // avoid app crash
+            return;
+        }
+        trace.add(new GeoTrace.Point(curLocation.getLatitude(), curLocation.getLongitude(),
+                0, 0));
+        int index = trace.size() - 1;
+        updateSegments(trace.getFirstSegmentOf(index), trace.getLastSegmentOf(index));
+        showMarkerIfVisible(index);
+    }
 
+    private void movePoint(Marker marker) {
+        Integer index = markerIndices.get(marker);
+        if (index == null) {
+            return;
+        }
+        trace.move(index, marker.getPosition().latitude, marker.getPosition().longitude);
+        updateSegments(trace.getFirstSegmentOf(index), trace.getLastSegmentOf(index));
     }
 
     private void saveGeoTrace() {
@@ -630,18 +702,23 @@ public class GeoTraceGoogleMapActivity extends FragmentActivity implements Locat
 
     @Override
     public void onMarkerDragStart(Marker marker) {
-        update_polyline();
+        movePoint(marker);
 
     }
 
     @Override
     public void onMarkerDrag(Marker marker) {
-        update_polyline();
+        movePoint(marker);
     }
 
     @Override
     public void onMarkerDragEnd(Marker marker) {
-        update_polyline();
+        movePoint(marker);
+    }
+
+    @Override
+    public void onCameraIdle() {
+        updateVisibleMarkers();
     }
 
     private void showPolygonErrorDialog() {
@@ -661,10 +738,11 @@ public class GeoTraceGoogleMapActivity extends FragmentActivity implements Locat
         map.clear();
         modeActive = false;
         clearButton.setEnabled(false);
-        polyline = null;
-        polylineOptions = new PolylineOptions();
-        polylineOptions.color(Color.RED);
-        markerArray.clear();
+        trace.clear();
+        polylines.clear();
+        visibleMarkers.clear();
+        markerIndices.clear();
+        markersCulled = false;
         pauseButton.setVisibility(View.GONE);
         clearButton.setEnabled(false);
         manualButton.setVisibility(View.GONE);
@@ -720,8 +798,9 @@ public class GeoTraceGoogleMapActivity extends FragmentActivity implements Locat
         handler.postDelayed(new Runnable() {
             public void run() {
                 LatLngBounds.Builder builder = new LatLngBounds.Builder();
-                for (Marker marker : markerArray) {
-                    builder.include(marker.getPosition());
+                for (int i = 0; i < trace.size(); i++) {
+                    GeoTrace.Point point = trace.get(i);
+                    builder.include(new LatLng(point.latitude, point.longitude));
                 }
                 LatLngBounds bounds = builder.build();
                 int padding = 200; // offset from edges of the map in pixels
@@ -762,7 +841,7 @@ public class GeoTraceGoogleMapActivity extends FragmentActivity implements Locat
                 zoomLocationButton.setBackgroundColor(Color.parseColor("#50e2e2e2"));
                 zoomLocationButton.setTextColor(Color.parseColor("#FF979797"));
             }
-            if (markerArray.size() != 0) {
+            if (!trace.isEmpty()) {
                 zoomPointButton.setEnabled(true);
                 zoomPointButton.setBackgroundColor(Color.parseColor("#50cccccc"));
                 zoomPointButton.setTextColor(Color.parseColor("#ff333333"));
@@ -27,6 +27,7 @@ import android.os.Handler;
 import android.os.Looper;
 import android.provider.Settings;
 import android.support.v4.content.ContextCompat;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -42,18 +43,26 @@ import com.google.android.gms.location.LocationListener;
 import org.odk.collect.android.R;
 import org.odk.collect.android.location.LocationClient;
 import org.odk.collect.android.location.LocationClients;
+import org.odk.collect.android.spatial.GeoTrace;
 import org.odk.collect.android.spatial.MapHelper;
 import org.odk.collect.android.widgets.GeoTraceWidget;
+import org.osmdroid.events.DelayedMapListener;
+import org.osmdroid.events.MapListener;
+import org.osmdroid.events.ScrollEvent;
+import org.osmdroid.events.ZoomEvent;
 import org.osmdroid.tileprovider.IRegisterReceiver;
 import org.osmdroid.util.BoundingBox;
 import org.osmdroid.util.GeoPoint;
 import org.osmdroid.views.MapView;
 import org.osmdroid.views.overlay.Marker;
+import org.osmdroid.views.overlay.Overlay;
 import org.osmdroid.views.overlay.Polyline;
 import org.osmdroid.views.overlay.mylocation.MyLocationNewOverlay;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -63,6 +72,10 @@ import java.util.concurrent.TimeUnit;
 public class GeoTraceOsmMapActivity extends Activity implements IRegisterReceiver,
         LocationListener, LocationClient.LocationClientListener {
 
+    // beyond this many visible points only the line is drawn, zoom in to drag individual points
+    private static final int MAX_VISIBLE_MARKERS = 100;
+    private static final long VIEWPORT_UPDATE_DELAY = 200;
+
     private ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
     private ScheduledFuture schedulerHandler;
     public int zoomLevel = 3;
@@ -83,8 +96,12 @@ public class GeoTraceOsmMapActivity extends Activity implements IRegisterReceive
     private AlertDialog alertDialog;
     private View traceSettingsView;
     private View polygonPolylineView;
-    private Polyline polyline;
-    private ArrayList<Marker> mapMarkers = new ArrayList<Marker>();
+    private final GeoTrace trace = new GeoTrace();
+    private final List<Polyline> polylines = new ArrayList<>();
+    private final SparseArray<Marker> visibleMarkers = new SparseArray<>();
+    private final Map<Marker, Integer> markerIndices = new HashMap<>();
+    private boolean markersCulled;
+    private double simplifyTolerance;
     private Integer traceMode; // 0 manual, 1 is automatic
     private Spinner timeUnits;
     private Spinner timeDelay;
@@ -171,14 +188,14 @@ public class GeoTraceOsmMapActivity extends Activity implements IRegisterReceive
             @Override
             public void onClick(View v) {
 
-                if (mapMarkers.size() != 0) {
+                if (!trace.isEmpty()) {
                     alertDialog.show();
                 } else {
                     saveGeoTrace();
                 }
             }
         });
-        if (mapMarkers == null || mapMarkers.size() == 0) {
+        if (trace.isEmpty()) {
             clearButton.setEnabled(false);
         }
         manualCaptureButton = (Button) findViewById(R.id.manual_button);
@@ -227,7 +244,7 @@ public class GeoTraceOsmMapActivity extends Activity implements IRegisterReceive
             @Override
             public void onClick(final View v) {
                 playButton.setVisibility(View.VISIBLE);
-                if (mapMarkers != null && mapMarkers.size() > 0) {
+                if (!trace.isEmpty()) {
                     clearButton.setEnabled(true);
                 }
                 pauseButton.setVisibility(View.GONE);
@@ -244,10 +261,11 @@ public class GeoTraceOsmMapActivity extends Activity implements IRegisterReceive
             }
         });
 
-        overlayMapLayerListener();
+        mapView.setMapListener(new DelayedMapListener(viewportListener, VIEWPORT_UPDATE_DELAY));
         buildDialogs();
         Intent intent = getIntent();
         if (intent != null && intent.getExtras() != null) {
+            simplifyTolerance = intent.getDoubleExtra(GeoTraceWidget.SIMPLIFY_TOLERANCE, 0);
             if (intent.hasExtra(GeoTraceWidget.TRACE_LOCATION)) {
                 String s = intent.getStringExtra(GeoTraceWidget.TRACE_LOCATION);
                 playButton.setEnabled(false);
@@ -268,7 +286,7 @@ public class GeoTraceOsmMapActivity extends Activity implements IRegisterReceive
 
             @Override
             public void onClick(View v) {
-                if (mapMarkers.size() > 2) {
+                if (trace.size() > 2) {
                     createPolygon();
                     alertDialog.dismiss();
                     saveGeoTrace();
@@ -374,36 +392,13 @@ public class GeoTraceOsmMapActivity extends Activity implements IRegisterReceive
     }
 
     public void overlayIntentTrace(String str) {
-        String s = str.replace("; ", ";");
-        for (String sa : s.split(";")) {
-            String[] sp = sa.split(" ");
-            double[] gp = new double[4];
-            String lat = sp[0].replace(" ", "");
-            String lng = sp[1].replace(" ", "");
-            String altStr = sp[2].replace(" ", "");
-            String acu = sp[3].replace(" ", "");
-            gp[0] = Double.parseDouble(lat);
-            gp[1] = Double.parseDouble(lng);
-            Double alt = Double.parseDouble(altStr);
-            Marker marker = new Marker(mapView);
-            marker.setSubDescription(acu);
-            GeoPoint point = new GeoPoint(gp[0], gp[1]);
-            point.setAltitude(alt.intValue());
-            marker.setPosition(point);
-            marker.setOnMarkerClickListener(nullMarkerListener);
-            marker.setDraggable(true);
-            marker.setOnMarkerDragListener(dragListener);
-            marker.setIcon(ContextCompat.getDrawable(getApplicationContext(), R.drawable.ic_place_black_36dp));
-            marker.setAnchor(Marker.ANCHOR_CENTER, Marker.ANCHOR_BOTTOM);
-            mapMarkers.add(marker);
-            List<GeoPoint> points = polyline.getPoints();
-            points.add(marker.getPosition());
-            polyline.setPoints(points);
-            mapView.getOverlays().add(marker);
-
+        GeoTrace intentTrace = GeoTrace.parse(str);
+        for (int i = 0; i < intentTrace.size(); i++) {
+            trace.add(intentTrace.get(i));
         }
+        updateSegments(0, trace.getSegmentCount() - 1);
+        updateVisibleMarkers();
         mapView.invalidate();
-
     }
 
     private void disableMyLocation() {
@@ -424,15 +419,138 @@ public class GeoTraceOsmMapActivity extends Activity implements IRegisterReceive
         }
     }
 
-    private void overlayMapLayerListener() {
-        polyline = new Polyline();
-        polyline.setColor(Color.RED);
-        Paint paint = polyline.getPaint();
-        paint.setStrokeWidth(5);
-        mapView.getOverlays().add(polyline);
+    /**
+     * Redraws the given segments of the trace, creating the polylines for new segments just
+     * above the existing ones so that they stay below the markers.
+     */
+    private void updateSegments(int firstSegment, int lastSegment) {
+        for (int segment = firstSegment; segment <= lastSegment; segment++) {
+            Polyline polyline;
+            if (segment < polylines.size()) {
+                polyline = polylines.get(segment);
+            } else {
+                polyline = new Polyline();
+                polyline.setColor(Color.RED);
+                Paint paint = polyline.getPaint();
+                paint.setStrokeWidth(5);
+
+                List<Overlay> overlays = mapView.getOverlays();
+                int index = polylines.isEmpty()
+                        ? -1 : overlays.indexOf(polylines.get(polylines.size() - 1));
+                if (index == -1) {
+                    overlays.add(polyline);
+                } else {
+                    overlays.add(index + 1, polyline);
+                }
+                polylines.add(polyline);
+            }
+
+            List<GeoTrace.Point> points = trace.getSegment(segment);
+            List<GeoPoint> geoPoints = new ArrayList<>(points.size());
+            for (GeoTrace.Point point : points) {
+                geoPoints.add(new GeoPoint(point.latitude, point.longitude));
+            }
+            polyline.setPoints(geoPoints);
+        }
+    }
+
+    /**
+     * Only keeps markers for the points inside the current viewport, and none at all when
+     * there are too many of them to be usable.
+     */
+    private void updateVisibleMarkers() {
+        BoundingBox viewport = mapView.getBoundingBox();
+        if (viewport == null) {
+            return;
+        }
+
+        List<Integer> indices = trace.getIndicesWithin(viewport.getLatNorth(),
+                viewport.getLatSouth(), viewport.getLonEast(), viewport.getLonWest(),
+                MAX_VISIBLE_MARKERS);
+        markersCulled = indices == null;
+
+        SparseArray<Marker> markers = new SparseArray<>();
+        if (indices != null) {
+            for (int index : indices) {
+                Marker marker = visibleMarkers.get(index);
+                if (marker == null) {
+                    marker = createMarker(index);
+                } else {
+                    visibleMarkers.remove(index);
+                }
+                markers.put(index, marker);
+            }
+        }
+
+        // whatever is left has scrolled out of view
+        for (int i = 0; i < visibleMarkers.size(); i++) {
+            Marker marker = visibleMarkers.valueAt(i);
+            mapView.getOverlays().remove(marker);
+            markerIndices.remove(marker);
+        }
+        visibleMarkers.clear();
+        for (int i = 0; i < markers.size(); i++) {
+            visibleMarkers.put(markers.keyAt(i), markers.valueAt(i));
+        }
+    }
+
+    /**
+     * Shows a marker for a newly added point if it is in view, without rescanning the trace.
+     */
+    private void showMarkerIfVisible(int index) {
+        BoundingBox viewport = mapView.getBoundingBox();
+        if (markersCulled || viewport == null || !GeoTrace.isWithin(trace.get(index),
+                viewport.getLatNorth(), viewport.getLatSouth(), viewport.getLonEast(),
+                viewport.getLonWest())) {
+            return;
+        }
+
+        if (visibleMarkers.size() < MAX_VISIBLE_MARKERS) {
+            visibleMarkers.put(index, createMarker(index));
+        } else {
+            updateVisibleMarkers();
+        }
+    }
+
+    private Marker createMarker(int index) {
+        GeoTrace.Point point = trace.get(index);
+        Marker marker = new Marker(mapView);
+        marker.setPosition(new GeoPoint(point.latitude, point.longitude));
+        marker.setOnMarkerClickListener(nullMarkerListener);
+        marker.setDraggable(true);
+        marker.setOnMarkerDragListener(dragListener);
+        marker.setIcon(ContextCompat.getDrawable(getApplicationContext(),
+                R.drawable.ic_place_black_36dp));
+        marker.setAnchor(Marker.ANCHOR_CENTER, Marker.ANCHOR_BOTTOM);
+        mapView.getOverlays().add(marker);
+        markerIndices.put(marker, index);
+        return marker;
+    }
+
+    private void addTracePoint(GeoTrace.Point point) {
+        trace.add(point);
+        int index = trace.size() - 1;
+        updateSegments(trace.getFirstSegmentOf(index), trace.getLastSegmentOf(index));
+        showMarkerIfVisible(index);
         mapView.invalidate();
     }
 
+    private MapListener viewportListener = new MapListener() {
+        @Override
+        public boolean onScroll(ScrollEvent event) {
+            updateVisibleMarkers();
+            mapView.invalidate();
+            return false;
+        }
+
+        @Override
+        public boolean onZoom(ZoomEvent event) {
+            updateVisibleMarkers();
+            mapView.invalidate();
+            return false;
+        }
+    };
+
     private void overlayMyLocationLayers() {
         //myLocationOverlay.runOnFirstFix(centerAroundFix);
         //if(myLocationOverlay.getMyLocation()!= null){
@@ -633,25 +751,12 @@ public class GeoTraceOsmMapActivity extends Activity implements IRegisterReceive
     }
 
     private void addLocationMarker() {
-        if (myLocationOverlay.getMyLocation() != null) {
-            Marker marker = new Marker(mapView);
-            marker.setPosition(myLocationOverlay.getMyLocation());
-            Float lastKnownAccuracy =
+        GeoPoint location = myLocationOverlay.getMyLocation();
+        if (location != null) {
+            float lastKnownAccuracy =
                     myLocationOverlay.getMyLocationProvider().getLastKnownLocation().getAccuracy();
-            myLocationOverlay.getMyLocationProvider().getLastKnownLocation().getAccuracy();
-            marker.setIcon(ContextCompat.getDrawable(getApplicationContext(), R.drawable.ic_place_black_36dp));
-            marker.setSubDescription(Float.toString(lastKnownAccuracy));
-            marker.setAnchor(Marker.ANCHOR_CENTER, Marker.ANCHOR_BOTTOM);
-            marker.setDraggable(true);
-            marker.setOnMarkerDragListener(dragListener);
-            mapMarkers.add(marker);
-
-            marker.setOnMarkerClickListener(nullMarkerListener);
-            mapView.getOverlays().add(marker);
-            List<GeoPoint> points = polyline.getPoints();
-            points.add(marker.getPosition());
-            polyline.setPoints(points);
-            mapView.invalidate();
+            addTracePoint(new GeoTrace.Point(location.getLatitude(), location.getLongitude(),
+                    location.getAltitude(), lastKnownAccuracy));
         }
     }
 
@@ -674,15 +779,8 @@ public class GeoTraceOsmMapActivity extends Activity implements IRegisterReceive
 
 
     private String generateReturnString() {
-        String tempString = "";
-        for (int i = 0; i < mapMarkers.size(); i++) {
-            String lat = Double.toString(mapMarkers.get(i).getPosition().getLatitude());
-            String lng = Double.toString(mapMarkers.get(i).getPosition().getLongitude());
-            String alt = Double.toString(mapMarkers.get(i).getPosition().getAltitude());
-            String acu = mapMarkers.get(i).getSubDescription();
-            tempString = tempString + lat + " " + lng + " " + alt + " " + acu + ";";
-        }
-        return tempString;
+        GeoTrace result = simplifyTolerance > 0 ? trace.simplify(simplifyTolerance) : trace;
+        return result.toAnswerString();
     }
 
     private void returnLocation() {
@@ -703,23 +801,23 @@ public class GeoTraceOsmMapActivity extends Activity implements IRegisterReceive
     };
 
     private void createPolygon() {
-        mapMarkers.add(mapMarkers.get(0));
-        List<GeoPoint> points = polyline.getPoints();
-        points.add(mapMarkers.get(0).getPosition());
-        polyline.setPoints(points);
+        trace.close();
+        int index = trace.size() - 1;
+        updateSegments(trace.getFirstSegmentOf(index), trace.getLastSegmentOf(index));
         mapView.invalidate();
     }
 
-    private void update_polygon() {
-        List<GeoPoint> points = new ArrayList<>();
-        for (int i = 0; i < mapMarkers.size(); i++) {
-            points.add(mapMarkers.get(i).getPosition());
+    private void movePoint(Marker marker) {
+        Integer index = markerIndices.get(marker);
+        if (index == null) {
+            return;
         }
-        polyline.setPoints(points);
+        trace.move(index, marker.getPosition().getLatitude(),
+                marker.getPosition().getLongitude());
+        updateSegments(trace.getFirstSegmentOf(index), trace.getLastSegmentOf(index));
         mapView.invalidate();
     }
 
-
     private Marker.OnMarkerDragListener dragListener = new Marker.OnMarkerDragListener() {
         @Override
         public void onMarkerDragStart(Marker marker) {
@@ -727,14 +825,14 @@ public class GeoTraceOsmMapActivity extends Activity implements IRegisterReceive
         }
 
         @Override
-        public void onMarkerDragEnd(Marker arg0) {
-            update_polygon();
+        public void onMarkerDragEnd(Marker marker) {
+            movePoint(marker);
 
         }
 
         @Override
         public void onMarkerDrag(Marker marker) {
-            update_polygon();
+            movePoint(marker);
 
         }
 
@@ -758,12 +856,14 @@ public class GeoTraceOsmMapActivity extends Activity implements IRegisterReceive
     }
 
     private void clearFeatures() {
-        mapMarkers.clear();
-        polyline.setPoints(new ArrayList<GeoPoint>());
+        trace.clear();
+        polylines.clear();
+        visibleMarkers.clear();
+        markerIndices.clear();
+        markersCulled = false;
         mapView.getOverlays().clear();
         clearButton.setEnabled(false);
         overlayMyLocationLayers();
-        overlayMapLayerListener();
         mapView.invalidate();
         playButton.setEnabled(true);
         modeActive = false;
@@ -776,23 +876,23 @@ public class GeoTraceOsmMapActivity extends Activity implements IRegisterReceive
         handler.postDelayed(new Runnable() {
             public void run() {
                 double minLat = Double.MAX_VALUE;
-                double maxLat = Double.MIN_VALUE;
+                double maxLat = -Double.MAX_VALUE;
                 double minLong = Double.MAX_VALUE;
-                double maxLong = Double.MIN_VALUE;
-                Integer size = mapMarkers.size();
+                double maxLong = -Double.MAX_VALUE;
+                int size = trace.size();
                 for (int i = 0; i < size; i++) {
-                    GeoPoint tempMarker = mapMarkers.get(i).getPosition();
-                    if (tempMarker.getLatitude() < minLat) {
-                        minLat = tempMarker.getLatitude();
+                    GeoTrace.Point point = trace.get(i);
+                    if (point.latitude < minLat) {
+                        minLat = point.latitude;
                     }
-                    if (tempMarker.getLatitude() > maxLat) {
-                        maxLat = tempMarker.getLatitude();
+                    if (point.latitude > maxLat) {
+                        maxLat = point.latitude;
                     }
-                    if (tempMarker.getLongitude() < minLong) {
-                        minLong = tempMarker.getLongitude();
+                    if (point.longitude < minLong) {
+                        minLong = point.longitude;
                     }
-                    if (tempMarker.getLongitude() > maxLong) {
-                        maxLong = tempMarker.getLongitude();
+                    if (point.longitude > maxLong) {
+                        maxLong = point.longitude;
                     }
                 }
                 BoundingBox boundingBox = new BoundingBox(maxLat, maxLong, minLat, minLong);
@@ -835,7 +935,7 @@ public class GeoTraceOsmMapActivity extends Activity implements IRegisterReceive
             zoomLocationButton.setTextColor(Color.parseColor("#FF979797"));
         }
         //If feature enable zoom to button else disable
-        if (mapMarkers.size() != 0) {
+        if (!trace.isEmpty()) {
             zoomPointButton.setEnabled(true);
             zoomPointButton.setBackgroundColor(Color.parseColor("#50cccccc"));
             zoomPointButton.setTextColor(Color.parseColor("#ff333333"));
@@ -74,16 +74,23 @@ import org.odk.collect.android.logic.DriveListItem;
 import org.odk.collect.android.preferences.PreferenceKeys;
 import org.odk.collect.android.utilities.ToastUtils;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import pub.devrel.easypermissions.AfterPermissionGranted;
 import pub.devrel.easypermissions.EasyPermissions;
@@ -111,6 +118,10 @@ public class GoogleDriveActivity extends AppCompatActivity implements
     private static final String FILE_LIST_KEY = "fileList";
     private static final String PARENT_ID_KEY = "parentId";
     private static final String CURRENT_ID_KEY = "currentDir";
+    private static final String TEMP_DOWNLOAD_EXTENSION = ".part";
+    private static final int MAX_CONCURRENT_DOWNLOADS = 3;
+    private static final int DOWNLOAD_BUFFER_SIZE = 64 * 1024;
+    private static final int FILE_LIST_PAGE_SIZE = 100;
     protected GoogleAccountCredential credential;
     private Button rootButton;
     private Button backButton;
@@ -698,6 +709,11 @@ public class GoogleDriveActivity extends AppCompatActivity implements
     public void listFiles(String dir, String query) {
         setProgressBarIndeterminateVisibility(true);
         adapter = null;
+        if (retrieveDriveFileContentsAsyncTask != null) {
+            // stop paging through the folder that is being left
+            retrieveDriveFileContentsAsyncTask.setTaskListener(null);
+            retrieveDriveFileContentsAsyncTask.cancel(true);
+        }
         retrieveDriveFileContentsAsyncTask = new RetrieveDriveFileContentsAsyncTask();
         retrieveDriveFileContentsAsyncTask.setTaskListener(GoogleDriveActivity.this);
         if (query != null) {
@@ -813,6 +829,8 @@ public class GoogleDriveActivity extends AppCompatActivity implements
                 Timber.e(e);
             }
             request.setFields("nextPageToken, files(modifiedTime, id, name, mimeType)");
+            // request small pages so that large folders are shown as they arrive
+            request.setPageSize(FILE_LIST_PAGE_SIZE);
 
             HashMap<String, Object> results = new HashMap<>();
             results.put(PARENT_ID_KEY, parentId);
@@ -831,9 +849,12 @@ public class GoogleDriveActivity extends AppCompatActivity implements
                     nextPage.put(FILE_LIST_KEY, driveFileListPage);
                     publishProgress(nextPage);
                 } catch (IOException e) {
+                    // retrying with the same page token would fail the same way
                     Timber.e(e, "Exception thrown while accessing the file list");
+                    break;
                 }
-            } while (request.getPageToken() != null && request.getPageToken().length() > 0);
+            } while (!isCancelled()
+                    && request.getPageToken() != null && request.getPageToken().length() > 0);
 
             return results;
 
@@ -855,6 +876,9 @@ public class GoogleDriveActivity extends AppCompatActivity implements
         @Override
         protected final void onProgressUpdate(HashMap<String, Object>... values) {
             super.onProgressUpdate(values);
+            if (isCancelled()) {
+                return;
+            }
             List<com.google.api.services.drive.model.File> fileList =
                     (List<com.google.api.services.drive.model.File>) values[0]
                             .get(FILE_LIST_KEY);
@@ -888,22 +912,20 @@ public class GoogleDriveActivity extends AppCompatActivity implements
             Collections.sort(forms);
             dirs.addAll(forms);
 
-            if (dirs.size() == 0) {
-                emptyView.setVisibility(View.VISIBLE);
-            } else {
-                emptyView.setVisibility(View.INVISIBLE);
-            }
-
             if (adapter == null) {
                 adapter = new FileArrayAdapter(GoogleDriveActivity.this, R.layout.two_item_image,
                         dirs);
                 listView.setAdapter(adapter);
             } else {
-                for (DriveListItem d : dirs) {
-                    adapter.add(d);
-                }
+                adapter.setNotifyOnChange(false);
                 adapter.addAll(dirs);
             }
+
+            if (adapter.getCount() == 0) {
+                emptyView.setVisibility(View.VISIBLE);
+            } else {
+                emptyView.setVisibility(View.INVISIBLE);
+            }
             adapter.sort(new Comparator<DriveListItem>() {
                 @Override
                 public int compare(DriveListItem lhs, DriveListItem rhs) {
@@ -934,54 +956,93 @@ public class GoogleDriveActivity extends AppCompatActivity implements
         @SafeVarargs
         @Override
         protected final HashMap<String, Object> doInBackground(ArrayList<DriveListItem>... params) {
-            HashMap<String, Object> results = new HashMap<>();
+            final Map<String, Object> results = new ConcurrentHashMap<>();
 
             ArrayList<DriveListItem> fileItems = params[0];
 
-            for (int k = 0; k < fileItems.size(); k++) {
-                DriveListItem fileItem = fileItems.get(k);
+            // download a few files at once; each one is streamed straight to disk
+            ExecutorService executor = Executors.newFixedThreadPool(
+                    Math.max(1, Math.min(MAX_CONCURRENT_DOWNLOADS, fileItems.size())));
+            List<Future<?>> downloads = new ArrayList<>();
+            for (final DriveListItem fileItem : fileItems) {
+                downloads.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isCancelled()) {
+                            return;
+                        }
+                        try {
+                            downloadFile(fileItem.getDriveId(), fileItem.getName());
+                            results.put(fileItem.getName(),
+                                    Collect.getInstance().getString(R.string.success));
+                        } catch (Exception e) {
+                            Timber.e(e);
+                            results.put(fileItem.getName(),
+                                    e.getMessage() != null ? e.getMessage() : e.toString());
+                        }
+                    }
+                }));
+            }
+            executor.shutdown();
 
-                FileOutputStream fileOutputStream = null;
-                try {
-                    com.google.api.services.drive.model.File df = driveService.files()
-                            .get(fileItem.getDriveId()).execute();
+            try {
+                for (Future<?> download : downloads) {
+                    download.get();
+                }
+            } catch (InterruptedException e) {
+                // the task was cancelled, abort whatever is still in flight
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                Timber.e(e);
+            }
+            return new HashMap<>(results);
+        }
 
-                    fileOutputStream = new FileOutputStream(
-                            new File(Collect.FORMS_PATH + File.separator + fileItem.getName()));
-                    downloadFile(df).writeTo(fileOutputStream);
-                } catch (Exception e) {
-                    Timber.e(e);
-                    results.put(fileItem.getName(), e.getMessage());
-                    return results;
-                } finally {
+        /**
+         * Streams the contents of the Drive file into a temporary file next to the
+         * destination and moves it into place once the download has completed, so
+         * a failed or cancelled download never leaves a truncated form behind.
+         */
+        private void downloadFile(String fileId, String fileName) throws IOException {
+            File destination = new File(Collect.FORMS_PATH + File.separator + fileName);
+            File tempFile = new File(destination.getPath() + TEMP_DOWNLOAD_EXTENSION);
+
+            OutputStream outputStream = null;
+            try {
+                outputStream = new BufferedOutputStream(new FileOutputStream(tempFile),
+                        DOWNLOAD_BUFFER_SIZE);
+                driveService.files().get(fileId)
+                        .executeMediaAndDownloadTo(outputStream);
+                outputStream.close();
+                outputStream = null;
+
+                if (destination.exists() && !destination.delete()) {
+                    throw new IOException("Unable to replace " + destination.getAbsolutePath());
+                }
+                if (!tempFile.renameTo(destination)) {
+                    throw new IOException("Unable to rename " + tempFile.getAbsolutePath()
+                            + " to " + destination.getAbsolutePath());
+                }
+            } finally {
+                if (outputStream != null) {
                     try {
-                        if (fileOutputStream != null) {
-                            fileOutputStream.close();
-                        }
+                        outputStream.close();
                     } catch (IOException e) {
                         Timber.e(e, "Unable to close the file output stream");
                     }
                 }
-
-                results.put(fileItem.getName(), Collect.getInstance().getString(R.string.success));
+                if (tempFile.exists() && !tempFile.delete()) {
+                    Timber.w("Unable to delete %s", tempFile.getAbsolutePath());
+                }
             }
-            return results;
-
-        }
-
-        private ByteArrayOutputStream downloadFile(com.google.api.services.drive.model.File file)
-                throws IOException {
-
-            String fileId = file.getId();
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            driveService.files().get(fileId)
-                    .executeMediaAndDownloadTo(outputStream);
-            return outputStream;
         }
 
         @Override
         protected void onPostExecute(HashMap<String, Object> results) {
-            listener.formDownloadComplete(results);
+            if (listener != null) {
+                listener.formDownloadComplete(results);
+            }
         }
     }
 }
@@ -22,6 +22,7 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.support.v4.content.CursorLoader;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.SimpleCursorAdapter;
@@ -36,6 +37,7 @@ import org.odk.collect.android.provider.InstanceProviderAPI;
 import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
 import org.odk.collect.android.tasks.InstanceSyncTask;
 import org.odk.collect.android.utilities.ApplicationConstants;
+import org.odk.collect.android.utilities.CursorListPager;
 
 /**
  * Responsible for displaying all the valid instances in the instance directory.
@@ -43,7 +45,8 @@ import org.odk.collect.android.utilities.ApplicationConstants;
  * @author Yaw Anokwa (yanokwa@gmail.com)
  * @author Carl Hartung (carlhartung@gmail.com)
  */
-public class InstanceChooserList extends InstanceListActivity implements DiskSyncListener, AdapterView.OnItemClickListener {
+public class InstanceChooserList extends InstanceListActivity implements DiskSyncListener,
+        AdapterView.OnItemClickListener, CursorListPager.Callbacks {
     private static final String INSTANCE_LIST_ACTIVITY_SORTING_ORDER = "instanceListActivitySortingOrder";
     private static final String VIEW_SENT_FORM_SORTING_ORDER = "ViewSentFormSortingOrder";
 
@@ -51,6 +54,7 @@ public class InstanceChooserList extends InstanceListActivity implements DiskSyn
     private static final boolean DO_NOT_EXIT = false;
 
     private InstanceSyncTask instanceSyncTask;
+    private CursorListPager listPager;
 
     private boolean editMode;
 
@@ -105,7 +109,6 @@ public class InstanceChooserList extends InstanceListActivity implements DiskSyn
     @Override
     public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
         Cursor c = (Cursor) listView.getAdapter().getItem(position);
-        startManagingCursor(c);
         Uri instanceUri =
                 ContentUris.withAppendedId(InstanceColumns.CONTENT_URI,
                         c.getLong(c.getColumnIndex(InstanceColumns._ID)));
@@ -195,11 +198,13 @@ public class InstanceChooserList extends InstanceListActivity implements DiskSyn
         };
 
         if (editMode) {
-            listAdapter = new SimpleCursorAdapter(this, R.layout.two_item, getCursor(), data, view);
+            listAdapter = new SimpleCursorAdapter(this, R.layout.two_item, null, data, view, 0);
         } else {
-            listAdapter = new ViewSentListAdapter(this, R.layout.two_item, getCursor(), data, view);
+            listAdapter = new ViewSentListAdapter(this, R.layout.two_item, null, data, view);
         }
         listView.setAdapter(listAdapter);
+        listPager = new CursorListPager(getSupportLoaderManager(), 0, listView, listAdapter, this);
+        updateAdapter();
     }
 
     @Override
@@ -209,18 +214,25 @@ public class InstanceChooserList extends InstanceListActivity implements DiskSyn
 
     @Override
     protected void updateAdapter() {
-        listAdapter.changeCursor(getCursor());
+        listPager.reload();
     }
 
-    private Cursor getCursor() {
-        Cursor cursor;
+    @Override
+    public CursorLoader onCreateCursorLoader(int limit) {
+        CursorLoader cursorLoader;
         if (editMode) {
-            cursor = new InstancesDao().getUnsentInstancesCursor(getFilterText(), getSortingOrder());
+            cursorLoader = new InstancesDao().getUnsentInstancesCursorLoader(getFilterText(),
+                    getSortingOrder(), limit);
         } else {
-            cursor = new InstancesDao().getSentInstancesCursor(getFilterText(), getSortingOrder());
+            cursorLoader = new InstancesDao().getSentInstancesCursorLoader(getFilterText(),
+                    getSortingOrder(), limit);
         }
 
-        return cursor;
+        return cursorLoader;
+    }
+
+    @Override
+    public void onCursorLoaded() {
     }
 
     private void createErrorDialog(String errorMsg, final boolean shouldExit) {
@@ -18,11 +18,11 @@ import android.app.AlertDialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.database.Cursor;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.support.v4.content.CursorLoader;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
@@ -41,8 +41,9 @@ import org.odk.collect.android.preferences.GeneralSharedPreferences;
 import org.odk.collect.android.preferences.PreferenceKeys;
 import org.odk.collect.android.preferences.PreferencesActivity;
 import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
-import org.odk.collect.android.receivers.NetworkReceiver;
+import org.odk.collect.android.tasks.AutoSendScheduler;
 import org.odk.collect.android.tasks.InstanceSyncTask;
+import org.odk.collect.android.utilities.CursorListPager;
 import org.odk.collect.android.utilities.PlayServicesUtil;
 import org.odk.collect.android.utilities.ToastUtils;
 
@@ -60,7 +61,8 @@ import timber.log.Timber;
  */
 
 public class InstanceUploaderList extends InstanceListActivity
-        implements OnLongClickListener, DiskSyncListener, AdapterView.OnItemClickListener {
+        implements OnLongClickListener, DiskSyncListener, AdapterView.OnItemClickListener,
+        CursorListPager.Callbacks {
     private static final String SHOW_ALL_MODE = "showAllMode";
     private static final String INSTANCE_UPLOADER_LIST_SORTING_ORDER = "instanceUploaderListSortingOrder";
 
@@ -75,6 +77,8 @@ public class InstanceUploaderList extends InstanceListActivity
 
     private InstanceSyncTask instanceSyncTask;
 
+    private CursorListPager listPager;
+
     private boolean showAllMode;
 
     @Override
@@ -98,7 +102,7 @@ public class InstanceUploaderList extends InstanceListActivity
                         Context.CONNECTIVITY_SERVICE);
                 NetworkInfo ni = connectivityManager.getActiveNetworkInfo();
 
-                if (NetworkReceiver.running) {
+                if (AutoSendScheduler.getInstance().isRunning(InstanceUploaderList.this)) {
                     ToastUtils.showShortToast(R.string.send_in_progress);
                 } else if (ni == null || !ni.isConnected()) {
                     logger.logAction(this, "uploadButton", "noConnection");
@@ -125,10 +129,17 @@ public class InstanceUploaderList extends InstanceListActivity
         toggleSelsButton.setOnClickListener(new OnClickListener() {
             @Override
             public void onClick(View v) {
-                ListView lv = listView;
-                boolean allChecked = toggleChecked(lv);
-                toggleButtonLabel(toggleSelsButton, lv);
-                uploadButton.setEnabled(allChecked);
+                // only the rows that are loaded can be checked
+                listPager.loadAll(new Runnable() {
+                    @Override
+                    public void run() {
+                        ListView lv = listView;
+                        boolean allChecked = toggleChecked(lv);
+                        updateSelectedInstances();
+                        toggleButtonLabel(toggleSelsButton, lv);
+                        uploadButton.setEnabled(allChecked);
+                    }
+                });
             }
         });
         toggleSelsButton.setOnLongClickListener(this);
@@ -302,9 +313,11 @@ public class InstanceUploaderList extends InstanceListActivity
         String[] data = new String[]{InstanceColumns.DISPLAY_NAME, InstanceColumns.DISPLAY_SUBTEXT};
         int[] view = new int[]{R.id.text1, R.id.text2};
 
-        listAdapter = new SimpleCursorAdapter(this, R.layout.two_item_multiple_choice, getCursor(), data, view);
+        listAdapter = new SimpleCursorAdapter(this, R.layout.two_item_multiple_choice, null, data,
+                view, 0);
         listView.setAdapter(listAdapter);
-        checkPreviouslyCheckedItems();
+        listPager = new CursorListPager(getSupportLoaderManager(), 0, listView, listAdapter, this);
+        updateAdapter();
     }
 
     @Override
@@ -314,47 +327,36 @@ public class InstanceUploaderList extends InstanceListActivity
 
     @Override
     protected void updateAdapter() {
-        listAdapter.changeCursor(getCursor());
-        checkPreviouslyCheckedItems();
+        listPager.reload();
     }
 
-    private Cursor getCursor() {
-        Cursor cursor;
+    @Override
+    public CursorLoader onCreateCursorLoader(int limit) {
+        CursorLoader cursorLoader;
         if (showAllMode) {
-            cursor = instancesDao.getCompletedUndeletedInstancesCursor(getFilterText(), getSortingOrder());
+            cursorLoader = instancesDao.getCompletedUndeletedInstancesCursorLoader(getFilterText(),
+                    getSortingOrder(), limit);
         } else {
-            cursor = instancesDao.getFinalizedInstancesCursor(getFilterText(), getSortingOrder());
+            cursorLoader = instancesDao.getFinalizedInstancesCursorLoader(getFilterText(),
+                    getSortingOrder(), limit);
         }
 
-        return cursor;
+        return cursorLoader;
+    }
+
+    @Override
+    public void onCursorLoaded() {
+        checkPreviouslyCheckedItems();
     }
 
     private void showUnsent() {
         showAllMode = false;
-        Cursor old = listAdapter.getCursor();
-        try {
-            listAdapter.changeCursor(getCursor());
-        } finally {
-            if (old != null) {
-                old.close();
-                this.stopManagingCursor(old);
-            }
-        }
-        listView.invalidate();
+        updateAdapter();
     }
 
     private void showAll() {
         showAllMode = true;
-        Cursor old = listAdapter.getCursor();
-        try {
-            listAdapter.changeCursor(getCursor());
-        } finally {
-            if (old != null) {
-                old.close();
-                this.stopManagingCursor(old);
-            }
-        }
-        listView.invalidate();
+        updateAdapter();
     }
 
     @Override
@@ -20,12 +20,11 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
-import android.database.ContentObserver;
 import android.database.Cursor;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Message;
 import android.preference.PreferenceManager;
+import android.support.v4.app.LoaderManager;
+import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
 import android.text.InputType;
@@ -52,7 +51,7 @@ import org.odk.collect.android.preferences.AdminPreferencesActivity;
 import org.odk.collect.android.preferences.AutoSendPreferenceMigrator;
 import org.odk.collect.android.preferences.PreferenceKeys;
 import org.odk.collect.android.preferences.PreferencesActivity;
-import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
+import org.odk.collect.android.provider.InstanceProviderAPI;
 import org.odk.collect.android.utilities.ApplicationConstants;
 import org.odk.collect.android.utilities.AuthDialogUtility;
 import org.odk.collect.android.utilities.PlayServicesUtil;
@@ -63,7 +62,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.lang.ref.WeakReference;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -76,9 +74,11 @@ import timber.log.Timber;
  * @author Carl Hartung (carlhartung@gmail.com)
  * @author Yaw Anokwa (yanokwa@gmail.com)
  */
-public class MainMenuActivity extends AppCompatActivity {
+public class MainMenuActivity extends AppCompatActivity
+        implements LoaderManager.LoaderCallbacks<Cursor> {
 
     private static final int PASSWORD_DIALOG = 1;
+    private static final int STATUS_COUNTS_LOADER = 0;
 
     private static final boolean EXIT = true;
     // buttons
@@ -92,14 +92,6 @@ public class MainMenuActivity extends AppCompatActivity {
     private View getFormsSpacer;
     private AlertDialog alertDialog;
     private SharedPreferences adminPreferences;
-    private int completedCount;
-    private int savedCount;
-    private int viewSentCount;
-    private Cursor finalizedCursor;
-    private Cursor savedCursor;
-    private Cursor viewSentCursor;
-    private IncomingHandler handler = new IncomingHandler(this);
-    private MyContentObserver contentObserver = new MyContentObserver();
 
     // private static boolean DO_NOT_EXIT = false;
 
@@ -260,50 +252,9 @@ public class MainMenuActivity extends AppCompatActivity {
         adminPreferences = this.getSharedPreferences(
                 AdminPreferencesActivity.ADMIN_PREFERENCES, 0);
 
-        InstancesDao instancesDao = new InstancesDao();
+        // the counts on the buttons are loaded in the background, and again on every change
+        getSupportLoaderManager().initLoader(STATUS_COUNTS_LOADER, null, this);
 
-        // count for finalized instances
-        try {
-            finalizedCursor = instancesDao.getFinalizedInstancesCursor();
-        } catch (Exception e) {
-            createErrorDialog(e.getMessage(), EXIT);
-            return;
-        }
-
-        if (finalizedCursor != null) {
-            startManagingCursor(finalizedCursor);
-        }
-        completedCount = finalizedCursor != null ? finalizedCursor.getCount() : 0;
-        getContentResolver().registerContentObserver(InstanceColumns.CONTENT_URI, true,
-                contentObserver);
-        // finalizedCursor.registerContentObserver(contentObserver);
-
-        // count for saved instances
-        try {
-            savedCursor = instancesDao.getUnsentInstancesCursor();
-        } catch (Exception e) {
-            createErrorDialog(e.getMessage(), EXIT);
-            return;
-        }
-
-        if (savedCursor != null) {
-            startManagingCursor(savedCursor);
-        }
-        savedCount = savedCursor != null ? savedCursor.getCount() : 0;
-
-        //count for view sent form
-        try {
-            viewSentCursor = instancesDao.getSentInstancesCursor();
-        } catch (Exception e) {
-            createErrorDialog(e.getMessage(), EXIT);
-            return;
-        }
-        if (viewSentCursor != null) {
-            startManagingCursor(viewSentCursor);
-        }
-        viewSentCount = viewSentCursor != null ? viewSentCursor.getCount() : 0;
-
-        updateButtons();
         setupGoogleAnalytics();
     }
 
@@ -568,53 +519,54 @@ public class MainMenuActivity extends AppCompatActivity {
         googleAnalytics.setAppOptOut(!isAnalyticsEnabled);
     }
 
-    private void updateButtons() {
-        if (finalizedCursor != null && !finalizedCursor.isClosed()) {
-            finalizedCursor.requery();
-            completedCount = finalizedCursor.getCount();
-            if (completedCount > 0) {
-                sendDataButton.setText(
-                        getString(R.string.send_data_button, String.valueOf(completedCount)));
-            } else {
-                sendDataButton.setText(getString(R.string.send_data));
-            }
+    @Override
+    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+        return new InstancesDao().getStatusCountsCursorLoader();
+    }
+
+    @Override
+    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
+        updateButtons(new InstancesDao().getStatusCountsFromCursor(cursor));
+    }
+
+    @Override
+    public void onLoaderReset(Loader<Cursor> loader) {
+    }
+
+    private void updateButtons(Map<String, Integer> statusCounts) {
+        int incompleteCount = getCount(statusCounts, InstanceProviderAPI.STATUS_INCOMPLETE);
+        int completedCount = getCount(statusCounts, InstanceProviderAPI.STATUS_COMPLETE)
+                + getCount(statusCounts, InstanceProviderAPI.STATUS_SUBMISSION_FAILED);
+        int savedCount = incompleteCount + completedCount;
+        int viewSentCount = getCount(statusCounts, InstanceProviderAPI.STATUS_SUBMITTED);
+
+        if (completedCount > 0) {
+            sendDataButton.setText(
+                    getString(R.string.send_data_button, String.valueOf(completedCount)));
         } else {
             sendDataButton.setText(getString(R.string.send_data));
-            Timber.w("Cannot update \"Send Finalized\" button label since the database is closed. "
-                    + "Perhaps the app is running in the background?");
         }
 
-        if (savedCursor != null && !savedCursor.isClosed()) {
-            savedCursor.requery();
-            savedCount = savedCursor.getCount();
-            if (savedCount > 0) {
-                reviewDataButton.setText(getString(R.string.review_data_button,
-                        String.valueOf(savedCount)));
-            } else {
-                reviewDataButton.setText(getString(R.string.review_data));
-            }
+        if (savedCount > 0) {
+            reviewDataButton.setText(getString(R.string.review_data_button,
+                    String.valueOf(savedCount)));
         } else {
             reviewDataButton.setText(getString(R.string.review_data));
-            Timber.w("Cannot update \"Edit Form\" button label since the database is closed. "
-                    + "Perhaps the app is running in the background?");
         }
 
-        if (viewSentCursor != null && !viewSentCursor.isClosed()) {
-            viewSentCursor.requery();
-            viewSentCount = viewSentCursor.getCount();
-            if (viewSentCount > 0) {
-                viewSentFormsButton.setText(
-                        getString(R.string.view_sent_forms_button, String.valueOf(viewSentCount)));
-            } else {
-                viewSentFormsButton.setText(getString(R.string.view_sent_forms));
-            }
+        if (viewSentCount > 0) {
+            viewSentFormsButton.setText(
+                    getString(R.string.view_sent_forms_button, String.valueOf(viewSentCount)));
         } else {
             viewSentFormsButton.setText(getString(R.string.view_sent_forms));
-            Timber.w("Cannot update \"View Sent\" button label since the database is closed. "
-                    + "Perhaps the app is running in the background?");
         }
     }
 
+    private static int getCount(Map<String, Integer> statusCounts, String status) {
+        Integer count = statusCounts.get(status);
+        return count != null ? count : 0;
+    }
+
     private boolean loadSharedPreferencesFromFile(File src) {
         // this should probably be in a thread if it ever gets big
         boolean res = false;
@@ -686,40 +638,4 @@ public class MainMenuActivity extends AppCompatActivity {
         }
         return res;
     }
-
-    /*
-     * Used to prevent memory leaks
-     */
-    static class IncomingHandler extends Handler {
-        private final WeakReference<MainMenuActivity> target;
-
-        IncomingHandler(MainMenuActivity target) {
-            this.target = new WeakReference<MainMenuActivity>(target);
-        }
-
-        @Override
-        public void handleMessage(Message msg) {
-            MainMenuActivity target = this.target.get();
-            if (target != null) {
-                target.updateButtons();
-            }
-        }
-    }
-
-    /**
-     * notifies us that something changed
-     */
-    private class MyContentObserver extends ContentObserver {
-
-        public MyContentObserver() {
-            super(null);
-        }
-
-        @Override
-        public void onChange(boolean selfChange) {
-            super.onChange(selfChange);
-            handler.sendEmptyMessage(0);
-        }
-    }
-
-}
\ No newline at end of file
+}
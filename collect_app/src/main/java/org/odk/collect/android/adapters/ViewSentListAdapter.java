@@ -37,7 +37,7 @@ public class ViewSentListAdapter extends SimpleCursorAdapter {
     private Context context;
 
     public ViewSentListAdapter(Context context, int layout, Cursor c, String[] from, int[] to) {
-        super(context, layout, c, from, to);
+        super(context, layout, c, from, to, 0);
         this.context = context;
     }
 
@@ -44,6 +44,9 @@ import org.odk.collect.android.logic.PropertyManager;
 import org.odk.collect.android.preferences.AutoSendPreferenceMigrator;
 import org.odk.collect.android.preferences.FormMetadataMigrator;
 import org.odk.collect.android.preferences.PreferenceKeys;
+import org.odk.collect.android.tracing.RecentTracesSink;
+import org.odk.collect.android.tracing.TraceFileSink;
+import org.odk.collect.android.tracing.Tracer;
 import org.odk.collect.android.utilities.AgingCredentialsProvider;
 import org.odk.collect.android.utilities.AuthDialogUtility;
 import org.odk.collect.android.utilities.LocaleHelper;
@@ -57,6 +60,12 @@ import org.opendatakit.httpclientandroidlib.protocol.HttpContext;
 
 import java.io.File;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import timber.log.Timber;
 
@@ -83,12 +92,19 @@ public class Collect extends Application {
     public static final String SETTINGS = ODK_ROOT + File.separator + "settings";
     public static String defaultSysLanguage;
     private static Collect singleton = null;
+    private static final int STARTUP_THREADS = 2;
+    private static final RecentTracesSink RECENT_TRACES = new RecentTracesSink(20);
+    private static final TraceFileSink TRACE_FILE =
+            new TraceFileSink(new File(LOG_PATH, "trace.log"), 256 * 1024);
 
     // share all session cookies across all sessions...
     private CookieStore cookieStore = new BasicCookieStore();
     // retain credentials for 7 minutes...
     private CredentialsProvider credsProvider = new AgingCredentialsProvider(7 * 60 * 1000);
     private ActivityLogger activityLogger;
+    private StartupInitializer initializer;
+    private StartupInitializer.Phase activityLoggerPhase;
+    private PropertyManager propertyManager;
 
     @Nullable
     private FormController formController = null;
@@ -171,6 +187,7 @@ public class Collect extends Application {
     }
 
     public ActivityLogger getActivityLogger() {
+        initializer.await(activityLoggerPhase);
         return activityLogger;
     }
 
@@ -252,32 +269,120 @@ public class Collect extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
-
-        PRNGFixes.apply();
-        AppCompatDelegate.setCompatVectorFromResourcesEnabled(true);
-        JodaTimeAndroid.init(this);
-
-        defaultSysLanguage = Locale.getDefault().getLanguage();
-        new LocaleHelper().updateLocale(this);
         singleton = this;
 
-        PreferenceManager.setDefaultValues(this, R.xml.preferences, false);
-        FormMetadataMigrator.migrate(PreferenceManager.getDefaultSharedPreferences(this));
-        AutoSendPreferenceMigrator.migrate();
+        // only what the first activity needs is done before it's created, the rest is done
+        // on background threads at the same time
+        StartupInitializer.Phase logging = new StartupInitializer.Phase("logging", false) {
+            @Override
+            protected void run() {
+                if (BuildConfig.DEBUG) {
+                    Timber.plant(new Timber.DebugTree());
+                } else {
+                    Timber.plant(new CrashReportingTree());
+                }
+            }
+        };
+        StartupInitializer.Phase tracing = new StartupInitializer.Phase("tracing", false) {
+            @Override
+            protected void run() {
+                Tracer.addSink(RECENT_TRACES);
+                Tracer.addSink(TRACE_FILE);
+            }
+        };
+        StartupInitializer.Phase prng = new StartupInitializer.Phase("prng", false) {
+            @Override
+            protected void run() {
+                PRNGFixes.apply();
+            }
+        };
+        StartupInitializer.Phase jodaTime = new StartupInitializer.Phase("jodaTime", true) {
+            @Override
+            protected void run() {
+                JodaTimeAndroid.init(Collect.this);
+            }
+        };
+        StartupInitializer.Phase locale = new StartupInitializer.Phase("locale", false) {
+            @Override
+            protected void run() {
+                AppCompatDelegate.setCompatVectorFromResourcesEnabled(true);
+                defaultSysLanguage = Locale.getDefault().getLanguage();
+                new LocaleHelper().updateLocale(Collect.this);
+            }
+        };
+        StartupInitializer.Phase preferences = new StartupInitializer.Phase("preferences",
+                false) {
+            @Override
+            protected void run() {
+                PreferenceManager.setDefaultValues(Collect.this, R.xml.preferences, false);
+                FormMetadataMigrator.migrate(
+                        PreferenceManager.getDefaultSharedPreferences(Collect.this));
+                AutoSendPreferenceMigrator.migrate();
+                AuthDialogUtility.setWebCredentialsFromPreferences();
+            }
+        };
+        // the activity logger only needs the device ID, so it isn't held up by JavaRosa
+        StartupInitializer.Phase properties = new StartupInitializer.Phase("properties", true,
+                preferences) {
+            @Override
+            protected void run() {
+                propertyManager = new PropertyManager(Collect.this);
+            }
+        };
+        StartupInitializer.Phase javaRosa = new StartupInitializer.Phase("javaRosa", true,
+                properties) {
+            @Override
+            protected void run() {
+                FormController.initializeJavaRosa(propertyManager);
+            }
+        };
+        activityLoggerPhase = new StartupInitializer.Phase("activityLogger", true, properties) {
+            @Override
+            protected void run() {
+                activityLogger = new ActivityLogger(
+                        propertyManager.getSingularProperty(PropertyManager.PROPMGR_DEVICE_ID));
+            }
+        };
 
-        PropertyManager mgr = new PropertyManager(this);
+        initializer = new StartupInitializer(createStartupExecutor());
+        // the logger is queued ahead of JavaRosa for the thread that creates the properties
+        initializer.start(logging, tracing, prng, jodaTime, locale, preferences, properties,
+                activityLoggerPhase, javaRosa);
+    }
+
+    /**
+     * Waits for the start-up work that runs in the background to be done. Anything that loads
+     * or shows a form needs JavaRosa and Joda-Time to have been initialized.
+     */
+    public void awaitStartup() {
+        initializer.awaitAll();
+    }
 
-        FormController.initializeJavaRosa(mgr);
+    /**
+     * Returns how long each phase of the start-up took, in milliseconds.
+     */
+    public Map<String, Long> getStartupTimings() {
+        return initializer.getTimings();
+    }
 
-        activityLogger = new ActivityLogger(
-                mgr.getSingularProperty(PropertyManager.PROPMGR_DEVICE_ID));
+    /**
+     * Returns the last traces of loading, saving, sending and syncing, for diagnostics.
+     */
+    public RecentTracesSink getRecentTraces() {
+        return RECENT_TRACES;
+    }
 
-        AuthDialogUtility.setWebCredentialsFromPreferences();
-        if (BuildConfig.DEBUG) {
-            Timber.plant(new Timber.DebugTree());
-        } else {
-            Timber.plant(new CrashReportingTree());
-        }
+    private static Executor createStartupExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(STARTUP_THREADS, STARTUP_THREADS,
+                1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, "Startup");
+                    }
+                });
+        // the threads are only needed until the start-up is done
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     @Override
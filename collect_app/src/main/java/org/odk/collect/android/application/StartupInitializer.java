@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * Runs the phases of the application's start-up in the order of their dependencies and records
+ * how long each one took.
+ *
+ * <p>Phases that have to be done before anything is shown run on the thread that starts them,
+ * the others are handed to a background executor as soon as the phases they depend on are
+ * done, so that they run while the first activity is being created. Code that needs the result
+ * of a background phase calls {@link #await(Phase)} first, which only blocks if the phase
+ * hasn't finished yet.</p>
+ */
+public final class StartupInitializer {
+
+    /**
+     * A step of the start-up. A phase may only depend on phases started before it.
+     */
+    public abstract static class Phase {
+
+        private final String name;
+        private final boolean background;
+        private final Phase[] dependencies;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile long durationMs = -1;
+        private volatile Throwable failure;
+
+        protected Phase(String name, boolean background, Phase... dependencies) {
+            this.name = name;
+            this.background = background;
+            this.dependencies = dependencies;
+        }
+
+        protected abstract void run();
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private final Executor executor;
+    private final List<Phase> phases = new ArrayList<>();
+
+    public StartupInitializer(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Starts the given phases in order, running the foreground ones before returning.
+     */
+    public void start(Phase... phasesToStart) {
+        for (final Phase phase : phasesToStart) {
+            synchronized (phases) {
+                for (Phase dependency : phase.dependencies) {
+                    if (!phases.contains(dependency)) {
+                        throw new IllegalArgumentException("Start-up phase " + phase.name
+                                + " depends on " + dependency.name + ", which isn't started"
+                                + " before it");
+                    }
+                }
+                phases.add(phase);
+            }
+
+            if (phase.background) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        runAfterDependencies(phase);
+                    }
+                });
+            } else {
+                runAfterDependencies(phase);
+            }
+        }
+    }
+
+    /**
+     * Waits for the given phase to be done.
+     *
+     * @throws IllegalStateException if the phase failed
+     */
+    public void await(Phase phase) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                phase.done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (phase.failure != null) {
+            throw new IllegalStateException("Start-up phase " + phase.name + " failed",
+                    phase.failure);
+        }
+    }
+
+    /**
+     * Waits for every phase started so far to be done.
+     */
+    public void awaitAll() {
+        for (Phase phase : getStartedPhases()) {
+            await(phase);
+        }
+    }
+
+    /**
+     * Returns how long each finished phase took to run, in milliseconds, in the order they were
+     * started. Time spent waiting for dependencies isn't included.
+     */
+    public Map<String, Long> getTimings() {
+        Map<String, Long> timings = new LinkedHashMap<>();
+        for (Phase phase : getStartedPhases()) {
+            if (phase.durationMs >= 0) {
+                timings.put(phase.name, phase.durationMs);
+            }
+        }
+        return Collections.unmodifiableMap(timings);
+    }
+
+    private List<Phase> getStartedPhases() {
+        synchronized (phases) {
+            return new ArrayList<>(phases);
+        }
+    }
+
+    private void runAfterDependencies(Phase phase) {
+        try {
+            for (Phase dependency : phase.dependencies) {
+                await(dependency);
+            }
+
+            long start = System.nanoTime();
+            phase.run();
+            phase.durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Timber.i("Start-up phase %s took %d ms on %s", phase.name, phase.durationMs,
+                    Thread.currentThread().getName());
+        } catch (RuntimeException | Error e) {
+            phase.failure = e;
+            throw e;
+        } finally {
+            phase.done.countDown();
+        }
+    }
+}
@@ -19,8 +19,11 @@ package org.odk.collect.android.dao;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.net.Uri;
+import android.support.v4.content.CursorLoader;
 
 import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.database.FullTextIndex;
+import org.odk.collect.android.database.helpers.FormsDatabaseHelper;
 import org.odk.collect.android.dto.Form;
 import org.odk.collect.android.provider.FormsProviderAPI;
 
@@ -37,16 +40,28 @@ public class FormsDao {
         return getFormsCursor(null, null, null, null);
     }
 
-    public Cursor getFormsCursor(CharSequence charSequence, String sortOrder) {
-        Cursor cursor;
-        if (charSequence.length() == 0) {
-            cursor = getFormsCursor(sortOrder);
-        } else {
-            String selection = FormsProviderAPI.FormsColumns.DISPLAY_NAME + " LIKE ?";
-            String[] selectionArgs = new String[]{"%" + charSequence + "%"};
-            cursor = getFormsCursor(null, selection, selectionArgs, sortOrder);
+    /**
+     * Returns a loader querying the forms on a background thread. A limit of 0 or less loads
+     * every matching form.
+     */
+    public CursorLoader getFormsCursorLoader(CharSequence charSequence, String sortOrder,
+                                             int limit) {
+        String selection = null;
+        String[] selectionArgs = null;
+        if (charSequence.length() > 0) {
+            selection = FullTextIndex.getSelection(FormsDatabaseHelper.FORMS_TABLE_NAME,
+                    FormsProviderAPI.FormsColumns.DISPLAY_NAME, charSequence);
+            selectionArgs = new String[]{FullTextIndex.getSelectionArg(charSequence)};
         }
-        return cursor;
+
+        Uri uri = FormsProviderAPI.FormsColumns.CONTENT_URI;
+        if (limit > 0) {
+            uri = uri.buildUpon()
+                    .appendQueryParameter(FormsProviderAPI.LIMIT, Integer.toString(limit))
+                    .build();
+        }
+        return new CursorLoader(Collect.getInstance(), uri, null, selection, selectionArgs,
+                sortOrder);
     }
 
     public Cursor getFormsCursor(String sortOrder) {
@@ -19,14 +19,19 @@ package org.odk.collect.android.dao;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.net.Uri;
+import android.support.v4.content.CursorLoader;
 
 import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.database.FullTextIndex;
+import org.odk.collect.android.database.helpers.InstancesDatabaseHelper;
 import org.odk.collect.android.dto.Instance;
 import org.odk.collect.android.provider.InstanceProviderAPI;
 import org.odk.collect.android.utilities.ApplicationConstants;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class is used to encapsulate all access to the {@link org.odk.collect.android.provider.InstanceProvider#DATABASE_NAME}
@@ -34,6 +39,14 @@ import java.util.List;
  */
 public class InstancesDao {
 
+    // every status but submitted, listed so that the status index can be used, unlike with !=
+    private static final String UNSENT_SELECTION =
+            InstanceProviderAPI.InstanceColumns.STATUS + " IN (?, ?, ?) ";
+    private static final String[] UNSENT_SELECTION_ARGS = {
+            InstanceProviderAPI.STATUS_INCOMPLETE,
+            InstanceProviderAPI.STATUS_COMPLETE,
+            InstanceProviderAPI.STATUS_SUBMISSION_FAILED};
+
     public Cursor getSentInstancesCursor() {
         String selection = InstanceProviderAPI.InstanceColumns.STATUS + " =? ";
         String[] selectionArgs = {InstanceProviderAPI.STATUS_SUBMITTED};
@@ -42,22 +55,18 @@ public class InstancesDao {
         return getInstancesCursor(null, selection, selectionArgs, sortOrder);
     }
 
-    public Cursor getSentInstancesCursor(CharSequence charSequence, String sortOrder) {
-        Cursor cursor;
-        if (charSequence.length() == 0) {
-            cursor = getSentInstancesCursor(sortOrder);
-        } else {
-            String selection =
-                    InstanceProviderAPI.InstanceColumns.STATUS + " =? and "
-                            + InstanceProviderAPI.InstanceColumns.DISPLAY_NAME + " LIKE ?";
-            String[] selectionArgs = {
+    public CursorLoader getSentInstancesCursorLoader(CharSequence charSequence, String sortOrder,
+                                                     int limit) {
+        String selection = InstanceProviderAPI.InstanceColumns.STATUS + " =? ";
+        String[] selectionArgs = {InstanceProviderAPI.STATUS_SUBMITTED};
+        if (charSequence.length() > 0) {
+            selection += "and " + getDisplayNameSelection(charSequence);
+            selectionArgs = new String[]{
                     InstanceProviderAPI.STATUS_SUBMITTED,
-                    "%" + charSequence + "%"};
-
-            cursor = getInstancesCursor(null, selection, selectionArgs, sortOrder);
+                    FullTextIndex.getSelectionArg(charSequence)};
         }
 
-        return cursor;
+        return getInstancesCursorLoader(selection, selectionArgs, sortOrder, limit);
     }
 
     public Cursor getSentInstancesCursor(String sortOrder) {
@@ -68,36 +77,34 @@ public class InstancesDao {
     }
 
     public Cursor getUnsentInstancesCursor() {
-        String selection = InstanceProviderAPI.InstanceColumns.STATUS + " !=? ";
-        String[] selectionArgs = {InstanceProviderAPI.STATUS_SUBMITTED};
+        String selection = UNSENT_SELECTION;
+        String[] selectionArgs = UNSENT_SELECTION_ARGS;
         String sortOrder = InstanceProviderAPI.InstanceColumns.STATUS + " DESC, " + InstanceProviderAPI.InstanceColumns.DISPLAY_NAME + " ASC";
 
         return getInstancesCursor(null, selection, selectionArgs, sortOrder);
     }
 
     public Cursor getUnsentInstancesCursor(String sortOrder) {
-        String selection = InstanceProviderAPI.InstanceColumns.STATUS + " !=? ";
-        String[] selectionArgs = {InstanceProviderAPI.STATUS_SUBMITTED};
+        String selection = UNSENT_SELECTION;
+        String[] selectionArgs = UNSENT_SELECTION_ARGS;
 
         return getInstancesCursor(null, selection, selectionArgs, sortOrder);
     }
 
-    public Cursor getUnsentInstancesCursor(CharSequence charSequence, String sortOrder) {
-        Cursor cursor;
-        if (charSequence.length() == 0) {
-            cursor = getUnsentInstancesCursor(sortOrder);
-        } else {
-            String selection =
-                    InstanceProviderAPI.InstanceColumns.STATUS + " !=? and "
-                            + InstanceProviderAPI.InstanceColumns.DISPLAY_NAME + " LIKE ?";
-            String[] selectionArgs = {
-                    InstanceProviderAPI.STATUS_SUBMITTED,
-                    "%" + charSequence + "%"};
-
-            cursor = getInstancesCursor(null, selection, selectionArgs, sortOrder);
+    public CursorLoader getUnsentInstancesCursorLoader(CharSequence charSequence, String sortOrder,
+                                                       int limit) {
+        String selection = UNSENT_SELECTION;
+        String[] selectionArgs = UNSENT_SELECTION_ARGS;
+        if (charSequence.length() > 0) {
+            selection += "and " + getDisplayNameSelection(charSequence);
+            selectionArgs = new String[]{
+                    InstanceProviderAPI.STATUS_INCOMPLETE,
+                    InstanceProviderAPI.STATUS_COMPLETE,
+                    InstanceProviderAPI.STATUS_SUBMISSION_FAILED,
+                    FullTextIndex.getSelectionArg(charSequence)};
         }
 
-        return cursor;
+        return getInstancesCursorLoader(selection, selectionArgs, sortOrder, limit);
     }
 
     public Cursor getSavedInstancesCursor(String sortOrder) {
@@ -106,19 +113,16 @@ public class InstancesDao {
         return getInstancesCursor(null, selection, null, sortOrder);
     }
 
-    public Cursor getSavedInstancesCursor(CharSequence charSequence, String sortOrder) {
-        Cursor cursor;
-        if (charSequence.length() == 0) {
-            cursor = getSavedInstancesCursor(sortOrder);
-        } else {
-            String selection =
-                    InstanceProviderAPI.InstanceColumns.DELETED_DATE + " IS NULL and "
-                            + InstanceProviderAPI.InstanceColumns.DISPLAY_NAME + " LIKE ?";
-            String[] selectionArgs = {"%" + charSequence + "%"};
-            cursor = getInstancesCursor(null, selection, selectionArgs, sortOrder);
+    public CursorLoader getSavedInstancesCursorLoader(CharSequence charSequence, String sortOrder,
+                                                      int limit) {
+        String selection = InstanceProviderAPI.InstanceColumns.DELETED_DATE + " IS NULL ";
+        String[] selectionArgs = null;
+        if (charSequence.length() > 0) {
+            selection += "and " + getDisplayNameSelection(charSequence);
+            selectionArgs = new String[]{FullTextIndex.getSelectionArg(charSequence)};
         }
 
-        return cursor;
+        return getInstancesCursorLoader(selection, selectionArgs, sortOrder, limit);
     }
 
     public Cursor getFinalizedInstancesCursor() {
@@ -136,24 +140,23 @@ public class InstancesDao {
         return getInstancesCursor(null, selection, selectionArgs, sortOrder);
     }
 
-    public Cursor getFinalizedInstancesCursor(CharSequence charSequence, String sortOrder) {
-        Cursor cursor;
-        if (charSequence.length() == 0) {
-            cursor = getFinalizedInstancesCursor(sortOrder);
-        } else {
-            String selection =
-                    "(" + InstanceProviderAPI.InstanceColumns.STATUS + "=? or "
-                            + InstanceProviderAPI.InstanceColumns.STATUS + "=?) and "
-                            + InstanceProviderAPI.InstanceColumns.DISPLAY_NAME + " LIKE ?";
-            String[] selectionArgs = {
+    public CursorLoader getFinalizedInstancesCursorLoader(CharSequence charSequence,
+                                                          String sortOrder, int limit) {
+        String selection =
+                "(" + InstanceProviderAPI.InstanceColumns.STATUS + "=? or "
+                        + InstanceProviderAPI.InstanceColumns.STATUS + "=?)";
+        String[] selectionArgs = {
+                InstanceProviderAPI.STATUS_COMPLETE,
+                InstanceProviderAPI.STATUS_SUBMISSION_FAILED};
+        if (charSequence.length() > 0) {
+            selection += " and " + getDisplayNameSelection(charSequence);
+            selectionArgs = new String[]{
                     InstanceProviderAPI.STATUS_COMPLETE,
                     InstanceProviderAPI.STATUS_SUBMISSION_FAILED,
-                    "%" + charSequence + "%"};
-
-            cursor = getInstancesCursor(null, selection, selectionArgs, sortOrder);
+                    FullTextIndex.getSelectionArg(charSequence)};
         }
 
-        return cursor;
+        return getInstancesCursorLoader(selection, selectionArgs, sortOrder, limit);
     }
 
     public Cursor getInstancesCursorForFilePath(String path) {
@@ -190,26 +193,26 @@ public class InstancesDao {
         return getInstancesCursor(null, selection, selectionArgs, sortOrder);
     }
 
-    public Cursor getCompletedUndeletedInstancesCursor(CharSequence charSequence, String sortOrder) {
-        Cursor cursor;
-        if (charSequence.length() == 0) {
-            cursor = getAllCompletedUndeletedInstancesCursor(sortOrder);
-        } else {
-            String selection = InstanceProviderAPI.InstanceColumns.DELETED_DATE + " IS NULL and ("
-                    + InstanceProviderAPI.InstanceColumns.STATUS + "=? or "
-                    + InstanceProviderAPI.InstanceColumns.STATUS + "=? or "
-                    + InstanceProviderAPI.InstanceColumns.STATUS + "=?) and "
-                    + InstanceProviderAPI.InstanceColumns.DISPLAY_NAME + " LIKE ?";
-
-            String[] selectionArgs = {
+    public CursorLoader getCompletedUndeletedInstancesCursorLoader(CharSequence charSequence,
+                                                                   String sortOrder, int limit) {
+        String selection = InstanceProviderAPI.InstanceColumns.DELETED_DATE + " IS NULL and ("
+                + InstanceProviderAPI.InstanceColumns.STATUS + "=? or "
+                + InstanceProviderAPI.InstanceColumns.STATUS + "=? or "
+                + InstanceProviderAPI.InstanceColumns.STATUS + "=?)";
+        String[] selectionArgs = {
+                InstanceProviderAPI.STATUS_COMPLETE,
+                InstanceProviderAPI.STATUS_SUBMISSION_FAILED,
+                InstanceProviderAPI.STATUS_SUBMITTED};
+        if (charSequence.length() > 0) {
+            selection += " and " + getDisplayNameSelection(charSequence);
+            selectionArgs = new String[]{
                     InstanceProviderAPI.STATUS_COMPLETE,
                     InstanceProviderAPI.STATUS_SUBMISSION_FAILED,
                     InstanceProviderAPI.STATUS_SUBMITTED,
-                    "%" + charSequence + "%"};
-
-            cursor = getInstancesCursor(null, selection, selectionArgs, sortOrder);
+                    FullTextIndex.getSelectionArg(charSequence)};
         }
-        return cursor;
+
+        return getInstancesCursorLoader(selection, selectionArgs, sortOrder, limit);
     }
 
     public Cursor getInstancesCursorForId(String id) {
@@ -228,6 +231,66 @@ public class InstancesDao {
                 .query(InstanceProviderAPI.InstanceColumns.CONTENT_URI, projection, selection, selectionArgs, sortOrder);
     }
 
+    /**
+     * Returns a loader querying the instances on a background thread. A limit of 0 or less
+     * loads every matching instance.
+     */
+    private CursorLoader getInstancesCursorLoader(String selection, String[] selectionArgs,
+                                                  String sortOrder, int limit) {
+        Uri uri = InstanceProviderAPI.InstanceColumns.CONTENT_URI;
+        if (limit > 0) {
+            uri = uri.buildUpon()
+                    .appendQueryParameter(InstanceProviderAPI.LIMIT, Integer.toString(limit))
+                    .build();
+        }
+        return new CursorLoader(Collect.getInstance(), uri, null, selection, selectionArgs,
+                sortOrder);
+    }
+
+    /**
+     * Returns a loader of the number of instances with each status. The provider keeps the
+     * counts up to date as instances are saved, sent and deleted, so loading them again after
+     * every change is cheap.
+     */
+    public CursorLoader getStatusCountsCursorLoader() {
+        return new CursorLoader(Collect.getInstance(),
+                InstanceProviderAPI.InstanceColumns.STATUS_COUNTS_URI, null, null, null, null);
+    }
+
+    public Map<String, Integer> getStatusCounts() {
+        Cursor cursor = Collect.getInstance().getContentResolver().query(
+                InstanceProviderAPI.InstanceColumns.STATUS_COUNTS_URI, null, null, null, null);
+        if (cursor == null) {
+            return new HashMap<>();
+        }
+        try {
+            return getStatusCountsFromCursor(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the number of instances with each status read from a cursor of status counts,
+     * without closing it.
+     */
+    public Map<String, Integer> getStatusCountsFromCursor(Cursor cursor) {
+        Map<String, Integer> counts = new HashMap<>();
+        int statusColumnIndex = cursor.getColumnIndex(InstanceProviderAPI.InstanceColumns.STATUS);
+        int countColumnIndex = cursor.getColumnIndex(
+                InstanceProviderAPI.InstanceColumns.STATUS_COUNT);
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            counts.put(cursor.getString(statusColumnIndex), cursor.getInt(countColumnIndex));
+        }
+        return counts;
+    }
+
+    private String getDisplayNameSelection(CharSequence charSequence) {
+        return FullTextIndex.getSelection(InstancesDatabaseHelper.INSTANCES_TABLE_NAME,
+                InstanceProviderAPI.InstanceColumns.DISPLAY_NAME, charSequence);
+    }
+
     public Uri saveInstance(ContentValues values) {
         return Collect.getInstance().getContentResolver().insert(InstanceProviderAPI.InstanceColumns.CONTENT_URI, values);
     }
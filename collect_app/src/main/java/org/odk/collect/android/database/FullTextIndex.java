@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
+
+import java.util.regex.Pattern;
+
+/**
+ * Full-text index of one text column of a table, so that list screens can be filtered without
+ * scanning the whole table on every keystroke.
+ *
+ * <p>The index is an FTS4 table that reads its content from the indexed table. Triggers keep it
+ * up to date when rows are inserted, deleted or renamed. A search matches rows where every word
+ * of the search text starts a word of the column.</p>
+ */
+public final class FullTextIndex {
+
+    // the characters the simple FTS tokenizer splits on: everything ASCII but letters and digits
+    private static final Pattern SEPARATORS =
+            Pattern.compile("[\\x00-\\x2F\\x3A-\\x40\\x5B-\\x60\\x7B-\\x7F]+");
+
+    private FullTextIndex() {
+    }
+
+    public static String getIndexName(String table) {
+        return table + "_fts";
+    }
+
+    /**
+     * Creates the index of the given column and the triggers maintaining it, and indexes the
+     * rows that are already in the table. An existing index is replaced.
+     */
+    public static void create(SQLiteDatabase db, String table, String column) {
+        drop(db, table);
+
+        String index = getIndexName(table);
+        db.execSQL("CREATE VIRTUAL TABLE " + index + " USING fts4(content=\"" + table + "\", "
+                + column + ");");
+
+        String delete = " BEGIN DELETE FROM " + index + " WHERE docid = old." + BaseColumns._ID
+                + "; END;";
+        String insert = " BEGIN INSERT INTO " + index + " (docid, " + column + ") VALUES (new."
+                + BaseColumns._ID + ", new." + column + "); END;";
+        db.execSQL("CREATE TRIGGER " + index + "_bd BEFORE DELETE ON " + table + delete);
+        db.execSQL("CREATE TRIGGER " + index + "_bu BEFORE UPDATE OF " + column + " ON " + table
+                + delete);
+        db.execSQL("CREATE TRIGGER " + index + "_ai AFTER INSERT ON " + table + insert);
+        db.execSQL("CREATE TRIGGER " + index + "_au AFTER UPDATE OF " + column + " ON " + table
+                + insert);
+
+        db.execSQL("INSERT INTO " + index + " (" + index + ") VALUES ('rebuild');");
+    }
+
+    public static void drop(SQLiteDatabase db, String table) {
+        String index = getIndexName(table);
+        db.execSQL("DROP TRIGGER IF EXISTS " + index + "_bd;");
+        db.execSQL("DROP TRIGGER IF EXISTS " + index + "_bu;");
+        db.execSQL("DROP TRIGGER IF EXISTS " + index + "_ai;");
+        db.execSQL("DROP TRIGGER IF EXISTS " + index + "_au;");
+        db.execSQL("DROP TABLE IF EXISTS " + index + ";");
+    }
+
+    /**
+     * Returns the selection keeping the rows of the given table whose indexed column matches
+     * the argument made by {@link #getSelectionArg(CharSequence)}. Text without any word is
+     * matched with LIKE instead.
+     */
+    public static String getSelection(String table, String column, CharSequence text) {
+        if (getMatchQuery(text) == null) {
+            return column + " LIKE ?";
+        }
+        String index = getIndexName(table);
+        return BaseColumns._ID + " IN (SELECT docid FROM " + index + " WHERE " + index
+                + " MATCH ?)";
+    }
+
+    public static String getSelectionArg(CharSequence text) {
+        String query = getMatchQuery(text);
+        return query != null ? query : "%" + text + "%";
+    }
+
+    /**
+     * Turns search text into an FTS query matching rows where every word of the text is the
+     * start of a word, or null if the text has no words.
+     */
+    static String getMatchQuery(CharSequence text) {
+        StringBuilder query = new StringBuilder();
+        for (String word : SEPARATORS.split(text)) {
+            if (!word.isEmpty()) {
+                if (query.length() > 0) {
+                    query.append(' ');
+                }
+                // quoted, so that words like OR and NOT aren't taken as operators
+                query.append('"').append(word).append("*\"");
+            }
+        }
+        return query.length() > 0 ? query.toString() : null;
+    }
+}
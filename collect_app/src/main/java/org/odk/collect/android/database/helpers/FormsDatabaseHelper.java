@@ -19,9 +19,11 @@ package org.odk.collect.android.database.helpers;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.text.TextUtils;
 
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.database.DatabaseContext;
+import org.odk.collect.android.database.FullTextIndex;
 import org.odk.collect.android.provider.FormsProviderAPI;
 import org.odk.collect.android.utilities.CustomSQLiteQueryBuilder;
 
@@ -34,7 +36,7 @@ public class FormsDatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "forms.db";
     public static final String FORMS_TABLE_NAME = "forms";
 
-    private static final int DATABASE_VERSION = 4;
+    private static final int DATABASE_VERSION = 6;
 
     // These exist in database versions 2 and 3, but not in 4...
     private static final String TEMP_FORMS_TABLE_NAME = "forms_v4";
@@ -47,6 +49,8 @@ public class FormsDatabaseHelper extends SQLiteOpenHelper {
     @Override
     public void onCreate(SQLiteDatabase db) {
         createFormsTable(db, FORMS_TABLE_NAME);
+        createIndexes(db);
+        FullTextIndex.create(db, FORMS_TABLE_NAME, FormsProviderAPI.FormsColumns.DISPLAY_NAME);
     }
 
     @SuppressWarnings({"checkstyle:FallThrough"})
@@ -61,6 +65,10 @@ public class FormsDatabaseHelper extends SQLiteOpenHelper {
             case 2:
             case 3:
                 success &= upgradeToVersion4(db, oldVersion);
+            case 4:
+                success &= upgradeToVersion5(db);
+            case 5:
+                success &= upgradeToVersion6(db);
                 break;
             default:
                 Timber.i("Unknown version " + oldVersion);
@@ -83,6 +91,8 @@ public class FormsDatabaseHelper extends SQLiteOpenHelper {
                     .end();
 
             createFormsTable(db, FORMS_TABLE_NAME);
+            createIndexes(db);
+            FullTextIndex.create(db, FORMS_TABLE_NAME, FormsProviderAPI.FormsColumns.DISPLAY_NAME);
         } catch (SQLiteException e) {
             Timber.e(e);
             success = false;
@@ -235,6 +245,28 @@ public class FormsDatabaseHelper extends SQLiteOpenHelper {
         return success;
     }
 
+    private boolean upgradeToVersion5(SQLiteDatabase db) {
+        boolean success = true;
+        try {
+            FullTextIndex.create(db, FORMS_TABLE_NAME, FormsProviderAPI.FormsColumns.DISPLAY_NAME);
+        } catch (SQLiteException e) {
+            Timber.e(e);
+            success = false;
+        }
+        return success;
+    }
+
+    private boolean upgradeToVersion6(SQLiteDatabase db) {
+        boolean success = true;
+        try {
+            createIndexes(db);
+        } catch (SQLiteException e) {
+            Timber.e(e);
+            success = false;
+        }
+        return success;
+    }
+
     private void createFormsTable(SQLiteDatabase db, String tableName) {
         db.execSQL("CREATE TABLE " + tableName + " (" + FormsProviderAPI.FormsColumns._ID
                 + " integer primary key, " + FormsProviderAPI.FormsColumns.DISPLAY_NAME
@@ -256,4 +288,25 @@ public class FormsDatabaseHelper extends SQLiteOpenHelper {
                 + FormsProviderAPI.FormsColumns.BASE64_RSA_PUBLIC_KEY + " text, "
                 + FormsProviderAPI.FormsColumns.JRCACHE_FILE_PATH + " text not null);");
     }
+
+    /**
+     * Indexes the columns forms are looked up by when they are downloaded, synced with the
+     * forms folder and opened.
+     */
+    private static void createIndexes(SQLiteDatabase db) {
+        createIndex(db, FormsProviderAPI.FormsColumns.MD5_HASH);
+        createIndex(db, FormsProviderAPI.FormsColumns.JR_FORM_ID,
+                FormsProviderAPI.FormsColumns.JR_VERSION);
+        createIndex(db, FormsProviderAPI.FormsColumns.FORM_FILE_PATH);
+    }
+
+    private static void createIndex(SQLiteDatabase db, String... columns) {
+        CustomSQLiteQueryBuilder
+                .begin(db)
+                .createIndexIfNotExists(FORMS_TABLE_NAME + "_" + TextUtils.join("_", columns)
+                        + "_idx")
+                .on(FORMS_TABLE_NAME)
+                .columnsForInsert(columns)
+                .end();
+    }
 }
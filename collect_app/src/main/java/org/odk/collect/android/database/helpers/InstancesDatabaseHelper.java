@@ -20,9 +20,11 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.text.TextUtils;
 
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.database.DatabaseContext;
+import org.odk.collect.android.database.FullTextIndex;
 import org.odk.collect.android.provider.InstanceProviderAPI;
 import org.odk.collect.android.utilities.CustomSQLiteQueryBuilder;
 
@@ -47,9 +49,9 @@ public class InstancesDatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "instances.db";
     public static final String INSTANCES_TABLE_NAME = "instances";
 
-    private static final int DATABASE_VERSION = 4;
+    private static final int DATABASE_VERSION = 6;
 
-    private String[] instancesTableColumnsInVersion4 = new String[] {_ID, DISPLAY_NAME, SUBMISSION_URI, CAN_EDIT_WHEN_COMPLETE,
+    private String[] instancesTableColumnsInVersion6 = new String[] {_ID, DISPLAY_NAME, SUBMISSION_URI, CAN_EDIT_WHEN_COMPLETE,
             INSTANCE_FILE_PATH, JR_FORM_ID, JR_VERSION, STATUS, LAST_STATUS_CHANGE_DATE, DISPLAY_SUBTEXT, DELETED_DATE};
 
     public InstancesDatabaseHelper() {
@@ -59,6 +61,8 @@ public class InstancesDatabaseHelper extends SQLiteOpenHelper {
     @Override
     public void onCreate(SQLiteDatabase db) {
         createInstancesTable(db);
+        createIndexes(db);
+        FullTextIndex.create(db, INSTANCES_TABLE_NAME, DISPLAY_NAME);
     }
 
     @SuppressWarnings({"checkstyle:FallThrough"})
@@ -74,6 +78,10 @@ public class InstancesDatabaseHelper extends SQLiteOpenHelper {
                 success &= upgradeToVersion3(db);
             case 3:
                 success &= upgradeToVersion4(db);
+            case 4:
+                success &= upgradeToVersion5(db);
+            case 5:
+                success &= upgradeToVersion6(db);
                 break;
             default:
                 Timber.i("Unknown version " + oldVersion);
@@ -90,8 +98,8 @@ public class InstancesDatabaseHelper extends SQLiteOpenHelper {
     public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         boolean success = true;
         switch (newVersion) {
-            case 4:
-                success = downgrade(db, instancesTableColumnsInVersion4);
+            case 6:
+                success = downgrade(db, instancesTableColumnsInVersion6);
                 break;
 
             default:
@@ -153,11 +161,36 @@ public class InstancesDatabaseHelper extends SQLiteOpenHelper {
         return success;
     }
 
+    private boolean upgradeToVersion5(SQLiteDatabase db) {
+        boolean success = true;
+        try {
+            FullTextIndex.create(db, INSTANCES_TABLE_NAME, DISPLAY_NAME);
+        } catch (SQLiteException e) {
+            Timber.e(e);
+            success = false;
+        }
+        return success;
+    }
+
+    private boolean upgradeToVersion6(SQLiteDatabase db) {
+        boolean success = true;
+        try {
+            createIndexes(db);
+        } catch (SQLiteException e) {
+            Timber.e(e);
+            success = false;
+        }
+        return success;
+    }
+
     private boolean downgrade(SQLiteDatabase db, String[] instancesTableColumns) {
         boolean success = true;
         String temporaryTable = INSTANCES_TABLE_NAME + "_tmp";
 
         try {
+            // the index and its triggers are made again for the new table
+            FullTextIndex.drop(db, INSTANCES_TABLE_NAME);
+
             CustomSQLiteQueryBuilder
                     .begin(db)
                     .renameTable(INSTANCES_TABLE_NAME)
@@ -180,6 +213,10 @@ public class InstancesDatabaseHelper extends SQLiteOpenHelper {
                     .begin(db)
                     .dropIfExists(temporaryTable)
                     .end();
+
+            // the indexes were renamed along with the old table and dropped with it
+            createIndexes(db);
+            FullTextIndex.create(db, INSTANCES_TABLE_NAME, DISPLAY_NAME);
         } catch (SQLiteException e) {
             Timber.i(e);
             success = false;
@@ -201,4 +238,25 @@ public class InstancesDatabaseHelper extends SQLiteOpenHelper {
                 + DISPLAY_SUBTEXT + " text not null,"
                 + DELETED_DATE + " date );");
     }
-}
\ No newline at end of file
+
+    /**
+     * Indexes the columns the lists, the auto-send and the instance sync filter on, so that
+     * they don't scan the whole table once a device has accumulated many instances.
+     */
+    private static void createIndexes(SQLiteDatabase db) {
+        createIndex(db, STATUS);
+        createIndex(db, DELETED_DATE, STATUS);
+        createIndex(db, JR_FORM_ID);
+        createIndex(db, INSTANCE_FILE_PATH);
+    }
+
+    private static void createIndex(SQLiteDatabase db, String... columns) {
+        CustomSQLiteQueryBuilder
+                .begin(db)
+                .createIndexIfNotExists(INSTANCES_TABLE_NAME + "_"
+                        + TextUtils.join("_", columns) + "_idx")
+                .on(INSTANCES_TABLE_NAME)
+                .columnsForInsert(columns)
+                .end();
+    }
+}
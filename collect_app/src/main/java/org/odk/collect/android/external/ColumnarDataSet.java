@@ -0,0 +1,564 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.external;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only external data set compiled into a file that is memory-mapped rather than queried,
+ * for lookup tables too large for SQLite to serve quickly.
+ *
+ * <p>Each column is dictionary-encoded: its distinct values are stored once, sorted ignoring
+ * case, and every row holds the code of its value in one, two or four bytes. The rows are sorted
+ * by the first {@code _key} column, the one a table would have been indexed on, and the first
+ * row of each key is stored, so looking a key up is a binary search in its dictionary. Values are
+ * compared the way the {@code text collate nocase} columns of the table are, ignoring the case of
+ * ASCII letters only.</p>
+ *
+ * <p>The rows keep their sort value ({@link ExternalDataUtil#SORT_COLUMN_NAME}) and their
+ * position in the .csv file, so that they can be returned in the same order as from the
+ * table.</p>
+ */
+public class ColumnarDataSet {
+
+    /**
+     * The extension of the compiled files. A data set is compiled when its .csv file has this
+     * extension before its own, as in {@code facilities.columnar.csv}.
+     */
+    public static final String EXTENSION = ".columnar";
+
+    /**
+     * Compares values the way {@code collate nocase} does.
+     */
+    public static final Comparator<String> NOCASE = new Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+            int length = Math.min(a.length(), b.length());
+            for (int i = 0; i < length; i++) {
+                int difference = foldCase(a.charAt(i)) - foldCase(b.charAt(i));
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return a.length() - b.length();
+        }
+    };
+
+    private static final int MAGIC = 0x4f444b43;
+    private static final int VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+    private final int rowCount;
+    private final int keyColumn;
+    private final List<String> columnNames = new ArrayList<String>();
+    private final int sortValuesPosition;
+    private final int ordinalsPosition;
+    private final int[] dictionarySizes;
+    private final int[] dictionaryPositions;
+    private final int[] valuesPositions;
+    private final int[] codeWidths;
+    private final int[] codesPositions;
+    private final int keyIndexPosition;
+
+    private ColumnarDataSet(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a columnar data set");
+        }
+        rowCount = buffer.getInt(8);
+        int columnCount = buffer.getInt(12);
+        keyColumn = buffer.getInt(16);
+
+        int position = 20;
+        for (int i = 0; i < columnCount; i++) {
+            int length = buffer.getShort(position) & 0xffff;
+            columnNames.add(readString(position + 2, length));
+            position += 2 + length;
+        }
+
+        sortValuesPosition = position;
+        ordinalsPosition = sortValuesPosition + 8 * rowCount;
+        position = ordinalsPosition + 4 * rowCount;
+
+        dictionarySizes = new int[columnCount];
+        dictionaryPositions = new int[columnCount];
+        valuesPositions = new int[columnCount];
+        codeWidths = new int[columnCount];
+        codesPositions = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            dictionarySizes[i] = buffer.getInt(position);
+            codeWidths[i] = buffer.getInt(position + 4);
+            dictionaryPositions[i] = position + 8;
+            valuesPositions[i] = dictionaryPositions[i] + 4 * (dictionarySizes[i] + 1);
+            codesPositions[i] = valuesPositions[i]
+                    + buffer.getInt(dictionaryPositions[i] + 4 * dictionarySizes[i]);
+            position = codesPositions[i] + codeWidths[i] * rowCount;
+        }
+        keyIndexPosition = position;
+    }
+
+    /**
+     * Maps the given file, which was written by a {@link Writer}.
+     */
+    public static ColumnarDataSet open(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            // the mapping outlives the channel
+            FileChannel channel = randomAccessFile.getChannel();
+            return new ColumnarDataSet(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * Returns the index of the column with the given (safe) name, or -1 if there is none.
+     */
+    public int getColumnIndex(String columnName) {
+        return columnNames.indexOf(columnName);
+    }
+
+    public String getValue(int row, int column) {
+        return getDictionaryValue(column, getCode(row, column));
+    }
+
+    public double getSortValue(int row) {
+        return buffer.getDouble(sortValuesPosition + 8 * row);
+    }
+
+    /**
+     * Returns the position of the row in the .csv file, the order of the rowids of a table.
+     */
+    public int getOrdinal(int row) {
+        return buffer.getInt(ordinalsPosition + 4 * row);
+    }
+
+    public int getCode(int row, int column) {
+        int position = codesPositions[column] + codeWidths[column] * row;
+        switch (codeWidths[column]) {
+            case 1:
+                return buffer.get(position) & 0xff;
+            case 2:
+                return buffer.getShort(position) & 0xffff;
+            default:
+                return buffer.getInt(position);
+        }
+    }
+
+    public int getDictionarySize(int column) {
+        return dictionarySizes[column];
+    }
+
+    public String getDictionaryValue(int column, int code) {
+        int start = buffer.getInt(dictionaryPositions[column] + 4 * code);
+        int end = buffer.getInt(dictionaryPositions[column] + 4 * (code + 1));
+        return readString(valuesPositions[column] + start, end - start);
+    }
+
+    /**
+     * Returns the codes of the values of a column that match the given filter, evaluating it once
+     * per distinct value.
+     */
+    public boolean[] findCodes(int column, ValueFilter filter) {
+        boolean[] matches = new boolean[dictionarySizes[column]];
+        for (int code = 0; code < matches.length; code++) {
+            matches[code] = filter.accept(getDictionaryValue(column, code));
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the first row, in the order of the .csv file, whose value in the given column is
+     * equal to the given one ignoring case, or -1 if there is none.
+     */
+    public int findFirstRow(int column, String value) {
+        int first = lowerBound(column, value);
+        int last = first;
+        while (last < dictionarySizes[column]
+                && NOCASE.compare(getDictionaryValue(column, last), value) == 0) {
+            last++;
+        }
+        if (first == last) {
+            return -1;
+        }
+
+        int from = 0;
+        int to = rowCount;
+        if (column == keyColumn) {
+            from = buffer.getInt(keyIndexPosition + 4 * first);
+            to = buffer.getInt(keyIndexPosition + 4 * last);
+        }
+
+        int found = -1;
+        for (int row = from; row < to; row++) {
+            int code = getCode(row, column);
+            if (code >= first && code < last
+                    && (found == -1 || getOrdinal(row) < getOrdinal(found))) {
+                found = row;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the code of the first value not less than the given one ignoring case.
+     */
+    private int lowerBound(int column, String value) {
+        int low = 0;
+        int high = dictionarySizes[column];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (NOCASE.compare(getDictionaryValue(column, middle), value) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private String readString(int position, int length) {
+        byte[] bytes = new byte[length];
+        // a duplicate has its own position, so that lookups can run on several threads
+        ByteBuffer source = buffer.duplicate();
+        source.position(position);
+        source.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Returns whether the value matches the pattern of a {@code LIKE}, in which {@code %} stands
+     * for any text and {@code _} for any character.
+     */
+    public static boolean like(String value, String pattern) {
+        String text = foldCase(value);
+        String like = foldCase(pattern);
+        int t = 0;
+        int p = 0;
+        // where to resume from when what follows the last % doesn't match
+        int percent = -1;
+        int resume = 0;
+        while (t < text.length()) {
+            if (p < like.length() && like.charAt(p) == '%') {
+                percent = p++;
+                resume = t;
+            } else if (p < like.length()
+                    && (like.charAt(p) == '_' || like.charAt(p) == text.charAt(t))) {
+                p++;
+                t++;
+            } else if (percent != -1) {
+                p = percent + 1;
+                t = ++resume;
+            } else {
+                return false;
+            }
+        }
+        while (p < like.length() && like.charAt(p) == '%') {
+            p++;
+        }
+        return p == like.length();
+    }
+
+    /**
+     * Lower cases the ASCII letters of the given text, the only ones {@code LIKE} and
+     * {@code collate nocase} ignore the case of.
+     */
+    public static String foldCase(String text) {
+        StringBuilder folded = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                if (folded == null) {
+                    folded = new StringBuilder(text);
+                }
+                folded.setCharAt(i, foldCase(c));
+            }
+        }
+        return folded == null ? text : folded.toString();
+    }
+
+    private static char foldCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    public interface ValueFilter {
+        boolean accept(String value);
+    }
+
+    /**
+     * Collects the rows of a data set and writes them out in the columnar format. The rows are
+     * kept in memory, as codes, until they are written, along with the distinct values of every
+     * column. A data set can therefore have at most {@link #MAX_ROWS} rows, and fewer when so
+     * many of its values are different that they would take more than a quarter of the heap.
+     */
+    public static class Writer {
+
+        /**
+         * The most rows a data set can have, whatever its values.
+         */
+        public static final int MAX_ROWS = 250000;
+
+        // rough sizes of what is held for each row and column, and for each distinct value
+        // besides its characters: a String, its array and an entry of the dictionary
+        private static final int CODE_BYTES = 4;
+        private static final int SORT_VALUE_BYTES = 8;
+        private static final int DISTINCT_VALUE_BYTES = 96;
+
+        private final List<String> columnNames;
+        private final int keyColumn;
+        private final long maxHeldBytes;
+        private final List<Map<String, Integer>> dictionaries =
+                new ArrayList<Map<String, Integer>>();
+        private final int[][] codes;
+        private double[] sortValues = new double[1024];
+        private int rowCount;
+        private long heldBytes;
+
+        /**
+         * @param keyColumn the column to sort the rows by and index, or -1 for none
+         */
+        public Writer(List<String> columnNames, int keyColumn) {
+            this(columnNames, keyColumn, Runtime.getRuntime().maxMemory() / 4);
+        }
+
+        Writer(List<String> columnNames, int keyColumn, long maxHeldBytes) {
+            this.columnNames = new ArrayList<String>(columnNames);
+            this.keyColumn = keyColumn;
+            this.maxHeldBytes = maxHeldBytes;
+            codes = new int[columnNames.size()][1024];
+            for (int i = 0; i < columnNames.size(); i++) {
+                dictionaries.add(new HashMap<String, Integer>());
+            }
+        }
+
+        /**
+         * Adds a row with a value for every column, in the order of the column names. Returns
+         * false, without adding the row, when the data set would be too large to write.
+         */
+        public boolean addRow(String[] values, double sortValue) {
+            if (rowCount == MAX_ROWS || !reserve(values)) {
+                return false;
+            }
+            if (rowCount == sortValues.length) {
+                sortValues = Arrays.copyOf(sortValues, rowCount * 2);
+                for (int i = 0; i < codes.length; i++) {
+                    codes[i] = Arrays.copyOf(codes[i], rowCount * 2);
+                }
+            }
+
+            for (int i = 0; i < codes.length; i++) {
+                String value = ExternalDataUtil.nullSafe(values[i]);
+                Map<String, Integer> dictionary = dictionaries.get(i);
+                Integer code = dictionary.get(value);
+                if (code == null) {
+                    code = dictionary.size();
+                    dictionary.put(value, code);
+                }
+                codes[i][rowCount] = code;
+            }
+            sortValues[rowCount] = sortValue;
+            rowCount++;
+            return true;
+        }
+
+        /**
+         * Adds what the row would hold to the bytes held, if they stay within the limit.
+         */
+        private boolean reserve(String[] values) {
+            long rowBytes = SORT_VALUE_BYTES + (long) CODE_BYTES * codes.length;
+            for (int i = 0; i < codes.length; i++) {
+                String value = ExternalDataUtil.nullSafe(values[i]);
+                if (!dictionaries.get(i).containsKey(value)) {
+                    rowBytes += DISTINCT_VALUE_BYTES + 2L * value.length();
+                }
+            }
+            if (heldBytes + rowBytes > maxHeldBytes) {
+                return false;
+            }
+            heldBytes += rowBytes;
+            return true;
+        }
+
+        /**
+         * Writes the data set to the given file, through a temporary file so that a data set is
+         * either complete or missing.
+         */
+        public void write(File file) throws IOException {
+            List<String[]> sortedValues = new ArrayList<String[]>();
+            for (int i = 0; i < codes.length; i++) {
+                sortedValues.add(sortDictionary(i));
+            }
+            int[] rows = sortRows();
+
+            File temporaryFile = new File(file.getPath() + ".tmp");
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temporaryFile)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(rowCount);
+                out.writeInt(columnNames.size());
+                out.writeInt(keyColumn);
+                for (String columnName : columnNames) {
+                    out.writeUTF(columnName);
+                }
+                for (int row : rows) {
+                    out.writeDouble(sortValues[row]);
+                }
+                for (int row : rows) {
+                    out.writeInt(row);
+                }
+                for (int i = 0; i < codes.length; i++) {
+                    writeColumn(out, sortedValues.get(i), codes[i], rows);
+                }
+                if (keyColumn != -1) {
+                    for (int start : keyStarts()) {
+                        out.writeInt(start);
+                    }
+                }
+            } finally {
+                out.close();
+            }
+
+            if (file.exists() && !file.delete() || !temporaryFile.renameTo(file)) {
+                temporaryFile.delete();
+                throw new IOException("Unable to write " + file.getAbsolutePath());
+            }
+        }
+
+        /**
+         * Sorts the distinct values of a column, case-insensitive first so that the values equal
+         * ignoring case are next to each other, and recodes the column with their new positions.
+         */
+        private String[] sortDictionary(int column) {
+            Map<String, Integer> dictionary = dictionaries.get(column);
+            String[] values = dictionary.keySet().toArray(new String[dictionary.size()]);
+            Arrays.sort(values, new Comparator<String>() {
+                @Override
+                public int compare(String a, String b) {
+                    int result = NOCASE.compare(a, b);
+                    return result != 0 ? result : a.compareTo(b);
+                }
+            });
+
+            int[] newCodes = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                newCodes[dictionary.get(values[i])] = i;
+            }
+            int[] columnCodes = codes[column];
+            for (int row = 0; row < rowCount; row++) {
+                columnCodes[row] = newCodes[columnCodes[row]];
+            }
+            dictionaries.set(column, null);
+            return values;
+        }
+
+        /**
+         * Returns the rows in the order they are written in: by key, then in the order they were
+         * added. A counting sort, the keys being codes.
+         */
+        private int[] sortRows() {
+            int[] rows = new int[rowCount];
+            if (keyColumn == -1) {
+                for (int row = 0; row < rowCount; row++) {
+                    rows[row] = row;
+                }
+                return rows;
+            }
+
+            int[] starts = keyStarts();
+            int[] next = Arrays.copyOf(starts, starts.length);
+            for (int row = 0; row < rowCount; row++) {
+                rows[next[codes[keyColumn][row]]++] = row;
+            }
+            return rows;
+        }
+
+        /**
+         * Returns the position of the first row of each key in the sorted rows, followed by the
+         * number of rows.
+         */
+        private int[] keyStarts() {
+            int dictionarySize = 0;
+            for (int row = 0; row < rowCount; row++) {
+                dictionarySize = Math.max(dictionarySize, codes[keyColumn][row] + 1);
+            }
+            int[] starts = new int[dictionarySize + 1];
+            for (int row = 0; row < rowCount; row++) {
+                starts[codes[keyColumn][row] + 1]++;
+            }
+            for (int i = 1; i < starts.length; i++) {
+                starts[i] += starts[i - 1];
+            }
+            return starts;
+        }
+
+        private void writeColumn(DataOutputStream out, String[] values, int[] columnCodes,
+                int[] rows) throws IOException {
+            int codeWidth = values.length <= 0x100 ? 1 : values.length <= 0x10000 ? 2 : 4;
+            out.writeInt(values.length);
+            out.writeInt(codeWidth);
+
+            byte[][] encoded = new byte[values.length][];
+            int offset = 0;
+            out.writeInt(offset);
+            for (int i = 0; i < values.length; i++) {
+                encoded[i] = values[i].getBytes(UTF_8);
+                offset += encoded[i].length;
+                out.writeInt(offset);
+            }
+            for (byte[] value : encoded) {
+                out.write(value);
+            }
+
+            for (int row : rows) {
+                int code = columnCodes[row];
+                if (codeWidth == 1) {
+                    out.writeByte(code);
+                } else if (codeWidth == 2) {
+                    out.writeShort(code);
+                } else {
+                    out.writeInt(code);
+                }
+            }
+        }
+    }
+}
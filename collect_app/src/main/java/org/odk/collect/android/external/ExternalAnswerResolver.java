@@ -56,7 +56,7 @@ public class ExternalAnswerResolver extends DefaultAnswerResolver {
 
             XPathFuncExpr xpathExpression = null;
             try {
-                xpathExpression = ExternalDataUtil.getSearchXPathExpression(
+                xpathExpression = SearchExpressionCache.get(formDef,
                         questionDef.getAppearanceAttr());
             } catch (Exception e) {
                 Timber.e(e);
@@ -58,7 +58,8 @@ public class ExternalDataManagerImpl implements ExternalDataManager {
                 }
             } else {
                 File dbFile = new File(mediaFolder, dataSetName + ".db");
-                if (!dbFile.exists()) {
+                File columnarFile = new File(mediaFolder, dataSetName + ColumnarDataSet.EXTENSION);
+                if (!dbFile.exists() && !columnarFile.exists()) {
                     String msg = Collect.getInstance().getString(
                             R.string.ext_import_csv_missing_error, dataSetName, dataSetName);
                     Timber.e(msg);
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.external;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+import timber.log.Timber;
+
+/**
+ * A data set that was imported on the server rather than on the device: a media file named
+ * {@code <data set>.db} or {@code <data set>.columnar}, optionally gzipped, that is installed
+ * next to the form in place of the {@code <data set>.csv} it was built from.
+ *
+ * <p>The manifest hash of the installed package is kept in a {@code .md5} file next to it, so
+ * that an unchanged package isn't downloaded again even though opening a database writes to it.
+ *
+ * <p>A {@code .db} has to be built the way {@link ExternalSQLiteOpenHelper} builds it, including
+ * its {@code PRAGMA user_version}, which has to be the helper's {@code VERSION} (1). Otherwise
+ * {@link android.database.sqlite.SQLiteOpenHelper} opens it as a new database and runs
+ * {@code onCreate}, or fails to open it as a downgrade.</p>
+ */
+public final class ExternalDataPackage {
+
+    private static final String DB_EXTENSION = ".db";
+    private static final String CSV_EXTENSION = ".csv";
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final String HASH_EXTENSION = ".md5";
+    private static final String MD5_COLON_PREFIX = "md5:";
+    private static final String[] SQLITE_SIDE_FILES = {"-journal", "-wal", "-shm"};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ExternalDataPackage() {
+    }
+
+    public static boolean isPackage(String filename) {
+        String name = getInstalledName(filename);
+        return name.endsWith(DB_EXTENSION) || name.endsWith(ColumnarDataSet.EXTENSION);
+    }
+
+    /**
+     * Returns the name of the data set the package holds, e.g. {@code facilities} for
+     * {@code facilities.db.gz}.
+     */
+    public static String getDataSetName(String filename) {
+        String name = getInstalledName(filename);
+        String extension = name.endsWith(DB_EXTENSION) ? DB_EXTENSION : ColumnarDataSet.EXTENSION;
+        return name.substring(0, name.length() - extension.length());
+    }
+
+    /**
+     * Returns whether the file is a CSV that one of the data sets would otherwise be imported
+     * from, so that it doesn't need to be downloaded.
+     */
+    public static boolean isFallback(String filename, Collection<String> dataSetNames) {
+        for (String dataSetName : dataSetNames) {
+            if (filename.equals(dataSetName + CSV_EXTENSION)
+                    || filename.equals(dataSetName + ColumnarDataSet.EXTENSION + CSV_EXTENSION)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the package with the given manifest hash is already installed in the
+     * media folder.
+     */
+    public static boolean isInstalled(File mediaDir, String filename, String hash) {
+        File installed = new File(mediaDir, getInstalledName(filename));
+        File hashFile = getHashFile(installed);
+        if (!installed.exists() || !hashFile.exists()) {
+            return false;
+        }
+        try {
+            return FileUtils.readFileToString(hashFile, "UTF-8").trim().equalsIgnoreCase(hash);
+        } catch (IOException e) {
+            Timber.w(e);
+            return false;
+        }
+    }
+
+    /**
+     * Checks the downloaded package against its manifest hash and, if it's gzipped, decompresses
+     * it next to itself, ready for {@link #install}. A package that doesn't match is deleted.
+     *
+     * @return false if the package doesn't match its hash
+     */
+    public static boolean unpack(File download, String hash) throws IOException {
+        File installed = new File(download.getParentFile(), getInstalledName(download.getName()));
+        boolean gzipped = !installed.equals(download);
+
+        MessageDigest md5;
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        InputStream in = new DigestInputStream(new FileInputStream(download), md5);
+        try {
+            if (gzipped) {
+                // closing the gzip stream frees its native inflater, but the rest of the
+                // download still has to be read for the digest
+                InputStream gzip = new GZIPInputStream(new CloseShieldInputStream(in),
+                        BUFFER_SIZE);
+                OutputStream out = null;
+                try {
+                    out = new FileOutputStream(installed);
+                    IOUtils.copyLarge(gzip, out, new byte[BUFFER_SIZE]);
+                } finally {
+                    IOUtils.closeQuietly(gzip);
+                    if (out != null) {
+                        out.close();
+                    }
+                }
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (in.read(buffer) != -1) {
+                // whatever is left only goes into the digest
+            }
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(installed);
+            throw e;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+
+        String expected = hash.toLowerCase(Locale.US);
+        if (expected.startsWith(MD5_COLON_PREFIX)) {
+            expected = expected.substring(MD5_COLON_PREFIX.length());
+        }
+        String actual = String.format("%032x", new BigInteger(1, md5.digest()));
+        if (gzipped) {
+            FileUtils.deleteQuietly(download);
+        }
+        if (!actual.equals(expected)) {
+            Timber.e("%s has the hash %s instead of %s", download.getName(), actual, expected);
+            FileUtils.deleteQuietly(installed);
+            return false;
+        }
+
+        FileUtils.writeStringToFile(getHashFile(installed), hash, "UTF-8");
+        return true;
+    }
+
+    /**
+     * Moves the packages unpacked in the temporary media folder over the ones in the media folder,
+     * each with a single rename, and retires the CSVs that they replace so that opening the form
+     * doesn't import them over the package.
+     */
+    public static void install(File tempMediaDir, File mediaDir) throws IOException {
+        File[] hashFiles = tempMediaDir.listFiles(new HashFileFilter());
+        if (hashFiles != null) {
+            for (File hashFile : hashFiles) {
+                File unpacked = getPackageFile(hashFile);
+                String dataSetName = getDataSetName(unpacked.getName());
+
+                // the other form of the data set would be preferred to, or confused with, this one
+                for (String name : new String[] {dataSetName + DB_EXTENSION,
+                        dataSetName + ColumnarDataSet.EXTENSION}) {
+                    File previous = new File(mediaDir, name);
+                    FileUtils.deleteQuietly(getHashFile(previous));
+                    for (String sideFile : SQLITE_SIDE_FILES) {
+                        FileUtils.deleteQuietly(new File(mediaDir, name + sideFile));
+                    }
+                    if (!name.equals(unpacked.getName())) {
+                        FileUtils.deleteQuietly(previous);
+                    }
+                }
+
+                moveOver(unpacked, new File(mediaDir, unpacked.getName()));
+                moveOver(hashFile, new File(mediaDir, hashFile.getName()));
+                Timber.i("Installed %s", unpacked.getName());
+            }
+        }
+
+        File[] installed = mediaDir.listFiles(new HashFileFilter());
+        if (installed != null) {
+            for (File hashFile : installed) {
+                String dataSetName = getDataSetName(getPackageFile(hashFile).getName());
+                retire(new File(mediaDir, dataSetName + CSV_EXTENSION));
+                retire(new File(mediaDir, dataSetName + ColumnarDataSet.EXTENSION + CSV_EXTENSION));
+            }
+        }
+    }
+
+    /**
+     * Returns the file holding the manifest hash of the installed package, which is deleted when
+     * the package is replaced by an import on the device.
+     */
+    public static File getHashFile(File installed) {
+        return new File(installed.getParentFile(), installed.getName() + HASH_EXTENSION);
+    }
+
+    private static String getInstalledName(String filename) {
+        return filename.endsWith(GZIP_EXTENSION)
+                ? filename.substring(0, filename.length() - GZIP_EXTENSION.length())
+                : filename;
+    }
+
+    private static File getPackageFile(File hashFile) {
+        String name = hashFile.getName();
+        return new File(hashFile.getParentFile(),
+                name.substring(0, name.length() - HASH_EXTENSION.length()));
+    }
+
+    private static void moveOver(File source, File destination) throws IOException {
+        if (!source.renameTo(destination)) {
+            // not on the same file system, so copy it next to the destination and rename that
+            File copy = new File(destination.getParentFile(), destination.getName() + ".tmp");
+            FileUtils.copyFile(source, copy);
+            if (!copy.renameTo(destination)) {
+                FileUtils.deleteQuietly(copy);
+                throw new IOException("Could not move " + source + " to " + destination);
+            }
+            FileUtils.deleteQuietly(source);
+        }
+    }
+
+    private static void retire(File csv) {
+        if (csv.exists()) {
+            File imported = new File(csv.getParentFile(), csv.getName() + ".imported");
+            FileUtils.deleteQuietly(imported);
+            if (!csv.renameTo(imported)) {
+                Timber.e("%s could not be retired. It will be imported over the package!",
+                        csv.getName());
+            }
+        }
+    }
+
+    private static class HashFileFilter implements FileFilter {
+        @Override
+        public boolean accept(File file) {
+            return file.getName().endsWith(HASH_EXTENSION)
+                    && isPackage(getPackageFile(file).getName());
+        }
+    }
+}
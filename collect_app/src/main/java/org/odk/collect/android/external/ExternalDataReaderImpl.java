@@ -47,23 +47,35 @@ public class ExternalDataReaderImpl implements ExternalDataReader {
         for (Map.Entry<String, File> stringFileEntry : externalDataMap.entrySet()) {
             String dataSetName = stringFileEntry.getKey();
             File dataSetFile = stringFileEntry.getValue();
+            // facilities.columnar.csv is the facilities data set, compiled into a columnar file
+            boolean columnar = dataSetName.endsWith(ColumnarDataSet.EXTENSION);
+            if (columnar) {
+                dataSetName = dataSetName.substring(0,
+                        dataSetName.length() - ColumnarDataSet.EXTENSION.length());
+            }
             if (dataSetFile.exists()) {
                 File dbFile = new File(dataSetFile.getParentFile().getAbsolutePath(),
                         dataSetName + ".db");
-                if (dbFile.exists()) {
-                    // this means the someone updated the csv file, so we need to reload it
-                    boolean deleted = dbFile.delete();
-                    if (!deleted) {
-                        Timber.e("%s has changed but we could not delete the previous DB at %s",
-                                dataSetFile.getName(), dbFile.getAbsolutePath());
-                        continue;
-                    }
+                File columnarFile = new File(dataSetFile.getParentFile().getAbsolutePath(),
+                        dataSetName + ColumnarDataSet.EXTENSION);
+                if (!deletePreviousImport(dataSetFile, dbFile)
+                        || !deletePreviousImport(dataSetFile, columnarFile)) {
+                    continue;
                 }
                 ExternalSQLiteOpenHelper externalSQLiteOpenHelper = new ExternalSQLiteOpenHelper(
                         dbFile);
-                externalSQLiteOpenHelper.importFromCSV(dataSetFile, this, formLoaderTask);
+                if (columnar) {
+                    externalSQLiteOpenHelper.importFromCSVToColumnar(dataSetFile, this,
+                            formLoaderTask);
+                } else {
+                    externalSQLiteOpenHelper.importFromCSV(dataSetFile, this, formLoaderTask);
+                }
 
-                if (formLoaderTask.isCancelled()) {
+                if (columnar && formLoaderTask.isCancelled()) {
+                    // nothing is written until all the rows have been read
+                    Timber.w("The import was cancelled.");
+                    return;
+                } else if (formLoaderTask.isCancelled()) {
                     Timber.w(
                             "The import was cancelled, so we need to rollback.");
 
@@ -104,4 +116,15 @@ public class ExternalDataReaderImpl implements ExternalDataReader {
         }
     }
 
+    private boolean deletePreviousImport(File dataSetFile, File importedFile) {
+        // this means the someone updated the csv file, so we need to reload it
+        if (importedFile.exists() && !importedFile.delete()) {
+            Timber.e("%s has changed but we could not delete the previous import at %s",
+                    dataSetFile.getName(), importedFile.getAbsolutePath());
+            return false;
+        }
+        // a pre-built package that was installed is replaced by the import
+        FileUtils.deleteQuietly(ExternalDataPackage.getHashFile(importedFile));
+        return true;
+    }
 }
@@ -32,6 +32,7 @@ import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.exception.ExternalDataException;
 import org.odk.collect.android.exception.InvalidSyntaxException;
 import org.odk.collect.android.external.handler.ExternalDataHandlerSearch;
+import org.odk.collect.android.logic.FormController;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -93,6 +94,16 @@ public final class ExternalDataUtil {
         return null;
     }
 
+    /**
+     * Returns the search() expression of the appearance of the given prompt of the form being
+     * filled in. Each distinct appearance of the form is only parsed once.
+     */
+    public static XPathFuncExpr getSearchXPathExpression(FormEntryPrompt formEntryPrompt) {
+        FormController formController = Collect.getInstance().getFormController();
+        return SearchExpressionCache.get(formController == null ? null
+                : formController.getFormDef(), formEntryPrompt.getAppearanceHint());
+    }
+
     public static XPathFuncExpr getSearchXPathExpression(String appearance) {
         if (appearance == null) {
             appearance = "";
@@ -137,7 +148,12 @@ public final class ExternalDataUtil {
         }
     }
 
-    public static ArrayList<SelectChoice> populateExternalChoices(FormEntryPrompt formEntryPrompt,
+    /**
+     * Returns the choices of a prompt with a search() appearance. The choices found by a search
+     * are created as they are needed, so when the prompt has no other choices the list returned
+     * is the search's own.
+     */
+    public static List<SelectChoice> populateExternalChoices(FormEntryPrompt formEntryPrompt,
             XPathFuncExpr xpathfuncexpr) {
         try {
             List<SelectChoice> selectChoices = formEntryPrompt.getSelectChoices();
@@ -172,12 +188,13 @@ public final class ExternalDataUtil {
                                     value, imageColumn));
 
                     Object eval = xpathfuncexpr.eval(formInstance, evaluationContext);
-                    if (eval.getClass().isAssignableFrom(ArrayList.class)) {
+                    if (eval instanceof List) {
                         @SuppressWarnings("unchecked")
-                        List<SelectChoice> dynamicChoices = (ArrayList<SelectChoice>) eval;
-                        for (SelectChoice dynamicChoice : dynamicChoices) {
-                            returnedChoices.add(dynamicChoice);
+                        List<SelectChoice> dynamicChoices = (List<SelectChoice>) eval;
+                        if (selectChoices.size() == 1) {
+                            return dynamicChoices;
                         }
+                        returnedChoices.addAll(dynamicChoices);
                     } else {
                         throw new ExternalDataException(
                                 Collect.getInstance().getString(R.string.ext_search_return_error,
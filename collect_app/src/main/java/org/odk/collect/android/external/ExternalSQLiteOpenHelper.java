@@ -48,17 +48,23 @@ import au.com.bytecode.opencsv.CSVReader;
  */
 public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
 
+    // the user_version a .db built on the server has to have too, see ExternalDataPackage
     private static final int VERSION = 1;
     private static final char DELIMITING_CHAR = ",".charAt(0);
     private static final char QUOTE_CHAR = "\"".charAt(0);
     private static final char ESCAPE_CHAR = "\0".charAt(0);
 
+    private final File columnarFile;
     private File dataSetFile;
     private ExternalDataReader externalDataReader;
     private FormLoaderTask formLoaderTask;
+    private ColumnarDataSet columnarDataSet;
 
     public ExternalSQLiteOpenHelper(File dbFile) {
         super(new DatabaseContext(dbFile.getParentFile().getAbsolutePath()), dbFile.getName(), null, VERSION);
+        String name = dbFile.getName();
+        columnarFile = new File(dbFile.getParentFile(),
+                name.substring(0, name.lastIndexOf('.')) + ColumnarDataSet.EXTENSION);
     }
 
     public void importFromCSV(File dataSetFile, ExternalDataReader externalDataReader,
@@ -77,6 +83,49 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
         }
     }
 
+    /**
+     * Imports the data set into a {@link ColumnarDataSet} next to the database, instead of into
+     * the database, which is then never created.
+     */
+    public void importFromCSVToColumnar(File dataSetFile, ExternalDataReader externalDataReader,
+            FormLoaderTask formLoaderTask) {
+        this.dataSetFile = dataSetFile;
+        this.externalDataReader = externalDataReader;
+        this.formLoaderTask = formLoaderTask;
+
+        try {
+            onCreateNamed(null, null);
+        } catch (Exception e) {
+            throw new ExternalDataException(
+                    Collect.getInstance().getString(R.string.ext_import_generic_error,
+                            dataSetFile.getName(), e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Returns the data set if it was imported by {@link #importFromCSVToColumnar}, null if it
+     * was imported into the database.
+     */
+    public synchronized ColumnarDataSet getColumnarDataSet() {
+        if (columnarDataSet == null && columnarFile.exists()) {
+            try {
+                columnarDataSet = ColumnarDataSet.open(columnarFile);
+            } catch (IOException e) {
+                throw new ExternalDataException(
+                        Collect.getInstance().getString(R.string.ext_import_generic_error,
+                                columnarFile.getName(), e.getMessage()), e);
+            }
+        }
+        return columnarDataSet;
+    }
+
+    @Override
+    public synchronized void close() {
+        super.close();
+        // the file is unmapped once the data set is garbage collected
+        columnarDataSet = null;
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         if (externalDataReader == null) {
@@ -97,6 +146,9 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
         }
     }
 
+    /**
+     * @param db the database to create the table in, or null to write a columnar data set
+     */
     private void onCreateNamed(SQLiteDatabase db, String tableName) throws Exception {
         Timber.w("Reading data from '%s", dataSetFile.toString());
 
@@ -135,6 +187,11 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
             sb.append("CREATE TABLE ");
             sb.append(tableName);
             sb.append(" ( ");
+
+            // the position of each column of the header row in the columns of the data set
+            final List<String> columnNames = new ArrayList<String>();
+            final int[] columnIndexes = new int[headerRow.length];
+            int keyColumn = -1;
             for (int i = 0; i < headerRow.length; i++) {
                 String columnName = headerRow[i].trim();
                 if (columnName.length() == 0) {
@@ -145,6 +202,11 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
                 }
                 String safeColumnName = ExternalDataUtil.toSafeColumnName(columnName,
                         columnNamesCache);
+                columnIndexes[i] = columnNames.size();
+                columnNames.add(safeColumnName);
+                if (keyColumn == -1 && columnName.endsWith("_key")) {
+                    keyColumn = columnIndexes[i];
+                }
                 if (safeColumnName.equals(ExternalDataUtil.SORT_COLUMN_NAME)) {
                     sortColumnAlreadyPresent = true;
                     sb.append(safeColumnName).append(" real ");
@@ -155,13 +217,21 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
             if (!sortColumnAlreadyPresent) {
                 sb.append(", ");
                 sb.append(ExternalDataUtil.SORT_COLUMN_NAME).append(" real ");
+                columnNames.add(ExternalDataUtil.SORT_COLUMN_NAME);
             }
 
             sb.append(" );");
             String sql = sb.toString();
 
-            Timber.w("Creating database for %s with query: %s", dataSetFile, sql);
-            db.execSQL(sql);
+            ColumnarDataSet.Writer columnarWriter = null;
+            if (db == null) {
+                Timber.w("Creating %s for %s", columnarFile, dataSetFile);
+                columnarWriter = new ColumnarDataSet.Writer(columnNames, keyColumn);
+            } else {
+                Timber.w("Creating database for %s with query: %s", dataSetFile, sql);
+                db.execSQL(sql);
+            }
+            final int sortColumn = columnNames.indexOf(ExternalDataUtil.SORT_COLUMN_NAME);
 
             // create the indexes.
             // save the sql for later because inserts will be much faster if we don't have
@@ -195,6 +265,8 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
                 }
 
                 ContentValues values = new ContentValues();
+                String[] columnValues = new String[columnNames.size()];
+                double sortValue = rowCount + 1;
                 if (!sortColumnAlreadyPresent) {
                     values.put(ExternalDataUtil.SORT_COLUMN_NAME, rowCount + 1);
                 }
@@ -209,16 +281,28 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
                             columnNamesCache);
                     if (safeColumnName.equals(ExternalDataUtil.SORT_COLUMN_NAME)) {
                         try {
-                            values.put(safeColumnName, Double.parseDouble(columnValue));
+                            sortValue = Double.parseDouble(columnValue);
+                            values.put(safeColumnName, sortValue);
                         } catch (NumberFormatException e) {
                             throw new ExternalDataException(Collect.getInstance().getString(
                                     R.string.ext_sortBy_numeric_error, columnValue));
                         }
                     } else {
                         values.put(safeColumnName, columnValue);
+                        columnValues[columnIndexes[i]] = columnValue;
+                    }
+                }
+                if (columnarWriter == null) {
+                    db.insertOrThrow(tableName, null, values);
+                } else {
+                    // as a real column of the table would return it
+                    columnValues[sortColumn] = String.valueOf(sortValue);
+                    if (!columnarWriter.addRow(columnValues, sortValue)) {
+                        throw new ExternalDataException(Collect.getInstance().getString(
+                                R.string.ext_columnar_too_large_error, dataSetFile.getName(),
+                                ColumnarDataSet.Writer.MAX_ROWS));
                     }
                 }
-                db.insertOrThrow(tableName, null, values);
                 row = reader.readNext();
                 rowCount++;
                 if (rowCount % 100 == 0) {
@@ -234,10 +318,14 @@ public class ExternalSQLiteOpenHelper extends SQLiteOpenHelper {
 
                 onProgress(Collect.getInstance().getString(R.string.ext_import_finalizing_message));
 
-                // now create the indexes
-                for (String createIndexCommand : createIndexesCommands) {
-                    Timber.w(createIndexCommand);
-                    db.execSQL(createIndexCommand);
+                if (columnarWriter == null) {
+                    // now create the indexes
+                    for (String createIndexCommand : createIndexesCommands) {
+                        Timber.w(createIndexCommand);
+                        db.execSQL(createIndexCommand);
+                    }
+                } else {
+                    columnarWriter.write(columnarFile);
                 }
 
                 Timber.w("Read all data from %s", dataSetFile.toString());
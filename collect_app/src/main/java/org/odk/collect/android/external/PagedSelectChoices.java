@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.external;
+
+import android.util.LruCache;
+
+import org.javarosa.core.model.SelectChoice;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list of choices that are created a page at a time, when one of them is first
+ * asked for, instead of all up front.
+ *
+ * <p>Only the last few pages are kept, so going through a long list of choices holds a bounded
+ * number of choices at any time. A choice may therefore be created again if its page was
+ * dropped; the choice that was answered is kept by the
+ * {@link org.javarosa.core.model.data.helper.Selection} made from it.</p>
+ *
+ * <p>The searchable select widgets only ask for the choices they show, and look choices up by
+ * value or label with {@link #indexOfValue(String)} and {@link #search(String)}, which ask the
+ * data set rather than create every choice. The other select widgets still create a row for
+ * every choice.</p>
+ */
+public abstract class PagedSelectChoices extends AbstractList<SelectChoice>
+        implements RandomAccess {
+
+    static final int PAGE_SIZE = 100;
+    private static final int MAX_CACHED_PAGES = 5;
+
+    private final LruCache<Integer, SelectChoice[]> pages =
+            new LruCache<Integer, SelectChoice[]>(MAX_CACHED_PAGES);
+    private int size = -1;
+
+    @Override
+    public SelectChoice get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+
+        int page = index / PAGE_SIZE;
+        SelectChoice[] choices = pages.get(page);
+        if (choices == null) {
+            int start = page * PAGE_SIZE;
+            choices = loadPage(start, Math.min(PAGE_SIZE, size() - start));
+            pages.put(page, choices);
+        }
+        return choices[index % PAGE_SIZE];
+    }
+
+    @Override
+    public int size() {
+        if (size == -1) {
+            size = countChoices();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the indexes of the choices whose label contains the given text, ignoring the case
+     * of ASCII letters as {@code LIKE} does, in list order. Every choice matches an empty text.
+     */
+    public List<Integer> search(String text) {
+        text = text.trim();
+        if (text.isEmpty()) {
+            final int count = size();
+            return new AbstractList<Integer>() {
+                @Override
+                public Integer get(int index) {
+                    return index;
+                }
+
+                @Override
+                public int size() {
+                    return count;
+                }
+            };
+        }
+        size();
+        return findLabels('%' + text + '%');
+    }
+
+    /**
+     * Returns the index of the choice with the given value, or -1 if there is none.
+     */
+    public int indexOfValue(String value) {
+        size();
+        return findValue(value);
+    }
+
+    /**
+     * Returns the number of choices. Called once, the first time the size is needed.
+     */
+    protected abstract int countChoices();
+
+    /**
+     * Returns the given number of choices, starting at the given index. Each choice's index
+     * must be set to its position in the list.
+     */
+    protected abstract SelectChoice[] loadPage(int start, int count);
+
+    /**
+     * Returns the indexes, in list order, of the choices whose label matches the given
+     * {@code LIKE} pattern. Called once the choices have been counted.
+     */
+    protected abstract List<Integer> findLabels(String likeArgument);
+
+    /**
+     * Returns the index of the choice with the given value, compared exactly, or -1. Called once
+     * the choices have been counted.
+     */
+    protected abstract int findValue(String value);
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.external;
+
+import org.javarosa.core.model.Constants;
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.model.IFormElement;
+import org.javarosa.core.model.QuestionDef;
+import org.javarosa.xpath.expr.XPathFuncExpr;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The search() expressions of the select appearances of a form, each distinct appearance parsed
+ * once.
+ *
+ * <p>Restoring an instance resolves the answer of every select against its appearance, and
+ * every select widget parses its appearance again, so a form with many repeated dynamic selects
+ * would parse the same strings over and over. The cache holds the expressions of one form at a
+ * time, the last one asked for, and is filled in when the form is loaded. Appearances with
+ * syntax errors are cached too, and their exception thrown again each time.</p>
+ */
+public final class SearchExpressionCache {
+
+    private static WeakReference<FormDef> formDefReference = new WeakReference<FormDef>(null);
+    // appearance -> XPathFuncExpr, RuntimeException or null if it has no search expression
+    private static final Map<String, Object> EXPRESSIONS = new HashMap<String, Object>();
+
+    private SearchExpressionCache() {
+    }
+
+    /**
+     * Parses the appearances of all the selects of the given form.
+     */
+    public static synchronized void load(FormDef formDef) {
+        useFormDef(formDef);
+        load(formDef, formDef.getChildren());
+    }
+
+    /**
+     * Returns the search() expression of the given appearance of a question of the given form,
+     * as {@link ExternalDataUtil#getSearchXPathExpression(String)} does.
+     */
+    public static synchronized XPathFuncExpr get(FormDef formDef, String appearance) {
+        if (formDef == null) {
+            return ExternalDataUtil.getSearchXPathExpression(appearance);
+        }
+        useFormDef(formDef);
+
+        if (!EXPRESSIONS.containsKey(appearance)) {
+            try {
+                EXPRESSIONS.put(appearance, ExternalDataUtil.getSearchXPathExpression(appearance));
+            } catch (RuntimeException e) {
+                EXPRESSIONS.put(appearance, e);
+            }
+        }
+
+        Object expression = EXPRESSIONS.get(appearance);
+        if (expression instanceof RuntimeException) {
+            throw (RuntimeException) expression;
+        }
+        return (XPathFuncExpr) expression;
+    }
+
+    private static void useFormDef(FormDef formDef) {
+        if (formDefReference.get() != formDef) {
+            formDefReference = new WeakReference<FormDef>(formDef);
+            EXPRESSIONS.clear();
+        }
+    }
+
+    private static void load(FormDef formDef, List<IFormElement> elements) {
+        if (elements == null) {
+            return;
+        }
+        for (IFormElement element : elements) {
+            if (element instanceof QuestionDef) {
+                QuestionDef question = (QuestionDef) element;
+                if (question.getControlType() == Constants.CONTROL_SELECT_ONE
+                        || question.getControlType() == Constants.CONTROL_SELECT_MULTI) {
+                    try {
+                        get(formDef, question.getAppearanceAttr());
+                    } catch (RuntimeException e) {
+                        // reported when the question is shown
+                    }
+                }
+            }
+            load(formDef, element.getChildren());
+        }
+    }
+}
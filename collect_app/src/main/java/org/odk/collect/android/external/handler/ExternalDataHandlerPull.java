@@ -24,6 +24,7 @@ import android.database.sqlite.SQLiteException;
 
 import org.javarosa.core.model.condition.EvaluationContext;
 import org.javarosa.xpath.expr.XPathFuncExpr;
+import org.odk.collect.android.external.ColumnarDataSet;
 import org.odk.collect.android.external.ExternalDataManager;
 import org.odk.collect.android.external.ExternalDataUtil;
 import org.odk.collect.android.external.ExternalSQLiteOpenHelper;
@@ -88,6 +89,10 @@ public class ExternalDataHandlerPull extends ExternalDataHandlerBase {
             if (sqLiteOpenHelper == null) {
                 return "";
             }
+            ColumnarDataSet dataSet = sqLiteOpenHelper.getColumnarDataSet();
+            if (dataSet != null) {
+                return pull(dataSet, queriedColumn, referenceColumn, referenceValue);
+            }
 
             SQLiteDatabase db = sqLiteOpenHelper.getReadableDatabase();
             String[] columns = {ExternalDataUtil.toSafeColumnName(queriedColumn)};
@@ -113,4 +118,23 @@ public class ExternalDataHandlerPull extends ExternalDataHandlerBase {
             }
         }
     }
+
+    private String pull(ColumnarDataSet dataSet, String queriedColumn, String referenceColumn,
+            String referenceValue) {
+        int column = dataSet.getColumnIndex(ExternalDataUtil.toSafeColumnName(queriedColumn));
+        int reference = dataSet.getColumnIndex(
+                ExternalDataUtil.toSafeColumnName(referenceColumn));
+        if (column == -1 || reference == -1) {
+            Timber.i("No such column: %s", column == -1 ? queriedColumn : referenceColumn);
+            return "";
+        }
+
+        int row = dataSet.findFirstRow(reference, referenceValue);
+        if (row == -1) {
+            Timber.i("Could not find a value in %s where the column %s has the value %s",
+                    queriedColumn, referenceColumn, referenceValue);
+            return "";
+        }
+        return dataSet.getValue(row, column);
+    }
 }
@@ -19,6 +19,7 @@
 package org.odk.collect.android.external.handler;
 
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 
 import org.javarosa.core.model.SelectChoice;
@@ -27,16 +28,21 @@ import org.javarosa.xpath.expr.XPathFuncExpr;
 import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.exception.ExternalDataException;
+import org.odk.collect.android.external.ColumnarDataSet;
 import org.odk.collect.android.external.ExternalDataManager;
 import org.odk.collect.android.external.ExternalDataUtil;
 import org.odk.collect.android.external.ExternalSQLiteOpenHelper;
 import org.odk.collect.android.external.ExternalSelectChoice;
+import org.odk.collect.android.external.PagedSelectChoices;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 /**
  * Author: Meletis Margaritis
@@ -133,110 +139,91 @@ public class ExternalDataHandlerSearch extends ExternalDataHandlerBase {
         // SCTO-545
         String dataSetName = normalize(XPathFuncExpr.toString(args[0]));
 
-        Cursor c = null;
-        try {
-            ExternalSQLiteOpenHelper sqLiteOpenHelper = getExternalDataManager().getDatabase(
-                    dataSetName, true);
+        ExternalSQLiteOpenHelper sqLiteOpenHelper = getExternalDataManager().getDatabase(
+                dataSetName, true);
 
-            SQLiteDatabase db = sqLiteOpenHelper.getReadableDatabase();
-            LinkedHashMap<String, String> selectColumnMap =
-                    ExternalDataUtil.createMapWithDisplayingColumns(getValueColumn(),
-                            getDisplayColumns());
-
-            List<String> columnsToFetch = new ArrayList<String>(selectColumnMap.keySet());
-            String safeImageColumn = null;
-            if (getImageColumn() != null && getImageColumn().trim().length() > 0) {
-                safeImageColumn = ExternalDataUtil.toSafeColumnName(getImageColumn());
-                columnsToFetch.add(safeImageColumn);
-            }
+        LinkedHashMap<String, String> selectColumnMap =
+                ExternalDataUtil.createMapWithDisplayingColumns(getValueColumn(),
+                        getDisplayColumns());
 
-            String[] sqlColumns = columnsToFetch.toArray(new String[columnsToFetch.size()]);
-
-            String selection;
-            String[] selectionArgs;
-
-            if (searchRows && useFilter) {
-                selection = "( " + createLikeExpression(queriedColumns) + " ) AND "
-                        + ExternalDataUtil.toSafeColumnName(filterColumn) + "=? ";
-                String[] likeArgs = externalDataSearchType.constructLikeArguments(queriedValue,
-                        queriedColumns.size());
-                selectionArgs = new String[likeArgs.length + 1];
-                System.arraycopy(likeArgs, 0, selectionArgs, 0, likeArgs.length);
-                selectionArgs[selectionArgs.length - 1] = filterValue;
-            } else if (searchRows) {
-                selection = createLikeExpression(queriedColumns);
-                selectionArgs = externalDataSearchType.constructLikeArguments(queriedValue,
-                        queriedColumns.size());
-            } else if (useFilter) {
-                selection = ExternalDataUtil.toSafeColumnName(filterColumn) + "=? ";
-                selectionArgs = new String[]{filterValue};
-            } else {
-                selection = null;
-                selectionArgs = null;
-            }
+        List<String> columnsToFetch = new ArrayList<String>(selectColumnMap.keySet());
+        String safeImageColumn = null;
+        if (getImageColumn() != null && getImageColumn().trim().length() > 0) {
+            safeImageColumn = ExternalDataUtil.toSafeColumnName(getImageColumn());
+            columnsToFetch.add(safeImageColumn);
+        }
 
-            try {
-                c = db.query(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, sqlColumns, selection,
-                        selectionArgs, null, null, ExternalDataUtil.SORT_COLUMN_NAME);
-            } catch (Exception e) {
-                if (c != null) {
-                    c.close();
-                }
-                c = db.query(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, sqlColumns, selection,
-                        selectionArgs, null, null, null);
+        ColumnarDataSet dataSet = sqLiteOpenHelper.getColumnarDataSet();
+        if (dataSet != null) {
+            ColumnarSearchResultChoices choices = new ColumnarSearchResultChoices(dataSet,
+                    columnsToFetch, selectColumnMap, safeImageColumn);
+            if (searchRows) {
+                choices.setQuery(queriedColumns,
+                        externalDataSearchType.constructLikeArguments(queriedValue, 1)[0]);
             }
-
-            return createDynamicSelectChoices(c, selectColumnMap, safeImageColumn);
-        } finally {
-            if (c != null) {
-                c.close();
+            if (useFilter) {
+                choices.setFilter(ExternalDataUtil.toSafeColumnName(filterColumn), filterValue);
             }
+            return choices;
         }
-    }
 
-    protected ArrayList<SelectChoice> createDynamicSelectChoices(Cursor c,
-            LinkedHashMap<String, String> selectColumnMap, String safeImageColumn) {
-        List<String> columnsToExcludeFromLabels = new ArrayList<String>();
-        if (safeImageColumn != null) {
-            columnsToExcludeFromLabels.add(safeImageColumn);
+        String selection;
+        String[] selectionArgs;
+
+        if (searchRows && useFilter) {
+            selection = "( " + createLikeExpression(queriedColumns) + " ) AND "
+                    + ExternalDataUtil.toSafeColumnName(filterColumn) + "=? ";
+            String[] likeArgs = externalDataSearchType.constructLikeArguments(queriedValue,
+                    queriedColumns.size());
+            selectionArgs = new String[likeArgs.length + 1];
+            System.arraycopy(likeArgs, 0, selectionArgs, 0, likeArgs.length);
+            selectionArgs[selectionArgs.length - 1] = filterValue;
+        } else if (searchRows) {
+            selection = createLikeExpression(queriedColumns);
+            selectionArgs = externalDataSearchType.constructLikeArguments(queriedValue,
+                    queriedColumns.size());
+        } else if (useFilter) {
+            selection = ExternalDataUtil.toSafeColumnName(filterColumn) + "=? ";
+            selectionArgs = new String[]{filterValue};
+        } else {
+            selection = null;
+            selectionArgs = null;
         }
 
-        ArrayList<SelectChoice> selectChoices = new ArrayList<SelectChoice>();
-        if (c.getCount() > 0) {
-            c.moveToPosition(-1);
-            int index = 0;
-            Set<String> uniqueValues = new HashSet<String>();
-            while (c.moveToNext()) {
-
-                // the value is always the first column
-                String value = c.getString(0);
-                if (!uniqueValues.contains(value)) {
-                    String label = buildLabel(c, selectColumnMap, columnsToExcludeFromLabels);
-
-                    ExternalSelectChoice selectChoice;
-                    if (label.trim().length() == 0) {
-                        selectChoice = new ExternalSelectChoice(value, value, false);
-                    } else {
-                        selectChoice = new ExternalSelectChoice(label, value, false);
-                    }
-                    selectChoice.setIndex(index);
-
-                    if (safeImageColumn != null && safeImageColumn.trim().length() > 0) {
-                        String image = c.getString(c.getColumnIndex(safeImageColumn));
-                        if (image != null && image.trim().length() > 0) {
-                            selectChoice.setImage(ExternalDataUtil.JR_IMAGES_PREFIX + image);
-                        }
-                    }
-
-                    selectChoices.add(selectChoice);
+        SearchResultChoices choices = new SearchResultChoices(sqLiteOpenHelper, columnsToFetch,
+                selection, selectionArgs, selectColumnMap, safeImageColumn);
+        // run the search and create the first page now, so that a bad query fails here rather
+        // than while the widget is being drawn
+        if (!choices.isEmpty()) {
+            choices.get(0);
+        }
+        return choices;
+    }
 
-                    index++;
+    /**
+     * Creates the choice for the row the cursor is on. The value is always the first column.
+     */
+    protected ExternalSelectChoice createSelectChoice(Cursor c, int index,
+            LinkedHashMap<String, String> selectColumnMap, String safeImageColumn,
+            List<String> columnsToExcludeFromLabels) {
+        String value = c.getString(0);
+        String label = buildLabel(c, selectColumnMap, columnsToExcludeFromLabels);
+
+        ExternalSelectChoice selectChoice;
+        if (label.trim().length() == 0) {
+            selectChoice = new ExternalSelectChoice(value, value, false);
+        } else {
+            selectChoice = new ExternalSelectChoice(label, value, false);
+        }
+        selectChoice.setIndex(index);
 
-                    uniqueValues.add(value);
-                }
+        if (safeImageColumn != null && safeImageColumn.trim().length() > 0) {
+            String image = c.getString(c.getColumnIndex(safeImageColumn));
+            if (image != null && image.trim().length() > 0) {
+                selectChoice.setImage(ExternalDataUtil.JR_IMAGES_PREFIX + image);
             }
         }
-        return selectChoices;
+        return selectChoice;
     }
 
     protected String createLikeExpression(List<String> queriedColumns) {
@@ -287,4 +274,391 @@ public class ExternalDataHandlerSearch extends ExternalDataHandlerBase {
         }
         return sb.toString();
     }
+
+    /**
+     * The choices found by a search, one per distinct value, in the order of the first row with
+     * each value. The search itself only reads the row ids of those rows; the rows are read and
+     * turned into choices a page at a time, by row id.
+     */
+    private class SearchResultChoices extends PagedSelectChoices {
+
+        private static final String ROW_ID = "_rowid";
+
+        private final ExternalSQLiteOpenHelper sqLiteOpenHelper;
+        private final String[] sqlColumns;
+        private final String selection;
+        private final String[] selectionArgs;
+        private final LinkedHashMap<String, String> selectColumnMap;
+        private final String safeImageColumn;
+        private final List<String> columnsToExcludeFromLabels = new ArrayList<String>();
+        private final List<String> labelColumns;
+        private long[] rowIds;
+        // the row id of each choice in the high bits and its index in the low ones, by row id
+        private long[] indexesByRowId;
+
+        SearchResultChoices(ExternalSQLiteOpenHelper sqLiteOpenHelper, List<String> columnsToFetch,
+                String selection, String[] selectionArgs,
+                LinkedHashMap<String, String> selectColumnMap, String safeImageColumn) {
+            this.sqLiteOpenHelper = sqLiteOpenHelper;
+            this.selection = selection;
+            this.selectionArgs = selectionArgs;
+            this.selectColumnMap = selectColumnMap;
+            this.safeImageColumn = safeImageColumn;
+
+            // the row id comes last so that the label columns keep their positions
+            List<String> columns = new ArrayList<String>(columnsToFetch);
+            columns.add("rowid AS " + ROW_ID);
+            sqlColumns = columns.toArray(new String[columns.size()]);
+
+            if (safeImageColumn != null) {
+                columnsToExcludeFromLabels.add(safeImageColumn);
+            }
+            columnsToExcludeFromLabels.add(ROW_ID);
+            labelColumns = getLabelColumns(columnsToFetch, safeImageColumn);
+        }
+
+        @Override
+        protected int countChoices() {
+            SQLiteDatabase db = sqLiteOpenHelper.getReadableDatabase();
+            // the value is always the first column; values differing only in case are distinct
+            String groupBy = sqlColumns[0] + " COLLATE BINARY";
+
+            // a bare column of a query with a single min() comes from the row with the minimum
+            Cursor c = null;
+            try {
+                try {
+                    c = db.query(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, new String[]{"rowid",
+                            "MIN(" + ExternalDataUtil.SORT_COLUMN_NAME + ") AS _sort"},
+                            selection, selectionArgs, groupBy, null, "_sort, rowid");
+                } catch (Exception e) {
+                    c = db.query(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME,
+                            new String[]{"MIN(rowid) AS _first"}, selection, selectionArgs,
+                            groupBy, null, "_first");
+                }
+
+                rowIds = new long[c.getCount()];
+                for (int i = 0; c.moveToNext(); i++) {
+                    rowIds[i] = c.getLong(0);
+                }
+                return rowIds.length;
+            } finally {
+                if (c != null) {
+                    c.close();
+                }
+            }
+        }
+
+        @Override
+        protected SelectChoice[] loadPage(int start, int count) {
+            StringBuilder pageSelection = new StringBuilder("rowid IN (");
+            String[] pageSelectionArgs = new String[count];
+            Map<Long, Integer> indexes = new HashMap<Long, Integer>();
+            for (int i = 0; i < count; i++) {
+                pageSelection.append(i > 0 ? ",?" : "?");
+                pageSelectionArgs[i] = Long.toString(rowIds[start + i]);
+                indexes.put(rowIds[start + i], start + i);
+            }
+            pageSelection.append(')');
+
+            SelectChoice[] choices = new SelectChoice[count];
+            Cursor c = sqLiteOpenHelper.getReadableDatabase().query(
+                    ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, sqlColumns,
+                    pageSelection.toString(), pageSelectionArgs, null, null, null);
+            try {
+                int rowIdColumn = c.getColumnIndex(ROW_ID);
+                while (c.moveToNext()) {
+                    int index = indexes.get(c.getLong(rowIdColumn));
+                    choices[index - start] = createSelectChoice(c, index, selectColumnMap,
+                            safeImageColumn, columnsToExcludeFromLabels);
+                }
+            } finally {
+                c.close();
+            }
+            return choices;
+        }
+
+        @Override
+        protected List<Integer> findLabels(String likeArgument) {
+            String[] likeArgs = new String[labelColumns.size()];
+            Arrays.fill(likeArgs, likeArgument);
+            return findRows(createLikeExpression(labelColumns), likeArgs);
+        }
+
+        @Override
+        protected int findValue(String value) {
+            List<Integer> indexes = findRows(sqlColumns[0] + " COLLATE BINARY = ?",
+                    new String[]{value});
+            return indexes.isEmpty() ? -1 : indexes.get(0);
+        }
+
+        /**
+         * Returns the indexes, in list order, of the choices whose row matches the given
+         * condition as well as the selection of the search. Rows of a value that aren't the
+         * one its choice was created from are left out.
+         */
+        private List<Integer> findRows(String condition, String[] conditionArgs) {
+            String where = "( " + condition + " )";
+            String[] whereArgs = conditionArgs;
+            if (selection != null) {
+                where = "( " + selection + " ) AND " + where;
+                whereArgs = new String[selectionArgs.length + conditionArgs.length];
+                System.arraycopy(selectionArgs, 0, whereArgs, 0, selectionArgs.length);
+                System.arraycopy(conditionArgs, 0, whereArgs, selectionArgs.length,
+                        conditionArgs.length);
+            }
+
+            List<Integer> indexes = new ArrayList<Integer>();
+            Cursor c = sqLiteOpenHelper.getReadableDatabase().query(
+                    ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, new String[]{"rowid"}, where,
+                    whereArgs, null, null, null);
+            try {
+                while (c.moveToNext()) {
+                    int index = indexOfRowId(c.getLong(0));
+                    if (index != -1) {
+                        indexes.add(index);
+                    }
+                }
+            } finally {
+                c.close();
+            }
+            Collections.sort(indexes);
+            return indexes;
+        }
+
+        private int indexOfRowId(long rowId) {
+            if (indexesByRowId == null) {
+                indexesByRowId = new long[rowIds.length];
+                for (int i = 0; i < rowIds.length; i++) {
+                    indexesByRowId[i] = rowIds[i] << 32 | i;
+                }
+                Arrays.sort(indexesByRowId);
+            }
+
+            int low = 0;
+            int high = indexesByRowId.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (indexesByRowId[middle] >>> 32 < rowId) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low < indexesByRowId.length && indexesByRowId[low] >>> 32 == rowId
+                    ? (int) indexesByRowId[low] : -1;
+        }
+    }
+
+    /**
+     * Returns the columns the labels of the choices are made of, or the value column if there
+     * are none, since the label then is the value.
+     */
+    private static List<String> getLabelColumns(List<String> columnsToFetch,
+            String safeImageColumn) {
+        List<String> labelColumns = new ArrayList<String>(
+                columnsToFetch.subList(1, columnsToFetch.size()));
+        labelColumns.remove(safeImageColumn);
+        return labelColumns.isEmpty() ? columnsToFetch.subList(0, 1) : labelColumns;
+    }
+
+    /**
+     * The choices found by a search of a {@link ColumnarDataSet}, in the same order as from a
+     * table. The conditions are evaluated once per distinct value of their column, then the rows
+     * are scanned by the codes of their values.
+     */
+    private class ColumnarSearchResultChoices extends PagedSelectChoices {
+
+        private final ColumnarDataSet dataSet;
+        private final String[] columnNames;
+        private final int[] columns;
+        private final LinkedHashMap<String, String> selectColumnMap;
+        private final String safeImageColumn;
+        private final List<String> columnsToExcludeFromLabels = new ArrayList<String>();
+        private final int[] labelColumns;
+        private int[] queriedColumns;
+        private String likeArgument;
+        private int filterColumn = -1;
+        private String filterValue;
+        private int[] rows;
+
+        // by sort value, then by position in the .csv file
+        private final Comparator<Integer> order = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int result = Double.compare(dataSet.getSortValue(a), dataSet.getSortValue(b));
+                return result != 0 ? result : dataSet.getOrdinal(a) - dataSet.getOrdinal(b);
+            }
+        };
+
+        ColumnarSearchResultChoices(ColumnarDataSet dataSet, List<String> columnsToFetch,
+                LinkedHashMap<String, String> selectColumnMap, String safeImageColumn) {
+            this.dataSet = dataSet;
+            this.selectColumnMap = selectColumnMap;
+            this.safeImageColumn = safeImageColumn;
+            columnNames = columnsToFetch.toArray(new String[columnsToFetch.size()]);
+            columns = getColumns(columnsToFetch);
+            labelColumns = getColumns(getLabelColumns(columnsToFetch, safeImageColumn));
+
+            if (safeImageColumn != null) {
+                columnsToExcludeFromLabels.add(safeImageColumn);
+            }
+        }
+
+        void setQuery(List<String> queriedColumns, String likeArgument) {
+            this.queriedColumns = getColumns(queriedColumns);
+            this.likeArgument = likeArgument;
+        }
+
+        void setFilter(String filterColumn, String filterValue) {
+            this.filterColumn = getColumns(Arrays.asList(filterColumn))[0];
+            this.filterValue = filterValue;
+        }
+
+        private int[] getColumns(List<String> columnNames) {
+            int[] indexes = new int[columnNames.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = dataSet.getColumnIndex(columnNames.get(i));
+                if (indexes[i] == -1) {
+                    throw new ExternalDataException(Collect.getInstance().getString(
+                            R.string.ext_search_generic_error,
+                            "no such column: " + columnNames.get(i)));
+                }
+            }
+            return indexes;
+        }
+
+        @Override
+        protected int countChoices() {
+            boolean[][] queriedCodes = null;
+            if (queriedColumns != null) {
+                queriedCodes = new boolean[queriedColumns.length][];
+                for (int i = 0; i < queriedColumns.length; i++) {
+                    queriedCodes[i] = dataSet.findCodes(queriedColumns[i],
+                            new ColumnarDataSet.ValueFilter() {
+                                @Override
+                                public boolean accept(String value) {
+                                    return ColumnarDataSet.like(value, likeArgument);
+                                }
+                            });
+                }
+            }
+            boolean[] filterCodes = null;
+            if (filterColumn != -1) {
+                filterCodes = dataSet.findCodes(filterColumn, new ColumnarDataSet.ValueFilter() {
+                    @Override
+                    public boolean accept(String value) {
+                        return ColumnarDataSet.NOCASE.compare(value, filterValue) == 0;
+                    }
+                });
+            }
+
+            // the first row of each value, the value always being the first column
+            int[] firstRows = new int[dataSet.getDictionarySize(columns[0])];
+            Arrays.fill(firstRows, -1);
+            int count = 0;
+            for (int row = 0; row < dataSet.getRowCount(); row++) {
+                if ((filterCodes != null && !filterCodes[dataSet.getCode(row, filterColumn)])
+                        || (queriedCodes != null && !matches(queriedCodes, row))) {
+                    continue;
+                }
+                int value = dataSet.getCode(row, columns[0]);
+                if (firstRows[value] == -1) {
+                    firstRows[value] = row;
+                    count++;
+                } else if (order.compare(row, firstRows[value]) < 0) {
+                    firstRows[value] = row;
+                }
+            }
+
+            Integer[] sorted = new Integer[count];
+            count = 0;
+            for (int row : firstRows) {
+                if (row != -1) {
+                    sorted[count++] = row;
+                }
+            }
+            Arrays.sort(sorted, order);
+
+            rows = new int[count];
+            for (int i = 0; i < count; i++) {
+                rows[i] = sorted[i];
+            }
+            return count;
+        }
+
+        private boolean matches(boolean[][] queriedCodes, int row) {
+            for (int i = 0; i < queriedColumns.length; i++) {
+                if (queriedCodes[i][dataSet.getCode(row, queriedColumns[i])]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        protected SelectChoice[] loadPage(int start, int count) {
+            // the labels are built from a cursor, as for a table
+            MatrixCursor c = new MatrixCursor(columnNames, count);
+            for (int i = 0; i < count; i++) {
+                Object[] values = new Object[columns.length];
+                for (int j = 0; j < columns.length; j++) {
+                    values[j] = dataSet.getValue(rows[start + i], columns[j]);
+                }
+                c.addRow(values);
+            }
+
+            SelectChoice[] choices = new SelectChoice[count];
+            try {
+                for (int i = 0; c.moveToNext(); i++) {
+                    choices[i] = createSelectChoice(c, start + i, selectColumnMap,
+                            safeImageColumn, columnsToExcludeFromLabels);
+                }
+            } finally {
+                c.close();
+            }
+            return choices;
+        }
+
+        @Override
+        protected List<Integer> findLabels(final String likeArgument) {
+            boolean[][] labelCodes = new boolean[labelColumns.length][];
+            for (int j = 0; j < labelColumns.length; j++) {
+                labelCodes[j] = dataSet.findCodes(labelColumns[j],
+                        new ColumnarDataSet.ValueFilter() {
+                            @Override
+                            public boolean accept(String value) {
+                                return ColumnarDataSet.like(value, likeArgument);
+                            }
+                        });
+            }
+
+            List<Integer> indexes = new ArrayList<Integer>();
+            for (int i = 0; i < rows.length; i++) {
+                for (int j = 0; j < labelColumns.length; j++) {
+                    if (labelCodes[j][dataSet.getCode(rows[i], labelColumns[j])]) {
+                        indexes.add(i);
+                        break;
+                    }
+                }
+            }
+            return indexes;
+        }
+
+        @Override
+        protected int findValue(final String value) {
+            boolean[] valueCodes = dataSet.findCodes(columns[0],
+                    new ColumnarDataSet.ValueFilter() {
+                        @Override
+                        public boolean accept(String candidate) {
+                            return candidate.equals(value);
+                        }
+                    });
+            for (int i = 0; i < rows.length; i++) {
+                if (valueCodes[dataSet.getCode(rows[i], columns[0])]) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
 }
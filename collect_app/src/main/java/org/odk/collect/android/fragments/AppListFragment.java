@@ -15,6 +15,7 @@ limitations under the License.
 package org.odk.collect.android.fragments;
 
 import android.database.Cursor;
+import android.os.Handler;
 import android.preference.PreferenceManager;
 import android.support.design.widget.BottomSheetDialog;
 import android.support.v4.app.ListFragment;
@@ -45,6 +46,7 @@ import java.util.List;
 import static org.odk.collect.android.utilities.ApplicationConstants.SortingOrder.BY_NAME_ASC;
 
 abstract class AppListFragment extends ListFragment {
+    private static final long FILTER_DELAY_MS = 300;
 
     protected final ActivityLogger logger = Collect.getInstance().getActivityLogger();
     protected String[] sortingOptions;
@@ -57,6 +59,14 @@ abstract class AppListFragment extends ListFragment {
     private BottomSheetDialog bottomSheetDialog;
     private String filterText;
 
+    private final Handler handler = new Handler();
+    private final Runnable filter = new Runnable() {
+        @Override
+        public void run() {
+            updateAdapter();
+        }
+    };
+
     // toggles to all checked or all unchecked
     // returns:
     // true if result is all checked
@@ -112,6 +122,7 @@ abstract class AppListFragment extends ListFragment {
             @Override
             public boolean onQueryTextSubmit(String query) {
                 filterText = query;
+                handler.removeCallbacks(filter);
                 updateAdapter();
                 searchView.clearFocus();
                 return false;
@@ -120,7 +131,9 @@ abstract class AppListFragment extends ListFragment {
             @Override
             public boolean onQueryTextChange(String newText) {
                 filterText = newText;
-                updateAdapter();
+                // filter once typing pauses rather than on every keystroke
+                handler.removeCallbacks(filter);
+                handler.postDelayed(filter, FILTER_DELAY_MS);
                 return false;
             }
         });
@@ -155,6 +168,12 @@ abstract class AppListFragment extends ListFragment {
         updateAdapter();
     }
 
+    @Override
+    public void onDestroyView() {
+        handler.removeCallbacks(filter);
+        super.onDestroyView();
+    }
+
     @Override
     public void onResume() {
         super.onResume();
@@ -204,6 +223,16 @@ abstract class AppListFragment extends ListFragment {
         }
     }
 
+    /**
+     * Remembers the checked rows, so that they stay checked when the list is loaded again.
+     */
+    protected void updateSelectedInstances() {
+        selectedInstances.clear();
+        for (long id : getListView().getCheckedItemIds()) {
+            selectedInstances.add(id);
+        }
+    }
+
     protected abstract void updateAdapter();
 
     protected abstract String getSortingOrderKey();
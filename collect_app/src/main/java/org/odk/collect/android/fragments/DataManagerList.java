@@ -17,10 +17,10 @@ package org.odk.collect.android.fragments;
 import android.app.AlertDialog;
 import android.app.ProgressDialog;
 import android.content.DialogInterface;
-import android.database.Cursor;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
+import android.support.v4.content.CursorLoader;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -35,6 +35,7 @@ import org.odk.collect.android.listeners.DiskSyncListener;
 import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
 import org.odk.collect.android.tasks.DeleteInstancesTask;
 import org.odk.collect.android.tasks.InstanceSyncTask;
+import org.odk.collect.android.utilities.CursorListPager;
 import org.odk.collect.android.utilities.ToastUtils;
 
 import java.util.ArrayList;
@@ -129,9 +130,10 @@ public class DataManagerList extends InstanceListFragment
         int[] view = new int[]{R.id.text1, R.id.text2};
 
         listAdapter = new SimpleCursorAdapter(getActivity(),
-                R.layout.two_item_multiple_choice, getCursor(), data, view);
+                R.layout.two_item_multiple_choice, null, data, view, 0);
         setListAdapter(listAdapter);
-        checkPreviouslyCheckedItems();
+        listPager = new CursorListPager(getLoaderManager(), 0, getListView(), listAdapter, this);
+        updateAdapter();
     }
 
     @Override
@@ -140,13 +142,9 @@ public class DataManagerList extends InstanceListFragment
     }
 
     @Override
-    protected void updateAdapter() {
-        listAdapter.changeCursor(getCursor());
-        super.updateAdapter();
-    }
-
-    private Cursor getCursor() {
-        return new InstancesDao().getSavedInstancesCursor(getFilterText(), getSortingOrder());
+    public CursorLoader onCreateCursorLoader(int limit) {
+        return new InstancesDao().getSavedInstancesCursorLoader(getFilterText(), getSortingOrder(),
+                limit);
     }
 
     /**
@@ -262,10 +260,7 @@ public class DataManagerList extends InstanceListFragment
                 break;
 
             case R.id.toggle_button:
-                ListView lv = getListView();
-                boolean allChecked = toggleChecked(lv);
-                toggleButtonLabel(toggleButton, getListView());
-                deleteButton.setEnabled(allChecked);
+                toggleAllChecked();
                 break;
         }
     }
@@ -23,11 +23,13 @@ import android.widget.Button;
 import android.widget.ListView;
 
 import org.odk.collect.android.R;
+import org.odk.collect.android.utilities.CursorListPager;
 
-
-public abstract class FileManagerFragment extends AppListFragment {
+public abstract class FileManagerFragment extends AppListFragment
+        implements CursorListPager.Callbacks {
     protected Button deleteButton;
     protected Button toggleButton;
+    protected CursorListPager listPager;
 
     @Nullable
     @Override
@@ -47,10 +49,8 @@ public abstract class FileManagerFragment extends AppListFragment {
         getListView().setChoiceMode(ListView.CHOICE_MODE_MULTIPLE);
         getListView().setItemsCanFocus(false);
         deleteButton.setEnabled(false);
+        toggleButton.setEnabled(false);
 
-        if (getListView().getCount() == 0) {
-            toggleButton.setEnabled(false);
-        }
         sortingOptions = new String[]{
                 getString(R.string.sort_by_name_asc), getString(R.string.sort_by_name_desc),
                 getString(R.string.sort_by_date_asc), getString(R.string.sort_by_date_desc)
@@ -79,9 +79,31 @@ public abstract class FileManagerFragment extends AppListFragment {
         deleteButton.setEnabled(areCheckedItems());
     }
 
+    /**
+     * Checks every row, once all of them are loaded, or unchecks them if they all are checked.
+     */
+    protected void toggleAllChecked() {
+        listPager.loadAll(new Runnable() {
+            @Override
+            public void run() {
+                boolean allChecked = toggleChecked(getListView());
+                updateSelectedInstances();
+                toggleButtonLabel(toggleButton, getListView());
+                deleteButton.setEnabled(allChecked);
+            }
+        });
+    }
+
     @Override
     protected void updateAdapter() {
+        listPager.reload();
+    }
+
+    @Override
+    public void onCursorLoaded() {
         checkPreviouslyCheckedItems();
+        toggleButton.setEnabled(getListView().getCount() > 0);
+        toggleButtonLabel(toggleButton, getListView());
         deleteButton.setEnabled(areCheckedItems());
     }
 }
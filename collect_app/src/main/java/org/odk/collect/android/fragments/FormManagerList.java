@@ -16,10 +16,10 @@ package org.odk.collect.android.fragments;
 
 import android.app.AlertDialog;
 import android.content.DialogInterface;
-import android.database.Cursor;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
+import android.support.v4.content.CursorLoader;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -33,6 +33,7 @@ import org.odk.collect.android.listeners.DiskSyncListener;
 import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
 import org.odk.collect.android.tasks.DeleteFormsTask;
 import org.odk.collect.android.tasks.DiskSyncTask;
+import org.odk.collect.android.utilities.CursorListPager;
 import org.odk.collect.android.utilities.ToastUtils;
 import org.odk.collect.android.utilities.VersionHidingCursorAdapter;
 
@@ -123,9 +124,10 @@ public class FormManagerList extends FormListFragment implements DiskSyncListene
 
         listAdapter = new VersionHidingCursorAdapter(
                 FormsColumns.JR_VERSION, getActivity(),
-                R.layout.two_item_multiple_choice, getCursor(), data, view);
+                R.layout.two_item_multiple_choice, null, data, view);
         setListAdapter(listAdapter);
-        checkPreviouslyCheckedItems();
+        listPager = new CursorListPager(getLoaderManager(), 0, getListView(), listAdapter, this);
+        updateAdapter();
     }
 
     @Override
@@ -134,13 +136,8 @@ public class FormManagerList extends FormListFragment implements DiskSyncListene
     }
 
     @Override
-    protected void updateAdapter() {
-        listAdapter.changeCursor(getCursor());
-        super.updateAdapter();
-    }
-
-    private Cursor getCursor() {
-        return new FormsDao().getFormsCursor(getFilterText(), getSortingOrder());
+    public CursorLoader onCreateCursorLoader(int limit) {
+        return new FormsDao().getFormsCursorLoader(getFilterText(), getSortingOrder(), limit);
     }
 
     /**
@@ -244,10 +241,7 @@ public class FormManagerList extends FormListFragment implements DiskSyncListene
                 break;
 
             case R.id.toggle_button:
-                ListView lv = getListView();
-                boolean allChecked = toggleChecked(lv);
-                toggleButtonLabel(toggleButton, getListView());
-                deleteButton.setEnabled(allChecked);
+                toggleAllChecked();
                 break;
         }
     }
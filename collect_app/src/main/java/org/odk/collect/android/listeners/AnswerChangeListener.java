@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.listeners;
+
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.instance.TreeReference;
+
+/**
+ * Notified by the FormController when the instance it holds changes.
+ */
+public interface AnswerChangeListener {
+
+    /**
+     * Called when a question gets a different answer than it had.
+     */
+    void onAnswerChanged(TreeReference ref, IAnswerData answer);
+
+    /**
+     * Called when a repeat is added or deleted.
+     */
+    void onRepeatsChanged();
+}
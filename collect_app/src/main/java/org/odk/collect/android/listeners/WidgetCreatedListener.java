@@ -0,0 +1,28 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.listeners;
+
+import org.odk.collect.android.widgets.QuestionWidget;
+
+/**
+ * Notified when a field-list screen creates a question widget after it was first shown, as
+ * happens when a long list is scrolled.
+ */
+public interface WidgetCreatedListener {
+
+    void widgetCreated(QuestionWidget widget);
+}
@@ -22,16 +22,19 @@ import org.javarosa.core.model.IFormElement;
 import org.javarosa.core.model.QuestionDef;
 import org.javarosa.core.model.SubmissionProfile;
 import org.javarosa.core.model.ValidateOutcome;
+import org.javarosa.core.model.condition.Constraint;
 import org.javarosa.core.model.condition.EvaluationContext;
 import org.javarosa.core.model.data.IAnswerData;
 import org.javarosa.core.model.data.StringData;
 import org.javarosa.core.model.instance.FormInstance;
 import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.core.model.instance.TreeReference;
 import org.javarosa.core.services.IPropertyManager;
 import org.javarosa.core.services.PrototypeManager;
 import org.javarosa.core.services.transport.payload.ByteArrayPayload;
 import org.javarosa.form.api.FormEntryCaption;
 import org.javarosa.form.api.FormEntryController;
+import org.javarosa.form.api.FormEntryModel;
 import org.javarosa.form.api.FormEntryPrompt;
 import org.javarosa.model.xform.XFormSerializingVisitor;
 import org.javarosa.model.xform.XFormsModule;
@@ -40,6 +43,9 @@ import org.javarosa.xform.parse.XFormParser;
 import org.javarosa.xpath.XPathParseTool;
 import org.javarosa.xpath.expr.XPathExpression;
 import org.odk.collect.android.exception.JavaRosaException;
+import org.odk.collect.android.listeners.AnswerChangeListener;
+import org.odk.collect.android.tracing.Span;
+import org.odk.collect.android.tracing.Tracer;
 import org.odk.collect.android.utilities.TimerLogger;
 import org.odk.collect.android.views.ODKView;
 
@@ -48,6 +54,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import timber.log.Timber;
 
@@ -165,12 +172,41 @@ public class FormController {
     private FormEntryController formEntryController;
     private FormIndex indexWaitingForData = null;
 
+    // the answers that last passed validation, as they are written to the instance
+    private final Map<TreeReference, String> validatedAnswers = new HashMap<>();
+    // by generic reference, whether a constraint only depends on the value it constrains
+    private final Map<TreeReference, Boolean> selfContainedConstraints = new HashMap<>();
+    // until the loader found out otherwise, the form may use functions such as now()
+    private boolean usesVolatileFunctions = true;
+    private Boolean hasRepeatCounts;
+    private boolean repeatsChanged;
+    private int answerRevision;
+
+    private AnswerChangeListener answerChangeListener;
+
     public FormController(File mediaFolder, FormEntryController fec, File instancePath) {
         this.mediaFolder = mediaFolder;
         formEntryController = fec;
         this.instancePath = instancePath;
     }
 
+    public void setAnswerChangeListener(AnswerChangeListener listener) {
+        answerChangeListener = listener;
+    }
+
+    /**
+     * Tells whether the form uses functions whose value changes without any answer changing,
+     * such as now(), today() or random(). Their calculations and constraints are only up to date
+     * after the full validation.
+     */
+    public void setUsesVolatileFunctions(boolean usesVolatileFunctions) {
+        this.usesVolatileFunctions = usesVolatileFunctions;
+    }
+
+    boolean usesVolatileFunctions() {
+        return usesVolatileFunctions;
+    }
+
     public FormDef getFormDef() {
         return formEntryController.getModel().getForm();
     }
@@ -464,7 +500,12 @@ public class FormController {
      */
     public int answerQuestion(FormIndex index, IAnswerData data) throws JavaRosaException {
         try {
-            return formEntryController.answerQuestion(index, data, true);
+            String previousAnswer = getAnswerText(index);
+            int status = formEntryController.answerQuestion(index, data, true);
+            if (status == FormEntryController.ANSWER_OK) {
+                notifyIfAnswerChanged(index, previousAnswer, data);
+            }
+            return status;
         } catch (Exception e) {
             throw new JavaRosaException(e);
         }
@@ -475,11 +516,37 @@ public class FormController {
      * Constraints are ignored on 'jump to', so answers can be outside of constraints. We don't
      * allow saving to disk, though, until all answers conform to their constraints/requirements.
      *
+     * <p>Only finalizing can fail validation. {@link FormDef#validate(boolean)} answers every
+     * question again, which reruns the calculations depending on them and creates the repeats of
+     * repeat counts. Answering a question already reruns the calculations depending on it, so
+     * the full validation is only needed when that isn't enough: when the form has repeat
+     * counts or volatile functions (see {@link #setUsesVolatileFunctions(boolean)}), or when
+     * repeats were added or deleted since the last validation. Otherwise saves that don't
+     * finalize skip validation, and finalizing checks the questions without answering them
+     * again, only evaluating a constraint again if the answer changed since it last passed or
+     * the constraint may depend on other nodes.</p>
+     *
      * @return ANSWER_OK and leave index unchanged or change index to bad value and return error
      * type.
      */
     public int validateAnswers(boolean markCompleted) throws JavaRosaException {
-        ValidateOutcome outcome = getFormDef().validate(markCompleted);
+        ValidateOutcome outcome;
+        try {
+            if (needsFullValidation()) {
+                validatedAnswers.clear();
+                repeatsChanged = false;
+                outcome = getFormDef().validate(markCompleted);
+            } else if (markCompleted) {
+                outcome = validateChangedAnswers();
+            } else {
+                outcome = null;
+            }
+        } catch (RuntimeException e) {
+            throw new JavaRosaException(e);
+        }
+        if (!markCompleted) {
+            return FormEntryController.ANSWER_OK;
+        }
         if (outcome != null) {
             this.jumpToIndex(outcome.failedPrompt);
             return outcome.outcome;
@@ -487,6 +554,126 @@ public class FormController {
         return FormEntryController.ANSWER_OK;
     }
 
+    /**
+     * Checks the required flags and constraints of the relevant questions in form order, the way
+     * {@link FormDef#validate(boolean)} does, and returns the first failure or null.
+     */
+    private ValidateOutcome validateChangedAnswers() {
+        FormDef formDef = getFormDef();
+        FormEntryModel model = formEntryController.getModel();
+        FormIndex index = FormIndex.createBeginningOfFormIndex();
+        while (true) {
+            do {
+                index = model.incrementIndex(index, true);
+            } while (index.isInForm() && !model.isIndexRelevant(index));
+
+            int event = model.getEvent(index);
+            if (event == FormEntryController.EVENT_END_OF_FORM) {
+                return null;
+            }
+            if (event != FormEntryController.EVENT_QUESTION) {
+                continue;
+            }
+
+            TreeReference ref = index.getReference();
+            TreeElement element = formDef.getMainInstance().resolveReference(ref);
+            IAnswerData answer = element.getValue();
+            String answerText = answer != null ? answer.uncast().getString() : null;
+            int outcome = FormEntryController.ANSWER_OK;
+            if (element.isRequired() && answer == null) {
+                outcome = FormEntryController.ANSWER_REQUIRED_BUT_EMPTY;
+            } else if (needsConstraintCheck(index, element, answerText)
+                    && !formDef.evaluateConstraint(ref, answer)) {
+                outcome = FormEntryController.ANSWER_CONSTRAINT_VIOLATED;
+            }
+
+            if (outcome != FormEntryController.ANSWER_OK) {
+                validatedAnswers.remove(ref);
+                return new ValidateOutcome(index, outcome);
+            }
+            validatedAnswers.put(ref, answerText);
+        }
+    }
+
+    private boolean needsFullValidation() {
+        if (hasRepeatCounts == null) {
+            hasRepeatCounts = hasRepeatCounts(getFormDef());
+        }
+        return usesVolatileFunctions || hasRepeatCounts || repeatsChanged;
+    }
+
+    private static boolean hasRepeatCounts(IFormElement element) {
+        if (element instanceof GroupDef && ((GroupDef) element).getCountReference() != null) {
+            return true;
+        }
+        if (element.getChildren() != null) {
+            for (IFormElement child : element.getChildren()) {
+                if (hasRepeatCounts(child)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean needsConstraintCheck(FormIndex index, TreeElement element,
+                                         String answerText) {
+        TreeReference ref = index.getReference();
+        if (answerText == null || getQuestionPrompt(index).getQuestion().isComplex()) {
+            // JavaRosa doesn't check these constraints when answering either
+            return false;
+        }
+        // compared by value, a calculation may have changed the answer without answering it
+        boolean unchanged = validatedAnswers.containsKey(ref)
+                && answerText.equals(validatedAnswers.get(ref));
+        return !unchanged || isInRepeat(index) || !isConstraintSelfContained(element, ref);
+    }
+
+    /**
+     * Returns true if the constraint of the given question only refers to the question itself.
+     * When the references of the constraint can't be determined, or it has none, it is assumed
+     * to depend on other nodes, so it is evaluated on every validation.
+     */
+    private boolean isConstraintSelfContained(TreeElement element, TreeReference ref) {
+        TreeReference genericRef = ref.genericize();
+        Boolean selfContained = selfContainedConstraints.get(genericRef);
+        if (selfContained == null) {
+            selfContained = false;
+            Constraint constraint = element.getConstraint();
+            if (constraint == null || constraint.constraint == null) {
+                selfContained = true;
+            } else {
+                try {
+                    List<TreeReference> triggers = constraint.constraint.getTriggers(genericRef);
+                    selfContained = !triggers.isEmpty();
+                    for (TreeReference trigger : triggers) {
+                        if (!trigger.anchor(genericRef).genericize().equals(genericRef)) {
+                            selfContained = false;
+                            break;
+                        }
+                    }
+                } catch (Exception e) {
+                    Timber.w(e, "Unable to find the references of the constraint of %s", ref);
+                }
+            }
+            selfContainedConstraints.put(genericRef, selfContained);
+        }
+        return selfContained;
+    }
+
+    /**
+     * Returns true if the given index is in a repeat, whose constraints may refer to the other
+     * instances of the repeat with references that don't tell them apart.
+     */
+    private static boolean isInRepeat(FormIndex index) {
+        for (FormIndex level = index; level != null; level = level.getNextLevel()) {
+            if (level.getInstanceIndex() != -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 
     /**
      * saveAnswer attempts to save the current answer into the data model without doing any
@@ -498,12 +685,45 @@ public class FormController {
      */
     public boolean saveAnswer(FormIndex index, IAnswerData data) throws JavaRosaException {
         try {
-            return formEntryController.saveAnswer(index, data, true);
+            String previousAnswer = getAnswerText(index);
+            boolean saved = formEntryController.saveAnswer(index, data, true);
+            if (saved) {
+                notifyIfAnswerChanged(index, previousAnswer, data);
+            }
+            return saved;
         } catch (Exception e) {
             throw new JavaRosaException(e);
         }
     }
 
+    /**
+     * Returns the current answer at the given index as it is written to the instance.
+     */
+    private String getAnswerText(FormIndex index) {
+        TreeElement element = getFormDef().getMainInstance().resolveReference(index.getReference());
+        IAnswerData answer = element != null ? element.getValue() : null;
+        return answer != null ? answer.uncast().getString() : null;
+    }
+
+    private void notifyIfAnswerChanged(FormIndex index, String previousAnswer, IAnswerData data) {
+        // the whole screen is saved on every swipe, most answers are the same as before
+        String answer = data != null ? data.uncast().getString() : null;
+        if (answer == null ? previousAnswer != null : !answer.equals(previousAnswer)) {
+            answerRevision++;
+            if (answerChangeListener != null) {
+                answerChangeListener.onAnswerChanged(index.getReference(), data);
+            }
+        }
+    }
+
+    /**
+     * Returns a number that changes whenever an answer changes or repeats are added or deleted,
+     * which may change the questions that are relevant and their choices.
+     */
+    public int getAnswerRevision() {
+        return answerRevision;
+    }
+
 
     /**
      * Navigates forward in the form.
@@ -657,6 +877,56 @@ public class FormController {
     }
 
 
+    /**
+     * Returns the index {@link #stepToNextScreenEvent()} would move to, without moving there.
+     * This never creates repeats, so where stepping would create one from its count this returns
+     * the index of the new repeat prompt instead.
+     */
+    public FormIndex getNextScreenIndex() {
+        FormIndex index = getFormIndex();
+        while (getEvent(index) != FormEntryController.EVENT_END_OF_FORM) {
+            index = getNextEventIndex(index);
+            switch (getEvent(index)) {
+                case FormEntryController.EVENT_QUESTION:
+                case FormEntryController.EVENT_PROMPT_NEW_REPEAT:
+                    return index;
+                case FormEntryController.EVENT_GROUP:
+                case FormEntryController.EVENT_REPEAT:
+                    if (indexIsInFieldList(index) && getQuestionPrompts(index).length != 0) {
+                        return index;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index {@link #stepToNextEvent(boolean)} would move to when stepping over
+     * field-list groups.
+     */
+    private FormIndex getNextEventIndex(FormIndex index) {
+        FormEntryModel model = formEntryController.getModel();
+        int event = getEvent(index);
+        if ((event == FormEntryController.EVENT_GROUP
+                || event == FormEntryController.EVENT_REPEAT) && indexIsInFieldList(index)) {
+            // like stepOverGroup, continue from the last child of the group
+            GroupDef gd = (GroupDef) model.getForm().getChild(index);
+            FormIndex lastChild = model.incrementIndex(index, true);
+            for (int i = 1; i < gd.getChildren().size(); i++) {
+                lastChild = model.incrementIndex(lastChild, false);
+            }
+            return getNextEventIndex(lastChild);
+        }
+
+        do {
+            index = model.incrementIndex(index, true);
+        } while (index.isInForm() && !model.isIndexRelevant(index));
+        return index;
+    }
+
     /**
      * Move the current form index to the index of the first enclosing repeat
      * or to the start of the form.
@@ -807,6 +1077,11 @@ public class FormController {
      */
     public void newRepeat() {
         formEntryController.newRepeat();
+        repeatsChanged = true;
+        answerRevision++;
+        if (answerChangeListener != null) {
+            answerChangeListener.onRepeatsChanged();
+        }
     }
 
 
@@ -819,6 +1094,11 @@ public class FormController {
     public void deleteRepeat() {
         FormIndex fi = formEntryController.deleteRepeat();
         formEntryController.jumpToIndex(fi);
+        repeatsChanged = true;
+        answerRevision++;
+        if (answerChangeListener != null) {
+            answerChangeListener.onRepeatsChanged();
+        }
     }
 
 
@@ -834,9 +1114,15 @@ public class FormController {
      * Returns an array of question promps.
      */
     public FormEntryPrompt[] getQuestionPrompts() throws RuntimeException {
+        return getQuestionPrompts(getFormIndex());
+    }
+
+    /**
+     * Returns the question prompts of the screen at the given index.
+     */
+    public FormEntryPrompt[] getQuestionPrompts(FormIndex currentIndex) throws RuntimeException {
 
         ArrayList<FormIndex> indicies = new ArrayList<FormIndex>();
-        FormIndex currentIndex = getFormIndex();
 
         // For questions, there is only one.
         // For groups, there could be many, but we set that below
@@ -897,7 +1183,7 @@ public class FormController {
             }
         } else {
             // We have a quesion, so just get the one prompt
-            questions[0] = getQuestionPrompt();
+            questions[0] = getQuestionPrompt(currentIndex);
         }
 
         return questions;
@@ -1112,7 +1398,12 @@ public class FormController {
         FormInstance datamodel = getInstance();
         XFormSerializingVisitor serializer = new XFormSerializingVisitor();
 
-        return (ByteArrayPayload) serializer.createSerializedPayload(datamodel);
+        Span span = Tracer.start("serialize");
+        try {
+            return (ByteArrayPayload) serializer.createSerializedPayload(datamodel);
+        } finally {
+            span.end();
+        }
     }
 
     /**
@@ -1121,8 +1412,13 @@ public class FormController {
     public ByteArrayPayload getSubmissionXml() throws IOException {
         FormInstance instance = getInstance();
         XFormSerializingVisitor serializer = new XFormSerializingVisitor();
-        return (ByteArrayPayload) serializer.createSerializedPayload(instance,
-                getSubmissionDataReference());
+        Span span = Tracer.start("serialize submission");
+        try {
+            return (ByteArrayPayload) serializer.createSerializedPayload(instance,
+                    getSubmissionDataReference());
+        } finally {
+            span.end();
+        }
     }
 
     /**
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.logic;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.QuestionDef;
+import org.javarosa.core.model.SelectChoice;
+import org.javarosa.core.reference.InvalidReferenceException;
+import org.javarosa.core.reference.ReferenceManager;
+import org.javarosa.form.api.FormEntryCaption;
+import org.javarosa.form.api.FormEntryController;
+import org.javarosa.form.api.FormEntryPrompt;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.external.ExternalDataUtil;
+import org.odk.collect.android.utilities.ImageLoader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import timber.log.Timber;
+
+/**
+ * Prepares the screen after the current one while the user is still answering it, so that
+ * swiping forward doesn't have to look up its prompts and choices or wait for its images to be
+ * decoded.
+ *
+ * <p>Once the UI thread is idle the prompts of the next screen are looked up without moving the
+ * form and the choice lists of its selects are evaluated, which the prompts keep. Their question
+ * and choice images are then decoded into the {@link ImageLoader} caches in the background. The
+ * form definition is not thread safe, so only the decoding happens off the UI thread.</p>
+ *
+ * <p>When the next screen is actually built, {@link #take(FormIndex)} returns the prefetched
+ * prompts if it is the screen that was prefetched and no answer changed since, as an answer may
+ * change which questions are relevant or what their choices are. Otherwise the screen is built
+ * from scratch, but the decoding goes on as long as it is the same screen. The decoding of
+ * another screen is cancelled.</p>
+ */
+public class NextScreenPrefetcher {
+
+    // don't decode the images of every choice of a long select
+    private static final int MAX_PRELOADED_IMAGES = 20;
+
+    private final int screenWidth;
+    private final int screenHeight;
+    private final List<Future<?>> preloads = new ArrayList<>();
+    private FormIndex prefetchedIndex;
+    private FormEntryPrompt[] prefetchedPrompts;
+    private int prefetchedRevision;
+    private boolean scheduled;
+
+    private final MessageQueue.IdleHandler idleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            scheduled = false;
+            prefetch();
+            return false;
+        }
+    };
+
+    public NextScreenPrefetcher(int screenWidth, int screenHeight) {
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+    }
+
+    /**
+     * Prefetches the screen after the current one as soon as the UI thread has nothing else to
+     * do. Must be called from the UI thread.
+     */
+    public void schedule() {
+        cancel();
+        if (!scheduled) {
+            scheduled = true;
+            Looper.myQueue().addIdleHandler(idleHandler);
+        }
+    }
+
+    /**
+     * Drops the prefetched screen and cancels any work still pending for it. Must be called
+     * from the UI thread.
+     */
+    public void cancel() {
+        if (scheduled) {
+            scheduled = false;
+            Looper.myQueue().removeIdleHandler(idleHandler);
+        }
+        for (Future<?> preload : preloads) {
+            preload.cancel(false);
+        }
+        preloads.clear();
+        prefetchedIndex = null;
+        prefetchedPrompts = null;
+    }
+
+    /**
+     * Called when the screen at the given index is built. Returns the prefetched prompts if it
+     * is the screen that was prefetched and no answer changed since, otherwise null. Either way
+     * the prefetch is over.
+     */
+    public FormEntryPrompt[] take(FormIndex index) {
+        FormEntryPrompt[] prompts = null;
+        if (index.equals(prefetchedIndex)) {
+            // let the decoding that is still running finish, the new screen is waiting for it
+            preloads.clear();
+            FormController formController = Collect.getInstance().getFormController();
+            if (formController != null
+                    && formController.getAnswerRevision() == prefetchedRevision) {
+                prompts = prefetchedPrompts;
+            }
+        }
+        cancel();
+        return prompts;
+    }
+
+    /**
+     * Looks up the next screen and starts decoding its images.
+     */
+    void prefetch() {
+        FormController formController = Collect.getInstance().getFormController();
+        if (formController == null
+                || formController.getEvent() == FormEntryController.EVENT_END_OF_FORM) {
+            return;
+        }
+
+        FormIndex nextIndex;
+        FormEntryPrompt[] prompts;
+        try {
+            nextIndex = formController.getNextScreenIndex();
+            int event = formController.getEvent(nextIndex);
+            if (event != FormEntryController.EVENT_QUESTION
+                    && event != FormEntryController.EVENT_GROUP
+                    && event != FormEntryController.EVENT_REPEAT) {
+                return;
+            }
+            prompts = formController.getQuestionPrompts(nextIndex);
+            for (FormEntryPrompt prompt : prompts) {
+                QuestionDef question = prompt.getQuestion();
+                if (question != null && (question.getChoices() != null
+                        || question.getDynamicChoices() != null)) {
+                    prompt.getSelectChoices();
+                }
+            }
+        } catch (RuntimeException e) {
+            // building the screen for real reports the error once the user gets there
+            Timber.w(e, "Unable to prefetch the next screen");
+            return;
+        }
+
+        prefetchedIndex = nextIndex;
+        prefetchedPrompts = prompts;
+        prefetchedRevision = formController.getAnswerRevision();
+        for (File imageFile : getImageFiles(prompts)) {
+            preloads.add(ImageLoader.getInstance().preloadScaledToDisplay(imageFile,
+                    screenHeight, screenWidth));
+        }
+    }
+
+    /**
+     * Returns the decoding started for the prefetched screen.
+     */
+    List<Future<?>> getPreloads() {
+        return preloads;
+    }
+
+    /**
+     * Returns the images the widgets of the given prompts show at screen size: the question
+     * images and, for selects that list their choices, the choice images.
+     */
+    private static List<File> getImageFiles(FormEntryPrompt[] prompts) {
+        List<String> uris = new ArrayList<>();
+        for (FormEntryPrompt prompt : prompts) {
+            uris.add(prompt.getImageText());
+
+            QuestionDef question = prompt.getQuestion();
+            String appearance = prompt.getAppearanceHint();
+            // grids use their own image size, and dynamic choices depend on the answers that
+            // haven't been saved yet
+            if (question == null || question.getDynamicChoices() != null
+                    || appearance != null && (appearance.startsWith("compact")
+                    || appearance.startsWith("quickcompact")
+                    || ExternalDataUtil.getSearchXPathExpression(prompt) != null)) {
+                continue;
+            }
+            List<SelectChoice> choices = question.getChoices();
+            if (choices != null) {
+                for (SelectChoice choice : choices) {
+                    uris.add(prompt.getSpecialFormSelectChoiceText(choice,
+                            FormEntryCaption.TEXT_FORM_IMAGE));
+                }
+            }
+        }
+
+        List<File> files = new ArrayList<>();
+        for (String uri : uris) {
+            if (uri == null) {
+                continue;
+            }
+            try {
+                File file = new File(ReferenceManager.instance().DeriveReference(uri)
+                        .getLocalURI());
+                if (file.exists()) {
+                    files.add(file);
+                }
+            } catch (InvalidReferenceException e) {
+                Timber.w(e);
+            }
+            if (files.size() == MAX_PRELOADED_IMAGES) {
+                break;
+            }
+        }
+        return files;
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.logic;
+
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.data.UncastData;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.core.model.instance.TreeReference;
+import org.odk.collect.android.utilities.FileUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * The answers changed since the last full savepoint, so that a savepoint doesn't have to
+ * serialize the whole instance every time.
+ *
+ * <p>The journal is a text file next to the savepoint. Its first line identifies the savepoint
+ * it applies to by length and modification time, so a journal that outlived its savepoint is
+ * ignored. Every other line sets or clears the value of one node, in the order the answers
+ * were given. A line that was only partly written when the app died is ignored as well.</p>
+ */
+public final class SavePointJournal {
+
+    private static final String HEADER = "savepoint";
+    private static final String SET = "S";
+    private static final String CLEAR = "C";
+    // ends every entry, so that a partly written one can be recognized
+    private static final String END = ".";
+    private static final String UTF_8 = "UTF-8";
+
+    private SavePointJournal() {
+    }
+
+    public static File getJournalFile(File savepoint) {
+        return new File(savepoint.getPath() + ".journal");
+    }
+
+    /**
+     * Returns the journal line recording the given answer of the node at the given reference.
+     */
+    public static String formatEntry(TreeReference ref, IAnswerData answer) {
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < ref.size(); i++) {
+            if (i > 0) {
+                path.append('/');
+            }
+            path.append(ref.getName(i)).append('[')
+                    .append(Math.max(0, ref.getMultiplicity(i))).append(']');
+        }
+        return answer == null
+                ? CLEAR + '\t' + escape(path.toString()) + '\t' + END
+                : SET + '\t' + escape(path.toString()) + '\t' + escape(answer.uncast().getString())
+                + '\t' + END;
+    }
+
+    /**
+     * Starts an empty journal for the given savepoint, replacing any earlier journal.
+     */
+    public static void start(File savepoint) throws IOException {
+        File journal = getJournalFile(savepoint);
+        File temp = new File(journal.getPath() + ".tmp");
+        write(temp, false, getHeader(savepoint) + '\n');
+        if (!temp.renameTo(journal)) {
+            throw new IOException("Unable to replace " + journal.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns true if the journal of the given savepoint exists and was started for it.
+     */
+    public static boolean isStarted(File savepoint) {
+        File journal = getJournalFile(savepoint);
+        if (!savepoint.exists() || !journal.exists()) {
+            return false;
+        }
+        try {
+            BufferedReader reader = open(journal);
+            try {
+                return getHeader(savepoint).equals(reader.readLine());
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            Timber.w(e);
+            return false;
+        }
+    }
+
+    /**
+     * Appends the given lines, made by {@link #formatEntry(TreeReference, IAnswerData)}, and
+     * syncs them to disk.
+     */
+    public static void append(File savepoint, List<String> entries) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (String entry : entries) {
+            lines.append(entry).append('\n');
+        }
+        write(getJournalFile(savepoint), true, lines.toString());
+    }
+
+    /**
+     * Applies the journal of the given savepoint to the root of the instance read from it.
+     * Entries for nodes that don't exist in that instance are skipped.
+     *
+     * @return the number of entries applied, or -1 if there is no journal for the savepoint
+     */
+    public static int replay(File savepoint, TreeElement root) throws IOException {
+        if (!isStarted(savepoint)) {
+            return -1;
+        }
+
+        int applied = 0;
+        BufferedReader reader = open(getJournalFile(savepoint));
+        try {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                boolean complete = END.equals(parts[parts.length - 1]);
+                boolean set = complete && parts.length == 4 && SET.equals(parts[0]);
+                boolean clear = complete && parts.length == 3 && CLEAR.equals(parts[0]);
+                if (!set && !clear) {
+                    // the app died while writing this line, and it is always the last one
+                    Timber.w("Ignoring malformed savepoint journal entry");
+                    break;
+                }
+
+                TreeElement element = resolve(root, unescape(parts[1]));
+                if (element == null) {
+                    Timber.w("No node for savepoint journal entry %s", parts[1]);
+                    continue;
+                }
+                element.setValue(set ? new UncastData(unescape(parts[2])) : null);
+                applied++;
+            }
+        } finally {
+            reader.close();
+        }
+        return applied;
+    }
+
+    /**
+     * Returns the time the savepoint and its journal were last written.
+     */
+    public static long lastModified(File savepoint) {
+        File journal = getJournalFile(savepoint);
+        return isStarted(savepoint)
+                ? Math.max(savepoint.lastModified(), journal.lastModified())
+                : savepoint.lastModified();
+    }
+
+    /**
+     * Deletes the savepoint and its journal.
+     */
+    public static void delete(File savepoint) {
+        FileUtils.deleteAndReport(savepoint);
+        FileUtils.deleteAndReport(getJournalFile(savepoint));
+    }
+
+    private static TreeElement resolve(TreeElement root, String path) {
+        String[] steps = path.split("/");
+        TreeElement element = null;
+        for (int i = 0; i < steps.length; i++) {
+            int bracket = steps[i].lastIndexOf('[');
+            if (bracket <= 0 || !steps[i].endsWith("]")) {
+                return null;
+            }
+            String name = steps[i].substring(0, bracket);
+            int multiplicity;
+            try {
+                multiplicity = Integer.parseInt(steps[i].substring(bracket + 1,
+                        steps[i].length() - 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            if (i == 0) {
+                element = root.getName().equals(name) ? root : null;
+            } else {
+                element = element.getChild(name, multiplicity);
+            }
+            if (element == null) {
+                return null;
+            }
+        }
+        return element;
+    }
+
+    private static String getHeader(File savepoint) {
+        return HEADER + '\t' + savepoint.length() + '\t' + savepoint.lastModified();
+    }
+
+    private static BufferedReader open(File journal) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(journal), UTF_8));
+    }
+
+    private static void write(File file, boolean append, String text) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, append);
+        try {
+            Writer writer = new OutputStreamWriter(out, UTF_8);
+            writer.write(text);
+            writer.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    static String escape(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                default:
+                    builder.append(c);
+                    break;
+            }
+        }
+        return builder.toString();
+    }
+
+    static String unescape(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                builder.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -12,6 +12,7 @@ import android.support.annotation.Nullable;
 import android.view.View;
 
 import org.odk.collect.android.R;
+import org.odk.collect.android.activities.DiagnosticsActivity;
 import org.odk.collect.android.activities.OpenSourceLicensesActivity;
 import org.odk.collect.android.utilities.CustomTabHelper;
 
@@ -27,6 +28,7 @@ public class AboutPreferencesFragment extends BasePreferenceFragment implements
     public static final String KEY_LEAVE_A_REVIEW = "leave_a_review";
     public static final String KEY_ODK_WEBSITE = "odk_website";
     public static final String KEY_ODK_FORUM = "odk_forum";
+    public static final String KEY_DIAGNOSTICS = "diagnostics";
     private static final String GOOGLE_PLAY_URL = "https://play.google.com/store/apps/details?id=";
     private static final String ODK_WEBSITE = "https://opendatakit.org";
     private static final String ODK_FORUM = "https://forum.opendatakit.org";
@@ -48,6 +50,7 @@ public class AboutPreferencesFragment extends BasePreferenceFragment implements
         findPreference(KEY_OPEN_SOURCE_LICENSES).setOnPreferenceClickListener(this);
         findPreference(KEY_TELL_YOUR_FRIENDS).setOnPreferenceClickListener(this);
         findPreference(KEY_LEAVE_A_REVIEW).setOnPreferenceClickListener(this);
+        findPreference(KEY_DIAGNOSTICS).setOnPreferenceClickListener(this);
         websiteTabHelper = new CustomTabHelper();
         forumTabHelper = new CustomTabHelper();
         websiteUri = Uri.parse(ODK_WEBSITE);
@@ -94,6 +97,11 @@ public class AboutPreferencesFragment extends BasePreferenceFragment implements
                         OpenSourceLicensesActivity.class));
                 break;
 
+            case KEY_DIAGNOSTICS:
+                startActivity(new Intent(getActivity().getApplicationContext(),
+                        DiagnosticsActivity.class));
+                break;
+
             case KEY_TELL_YOUR_FRIENDS:
                 Intent shareIntent = new Intent(Intent.ACTION_SEND);
                 shareIntent.setType("text/plain");
@@ -15,8 +15,11 @@
 package org.odk.collect.android.provider;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.SQLException;
@@ -31,13 +34,16 @@ import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.database.ItemsetDbAdapter;
 import org.odk.collect.android.database.helpers.FormsDatabaseHelper;
 import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
+import org.odk.collect.android.tasks.FileReclaimer;
 import org.odk.collect.android.utilities.FileUtils;
 import org.odk.collect.android.utilities.MediaUtils;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 
 import timber.log.Timber;
@@ -54,6 +60,9 @@ public class FormsProvider extends ContentProvider {
 
     private FormsDatabaseHelper databaseHelper;
 
+    // the files of the forms deleted by the batch running on the current thread, if any
+    private final ThreadLocal<List<File>> batchFilesToReclaim = new ThreadLocal<>();
+
     private FormsDatabaseHelper getDbHelper() {
         // wrapper to test and reset/set the dbHelper based upon the attachment state of the device.
         try {
@@ -101,7 +110,7 @@ public class FormsProvider extends ContentProvider {
         // Get the database and run the query
         SQLiteDatabase db = getDbHelper().getReadableDatabase();
         Cursor c = qb.query(db, projection, selection, selectionArgs, null,
-                null, sortOrder);
+                null, sortOrder, uri.getQueryParameter(FormsProviderAPI.LIMIT));
 
         // Tell the cursor what uri to watch, so it knows when its source data
         // changes
@@ -261,6 +270,7 @@ public class FormsProvider extends ContentProvider {
     @Override
     public int delete(@NonNull Uri uri, String where, String[] whereArgs) {
         SQLiteDatabase db = getDbHelper().getWritableDatabase();
+        List<File> formFiles = new ArrayList<>();
         int count;
 
         switch (sUriMatcher.match(uri)) {
@@ -271,16 +281,15 @@ public class FormsProvider extends ContentProvider {
                     if (del != null && del.getCount() > 0) {
                         del.moveToFirst();
                         do {
-                            deleteFileOrDir(del
-                                    .getString(del
-                                            .getColumnIndex(FormsColumns.JRCACHE_FILE_PATH)));
+                            formFiles.add(new File(del.getString(del
+                                    .getColumnIndex(FormsColumns.JRCACHE_FILE_PATH))));
                             String formFilePath = del.getString(del
                                     .getColumnIndex(FormsColumns.FORM_FILE_PATH));
                             Collect.getInstance().getActivityLogger()
                                     .logAction(this, "delete", formFilePath);
-                            deleteFileOrDir(formFilePath);
-                            deleteFileOrDir(del.getString(del
-                                    .getColumnIndex(FormsColumns.FORM_MEDIA_PATH)));
+                            formFiles.add(new File(formFilePath));
+                            formFiles.add(new File(del.getString(del
+                                    .getColumnIndex(FormsColumns.FORM_MEDIA_PATH))));
                         } while (del.moveToNext());
                     }
                 } finally {
@@ -301,15 +310,15 @@ public class FormsProvider extends ContentProvider {
                     if (c != null && c.getCount() > 0) {
                         c.moveToFirst();
                         do {
-                            deleteFileOrDir(c.getString(c
-                                    .getColumnIndex(FormsColumns.JRCACHE_FILE_PATH)));
+                            formFiles.add(new File(c.getString(c
+                                    .getColumnIndex(FormsColumns.JRCACHE_FILE_PATH))));
                             String formFilePath = c.getString(c
                                     .getColumnIndex(FormsColumns.FORM_FILE_PATH));
                             Collect.getInstance().getActivityLogger()
                                     .logAction(this, "delete", formFilePath);
-                            deleteFileOrDir(formFilePath);
-                            deleteFileOrDir(c.getString(c
-                                    .getColumnIndex(FormsColumns.FORM_MEDIA_PATH)));
+                            formFiles.add(new File(formFilePath));
+                            formFiles.add(new File(c.getString(c
+                                    .getColumnIndex(FormsColumns.FORM_MEDIA_PATH))));
 
                             try {
                                 // get rid of the old tables
@@ -345,7 +354,13 @@ public class FormsProvider extends ContentProvider {
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
 
-        getContext().getContentResolver().notifyChange(uri, null);
+        List<File> batchFiles = batchFilesToReclaim.get();
+        if (batchFiles != null) {
+            batchFiles.addAll(formFiles);
+        } else {
+            FileReclaimer.delete(formFiles);
+        }
+        notifyChange(uri);
         return count;
     }
 
@@ -495,10 +510,46 @@ public class FormsProvider extends ContentProvider {
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
 
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
         return count;
     }
 
+    /**
+     * Applies the operations in a single transaction, notifying the observers of the forms
+     * only once. The files of the forms deleted by the operations are reclaimed in the
+     * background once the transaction is committed.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(
+            @NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = getDbHelper().getWritableDatabase();
+        List<File> files = new ArrayList<>();
+        ContentProviderResult[] results;
+
+        batchFilesToReclaim.set(files);
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            batchFilesToReclaim.remove();
+        }
+
+        FileReclaimer.getInstance().reclaim(files);
+        getContext().getContentResolver().notifyChange(FormsColumns.CONTENT_URI, null);
+        return results;
+    }
+
+    private void notifyChange(Uri uri) {
+        // a batch notifies once it is done
+        if (batchFilesToReclaim.get() == null) {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
     static {
         sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
         sUriMatcher.addURI(FormsProviderAPI.AUTHORITY, "forms", FORMS);
@@ -29,6 +29,9 @@ public final class FormsProviderAPI {
     private FormsProviderAPI() {
     }
 
+    // query parameter of the content URI limiting the number of rows returned
+    public static final String LIMIT = "limit";
+
     /**
      * Notes table
      */
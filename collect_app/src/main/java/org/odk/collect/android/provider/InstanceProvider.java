@@ -15,10 +15,14 @@
 package org.odk.collect.android.provider;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
@@ -30,15 +34,16 @@ import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.database.helpers.InstancesDatabaseHelper;
 import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
-import org.odk.collect.android.utilities.MediaUtils;
+import org.odk.collect.android.tasks.FileReclaimer;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
-
-import timber.log.Timber;
+import java.util.Map;
 
 import static org.odk.collect.android.database.helpers.InstancesDatabaseHelper.INSTANCES_TABLE_NAME;
 
@@ -47,11 +52,23 @@ public class InstanceProvider extends ContentProvider {
 
     private static final int INSTANCES = 1;
     private static final int INSTANCE_ID = 2;
+    private static final int STATUS_COUNTS = 3;
 
     private static final UriMatcher sUriMatcher;
 
     private InstancesDatabaseHelper databaseHelper;
 
+    // the files of the instances deleted by the batch running on the current thread, if any
+    private final ThreadLocal<List<File>> batchFilesToReclaim = new ThreadLocal<>();
+
+    // the number of instances with each status, adjusted by every write that changes it, or
+    // null until it is first asked for or when it couldn't be adjusted
+    private Map<String, Integer> statusCounts;
+    // incremented before and after each such write, so that counts read while one is under way
+    // aren't cached
+    private int statusCountsVersion;
+    private final Object statusCountsLock = new Object();
+
     private InstancesDatabaseHelper getDbHelper() {
         // wrapper to test and reset/set the dbHelper based upon the attachment state of the device.
         try {
@@ -91,13 +108,17 @@ public class InstanceProvider extends ContentProvider {
                 qb.appendWhere(InstanceColumns._ID + "=" + uri.getPathSegments().get(1));
                 break;
 
+            case STATUS_COUNTS:
+                return queryStatusCounts();
+
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
 
         // Get the database and run the query
         SQLiteDatabase db = getDbHelper().getReadableDatabase();
-        Cursor c = qb.query(db, projection, selection, selectionArgs, null, null, sortOrder);
+        Cursor c = qb.query(db, projection, selection, selectionArgs, null, null, sortOrder,
+                uri.getQueryParameter(InstanceProviderAPI.LIMIT));
 
         // Tell the cursor what uri to watch, so it knows when its source data changes
         c.setNotificationUri(getContext().getContentResolver(), uri);
@@ -113,6 +134,9 @@ public class InstanceProvider extends ContentProvider {
             case INSTANCE_ID:
                 return InstanceColumns.CONTENT_ITEM_TYPE;
 
+            case STATUS_COUNTS:
+                return null;
+
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
@@ -150,7 +174,12 @@ public class InstanceProvider extends ContentProvider {
         }
 
         SQLiteDatabase db = getDbHelper().getWritableDatabase();
+        beginStatusCountsChange();
         long rowId = db.insert(INSTANCES_TABLE_NAME, null, values);
+        Map<String, Integer> insertedStatus = new HashMap<>();
+        addStatusCount(insertedStatus, values.getAsString(InstanceColumns.STATUS),
+                rowId > 0 ? 1 : 0);
+        endStatusCountsChange(new HashMap<String, Integer>(), insertedStatus);
         if (rowId > 0) {
             Uri instanceUri = ContentUris.withAppendedId(InstanceColumns.CONTENT_URI, rowId);
             getContext().getContentResolver().notifyChange(instanceUri, null);
@@ -185,33 +214,6 @@ public class InstanceProvider extends ContentProvider {
         }
     }
 
-    private void deleteAllFilesInDirectory(File directory) {
-        if (directory.exists()) {
-            // do not delete the directory if it might be an
-            // ODK Tables instance data directory. Let ODK Tables
-            // manage the lifetimes of its filled-in form data
-            // media attachments.
-            if (directory.isDirectory() && !Collect.isODKTablesInstanceDataDirectory(directory)) {
-                // delete any media entries for files in this directory...
-                int images = MediaUtils.deleteImagesInFolderFromMediaProvider(directory);
-                int audio = MediaUtils.deleteAudioInFolderFromMediaProvider(directory);
-                int video = MediaUtils.deleteVideoInFolderFromMediaProvider(directory);
-
-                Timber.i("removed from content providers: %d image files, %d audio files,"
-                        + " and %d video files.", images, audio, video);
-
-                // delete all the files in the directory
-                File[] files = directory.listFiles();
-                for (File f : files) {
-                    // should make this recursive if we get worried about
-                    // the media directory containing directories
-                    f.delete();
-                }
-            }
-            directory.delete();
-        }
-    }
-
     /**
      * This method removes the entry from the content provider, and also removes any associated
      * files.
@@ -220,10 +222,13 @@ public class InstanceProvider extends ContentProvider {
     @Override
     public int delete(@NonNull Uri uri, String where, String[] whereArgs) {
         SQLiteDatabase db = getDbHelper().getWritableDatabase();
+        List<File> instanceDirs = new ArrayList<>();
         int count;
 
         switch (sUriMatcher.match(uri)) {
             case INSTANCES:
+                Map<String, Integer> deletedStatuses = new HashMap<>();
+                beginStatusCountsChange();
                 Cursor del = null;
                 try {
                     del = this.query(uri, null, where, whereArgs, null);
@@ -234,8 +239,9 @@ public class InstanceProvider extends ContentProvider {
                                     del.getColumnIndex(InstanceColumns.INSTANCE_FILE_PATH));
                             Collect.getInstance().getActivityLogger().logAction(this, "delete",
                                     instanceFile);
-                            File instanceDir = (new File(instanceFile)).getParentFile();
-                            deleteAllFilesInDirectory(instanceDir);
+                            instanceDirs.add(new File(instanceFile).getParentFile());
+                            addStatusCount(deletedStatuses,
+                                    del.getString(del.getColumnIndex(InstanceColumns.STATUS)), 1);
                         } while (del.moveToNext());
                     }
                 } finally {
@@ -244,6 +250,8 @@ public class InstanceProvider extends ContentProvider {
                     }
                 }
                 count = db.delete(INSTANCES_TABLE_NAME, where, whereArgs);
+                endStatusCountsChange(ifTotalIs(deletedStatuses, count),
+                        new HashMap<String, Integer>());
                 break;
 
             case INSTANCE_ID:
@@ -261,8 +269,7 @@ public class InstanceProvider extends ContentProvider {
                                     c.getColumnIndex(InstanceColumns.INSTANCE_FILE_PATH));
                             Collect.getInstance().getActivityLogger().logAction(this, "delete",
                                     instanceFile);
-                            File instanceDir = (new File(instanceFile)).getParentFile();
-                            deleteAllFilesInDirectory(instanceDir);
+                            instanceDirs.add(new File(instanceFile).getParentFile());
                         } while (c.moveToNext());
                     }
                 } finally {
@@ -278,11 +285,16 @@ public class InstanceProvider extends ContentProvider {
                     cv.put(InstanceColumns.DELETED_DATE, System.currentTimeMillis());
                     count = Collect.getInstance().getContentResolver().update(uri, cv, null, null);
                 } else {
+                    Map<String, Integer> deletedStatus = new HashMap<>();
+                    addStatusCount(deletedStatus, status, status != null ? 1 : 0);
+                    beginStatusCountsChange();
                     count =
                             db.delete(INSTANCES_TABLE_NAME,
                                     InstanceColumns._ID + "=" + instanceId
                                             + (!TextUtils.isEmpty(where) ? " AND (" + where + ')' : ""),
                                     whereArgs);
+                    endStatusCountsChange(ifTotalIs(deletedStatus, count),
+                            new HashMap<String, Integer>());
                 }
                 break;
 
@@ -290,7 +302,13 @@ public class InstanceProvider extends ContentProvider {
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
 
-        getContext().getContentResolver().notifyChange(uri, null);
+        List<File> batchFiles = batchFilesToReclaim.get();
+        if (batchFiles != null) {
+            batchFiles.addAll(instanceDirs);
+        } else {
+            FileReclaimer.delete(instanceDirs);
+        }
+        notifyChange(uri);
         return count;
     }
 
@@ -319,7 +337,7 @@ public class InstanceProvider extends ContentProvider {
                     }
                 }
 
-                count = db.update(INSTANCES_TABLE_NAME, values, where, whereArgs);
+                count = updateCountingStatuses(db, values, where, whereArgs);
                 break;
 
             case INSTANCE_ID:
@@ -336,7 +354,7 @@ public class InstanceProvider extends ContentProvider {
                 }
 
                 count =
-                        db.update(INSTANCES_TABLE_NAME, values,
+                        updateCountingStatuses(db, values,
                                 InstanceColumns._ID + "=" + instanceId
                                         + (!TextUtils.isEmpty(where) ? " AND (" + where + ')' : ""),
                                 whereArgs);
@@ -346,14 +364,187 @@ public class InstanceProvider extends ContentProvider {
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
 
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
         return count;
     }
 
+    /**
+     * Applies the operations in a single transaction, notifying the observers of the
+     * instances only once. The files of the instances deleted by the operations are reclaimed
+     * in the background once the transaction is committed.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(
+            @NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = getDbHelper().getWritableDatabase();
+        List<File> files = new ArrayList<>();
+        ContentProviderResult[] results;
+
+        boolean successful = false;
+        batchFilesToReclaim.set(files);
+        beginStatusCountsChange();
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            successful = true;
+        } finally {
+            db.endTransaction();
+            batchFilesToReclaim.remove();
+            // the counts were adjusted by the operations, which have been rolled back otherwise
+            Map<String, Integer> none = new HashMap<>();
+            endStatusCountsChange(successful ? none : null, none);
+        }
+
+        FileReclaimer.getInstance().reclaim(files);
+        getContext().getContentResolver().notifyChange(InstanceColumns.CONTENT_URI, null);
+        return results;
+    }
+
+    /**
+     * Updates the given rows, adjusting the cached status counts if the status is changed.
+     */
+    private int updateCountingStatuses(SQLiteDatabase db, ContentValues values, String where,
+                                       String[] whereArgs) {
+        String status = values.getAsString(InstanceColumns.STATUS);
+        if (status == null) {
+            return db.update(INSTANCES_TABLE_NAME, values, where, whereArgs);
+        }
+
+        beginStatusCountsChange();
+        boolean cached;
+        synchronized (statusCountsLock) {
+            cached = statusCounts != null;
+        }
+        // only worth finding out when there are counts to adjust
+        Map<String, Integer> previousStatuses = cached ? countStatuses(db, where, whereArgs) : null;
+        int count = db.update(INSTANCES_TABLE_NAME, values, where, whereArgs);
+        Map<String, Integer> updatedStatus = new HashMap<>();
+        addStatusCount(updatedStatus, status, count);
+        endStatusCountsChange(ifTotalIs(previousStatuses, count), updatedStatus);
+        return count;
+    }
+
+    /**
+     * Returns the number of instances with each status, from the cache if it is there.
+     */
+    private Cursor queryStatusCounts() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{InstanceColumns.STATUS,
+                InstanceColumns.STATUS_COUNT});
+        InstancesDatabaseHelper dbHelper = getDbHelper();
+        if (dbHelper == null) {
+            // no storage, so no instances
+            return cursor;
+        }
+
+        Map<String, Integer> counts;
+        int version;
+        synchronized (statusCountsLock) {
+            counts = statusCounts == null ? null : new HashMap<>(statusCounts);
+            version = statusCountsVersion;
+        }
+        if (counts == null) {
+            counts = countStatuses(dbHelper.getReadableDatabase(), null, null);
+            synchronized (statusCountsLock) {
+                if (version == statusCountsVersion) {
+                    statusCounts = new HashMap<>(counts);
+                }
+            }
+        }
+
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            cursor.addRow(new Object[]{entry.getKey(), entry.getValue()});
+        }
+        cursor.setNotificationUri(getContext().getContentResolver(), InstanceColumns.CONTENT_URI);
+        return cursor;
+    }
+
+    private static Map<String, Integer> countStatuses(SQLiteDatabase db, String where,
+                                                      String[] whereArgs) {
+        Map<String, Integer> counts = new HashMap<>();
+        Cursor c = db.query(INSTANCES_TABLE_NAME,
+                new String[]{InstanceColumns.STATUS, "COUNT(*)"}, where, whereArgs,
+                InstanceColumns.STATUS, null, null);
+        try {
+            while (c.moveToNext()) {
+                addStatusCount(counts, c.getString(0), c.getInt(1));
+            }
+        } finally {
+            c.close();
+        }
+        return counts;
+    }
+
+    private static void addStatusCount(Map<String, Integer> counts, String status, int count) {
+        Integer current = counts.get(status);
+        int updated = (current == null ? 0 : current) + count;
+        if (updated == 0) {
+            counts.remove(status);
+        } else {
+            counts.put(status, updated);
+        }
+    }
+
+    private void beginStatusCountsChange() {
+        synchronized (statusCountsLock) {
+            statusCountsVersion++;
+        }
+    }
+
+    /**
+     * Takes the instances counted by the first map away from the cached status counts, and adds
+     * those counted by the second. The cached counts are dropped if the first is null, meaning
+     * that the statuses the instances had aren't known.
+     */
+    private void endStatusCountsChange(Map<String, Integer> removedStatuses,
+                                       Map<String, Integer> addedStatuses) {
+        synchronized (statusCountsLock) {
+            statusCountsVersion++;
+            if (statusCounts == null) {
+                return;
+            }
+            if (removedStatuses == null) {
+                statusCounts = null;
+                return;
+            }
+
+            for (Map.Entry<String, Integer> entry : removedStatuses.entrySet()) {
+                addStatusCount(statusCounts, entry.getKey(), -entry.getValue());
+            }
+            for (Map.Entry<String, Integer> entry : addedStatuses.entrySet()) {
+                addStatusCount(statusCounts, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the given status counts if they add up to the given number of instances, or null.
+     */
+    private static Map<String, Integer> ifTotalIs(Map<String, Integer> statuses, int count) {
+        if (statuses == null) {
+            return null;
+        }
+        int total = 0;
+        for (int statusCount : statuses.values()) {
+            total += statusCount;
+        }
+        return total == count ? statuses : null;
+    }
+
+    private void notifyChange(Uri uri) {
+        // a batch notifies once it is done
+        if (batchFilesToReclaim.get() == null) {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
     static {
         sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
         sUriMatcher.addURI(InstanceProviderAPI.AUTHORITY, "instances", INSTANCES);
         sUriMatcher.addURI(InstanceProviderAPI.AUTHORITY, "instances/#", INSTANCE_ID);
+        sUriMatcher.addURI(InstanceProviderAPI.AUTHORITY, "status_counts", STATUS_COUNTS);
 
         sInstancesProjectionMap = new HashMap<>();
         sInstancesProjectionMap.put(InstanceColumns._ID, InstanceColumns._ID);
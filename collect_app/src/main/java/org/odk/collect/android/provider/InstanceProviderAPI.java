@@ -29,6 +29,9 @@ public final class InstanceProviderAPI {
     private InstanceProviderAPI() {
     }
 
+    // query parameter of the content URI limiting the number of rows returned
+    public static final String LIMIT = "limit";
+
     // status for instances
     public static final String STATUS_INCOMPLETE = "incomplete";
     public static final String STATUS_COMPLETE = "complete";
@@ -47,6 +50,11 @@ public final class InstanceProviderAPI {
         public static final String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.odk.instance";
         public static final String CONTENT_ITEM_TYPE = "vnd.android.cursor.item/vnd.odk.instance";
 
+        // the number of instances with each status, as rows of STATUS and STATUS_COUNT
+        public static final Uri STATUS_COUNTS_URI =
+                Uri.parse("content://" + AUTHORITY + "/status_counts");
+        public static final String STATUS_COUNT = "statusCount";
+
         // These are the only things needed for an insert
         public static final String DISPLAY_NAME = "displayName";
         public static final String SUBMISSION_URI = "submissionUri";
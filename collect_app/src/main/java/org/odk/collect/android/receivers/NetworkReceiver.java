@@ -8,7 +8,6 @@ import android.content.Intent;
 import android.database.Cursor;
 import android.graphics.BitmapFactory;
 import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.net.Uri;
 import android.os.Environment;
 import android.support.v4.app.NotificationCompat;
@@ -25,11 +24,11 @@ import org.odk.collect.android.listeners.InstanceUploaderListener;
 import org.odk.collect.android.preferences.GeneralSharedPreferences;
 import org.odk.collect.android.preferences.PreferenceKeys;
 import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
+import org.odk.collect.android.tasks.AutoSendScheduler;
 import org.odk.collect.android.tasks.InstanceGoogleSheetsUploader;
 import org.odk.collect.android.tasks.InstanceServerUploader;
 import org.odk.collect.android.utilities.WebUtils;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -37,12 +36,13 @@ import java.util.Set;
 
 public class NetworkReceiver extends BroadcastReceiver implements InstanceUploaderListener {
 
-    // turning on wifi often gets two CONNECTED events. we only want to run one thread at a time
-    public static boolean running = false;
     InstanceServerUploader instanceServerUploader;
 
     InstanceGoogleSheetsUploader instanceGoogleSheetsUploader;
 
+    // the instances being sent by this receiver, if any
+    private Long[] batch;
+
     @Override
     public void onReceive(Context context, Intent intent) {
         // make sure sd card is ready, if not don't try to send
@@ -51,110 +51,67 @@ public class NetworkReceiver extends BroadcastReceiver implements InstanceUpload
         }
 
         String action = intent.getAction();
-        ConnectivityManager manager = (ConnectivityManager) context.getSystemService(
-                Context.CONNECTIVITY_SERVICE);
-        NetworkInfo currentNetworkInfo = manager.getActiveNetworkInfo();
-
-        if (action.equals(ConnectivityManager.CONNECTIVITY_ACTION)) {
-            if (currentNetworkInfo != null
-                    && currentNetworkInfo.getState() == NetworkInfo.State.CONNECTED
-                    && isFormAutoSendOptionEnabled(currentNetworkInfo)) {
-                uploadForms(context);
-            }
-        } else if (action.equals("org.odk.collect.android.FormSaved")) {
-            ConnectivityManager connectivityManager = (ConnectivityManager) context
-                    .getSystemService(Context.CONNECTIVITY_SERVICE);
-            NetworkInfo ni = connectivityManager.getActiveNetworkInfo();
-
-            if (ni != null && ni.isConnected() && isFormAutoSendOptionEnabled(ni)) {
-                uploadForms(context);
+        if (action.equals(Intent.ACTION_BOOT_COMPLETED)) {
+            AutoSendScheduler.getInstance().onBoot(context);
+        } else if (action.equals(ConnectivityManager.CONNECTIVITY_ACTION)
+                || action.equals("org.odk.collect.android.FormSaved")) {
+            // a flapping network sends many of these, they only schedule an attempt
+            AutoSendScheduler.getInstance().schedule(context);
+        } else if (action.equals(AutoSendScheduler.ACTION_AUTO_SEND)) {
+            Long[] toSend = AutoSendScheduler.getInstance().startBatch(context);
+            if (toSend != null) {
+                batch = toSend;
+                uploadForms(context, toSend);
             }
         }
     }
 
-    private boolean isFormAutoSendOptionEnabled(NetworkInfo currentNetworkInfo) {
-        // make sure autosend is enabled on the given connected interface
-        String autosend = (String) GeneralSharedPreferences.getInstance().get(PreferenceKeys.KEY_AUTOSEND);
-        boolean sendwifi = autosend.equals("wifi_only");
-        boolean sendnetwork = autosend.equals("cellular_only");
-        if (autosend.equals("wifi_and_cellular")) {
-            sendwifi = true;
-            sendnetwork = true;
-        }
-
-        return (currentNetworkInfo.getType() == ConnectivityManager.TYPE_WIFI
-                && sendwifi || currentNetworkInfo.getType() == ConnectivityManager.TYPE_MOBILE
-                && sendnetwork);
-    }
+    private void uploadForms(Context context, Long[] toSendArray) {
+        GoogleAccountCredential accountCredential;
+        // Initialize credentials and service object.
+        accountCredential = GoogleAccountCredential.usingOAuth2(
+                Collect.getInstance(), Collections.singleton(DriveScopes.DRIVE))
+                .setBackOff(new ExponentialBackOff());
 
-    private void uploadForms(Context context) {
-        if (!running) {
-            running = true;
+        GeneralSharedPreferences settings = GeneralSharedPreferences.getInstance();
 
-            ArrayList<Long> toUpload = new ArrayList<>();
-            Cursor c = new InstancesDao().getFinalizedInstancesCursor();
+        String protocol = (String) settings.get(PreferenceKeys.KEY_PROTOCOL);
 
-            try {
-                if (c != null && c.getCount() > 0) {
-                    c.move(-1);
-                    while (c.moveToNext()) {
-                        Long l = c.getLong(c.getColumnIndex(InstanceColumns._ID));
-                        toUpload.add(l);
-                    }
-                }
-            } finally {
-                if (c != null) {
-                    c.close();
-                }
-            }
-
-            if (toUpload.size() < 1) {
-                running = false;
+        if (protocol.equals(context.getString(R.string.protocol_google_sheets))) {
+            instanceGoogleSheetsUploader = new InstanceGoogleSheetsUploader(accountCredential, context);
+            String googleUsername = (String) settings.get(
+                    PreferenceKeys.KEY_SELECTED_GOOGLE_ACCOUNT);
+            if (googleUsername == null || googleUsername.equalsIgnoreCase("")) {
+                // just quit if there's no username
+                finishBatch(false);
                 return;
             }
+            accountCredential.setSelectedAccountName(googleUsername);
+            instanceGoogleSheetsUploader.setUploaderListener(this);
+            instanceGoogleSheetsUploader.execute(toSendArray);
 
-            Long[] toSendArray = new Long[toUpload.size()];
-            toUpload.toArray(toSendArray);
-
-            GoogleAccountCredential accountCredential;
-            // Initialize credentials and service object.
-            accountCredential = GoogleAccountCredential.usingOAuth2(
-                    Collect.getInstance(), Collections.singleton(DriveScopes.DRIVE))
-                    .setBackOff(new ExponentialBackOff());
-
-            GeneralSharedPreferences settings = GeneralSharedPreferences.getInstance();
-
-            String protocol = (String) settings.get(PreferenceKeys.KEY_PROTOCOL);
-
-            if (protocol.equals(context.getString(R.string.protocol_google_sheets))) {
-                instanceGoogleSheetsUploader = new InstanceGoogleSheetsUploader(accountCredential, context);
-                String googleUsername = (String) settings.get(
-                        PreferenceKeys.KEY_SELECTED_GOOGLE_ACCOUNT);
-                if (googleUsername == null || googleUsername.equalsIgnoreCase("")) {
-                    // just quit if there's no username
-                    running = false;
-                    return;
-                }
-                accountCredential.setSelectedAccountName(googleUsername);
-                instanceGoogleSheetsUploader.setUploaderListener(this);
-                instanceGoogleSheetsUploader.execute(toSendArray);
+        } else {
+            // get the username, password, and server from preferences
 
-            } else {
-                // get the username, password, and server from preferences
+            String storedUsername = (String) settings.get(PreferenceKeys.KEY_USERNAME);
+            String storedPassword = (String) settings.get(PreferenceKeys.KEY_PASSWORD);
+            String server = (String) settings.get(PreferenceKeys.KEY_SERVER_URL);
+            String url = server + settings.get(PreferenceKeys.KEY_FORMLIST_URL);
 
-                String storedUsername = (String) settings.get(PreferenceKeys.KEY_USERNAME);
-                String storedPassword = (String) settings.get(PreferenceKeys.KEY_PASSWORD);
-                String server = (String) settings.get(PreferenceKeys.KEY_SERVER_URL);
-                String url = server + settings.get(PreferenceKeys.KEY_FORMLIST_URL);
+            Uri u = Uri.parse(url);
+            WebUtils.addCredentials(storedUsername, storedPassword, u.getHost());
 
-                Uri u = Uri.parse(url);
-                WebUtils.addCredentials(storedUsername, storedPassword, u.getHost());
+            instanceServerUploader = new InstanceServerUploader();
+            instanceServerUploader.setUploaderListener(this);
 
-                instanceServerUploader = new InstanceServerUploader();
-                instanceServerUploader.setUploaderListener(this);
+            instanceServerUploader.execute(toSendArray);
+        }
+    }
 
-                instanceServerUploader.execute(toSendArray);
-            }
+    private void finishBatch(boolean completed) {
+        if (batch != null) {
+            AutoSendScheduler.getInstance().finishBatch(Collect.getInstance(), batch, completed);
+            batch = null;
         }
     }
 
@@ -167,7 +124,7 @@ public class NetworkReceiver extends BroadcastReceiver implements InstanceUpload
         if (instanceGoogleSheetsUploader != null) {
             instanceGoogleSheetsUploader.setUploaderListener(null);
         }
-        running = false;
+        finishBatch(result != null);
 
         StringBuilder message = new StringBuilder();
         message
@@ -252,6 +209,6 @@ public class NetworkReceiver extends BroadcastReceiver implements InstanceUpload
         if (instanceGoogleSheetsUploader != null) {
             instanceGoogleSheetsUploader.setUploaderListener(null);
         }
-        running = false;
+        finishBatch(false);
     }
 }
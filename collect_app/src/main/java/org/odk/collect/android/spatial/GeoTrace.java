@@ -0,0 +1,270 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.spatial;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The points of a GeoTrace, independent of the map SDK used to display them.
+ *
+ * <p>Points are only ever appended or moved, so the map activities draw the trace as a series
+ * of polylines of at most {@link #SEGMENT_SIZE} points. Appending a point only ever touches the
+ * last segment and moving one touches at most two, instead of resetting the whole line.
+ * Consecutive segments share their boundary point so the line has no gaps.</p>
+ */
+public class GeoTrace {
+
+    public static final int SEGMENT_SIZE = 200;
+
+    private static final double EARTH_RADIUS_METERS = 6371009;
+
+    // three distinct vertices plus the closing point
+    private static final int MIN_POLYGON_SIZE = 4;
+
+    private final List<Point> points = new ArrayList<>();
+
+    public static class Point {
+        public final double latitude;
+        public final double longitude;
+        public final double altitude;
+        public final double accuracy;
+
+        public Point(double latitude, double longitude, double altitude, double accuracy) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.altitude = altitude;
+            this.accuracy = accuracy;
+        }
+    }
+
+    /**
+     * Parses an answer in the "lat lng alt acc;lat lng alt acc;..." format written by
+     * {@link #toAnswerString()}. Missing altitude or accuracy values are read as 0.
+     */
+    public static GeoTrace parse(String answer) {
+        GeoTrace trace = new GeoTrace();
+        for (String location : answer.replace("; ", ";").split(";")) {
+            String[] parts = location.trim().split(" ");
+            if (parts.length < 2) {
+                continue;
+            }
+            trace.add(new Point(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+                    parts.length > 2 ? Double.parseDouble(parts[2]) : 0,
+                    parts.length > 3 ? Double.parseDouble(parts[3]) : 0));
+        }
+        return trace;
+    }
+
+    public void add(Point point) {
+        points.add(point);
+    }
+
+    /**
+     * Moves the point at the given index, keeping its altitude and accuracy.
+     */
+    public void move(int index, double latitude, double longitude) {
+        Point point = points.get(index);
+        points.set(index, new Point(latitude, longitude, point.altitude, point.accuracy));
+    }
+
+    /**
+     * Turns the trace into a polygon by repeating its first point at the end.
+     */
+    public void close() {
+        if (!points.isEmpty()) {
+            points.add(points.get(0));
+        }
+    }
+
+    public Point get(int index) {
+        return points.get(index);
+    }
+
+    public int size() {
+        return points.size();
+    }
+
+    public boolean isEmpty() {
+        return points.isEmpty();
+    }
+
+    public void clear() {
+        points.clear();
+    }
+
+    public int getSegmentCount() {
+        return (points.size() + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+    }
+
+    /**
+     * Returns the points drawn by the given segment, which starts with the last point of the
+     * previous segment.
+     */
+    public List<Point> getSegment(int segment) {
+        int start = Math.max(0, segment * SEGMENT_SIZE - 1);
+        int end = Math.min(points.size(), (segment + 1) * SEGMENT_SIZE);
+        return points.subList(start, end);
+    }
+
+    /**
+     * Returns the first segment that draws the point at the given index.
+     */
+    public int getFirstSegmentOf(int index) {
+        return index / SEGMENT_SIZE;
+    }
+
+    /**
+     * Returns the last segment that draws the point at the given index, which differs from
+     * {@link #getFirstSegmentOf(int)} when the point is the boundary between two segments.
+     */
+    public int getLastSegmentOf(int index) {
+        return Math.min(getSegmentCount() - 1, (index + 1) / SEGMENT_SIZE);
+    }
+
+    /**
+     * Returns the indices of the points inside the given bounds, or null if there are more than
+     * limit of them. Used to only create markers for the points that are actually visible.
+     */
+    public List<Integer> getIndicesWithin(double north, double south, double east, double west,
+                                          int limit) {
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            if (isWithin(points.get(i), north, south, east, west)) {
+                if (indices.size() == limit) {
+                    return null;
+                }
+                indices.add(i);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Returns true if the point is inside the given bounds, which may cross the antimeridian.
+     */
+    public static boolean isWithin(Point point, double north, double south, double east,
+                                   double west) {
+        if (point.latitude > north || point.latitude < south) {
+            return false;
+        }
+        return west <= east
+                ? point.longitude >= west && point.longitude <= east
+                : point.longitude >= west || point.longitude <= east;
+    }
+
+    /**
+     * Returns a copy of the trace simplified with the Douglas-Peucker algorithm, dropping every
+     * point that is closer than toleranceMeters to the line through the points that are kept.
+     * The first and last points are always kept, and a closed trace is returned unchanged if
+     * simplifying it would leave fewer points than a polygon needs.
+     */
+    public GeoTrace simplify(double toleranceMeters) {
+        GeoTrace simplified = new GeoTrace();
+        int size = points.size();
+        if (size < 3 || toleranceMeters <= 0) {
+            simplified.points.addAll(points);
+            return simplified;
+        }
+
+        // project onto a plane around the first point, which is accurate enough at trace scale
+        double[] x = new double[size];
+        double[] y = new double[size];
+        double cosLatitude = Math.cos(Math.toRadians(points.get(0).latitude));
+        for (int i = 0; i < size; i++) {
+            x[i] = Math.toRadians(points.get(i).longitude) * cosLatitude * EARTH_RADIUS_METERS;
+            y[i] = Math.toRadians(points.get(i).latitude) * EARTH_RADIUS_METERS;
+        }
+
+        boolean[] keep = new boolean[size];
+        keep[0] = true;
+        keep[size - 1] = true;
+
+        // iterative so that traces with tens of thousands of points can't overflow the stack
+        Deque<int[]> ranges = new ArrayDeque<>();
+        ranges.push(new int[]{0, size - 1});
+        while (!ranges.isEmpty()) {
+            int[] range = ranges.pop();
+            int first = range[0];
+            int last = range[1];
+
+            double maxDistance = 0;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                double distance = distanceToSegment(x[i], y[i], x[first], y[first],
+                        x[last], y[last]);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+
+            if (farthest != -1 && maxDistance > toleranceMeters) {
+                keep[farthest] = true;
+                ranges.push(new int[]{first, farthest});
+                ranges.push(new int[]{farthest, last});
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (keep[i]) {
+                simplified.points.add(points.get(i));
+            }
+        }
+        if (isClosed() && simplified.size() < MIN_POLYGON_SIZE) {
+            simplified.points.clear();
+            simplified.points.addAll(points);
+        }
+        return simplified;
+    }
+
+    /**
+     * Returns the trace in the "lat lng alt acc;" format used for geotrace and geoshape answers.
+     */
+    public String toAnswerString() {
+        StringBuilder builder = new StringBuilder(points.size() * 48);
+        for (Point point : points) {
+            builder.append(point.latitude).append(' ')
+                    .append(point.longitude).append(' ')
+                    .append(point.altitude).append(' ')
+                    .append(point.accuracy).append(';');
+        }
+        return builder.toString();
+    }
+
+    private boolean isClosed() {
+        Point first = points.get(0);
+        Point last = points.get(points.size() - 1);
+        return first.latitude == last.latitude && first.longitude == last.longitude;
+    }
+
+    private static double distanceToSegment(double px, double py, double ax, double ay,
+                                            double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = 0;
+        if (lengthSquared > 0) {
+            t = Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+        }
+        double nearestX = ax + t * dx;
+        double nearestY = ay + t * dy;
+        return Math.hypot(px - nearestX, py - nearestY);
+    }
+}
@@ -20,9 +20,6 @@ package org.odk.collect.android.spatial;
  * @author jonnordling@gmail.com
  */
 
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
-
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.Tile;
@@ -31,6 +28,8 @@ import com.google.android.gms.maps.model.TileProvider;
 import java.io.Closeable;
 import java.io.File;
 
+import timber.log.Timber;
+
 public class GoogleMapsMapBoxOfflineTileProvider implements TileProvider, Closeable {
 
     // ------------------------------------------------------------------------
@@ -43,21 +42,20 @@ public class GoogleMapsMapBoxOfflineTileProvider implements TileProvider, Closea
 
     private LatLngBounds bounds;
 
-    private SQLiteDatabase database;
+    private volatile MBTileArchive archive;
 
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
 
     public GoogleMapsMapBoxOfflineTileProvider(File file) {
-        this(file.getAbsolutePath());
+        this.archive = MBTileArchive.acquire(file);
+        this.calculateZoomConstraints();
+        this.calculateBounds();
     }
 
     public GoogleMapsMapBoxOfflineTileProvider(String pathToFile) {
-        int flags = SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS;
-        this.database = SQLiteDatabase.openDatabase(pathToFile, null, flags);
-        this.calculateZoomConstraints();
-        this.calculateBounds();
+        this(new File(pathToFile));
     }
 
     // ------------------------------------------------------------------------
@@ -67,23 +65,11 @@ public class GoogleMapsMapBoxOfflineTileProvider implements TileProvider, Closea
     @Override
     public Tile getTile(int x, int y, int z) {
         Tile tile = NO_TILE;
-        if (this.isZoomLevelAvailable(z) && this.isDatabaseAvailable()) {
-            String[] projection = {
-                    "tile_data"
-            };
-            int row = ((int) (Math.pow(2, z) - y) - 1);
-            String predicate = "tile_row = ? AND tile_column = ? AND zoom_level = ?";
-            String[] values = {
-                    String.valueOf(row), String.valueOf(x), String.valueOf(z)
-            };
-            Cursor c = this.database.query("tiles", projection, predicate, values, null, null,
-                    null);
-            if (c != null) {
-                c.moveToFirst();
-                if (!c.isAfterLast()) {
-                    tile = new Tile(256, 256, c.getBlob(0));
-                }
-                c.close();
+        MBTileArchive archive = this.archive;
+        if (this.isZoomLevelAvailable(z) && archive != null) {
+            byte[] data = archive.getTile(z, x, y);
+            if (data != null) {
+                tile = new Tile(256, 256, data);
             }
         }
         return tile;
@@ -93,10 +79,10 @@ public class GoogleMapsMapBoxOfflineTileProvider implements TileProvider, Closea
     // Closeable Interface
     // ------------------------------------------------------------------------
     @Override
-    public void close() {
-        if (this.database != null) {
-            this.database.close();
-            this.database = null;
+    public synchronized void close() {
+        if (this.archive != null) {
+            this.archive.release();
+            this.archive = null;
         }
     }
 
@@ -127,61 +113,41 @@ public class GoogleMapsMapBoxOfflineTileProvider implements TileProvider, Closea
     // ------------------------------------------------------------------------
 
     private void calculateZoomConstraints() {
-        if (this.isDatabaseAvailable()) {
-
-            String[] projection = new String[]{"value"};
-            String[] minArgs = new String[]{"minzoom"};
-
-            Cursor c = this.database.query("metadata", projection, "name = ?", minArgs, null, null, null);
-
-            c.moveToFirst();
-            if (!c.isAfterLast()) {
-                this.minimumZoom = c.getInt(0);
-            }
-            c.close();
-
-            String[] maxArgs = new String[]{"maxzoom"};
-            c = this.database.query("metadata", projection, "name = ?", maxArgs, null, null, null);
+        String minZoom = this.archive.getMetadata("minzoom");
+        if (minZoom != null) {
+            this.minimumZoom = parseZoom(minZoom, this.minimumZoom);
+        }
 
-            c.moveToFirst();
-            if (!c.isAfterLast()) {
-                this.maximumZoom = c.getInt(0);
-            }
-            c.close();
+        String maxZoom = this.archive.getMetadata("maxzoom");
+        if (maxZoom != null) {
+            this.maximumZoom = parseZoom(maxZoom, this.maximumZoom);
         }
     }
 
-    private void calculateBounds() {
-        if (this.isDatabaseAvailable()) {
-            String[] projection = new String[]{
-                    "value"
-            };
-
-            String[] subArgs = new String[]{
-                    "bounds"
-            };
-            Cursor c = this.database.query("metadata", projection, "name = ?", subArgs, null, null,
-                    null);
-            c.moveToFirst();
-            if (!c.isAfterLast()) {
-                String[] parts = c.getString(0).split(",\\s*");
-
-                double w = Double.parseDouble(parts[0]);
-                double s = Double.parseDouble(parts[1]);
-                double e = Double.parseDouble(parts[2]);
-                double n = Double.parseDouble(parts[3]);
-
-                LatLng ne = new LatLng(n, e);
-                LatLng sw = new LatLng(s, w);
-
-                this.bounds = new LatLngBounds(sw, ne);
-            }
-            c.close();
+    private int parseZoom(String value, int defaultValue) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            Timber.w(e, "Invalid zoom level %s", value);
+            return defaultValue;
         }
     }
 
-    private boolean isDatabaseAvailable() {
-        return (this.database != null) && (this.database.isOpen());
+    private void calculateBounds() {
+        String value = this.archive.getMetadata("bounds");
+        if (value != null) {
+            String[] parts = value.split(",\\s*");
+
+            double w = Double.parseDouble(parts[0]);
+            double s = Double.parseDouble(parts[1]);
+            double e = Double.parseDouble(parts[2]);
+            double n = Double.parseDouble(parts[3]);
+
+            LatLng ne = new LatLng(n, e);
+            LatLng sw = new LatLng(s, w);
+
+            this.bounds = new LatLngBounds(sw, ne);
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,449 @@
+/*
+ * Copyright (C) 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.odk.collect.android.spatial;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.graphics.BitmapFactory;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * Serves tiles from an MBTiles file to both the Google Maps and the osmdroid tile providers.
+ *
+ * <p>Map views request tiles from several threads at once, so the archive keeps a small pool of
+ * read-only connections, each with its own compiled tile query. Tile blobs are kept in an LRU
+ * cache bounded by their size in bytes, and whenever a tile has to be read from the file its
+ * neighbours at the same zoom level are read in the background, since panning is going to ask
+ * for them next.</p>
+ *
+ * <p>Archives are shared per file: {@link #acquire(File)} returns the open archive if there is
+ * one and every caller must balance it with {@link #release()}.</p>
+ *
+ * <p>Coordinates passed in use the XYZ scheme of Google Maps and osmdroid; the conversion to
+ * the TMS rows stored in MBTiles happens here.</p>
+ */
+public class MBTileArchive {
+
+    private static final int CONNECTION_POOL_SIZE = 3;
+    private static final int PREFETCH_RADIUS = 1;
+    private static final long CONNECTION_WAIT_MILLIS = 100;
+    private static final int MAX_CACHE_BYTES = 8 * 1024 * 1024;
+    // accounts for the cache overhead of tiles that are missing from the file
+    private static final int MIN_CACHE_ENTRY_BYTES = 64;
+    private static final byte[] MISSING_TILE = new byte[0];
+    private static final int DEFAULT_TILE_SIZE = 256;
+
+    private static final String TILE_QUERY = "SELECT tile_data FROM tiles"
+            + " WHERE zoom_level = ? AND tile_column = ? AND tile_row = ?";
+
+    private static final Map<String, MBTileArchive> OPEN_ARCHIVES = new HashMap<>();
+
+    private final String path;
+    private final LinkedBlockingQueue<Connection> idleConnections = new LinkedBlockingQueue<>();
+    private final List<Connection> connections = new ArrayList<>();
+    private final LruCache<Long, byte[]> tileCache;
+    private final Set<Long> pendingPrefetches = Collections.synchronizedSet(new HashSet<Long>());
+    private final ExecutorService prefetchExecutor;
+
+    private int references;
+    private volatile boolean closed;
+
+    private MBTileArchive(String path) {
+        this.path = path;
+
+        int maxCacheBytes = (int) Math.min(MAX_CACHE_BYTES, Runtime.getRuntime().maxMemory() / 16);
+        tileCache = new LruCache<Long, byte[]>(maxCacheBytes) {
+            @Override
+            protected int sizeOf(Long key, byte[] tile) {
+                return Math.max(MIN_CACHE_ENTRY_BYTES, tile.length);
+            }
+        };
+
+        // fail early if the file can't be opened, before there's a thread to leak
+        idleConnections.add(openConnection());
+
+        prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "MBTilePrefetch");
+            }
+        });
+    }
+
+    public static MBTileArchive acquire(File file) {
+        synchronized (OPEN_ARCHIVES) {
+            String path = file.getAbsolutePath();
+            MBTileArchive archive = OPEN_ARCHIVES.get(path);
+            if (archive == null) {
+                archive = new MBTileArchive(path);
+                OPEN_ARCHIVES.put(path, archive);
+            }
+            archive.references++;
+            return archive;
+        }
+    }
+
+    public void release() {
+        synchronized (OPEN_ARCHIVES) {
+            if (--references > 0) {
+                return;
+            }
+            OPEN_ARCHIVES.remove(path);
+        }
+        close();
+    }
+
+    /**
+     * Returns the tile image, or null if the archive has no tile at these coordinates.
+     */
+    @Nullable
+    public byte[] getTile(int zoom, int x, int y) {
+        long key = getTileKey(zoom, x, y);
+        byte[] tile = tileCache.get(key);
+        if (tile == null) {
+            tile = readTile(zoom, x, y);
+            if (tile == null) {
+                return null;
+            }
+            tileCache.put(key, tile);
+            prefetchNeighbours(zoom, x, y);
+        }
+        return tile == MISSING_TILE ? null : tile;
+    }
+
+    /**
+     * Returns the value stored under the given name in the metadata table.
+     */
+    @Nullable
+    public String getMetadata(String name) {
+        Connection connection = borrowConnection();
+        if (connection == null) {
+            return null;
+        }
+        Cursor cursor = null;
+        try {
+            cursor = connection.database.rawQuery("SELECT value FROM metadata WHERE name = ?",
+                    new String[]{name});
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } catch (SQLiteException e) {
+            Timber.w(e, "Unable to read %s from %s", name, path);
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            returnConnection(connection);
+        }
+    }
+
+    /**
+     * Returns the lowest zoom level that has tiles, or -1 if there are none.
+     */
+    public int getMinimumTileZoom() {
+        return queryForInt("SELECT MIN(zoom_level) FROM tiles");
+    }
+
+    /**
+     * Returns the highest zoom level that has tiles, or -1 if there are none.
+     */
+    public int getMaximumTileZoom() {
+        return queryForInt("SELECT MAX(zoom_level) FROM tiles");
+    }
+
+    /**
+     * Returns the height in pixels of the first tile in the archive.
+     */
+    public int getTileSize() {
+        Connection connection = borrowConnection();
+        if (connection == null) {
+            return DEFAULT_TILE_SIZE;
+        }
+        Cursor cursor = null;
+        try {
+            cursor = connection.database.rawQuery("SELECT tile_data FROM tiles LIMIT 0,1", null);
+            if (cursor.moveToFirst()) {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                byte[] tile = cursor.getBlob(0);
+                BitmapFactory.decodeByteArray(tile, 0, tile.length, options);
+                if (options.outHeight > 0) {
+                    return options.outHeight;
+                }
+            }
+        } catch (SQLiteException e) {
+            Timber.w(e, "Unable to read the tile size of %s", path);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            returnConnection(connection);
+        }
+        return DEFAULT_TILE_SIZE;
+    }
+
+    /**
+     * Returns how many connections the pool has opened.
+     */
+    int getConnectionCount() {
+        synchronized (connections) {
+            return connections.size();
+        }
+    }
+
+    /**
+     * Packs the tile coordinates into a single cache key.
+     */
+    static long getTileKey(int zoom, int x, int y) {
+        return ((long) zoom << 58) | ((long) x << 29) | y;
+    }
+
+    /**
+     * Converts an XYZ row to the TMS row used by MBTiles.
+     */
+    static int getTmsRow(int zoom, int y) {
+        return (1 << zoom) - 1 - y;
+    }
+
+    private void prefetchNeighbours(final int zoom, int x, int y) {
+        int tilesPerSide = 1 << zoom;
+        for (int dx = -PREFETCH_RADIUS; dx <= PREFETCH_RADIUS; dx++) {
+            for (int dy = -PREFETCH_RADIUS; dy <= PREFETCH_RADIUS; dy++) {
+                final int neighbourX = x + dx;
+                final int neighbourY = y + dy;
+                if ((dx == 0 && dy == 0) || neighbourX < 0 || neighbourY < 0
+                        || neighbourX >= tilesPerSide || neighbourY >= tilesPerSide) {
+                    continue;
+                }
+
+                final long key = getTileKey(zoom, neighbourX, neighbourY);
+                if (tileCache.get(key) != null || !pendingPrefetches.add(key)) {
+                    continue;
+                }
+                if (closed) {
+                    return;
+                }
+                prefetchExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (tileCache.get(key) == null) {
+                                byte[] tile = readTile(zoom, neighbourX, neighbourY);
+                                if (tile != null) {
+                                    tileCache.put(key, tile);
+                                }
+                            }
+                        } finally {
+                            pendingPrefetches.remove(key);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Reads a tile from the file. Returns {@link #MISSING_TILE} if the archive has no such tile
+     * and null if it couldn't be read at all.
+     */
+    @Nullable
+    private byte[] readTile(int zoom, int x, int y) {
+        Connection connection = borrowConnection();
+        if (connection == null) {
+            return null;
+        }
+
+        ParcelFileDescriptor blob = null;
+        try {
+            SQLiteStatement statement = connection.tileQuery;
+            statement.bindLong(1, zoom);
+            statement.bindLong(2, x);
+            statement.bindLong(3, getTmsRow(zoom, y));
+            blob = statement.simpleQueryForBlobFileDescriptor();
+            if (blob == null) {
+                return MISSING_TILE;
+            }
+
+            InputStream inputStream = new ParcelFileDescriptor.AutoCloseInputStream(blob);
+            blob = null;
+            try {
+                return IOUtils.toByteArray(inputStream);
+            } finally {
+                IOUtils.closeQuietly(inputStream);
+            }
+        } catch (SQLiteDoneException e) {
+            return MISSING_TILE;
+        } catch (SQLiteException | IOException e) {
+            Timber.w(e, "Unable to read tile %d/%d/%d from %s", zoom, x, y, path);
+            return null;
+        } finally {
+            if (blob != null) {
+                try {
+                    blob.close();
+                } catch (IOException e) {
+                    Timber.w(e);
+                }
+            }
+            connection.tileQuery.clearBindings();
+            returnConnection(connection);
+        }
+    }
+
+    private int queryForInt(String sql) {
+        Connection connection = borrowConnection();
+        if (connection == null) {
+            return -1;
+        }
+        Cursor cursor = null;
+        try {
+            cursor = connection.database.rawQuery(sql, null);
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getInt(0) : -1;
+        } catch (SQLiteException e) {
+            Timber.w(e, "Unable to run %s on %s", sql, path);
+            return -1;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            returnConnection(connection);
+        }
+    }
+
+    /**
+     * Takes an idle connection, opening a new one if the pool isn't full yet and waiting for one
+     * to be returned otherwise. Returns null once the archive is closed.
+     */
+    @Nullable
+    private Connection borrowConnection() {
+        if (closed) {
+            return null;
+        }
+        Connection connection = idleConnections.poll();
+        if (connection != null) {
+            return connection;
+        }
+
+        synchronized (connections) {
+            if (!closed && connections.size() < CONNECTION_POOL_SIZE) {
+                try {
+                    return openConnection();
+                } catch (SQLiteException e) {
+                    Timber.w(e, "Unable to open another connection to %s", path);
+                }
+            }
+        }
+
+        try {
+            // poll so that waiting threads notice when the archive gets closed
+            while (!closed) {
+                connection = idleConnections.poll(CONNECTION_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                if (connection != null) {
+                    return connection;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private void returnConnection(Connection connection) {
+        // checked under the lock close() takes, so that a connection can't be queued after the
+        // idle ones were closed
+        synchronized (connections) {
+            if (!closed) {
+                idleConnections.add(connection);
+                return;
+            }
+        }
+        connection.close();
+    }
+
+    private Connection openConnection() {
+        int flags = SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS;
+        SQLiteDatabase database = SQLiteDatabase.openDatabase(path, null, flags);
+        Connection connection;
+        try {
+            connection = new Connection(database, database.compileStatement(TILE_QUERY));
+        } catch (SQLiteException e) {
+            // not an MBTiles file
+            database.close();
+            throw e;
+        }
+        synchronized (connections) {
+            connections.add(connection);
+        }
+        return connection;
+    }
+
+    private void close() {
+        synchronized (connections) {
+            closed = true;
+        }
+        prefetchExecutor.shutdownNow();
+        tileCache.evictAll();
+
+        Connection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    private static class Connection {
+        private final SQLiteDatabase database;
+        private final SQLiteStatement tileQuery;
+
+        Connection(SQLiteDatabase database, SQLiteStatement tileQuery) {
+            this.database = database;
+            this.tileQuery = tileQuery;
+        }
+
+        void close() {
+            tileQuery.close();
+            database.close();
+        }
+    }
+}
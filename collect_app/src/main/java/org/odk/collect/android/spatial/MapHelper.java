@@ -24,8 +24,6 @@ import android.app.AlertDialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.SharedPreferences;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.graphics.Color;
 import android.preference.PreferenceManager;
 
@@ -76,6 +74,7 @@ public class MapHelper {
 
     private TilesOverlay osmTileOverlay;
     private TileOverlay googleTileOverlay;
+    private GoogleMapsMapBoxOfflineTileProvider googleTileProvider;
     private IRegisterReceiver iregisterReceiver;
 
     private org.odk.collect.android.spatial.TileSourceFactory tileFactory;
@@ -190,16 +189,10 @@ public class MapHelper {
                         switch (item) {
                             case 0:
                                 if (googleMap != null) {
-                                    if (googleTileOverlay != null) {
-                                        googleTileOverlay.remove();
-                                    }
-
+                                    removeGoogleTileOverlay();
                                 } else {
                                     //OSM
-                                    if (osmTileOverlay != null) {
-                                        osmMap.getOverlays().remove(osmTileOverlay);
-                                        osmMap.invalidate();
-                                    }
+                                    removeOsmTileOverlay();
                                 }
                                 selectedLayer = item;
                                 break;
@@ -214,22 +207,18 @@ public class MapHelper {
                                         if (googleMap != null) {
                                             try {
                                                 //googleMap.clear();
-                                                if (googleTileOverlay != null) {
-                                                    googleTileOverlay.remove();
-                                                }
+                                                removeGoogleTileOverlay();
                                                 TileOverlayOptions opts = new TileOverlayOptions();
                                                 GoogleMapsMapBoxOfflineTileProvider provider =
                                                         new GoogleMapsMapBoxOfflineTileProvider(spfile);
+                                                googleTileProvider = provider;
                                                 opts.tileProvider(provider);
                                                 googleTileOverlay = googleMap.addTileOverlay(opts);
                                             } catch (Exception e) {
                                                 break;
                                             }
                                         } else {
-                                            if (osmTileOverlay != null) {
-                                                osmMap.getOverlays().remove(osmTileOverlay);
-                                                osmMap.invalidate();
-                                            }
+                                            removeOsmTileOverlay();
                                             osmMap.invalidate();
                                             OsmMBTileProvider mbprovider = new OsmMBTileProvider(
                                                     iregisterReceiver, spfile);
@@ -252,6 +241,27 @@ public class MapHelper {
 
     }
 
+    private void removeGoogleTileOverlay() {
+        if (googleTileOverlay != null) {
+            googleTileOverlay.remove();
+            googleTileOverlay = null;
+        }
+        if (googleTileProvider != null) {
+            googleTileProvider.close();
+            googleTileProvider = null;
+        }
+    }
+
+    private void removeOsmTileOverlay() {
+        if (osmTileOverlay != null) {
+            osmMap.getOverlays().remove(osmTileOverlay);
+            // releases the MBTiles archive held by the tile provider
+            osmTileOverlay.onDetach(osmMap);
+            osmTileOverlay = null;
+            osmMap.invalidate();
+        }
+    }
+
     private File[] getFileFromSelectedItem(int item) {
         File directory = new File(Collect.OFFLINE_LAYERS + slash + offilineOverlays[item]);
         return directory.listFiles(new FilenameFilter() {
@@ -264,18 +274,12 @@ public class MapHelper {
 
     // osmdroid doesn't currently support pbf tiles: https://github.com/osmdroid/osmdroid/issues/101
     private boolean isFileFormatSupported(File file) {
-        boolean result = true;
-        SQLiteDatabase db = SQLiteDatabase.openDatabase(file.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY);
-        Cursor cursor = db.rawQuery("SELECT * FROM metadata where name =?", new String[]{"format"});
-        if (cursor != null && cursor.getCount() == 1) {
-            try {
-                cursor.moveToFirst();
-                result = !"pbf".equals(cursor.getString(cursor.getColumnIndex("value")));
-            } finally {
-                cursor.close();
-            }
+        MBTileArchive archive = MBTileArchive.acquire(file);
+        try {
+            return !"pbf".equals(archive.getMetadata("format"));
+        } finally {
+            archive.release();
         }
-        return result;
     }
 
 }
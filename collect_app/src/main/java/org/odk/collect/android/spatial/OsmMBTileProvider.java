@@ -64,8 +64,16 @@ public class OsmMBTileProvider extends MapTileProviderArray {
         Collections.addAll(mTileProviderList, tileProviderArray);
     }
 
+    @Override
+    public void detach() {
+        super.detach();
+        // the overlay is gone, let go of the shared archive
+        ((OsmMBTileSource) getTileSource()).close();
+    }
+
     // TODO: implement public Drawable getMapTile(final MapTile pTile) {}
     //       The current implementation is needlessly complex because it uses
-    //       MapTileProviderArray as a basis.
+    //       MapTileProviderArray as a basis. Tile lookups themselves are cheap,
+    //       they go through the cache and connection pool of MBTileArchive.
 
 }
\ No newline at end of file
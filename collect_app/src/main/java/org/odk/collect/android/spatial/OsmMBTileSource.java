@@ -18,11 +18,6 @@
 
 package org.odk.collect.android.spatial;
 
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-
 import org.osmdroid.tileprovider.MapTile;
 import org.osmdroid.tileprovider.tilesource.BitmapTileSourceBase;
 
@@ -43,8 +38,8 @@ public class OsmMBTileSource extends BitmapTileSourceBase {
     public static final String COL_TILES_TILE_ROW = "tile_row";
     public static final String COL_TILES_TILE_DATA = "tile_data";
 
-    protected SQLiteDatabase database;
-    protected File archive;
+    protected volatile MBTileArchive archive;
+    protected File file;
 
     // Reasonable defaults ..
     public static final int minZoom = 8;
@@ -60,11 +55,11 @@ public class OsmMBTileSource extends BitmapTileSourceBase {
                               int maxZoom,
                               int tileSizePixels,
                               File file,
-                              SQLiteDatabase db) {
+                              MBTileArchive archive) {
         super("MBTiles", minZoom, maxZoom, tileSizePixels, ".png");
 
-        archive = file;
-        database = db;
+        this.file = file;
+        this.archive = archive;
     }
 
     /**
@@ -73,86 +68,49 @@ public class OsmMBTileSource extends BitmapTileSourceBase {
      * Parameters minZoom, maxZoom en tileSizePixels are obtained from the
      * database. If they cannot be obtained from the DB, the default values as
      * defined by this class are used.
+     * <p>
+     * The source holds a reference to the shared {@link MBTileArchive} until
+     * {@link #close()} is called.
      */
     public static OsmMBTileSource createFromFile(File file) {
-        int flags = SQLiteDatabase.NO_LOCALIZED_COLLATORS | SQLiteDatabase.OPEN_READONLY;
-        int tileSize = tileSizePixels;
-
-        // Open the database
-        SQLiteDatabase db = SQLiteDatabase.openDatabase(file.getAbsolutePath(), null, flags);
+        MBTileArchive archive = MBTileArchive.acquire(file);
 
         // Get the tile size
-        Cursor cursor = db.rawQuery("SELECT tile_data FROM tiles LIMIT 0,1",
-                new String[]{});
-
-        if (cursor.getCount() != 0) {
-            cursor.moveToFirst();
-            InputStream is = new ByteArrayInputStream(cursor.getBlob(0));
-
-            Bitmap bitmap = BitmapFactory.decodeStream(is);
-            if (bitmap != null) {
-                tileSize = bitmap.getHeight();
-            }
-            Timber.w("Found a tile size of %d", tileSize);
-        }
-        cursor.close();
+        int tileSize = archive.getTileSize();
+        Timber.w("Found a tile size of %d", tileSize);
 
         // Get the minimum zoomlevel from the MBTiles file
-        int value = getInt(db, "SELECT MIN(zoom_level) FROM tiles;");
+        int value = archive.getMinimumTileZoom();
         int minZoomLevel = value > -1 ? value : minZoom;
 
         // Get the maximum zoomlevel from the MBTiles file
-        value = getInt(db, "SELECT MAX(zoom_level) FROM tiles;");
+        value = archive.getMaximumTileZoom();
         int maxZoomLevel = value > -1 ? value : maxZoom;
 
-        return new OsmMBTileSource(minZoomLevel, maxZoomLevel, tileSize, file, db);
-    }
-
-    protected static int getInt(SQLiteDatabase db, String sql) {
-        Cursor cursor = db.rawQuery(sql, new String[]{});
-        int value = -1;
-
-        if (cursor.getCount() != 0) {
-            cursor.moveToFirst();
-            value = cursor.getInt(0);
-            Timber.e("Found a minimum zoomlevel of %d", value);
-        }
-
-        cursor.close();
-        return value;
+        return new OsmMBTileSource(minZoomLevel, maxZoomLevel, tileSize, file, archive);
     }
 
     public InputStream getInputStream(MapTile mapTile) {
+        MBTileArchive archive = this.archive;
+        if (archive == null) {
+            return null;
+        }
 
         try {
-            InputStream ret = null;
-            final String[] tile = {COL_TILES_TILE_DATA};
-            final String[] xyz = {Integer.toString(mapTile.getX()),
-                    Double.toString(Math.pow(2, mapTile.getZoomLevel()) - mapTile.getY() - 1),
-                    Integer.toString(mapTile.getZoomLevel())};
-
-            final Cursor cur = database.query(TABLE_TILES,
-                    tile,
-                    "tile_column=? and tile_row=? and zoom_level=?",
-                    xyz,
-                    null,
-                    null,
-                    null);
-
-            if (cur.getCount() != 0) {
-                cur.moveToFirst();
-                ret = new ByteArrayInputStream(cur.getBlob(0));
-            }
-
-            cur.close();
-
-            if (ret != null) {
-                return ret;
+            byte[] tile = archive.getTile(mapTile.getZoomLevel(), mapTile.getX(), mapTile.getY());
+            if (tile != null) {
+                return new ByteArrayInputStream(tile);
             }
-
         } catch (final Throwable e) {
             Timber.w(e, "Error getting db stream: %s", mapTile);
         }
         return null;
     }
-}
\ No newline at end of file
+
+    public synchronized void close() {
+        if (archive != null) {
+            archive.release();
+            archive = null;
+        }
+    }
+}
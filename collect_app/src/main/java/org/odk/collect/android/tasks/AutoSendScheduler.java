@@ -0,0 +1,311 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.tasks;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.support.v4.net.ConnectivityManagerCompat;
+
+import org.odk.collect.android.dao.InstancesDao;
+import org.odk.collect.android.preferences.GeneralSharedPreferences;
+import org.odk.collect.android.preferences.PreferenceKeys;
+import org.odk.collect.android.provider.InstanceProviderAPI;
+import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
+import org.odk.collect.android.receivers.NetworkReceiver;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Decides when finalized instances are sent automatically, and which ones.
+ *
+ * <p>Connectivity changes and saved forms only schedule an attempt. Triggers that come in quick
+ * succession, as they do when the network flaps, push the attempt back until they settle, up
+ * to a limit. Only one batch is sent at a time, and a batch is capped by number of instances
+ * and by size, oldest first. When a batch fails the next attempt is delayed exponentially; the
+ * failure count and the time of the next attempt are kept in their own preferences, so the
+ * backoff survives the process being killed. The attempt is made by an alarm delivered to
+ * {@link NetworkReceiver}, since job scheduling isn't available on every supported API
+ * level. Alarms don't survive a reboot, so the receiver re-arms the pending attempt from the
+ * preferences when the device boots.</p>
+ *
+ * <p>The time a batch started is kept in the preferences too, so that a batch is seen as running
+ * across processes. A batch that hasn't finished after {@link #MAX_BATCH_MS} is taken to have
+ * died with its process.</p>
+ *
+ * <p>All methods must be called from the UI thread.</p>
+ */
+public final class AutoSendScheduler {
+
+    public static final String ACTION_AUTO_SEND = "org.odk.collect.android.AUTO_SEND";
+
+    private static final long DEBOUNCE_MS = 30 * 1000;
+    private static final long MAX_DEBOUNCE_MS = 5 * 60 * 1000;
+    static final long MIN_BACKOFF_MS = 60 * 1000;
+    static final long MAX_BACKOFF_MS = 6 * 60 * 60 * 1000;
+    static final int MAX_BATCH_COUNT = 20;
+    static final long MAX_BATCH_BYTES = 10 * 1024 * 1024;
+    static final long MAX_BATCH_MS = 30 * 60 * 1000;
+
+    private static final String PREFERENCES_NAME = "auto_send";
+    private static final String KEY_FAILURES = "failures";
+    private static final String KEY_RETRY_AT = "retry_at";
+    private static final String KEY_BATCH_STARTED_AT = "batch_started_at";
+
+    private static AutoSendScheduler instance;
+
+    // when the first of the triggers the pending attempt is waiting on came in, or 0
+    private long firstTriggerAt;
+
+    private AutoSendScheduler() {
+    }
+
+    public static synchronized AutoSendScheduler getInstance() {
+        if (instance == null) {
+            instance = new AutoSendScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns true while a batch is being sent.
+     */
+    public boolean isRunning(Context context) {
+        return isBatchRunning(getPreferences(context).getLong(KEY_BATCH_STARTED_AT, 0),
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Called when the device has booted: no batch survived it, and the alarm of a pending
+     * attempt is gone, so it is scheduled again if there is anything to send.
+     */
+    public void onBoot(Context context) {
+        getPreferences(context).edit().remove(KEY_BATCH_STARTED_AT).apply();
+        if (hasFinalizedInstances()) {
+            schedule(context);
+        }
+    }
+
+    /**
+     * Schedules an attempt to send the finalized instances once the triggers have settled and
+     * any backoff has expired. Does nothing if auto-send is off for the current network.
+     */
+    public void schedule(Context context) {
+        if (!isAllowed(context)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (firstTriggerAt == 0) {
+            firstTriggerAt = now;
+        }
+        long attemptAt = Math.max(Math.min(now + DEBOUNCE_MS, firstTriggerAt + MAX_DEBOUNCE_MS),
+                getPreferences(context).getLong(KEY_RETRY_AT, 0));
+
+        // replaces the alarm of any attempt scheduled earlier
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.set(AlarmManager.RTC, attemptAt, getAttemptIntent(context));
+    }
+
+    /**
+     * Called when a scheduled attempt is due. Returns the ids of the instances to send, or null
+     * if nothing should be sent now. If ids are returned,
+     * {@link #finishBatch(Context, Long[], boolean)} must be called once they have been sent.
+     */
+    public Long[] startBatch(Context context) {
+        firstTriggerAt = 0;
+        if (isRunning(context) || !isAllowed(context)) {
+            return null;
+        }
+
+        List<Long> ids = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        Cursor cursor = new InstancesDao().getFinalizedInstancesCursor(
+                InstanceColumns.LAST_STATUS_CHANGE_DATE + " ASC");
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext() && ids.size() < MAX_BATCH_COUNT) {
+                    ids.add(cursor.getLong(cursor.getColumnIndex(InstanceColumns._ID)));
+                    sizes.add(getInstanceSize(cursor.getString(
+                            cursor.getColumnIndex(InstanceColumns.INSTANCE_FILE_PATH))));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        int count = getBatchCount(sizes);
+        if (count == 0) {
+            return null;
+        }
+        // committed right away, the upload may outlive this process' chance to write it
+        getPreferences(context).edit()
+                .putLong(KEY_BATCH_STARTED_AT, System.currentTimeMillis())
+                .commit();
+        return ids.subList(0, count).toArray(new Long[count]);
+    }
+
+    /**
+     * Called once the instances returned by {@link #startBatch(Context)} have been sent, or
+     * sending them was given up. Resets or extends the backoff depending on whether every one of
+     * them was submitted, and schedules the next batch if instances are left to send.
+     */
+    public void finishBatch(Context context, Long[] batch, boolean completed) {
+        SharedPreferences preferences = getPreferences(context);
+        preferences.edit().remove(KEY_BATCH_STARTED_AT).apply();
+        if (completed && countFailed(batch) == 0) {
+            preferences.edit().remove(KEY_FAILURES).remove(KEY_RETRY_AT).apply();
+        } else {
+            int failures = preferences.getInt(KEY_FAILURES, 0) + 1;
+            long delay = getBackoffDelay(failures);
+            Timber.i("Auto-send failed %d times in a row, retrying in %d s", failures,
+                    delay / 1000);
+            preferences.edit()
+                    .putInt(KEY_FAILURES, failures)
+                    .putLong(KEY_RETRY_AT, System.currentTimeMillis() + delay)
+                    .apply();
+        }
+
+        if (hasFinalizedInstances()) {
+            schedule(context);
+        }
+    }
+
+    /**
+     * Returns how long to wait before the next attempt after the given number of consecutive
+     * failed batches.
+     */
+    static long getBackoffDelay(int failures) {
+        int doublings = Math.min(Math.max(failures - 1, 0), 20);
+        return Math.min(MIN_BACKOFF_MS << doublings, MAX_BACKOFF_MS);
+    }
+
+    /**
+     * Returns true if a batch started at the given time, or 0 for none, is still taken to be
+     * running.
+     */
+    static boolean isBatchRunning(long startedAt, long now) {
+        return startedAt != 0 && now >= startedAt && now - startedAt < MAX_BATCH_MS;
+    }
+
+    /**
+     * Returns how many of the instances with the given sizes, oldest first, fit in one batch.
+     * The first one is always sent, however large it is.
+     */
+    static int getBatchCount(List<Long> sizes) {
+        int count = 0;
+        long bytes = 0;
+        for (long size : sizes) {
+            if (count == MAX_BATCH_COUNT || count > 0 && bytes + size > MAX_BATCH_BYTES) {
+                break;
+            }
+            bytes += size;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if auto-send is enabled for the network the device is connected to. Sending
+     * over Wi-Fi only means sending over unmetered networks only.
+     */
+    private static boolean isAllowed(Context context) {
+        String autosend = (String) GeneralSharedPreferences.getInstance()
+                .get(PreferenceKeys.KEY_AUTOSEND);
+        ConnectivityManager manager = (ConnectivityManager) context.getSystemService(
+                Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = manager.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return false;
+        }
+
+        switch (autosend) {
+            case "wifi_only":
+                return !ConnectivityManagerCompat.isActiveNetworkMetered(manager);
+            case "cellular_only":
+                return networkInfo.getType() == ConnectivityManager.TYPE_MOBILE;
+            case "wifi_and_cellular":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static long getInstanceSize(String instanceFilePath) {
+        long size = 0;
+        File[] files = new File(instanceFilePath).getParentFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    private static int countFailed(Long[] batch) {
+        StringBuilder selection = new StringBuilder(InstanceColumns.STATUS + "=? and "
+                + InstanceColumns._ID + " in (");
+        String[] selectionArgs = new String[batch.length + 1];
+        selectionArgs[0] = InstanceProviderAPI.STATUS_SUBMISSION_FAILED;
+        for (int i = 0; i < batch.length; i++) {
+            selection.append(i > 0 ? ",?" : "?");
+            selectionArgs[i + 1] = batch[i].toString();
+        }
+        selection.append(')');
+
+        Cursor cursor = new InstancesDao().getInstancesCursor(selection.toString(),
+                selectionArgs);
+        if (cursor == null) {
+            return batch.length;
+        }
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static boolean hasFinalizedInstances() {
+        Cursor cursor = new InstancesDao().getFinalizedInstancesCursor();
+        if (cursor == null) {
+            return false;
+        }
+        try {
+            return cursor.getCount() > 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static PendingIntent getAttemptIntent(Context context) {
+        Intent intent = new Intent(context, NetworkReceiver.class).setAction(ACTION_AUTO_SEND);
+        return PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+}
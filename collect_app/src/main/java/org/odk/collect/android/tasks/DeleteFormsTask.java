@@ -14,14 +14,21 @@
 
 package org.odk.collect.android.tasks;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
+import android.content.OperationApplicationException;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.RemoteException;
 
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.listeners.DeleteFormsListener;
+import org.odk.collect.android.provider.FormsProviderAPI;
 import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
 
+import java.util.ArrayList;
+
 import timber.log.Timber;
 
 /**
@@ -47,27 +54,33 @@ public class DeleteFormsTask extends AsyncTask<Long, Void, Integer> {
         }
         toDeleteCount = params.length;
 
-        // delete files from database and then from file system
+        // delete the rows in one transaction, the provider queues their files to be reclaimed
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
         for (Long param : params) {
-            if (isCancelled()) {
-                break;
-            }
-            try {
-                Uri deleteForm =
-                        Uri.withAppendedPath(FormsColumns.CONTENT_URI, param.toString());
-
-                int wasDeleted = cr.delete(deleteForm, null, null);
-                deleted += wasDeleted;
-
-                if (wasDeleted > 0) {
+            operations.add(ContentProviderOperation.newDelete(
+                    Uri.withAppendedPath(FormsColumns.CONTENT_URI, param.toString())).build());
+        }
+        try {
+            ContentProviderResult[] results = cr.applyBatch(FormsProviderAPI.AUTHORITY,
+                    operations);
+            for (int i = 0; i < results.length; i++) {
+                if (results[i].count > 0) {
+                    deleted += results[i].count;
                     Collect.getInstance().getActivityLogger().logAction(this, "delete",
-                            deleteForm.toString());
+                            operations.get(i).getUri().toString());
                 }
-            } catch (Exception ex) {
-                Timber.e("Exception during delete of: %s exception: %s", param.toString(), ex.toString());
             }
+        } catch (RemoteException | OperationApplicationException e) {
+            Timber.e(e, "Exception during delete of %d forms", params.length);
         }
         successCount = deleted;
+
+        // a form downloaded again right away must not lose its files to the reclaimer
+        try {
+            FileReclaimer.getInstance().awaitIdle(null);
+        } catch (InterruptedException e) {
+            Timber.i("Stopped waiting for the files of the deleted forms");
+        }
         return deleted;
     }
 
@@ -14,14 +14,21 @@
 
 package org.odk.collect.android.tasks;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
+import android.content.OperationApplicationException;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.RemoteException;
 
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.listeners.DeleteInstancesListener;
+import org.odk.collect.android.provider.InstanceProviderAPI;
 import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
 
+import java.util.ArrayList;
+
 import timber.log.Timber;
 
 /**
@@ -32,6 +39,8 @@ import timber.log.Timber;
  */
 public class DeleteInstancesTask extends AsyncTask<Long, Integer, Integer> {
 
+    // the number of rows deleted in one transaction
+    static final int BATCH_SIZE = 100;
 
     private ContentResolver contentResolver;
     private DeleteInstancesListener deleteInstancesListener;
@@ -49,31 +58,51 @@ public class DeleteInstancesTask extends AsyncTask<Long, Integer, Integer> {
 
         toDeleteCount = params.length;
 
-
-        // delete files from database and then from file system
-        for (Long param : params) {
+        // delete the rows a batch at a time, each in one transaction, so that a cancel stops
+        // the delete between batches. The provider queues their files to be reclaimed.
+        for (int start = 0; start < params.length; start += BATCH_SIZE) {
             if (isCancelled()) {
                 break;
             }
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+            for (int i = start; i < Math.min(params.length, start + BATCH_SIZE); i++) {
+                operations.add(ContentProviderOperation.newDelete(
+                        Uri.withAppendedPath(InstanceColumns.CONTENT_URI, params[i].toString()))
+                        .build());
+            }
             try {
-                Uri deleteForm =
-                        Uri.withAppendedPath(InstanceColumns.CONTENT_URI, param.toString());
-
-                int wasDeleted = contentResolver.delete(deleteForm, null, null);
-                deleted += wasDeleted;
-
-                if (wasDeleted > 0) {
-                    Collect.getInstance().getActivityLogger().logAction(this, "delete", deleteForm.toString());
+                ContentProviderResult[] results =
+                        contentResolver.applyBatch(InstanceProviderAPI.AUTHORITY, operations);
+                for (int i = 0; i < results.length; i++) {
+                    if (results[i].count > 0) {
+                        deleted += results[i].count;
+                        Collect.getInstance().getActivityLogger().logAction(this, "delete",
+                                operations.get(i).getUri().toString());
+                    }
                 }
+            } catch (RemoteException | OperationApplicationException e) {
+                Timber.e(e, "Exception during delete of %d instances", operations.size());
+            }
+            successCount = deleted;
+            publishProgress(Math.min(params.length, start + BATCH_SIZE), params.length);
+        }
 
-                successCount++;
-                publishProgress(successCount,toDeleteCount);
+        if (isCancelled()) {
+            // the files of the deleted rows are still reclaimed in the background
+            return deleted;
+        }
 
-            } catch (Exception ex) {
-                Timber.e("Exception during delete of: %s exception: %s", param.toString(), ex.toString());
-            }
+        // the files take most of the time, so that is what the progress shows
+        try {
+            FileReclaimer.getInstance().awaitIdle(new FileReclaimer.ProgressListener() {
+                @Override
+                public void onProgress(int reclaimed, int total) {
+                    publishProgress(reclaimed, total);
+                }
+            });
+        } catch (InterruptedException e) {
+            Timber.i("Stopped waiting for the files of the deleted instances");
         }
-        successCount = deleted;
         return deleted;
     }
 
@@ -25,6 +25,8 @@ import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.dao.FormsDao;
 import org.odk.collect.android.listeners.DiskSyncListener;
 import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
+import org.odk.collect.android.tracing.Span;
+import org.odk.collect.android.tracing.Tracer;
 import org.odk.collect.android.utilities.FileUtils;
 import org.odk.collect.android.utilities.UrlUtils;
 
@@ -55,6 +57,7 @@ public class DiskSyncTask extends AsyncTask<Void, String, String> {
         formsDao = new FormsDao();
         int instance = ++counter;
         Timber.i("[%d] doInBackground begins!", instance);
+        Span span = Tracer.start("sync forms");
 
         List<String> idsToDelete = new ArrayList<>();
 
@@ -217,6 +220,7 @@ public class DiskSyncTask extends AsyncTask<Void, String, String> {
             }
             return statusMessage;
         } finally {
+            span.end();
             Timber.i("[%d] doInBackground ends!", instance);
         }
     }
@@ -251,10 +255,13 @@ public class DiskSyncTask extends AsyncTask<Void, String, String> {
         ContentValues updateValues = new ContentValues();
 
         HashMap<String, String> fields = null;
+        Span span = Tracer.start("parse");
         try {
             fields = FileUtils.parseXML(formDefFile);
         } catch (RuntimeException e) {
             throw new IllegalArgumentException(formDefFile.getName() + " :: " + e.toString());
+        } finally {
+            span.end();
         }
 
         // update date
@@ -25,9 +25,12 @@ import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.dao.FormsDao;
 import org.odk.collect.android.exception.TaskCancelledException;
+import org.odk.collect.android.external.ExternalDataPackage;
 import org.odk.collect.android.listeners.FormDownloaderListener;
 import org.odk.collect.android.logic.FormDetails;
 import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
+import org.odk.collect.android.tracing.Span;
+import org.odk.collect.android.tracing.Tracer;
 import org.odk.collect.android.utilities.DocumentFetchResult;
 import org.odk.collect.android.utilities.FileUtils;
 import org.odk.collect.android.utilities.UrlUtils;
@@ -51,7 +54,9 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.zip.GZIPInputStream;
 
 import timber.log.Timber;
@@ -85,7 +90,15 @@ public class DownloadFormsTask extends
 
     @Override
     protected HashMap<FormDetails, String> doInBackground(ArrayList<FormDetails>... values) {
-        ArrayList<FormDetails> toDownload = values[0];
+        Span span = Tracer.start("download forms");
+        try {
+            return downloadForms(values[0]);
+        } finally {
+            span.end();
+        }
+    }
+
+    private HashMap<FormDetails, String> downloadForms(ArrayList<FormDetails> toDownload) {
 
         formsDao = new FormsDao();
         int total = toDownload.size();
@@ -97,6 +110,7 @@ public class DownloadFormsTask extends
 
         for (FormDetails fd : toDownload) {
             publishProgress(fd.formName, String.valueOf(count), String.valueOf(total));
+            Tracer.count("forms", 1);
 
             String message = "";
 
@@ -164,6 +178,7 @@ public class DownloadFormsTask extends
                     // move the media files in the media folder
                     if (tempMediaPath != null) {
                         File formMediaPath = new File(uriResult.getMediaPath());
+                        ExternalDataPackage.install(new File(tempMediaPath), formMediaPath);
                         FileUtils.moveMediaFiles(tempMediaPath, formMediaPath);
                     }
                 } catch (IOException e) {
@@ -414,7 +429,7 @@ public class DownloadFormsTask extends
 
             HttpResponse response;
             try {
-                response = httpclient.execute(req, localContext);
+                response = WebUtils.execute(httpclient, req, localContext);
                 int statusCode = response.getStatusLine().getStatusCode();
 
                 if (statusCode != HttpStatus.SC_OK) {
@@ -444,10 +459,13 @@ public class DownloadFormsTask extends
                     os = new FileOutputStream(tempFile);
                     byte[] buf = new byte[4096];
                     int len;
+                    long byteCount = 0;
                     while ((len = is.read(buf)) > 0 && !isCancelled()) {
                         os.write(buf, 0, len);
+                        byteCount += len;
                     }
                     os.flush();
+                    Tracer.count("bytes", byteCount);
                     success = true;
                 } finally {
                     if (os != null) {
@@ -676,6 +694,14 @@ public class DownloadFormsTask extends
             }
         }
 
+        // a pre-built data set makes the CSV it was built from unnecessary
+        Set<String> packagedDataSets = new HashSet<String>();
+        for (MediaFile file : files) {
+            if (ExternalDataPackage.isPackage(file.filename)) {
+                packagedDataSets.add(ExternalDataPackage.getDataSetName(file.filename));
+            }
+        }
+
         // OK we now have the full set of files to download...
         Timber.i("Downloading %d media files.", files.size());
         int mediaCount = 0;
@@ -697,7 +723,21 @@ public class DownloadFormsTask extends
                 File finalMediaFile = new File(finalMediaDir, toDownload.filename);
                 File tempMediaFile = new File(tempMediaDir, toDownload.filename);
 
-                if (!finalMediaFile.exists()) {
+                if (ExternalDataPackage.isFallback(toDownload.filename, packagedDataSets)) {
+                    Timber.i("Skipping %s -- the data set is pre-built", toDownload.filename);
+                } else if (ExternalDataPackage.isPackage(toDownload.filename)) {
+                    if (ExternalDataPackage.isInstalled(finalMediaDir, toDownload.filename,
+                            toDownload.hash)) {
+                        Timber.i("Skipping data set fetch -- already installed: %s",
+                                toDownload.filename);
+                    } else {
+                        downloadFile(tempMediaFile, toDownload.downloadUrl);
+                        if (!ExternalDataPackage.unpack(tempMediaFile, toDownload.hash)) {
+                            return Collect.getInstance().getString(R.string.ext_package_hash_error,
+                                    toDownload.filename);
+                        }
+                    }
+                } else if (!finalMediaFile.exists()) {
                     downloadFile(tempMediaFile, toDownload.downloadUrl);
                 } else {
                     String currentFileHash = FileUtils.getMd5Hash(finalMediaFile);
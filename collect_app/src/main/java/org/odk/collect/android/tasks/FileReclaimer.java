@@ -0,0 +1,189 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.tasks;
+
+import android.os.Process;
+
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.utilities.MediaUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import timber.log.Timber;
+
+/**
+ * Deletes the files of instances and forms whose rows were deleted, along with their entries
+ * in the media providers.
+ *
+ * <p>The providers queue the files of a bulk delete here once its transaction is committed, and
+ * a single background thread reclaims everything queued so far at once: the media entries of
+ * all the folders are removed with a few batched deletes, then the files are deleted one by
+ * one. Callers that have to wait for the files to be gone use
+ * {@link #awaitIdle(ProgressListener)}.</p>
+ */
+public final class FileReclaimer {
+
+    private static FileReclaimer instance;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Object lock = new Object();
+    private final List<File> queue = new ArrayList<>();
+    private int queuedCount;
+    private int reclaimedCount;
+    private boolean running;
+
+    private final Runnable worker = new Runnable() {
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            while (true) {
+                List<File> files;
+                synchronized (lock) {
+                    if (queue.isEmpty()) {
+                        Timber.i("Reclaimed %d files", reclaimedCount);
+                        queuedCount = 0;
+                        reclaimedCount = 0;
+                        running = false;
+                        lock.notifyAll();
+                        return;
+                    }
+                    files = new ArrayList<>(queue);
+                    queue.clear();
+                }
+
+                deleteFromMediaProviders(files);
+                for (File file : files) {
+                    deleteFileOrDir(file);
+                    synchronized (lock) {
+                        reclaimedCount++;
+                        lock.notifyAll();
+                    }
+                }
+            }
+        }
+    };
+
+    public interface ProgressListener {
+        /**
+         * Called on the waiting thread with the number of files reclaimed out of those queued
+         * since the reclaimer was last idle.
+         */
+        void onProgress(int reclaimed, int total);
+    }
+
+    private FileReclaimer() {
+    }
+
+    public static synchronized FileReclaimer getInstance() {
+        if (instance == null) {
+            instance = new FileReclaimer();
+        }
+        return instance;
+    }
+
+    /**
+     * Queues the given files and folders to be deleted in the background.
+     */
+    public void reclaim(List<File> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            queue.addAll(files);
+            queuedCount += files.size();
+            if (!running) {
+                running = true;
+                executor.execute(worker);
+            }
+        }
+    }
+
+    /**
+     * Blocks until every queued file has been reclaimed, reporting the progress to the given
+     * listener, if any.
+     */
+    public void awaitIdle(ProgressListener listener) throws InterruptedException {
+        synchronized (lock) {
+            while (running) {
+                if (listener != null) {
+                    listener.onProgress(reclaimedCount, queuedCount);
+                }
+                lock.wait();
+            }
+        }
+    }
+
+    /**
+     * Deletes the given files and folders right away, on the calling thread.
+     */
+    public static void delete(List<File> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        deleteFromMediaProviders(files);
+        for (File file : files) {
+            deleteFileOrDir(file);
+        }
+    }
+
+    private static void deleteFromMediaProviders(List<File> files) {
+        List<File> folders = new ArrayList<>();
+        for (File file : files) {
+            if (isReclaimableFolder(file)) {
+                folders.add(file);
+            }
+        }
+        if (!folders.isEmpty()) {
+            int count = MediaUtils.deleteMediaInFoldersFromMediaProvider(folders);
+            Timber.i("Removed %d media files of %d folders from content providers", count,
+                    folders.size());
+        }
+    }
+
+    private static void deleteFileOrDir(File file) {
+        if (!file.exists()) {
+            return;
+        }
+        if (isReclaimableFolder(file)) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    // should make this recursive if we get worried about
+                    // the media directory containing directories
+                    if (!child.delete()) {
+                        Timber.w("Unable to delete %s", child.getAbsolutePath());
+                    }
+                }
+            }
+        }
+        if (!file.delete()) {
+            Timber.w("Unable to delete %s", file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns true for folders whose contents may be deleted. ODK Tables manages the lifetime
+     * of the media attachments in its instance folders.
+     */
+    private static boolean isReclaimableFolder(File file) {
+        return file.isDirectory() && !Collect.isODKTablesInstanceDataDirectory(file);
+    }
+}
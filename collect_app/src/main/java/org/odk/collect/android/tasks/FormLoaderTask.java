@@ -42,13 +42,18 @@ import org.odk.collect.android.external.ExternalDataManager;
 import org.odk.collect.android.external.ExternalDataManagerImpl;
 import org.odk.collect.android.external.ExternalDataReader;
 import org.odk.collect.android.external.ExternalDataReaderImpl;
+import org.odk.collect.android.external.SearchExpressionCache;
 import org.odk.collect.android.external.handler.ExternalDataHandlerPull;
 import org.odk.collect.android.listeners.FormLoaderListener;
 import org.odk.collect.android.logic.FileReferenceFactory;
 import org.odk.collect.android.logic.FormController;
+import org.odk.collect.android.logic.SavePointJournal;
+import org.odk.collect.android.tracing.Span;
+import org.odk.collect.android.tracing.Tracer;
 import org.odk.collect.android.utilities.FileUtils;
 import org.odk.collect.android.utilities.ZipUtils;
 
+import java.io.BufferedReader;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -60,6 +65,7 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import au.com.bytecode.opencsv.CSVReader;
 import timber.log.Timber;
@@ -72,6 +78,9 @@ import timber.log.Timber;
  */
 public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FECWrapper> {
     private static final String ITEMSETS_CSV = "itemsets.csv";
+    // functions whose value changes without any answer changing
+    private static final Pattern VOLATILE_FUNCTION =
+            Pattern.compile("\\b(now|today|random|uuid)\\s*\\(");
 
     private FormLoaderListener stateListener;
     private String errorMsg;
@@ -121,11 +130,21 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
      */
     @Override
     protected FECWrapper doInBackground(String... path) {
+        Span span = Tracer.start("load form");
+        try {
+            return loadForm(path[0]);
+        } finally {
+            span.end();
+        }
+    }
+
+    private FECWrapper loadForm(String formPath) {
         FormDef fd = null;
         FileInputStream fis = null;
         errorMsg = null;
 
-        String formPath = path[0];
+        // JavaRosa may still be being initialized if the app was started on this form
+        Collect.getInstance().awaitStartup();
 
         File formXml = new File(formPath);
         String formHash = FileUtils.getMd5Hash(formXml);
@@ -159,10 +178,12 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         }
         if (fd == null) {
             // no binary, read from xml
+            Span span = Tracer.start("parse");
             try {
                 Timber.i("Attempting to load from: %s", formXml.getAbsolutePath());
                 fis = new FileInputStream(formXml);
                 fd = XFormUtils.getFormFromInputStream(fis);
+                span.end();
                 if (fd == null) {
                     errorMsg = "Error reading XForm file";
                 } else {
@@ -172,6 +193,7 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
                 Timber.e(e);
                 errorMsg = e.getMessage();
             } finally {
+                span.end();
                 IOUtils.closeQuietly(fis);
             }
         }
@@ -204,18 +226,22 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
             return null;
         }
 
+        // parse the search() appearances once, for restoring the answers and for the widgets
+        SearchExpressionCache.load(fd);
+
         // create FormEntryController from formdef
         FormEntryModel fem = new FormEntryModel(fd);
         FormEntryController fec = new FormEntryController(fem);
 
         boolean usedSavepoint = false;
 
+        Span initializeSpan = Tracer.start("initialize");
         try {
             // import existing data into formdef
             if (instancePath != null) {
                 File instance = new File(instancePath);
                 File shadowInstance = SaveToDiskTask.savepointFile(instance);
-                if (shadowInstance.exists() && (shadowInstance.lastModified()
+                if (shadowInstance.exists() && (SavePointJournal.lastModified(shadowInstance)
                         > instance.lastModified())) {
                     // the savepoint is newer than the saved value of the instance.
                     // use it.
@@ -226,7 +252,7 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
                 if (instance.exists()) {
                     // This order is important. Import data, then initialize.
                     try {
-                        importData(instance, fec);
+                        importData(instance, fec, usedSavepoint);
                         fd.initialize(false, new InstanceInitializationFactory());
                     } catch (RuntimeException e) {
                         Timber.e(e);
@@ -265,6 +291,8 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
                 errorMsg = e.getMessage();
                 return null;
             }
+        } finally {
+            initializeSpan.end();
         }
 
         // Remove previous forms
@@ -303,7 +331,13 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
             }
             ida.close();
             if (readFile) {
-                readCSV(csv, csvmd5, ItemsetDbAdapter.getMd5FromString(csv.getAbsolutePath()));
+                Span csvSpan = Tracer.start("import itemsets");
+                try {
+                    readCSV(csv, csvmd5,
+                            ItemsetDbAdapter.getMd5FromString(csv.getAbsolutePath()));
+                } finally {
+                    csvSpan.end();
+                }
             }
         }
 
@@ -323,6 +357,8 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         ReferenceManager.instance().addSessionRootTranslator(
                 new RootTranslator("jr://video/", "jr://file/forms/" + formFileName + "-media/"));
 
+        boolean usesVolatileFunctions = usesVolatileFunctions(formXml);
+
         // clean up vars
         fis = null;
         fd = null;
@@ -332,6 +368,7 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
 
         FormController fc = new FormController(formMediaDir, fec, instancePath == null ? null
                 : new File(instancePath));
+        fc.setUsesVolatileFunctions(usesVolatileFunctions);
         if (xpath != null) {
             // we are resuming after having terminated -- set index to this
             // position...
@@ -348,6 +385,29 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
     }
 
     @SuppressWarnings("unchecked")
+    /**
+     * Returns true if the form may use functions such as now(), which is assumed when it can't
+     * be read. Labels mentioning them only make validation slower.
+     */
+    private static boolean usesVolatileFunctions(File formXml) {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(formXml));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (VOLATILE_FUNCTION.matcher(line).find()) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            Timber.w(e);
+            return true;
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
     private void loadExternalData(File mediaFolder) {
         // SCTO-594
         File[] zipFiles = mediaFolder.listFiles(new FileFilter() {
@@ -391,8 +451,14 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
                 publishProgress(Collect.getInstance()
                         .getString(R.string.survey_loading_reading_csv_message));
 
-                ExternalDataReader externalDataReader = new ExternalDataReaderImpl(this);
-                externalDataReader.doImport(externalDataMap);
+                Span span = Tracer.start("import csv");
+                try {
+                    span.count("files", externalDataMap.size());
+                    ExternalDataReader externalDataReader = new ExternalDataReaderImpl(this);
+                    externalDataReader.doImport(externalDataMap);
+                } finally {
+                    span.end();
+                }
             }
         }
     }
@@ -413,6 +479,14 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
     }
 
     public boolean importData(File instanceFile, FormEntryController fec) {
+        return importData(instanceFile, fec, false);
+    }
+
+    /**
+     * @param savepoint true if the instance file is a savepoint, whose journal of the answers
+     *                  given after it was written is applied as well
+     */
+    private boolean importData(File instanceFile, FormEntryController fec, boolean savepoint) {
         publishProgress(
                 Collect.getInstance().getString(R.string.survey_loading_reading_data_message));
 
@@ -421,6 +495,15 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
 
         // get the root of the saved and template instances
         TreeElement savedRoot = XFormParser.restoreDataModel(fileBytes, null).getRoot();
+        if (savepoint) {
+            try {
+                int replayed = SavePointJournal.replay(instanceFile, savedRoot);
+                Timber.i("Replayed %d savepoint journal entries", replayed);
+            } catch (IOException e) {
+                // the answers read so far are kept, the snapshot has all the others
+                Timber.w(e, "Unable to read the savepoint journal");
+            }
+        }
         TreeElement templateRoot = fec.getModel().getForm().getInstance().getRoot().deepCopy(true);
 
         // weak check for matching forms
@@ -466,6 +549,7 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         // TODO: any way to remove reliance on jrsp?
         FileInputStream fis = null;
         FormDef fd = null;
+        Span span = Tracer.start("deserialize");
         try {
             // create new form def
             fd = new FormDef();
@@ -479,6 +563,8 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         } catch (Exception e) {
             Timber.e(e);
             fd = null;
+        } finally {
+            span.end();
         }
 
         return fd;
@@ -497,6 +583,7 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
         // formdef does not exist, create one.
         if (!formDef.exists()) {
             FileOutputStream fos;
+            Span span = Tracer.start("serialize formdef");
             try {
                 fos = new FileOutputStream(formDef);
                 DataOutputStream dos = new DataOutputStream(fos);
@@ -505,6 +592,8 @@ public class FormLoaderTask extends AsyncTask<String, String, FormLoaderTask.FEC
                 dos.close();
             } catch (IOException e) {
                 Timber.e(e);
+            } finally {
+                span.end();
             }
         }
     }
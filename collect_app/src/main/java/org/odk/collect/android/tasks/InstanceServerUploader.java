@@ -28,6 +28,8 @@ import org.odk.collect.android.logic.PropertyManager;
 import org.odk.collect.android.preferences.PreferenceKeys;
 import org.odk.collect.android.provider.InstanceProviderAPI;
 import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
+import org.odk.collect.android.tracing.Span;
+import org.odk.collect.android.tracing.Tracer;
 import org.odk.collect.android.utilities.ApplicationConstants;
 import org.odk.collect.android.utilities.ResponseMessageParser;
 import org.odk.collect.android.utilities.WebUtils;
@@ -172,7 +174,7 @@ public class InstanceServerUploader extends InstanceUploader {
             try {
                 Timber.i("Issuing HEAD request for %s to: %s", id, u.toString());
 
-                response = httpclient.execute(httpHead, localContext);
+                response = WebUtils.execute(httpclient, httpHead, localContext);
                 int statusCode = response.getStatusLine().getStatusCode();
                 if (statusCode == HttpStatus.SC_UNAUTHORIZED) {
                     // clear the cookies -- should not be necessary?
@@ -409,7 +411,8 @@ public class InstanceServerUploader extends InstanceUploader {
 
             try {
                 Timber.i("Issuing POST request for %s to: %s", id, u.toString());
-                response = httpclient.execute(httppost, localContext);
+                Tracer.count("bytes", byteCount);
+                response = WebUtils.execute(httpclient, httppost, localContext);
                 int responseCode = response.getStatusLine().getStatusCode();
                 HttpEntity httpEntity = response.getEntity();
                 messageParser = new ResponseMessageParser(httpEntity);
@@ -531,6 +534,7 @@ public class InstanceServerUploader extends InstanceUploader {
                         Timber.i(e, "Error encoding URL for device id : %s", deviceId);
                     }
 
+                    Tracer.count("instances", 1);
                     if (!uploadOneSubmission(urlString, id, instance, toUpdate, localContext,
                             uriRemap, outcome)) {
                         return false; // get credentials...
@@ -547,6 +551,15 @@ public class InstanceServerUploader extends InstanceUploader {
     }
 
     protected Outcome doInBackground(Long... values) {
+        Span span = Tracer.start("upload");
+        try {
+            return upload(values);
+        } finally {
+            span.end();
+        }
+    }
+
+    private Outcome upload(Long... values) {
         Outcome outcome = new Outcome();
         int counter = 0;
         while (counter * ApplicationConstants.SQLITE_MAX_VARIABLE_NUMBER < values.length) {
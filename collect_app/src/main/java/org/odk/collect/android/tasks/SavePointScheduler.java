@@ -0,0 +1,368 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.tasks;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.core.services.transport.payload.ByteArrayPayload;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.listeners.AnswerChangeListener;
+import org.odk.collect.android.listeners.SavePointListener;
+import org.odk.collect.android.logic.FormController;
+import org.odk.collect.android.logic.SavePointJournal;
+import org.odk.collect.android.tracing.Span;
+import org.odk.collect.android.tracing.Tracer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import timber.log.Timber;
+
+/**
+ * Decides when the savepoint of the form being filled in is written, and writes it on a
+ * dedicated background thread.
+ *
+ * <p>Changes are coalesced: a savepoint is written at most every {@link #MIN_INTERVAL_MS}, and
+ * at the latest {@link #MAX_DELAY_MS} after the oldest change it doesn't have yet, or sooner
+ * once {@link #MAX_PENDING_EDITS} answers changed. Usually only the changed answers are
+ * appended to the {@link SavePointJournal} of the savepoint. The whole instance is serialized
+ * again when repeats were added or deleted, or when the journal got long. That snapshot is
+ * taken on the UI thread, which is the only one answering questions, and only written out on
+ * the writer thread.</p>
+ *
+ * <p>Answers on the current screen are only saved to the form controller when leaving the
+ * screen. Once the user touched the screen they are read from its widgets and journaled too,
+ * without saving them to the form controller, so that what is being typed survives the app
+ * being killed.</p>
+ *
+ * <p>Must be used from the UI thread.</p>
+ */
+public class SavePointScheduler implements AnswerChangeListener {
+
+    static final long MIN_INTERVAL_MS = 3000;
+    static final long MAX_DELAY_MS = 15000;
+    static final int MAX_PENDING_EDITS = 20;
+    static final int MAX_JOURNAL_ENTRIES = 500;
+
+    private static Handler writer;
+
+    // the journal that writes already posted append to, only used on the UI thread; kept across
+    // activities so that a write posted before a rotation is still followed by the next ones
+    private static File journaledSavePoint;
+    private static int journaledEntries;
+
+    public interface Listener extends SavePointListener {
+
+        /**
+         * Returns the answers currently shown on the screen, which may not have been saved to
+         * the form controller yet.
+         */
+        Map<FormIndex, IAnswerData> getCurrentAnswers();
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Listener listener;
+    private final Map<TreeReference, String> pendingEntries = new LinkedHashMap<>();
+    // answers journaled from the screen that differed from the form controller's
+    private Set<TreeReference> journaledScreenAnswers = new HashSet<>();
+    // incremented by discard(), so that writes posted before then are skipped
+    private static final AtomicInteger generation = new AtomicInteger();
+    private boolean fullSnapshotNeeded;
+    private boolean screenReadNeeded;
+    private boolean stopped;
+    private long firstChange = -1;
+    private long lastSavePoint = -1;
+    private long dueTime = -1;
+
+    private final Runnable fire = new Runnable() {
+        @Override
+        public void run() {
+            savePoint();
+        }
+    };
+
+    public SavePointScheduler(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void onAnswerChanged(TreeReference ref, IAnswerData answer) {
+        // only the last answer to a question matters
+        pendingEntries.remove(ref);
+        pendingEntries.put(ref, SavePointJournal.formatEntry(ref, answer));
+        changed();
+    }
+
+    @Override
+    public void onRepeatsChanged() {
+        fullSnapshotNeeded = true;
+        changed();
+    }
+
+    /**
+     * Called when the user touches the screen, which may change answers that are only saved to
+     * the form controller when leaving the screen.
+     */
+    public void onUserInteraction() {
+        screenReadNeeded = true;
+        changed();
+    }
+
+    /**
+     * Writes the savepoint now if there are changes it doesn't have yet.
+     */
+    public void flush() {
+        if (dueTime >= 0) {
+            handler.removeCallbacks(fire);
+            savePoint();
+        }
+    }
+
+    /**
+     * Stops scheduling savepoints, e.g. because the activity is destroyed. The writes already
+     * handed to the writer thread, such as the one of a {@link #flush()}, still go ahead.
+     */
+    public void stop() {
+        stopped = true;
+        handler.removeCallbacks(fire);
+        dueTime = -1;
+        firstChange = -1;
+    }
+
+    /**
+     * Drops the changes that haven't been written yet, including those already handed to the
+     * writer thread, and deletes the savepoint once the write that may be in progress is done,
+     * so that it isn't written again.
+     */
+    public void discard(final File savepoint) {
+        generation.incrementAndGet();
+        handler.removeCallbacks(fire);
+        pendingEntries.clear();
+        journaledScreenAnswers.clear();
+        screenReadNeeded = false;
+        fullSnapshotNeeded = false;
+        dueTime = -1;
+        firstChange = -1;
+        journaledSavePoint = null;
+        getWriter().post(new Runnable() {
+            @Override
+            public void run() {
+                SavePointJournal.delete(savepoint);
+            }
+        });
+    }
+
+    private void changed() {
+        long now = SystemClock.uptimeMillis();
+        if (firstChange < 0) {
+            firstChange = now;
+        }
+        long due = pendingEntries.size() >= MAX_PENDING_EDITS ? now : firstChange + MAX_DELAY_MS;
+        if (lastSavePoint >= 0) {
+            due = Math.max(due, lastSavePoint + MIN_INTERVAL_MS);
+        }
+        if (dueTime < 0 || due < dueTime) {
+            handler.removeCallbacks(fire);
+            handler.postAtTime(fire, due);
+            dueTime = due;
+        }
+    }
+
+    private void savePoint() {
+        dueTime = -1;
+        firstChange = -1;
+
+        final FormController formController = Collect.getInstance().getFormController();
+        if (formController == null) {
+            pendingEntries.clear();
+            return;
+        }
+
+        Map<TreeReference, String> screenEntries = new LinkedHashMap<>();
+        if (screenReadNeeded) {
+            screenReadNeeded = false;
+            screenEntries = getScreenEntries(formController);
+        }
+        if (pendingEntries.isEmpty() && screenEntries.isEmpty() && !fullSnapshotNeeded) {
+            return;
+        }
+
+        final File savepoint = SaveToDiskTask.savepointFile(formController.getInstancePath());
+        final List<String> entries = new ArrayList<>(pendingEntries.values());
+        final List<String> unsavedEntries = new ArrayList<>(screenEntries.values());
+        final int writeGeneration = generation.get();
+        boolean fullSnapshot = fullSnapshotNeeded || !savepoint.equals(journaledSavePoint)
+                || journaledEntries + entries.size() > MAX_JOURNAL_ENTRIES;
+        pendingEntries.clear();
+        fullSnapshotNeeded = false;
+        lastSavePoint = SystemClock.uptimeMillis();
+
+        final ByteArrayPayload snapshot;
+        if (fullSnapshot) {
+            try {
+                snapshot = formController.getFilledInFormXml();
+            } catch (IOException e) {
+                Timber.e(e);
+                fullSnapshotNeeded = true;
+                listener.onSavePointError(e.getMessage());
+                return;
+            }
+            journaledSavePoint = savepoint;
+            journaledEntries = unsavedEntries.size();
+        } else {
+            snapshot = null;
+            journaledEntries += entries.size() + unsavedEntries.size();
+        }
+
+        getWriter().post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation.get() != writeGeneration) {
+                    // discarded, and the savepoint may have been deleted since
+                    return;
+                }
+                try {
+                    if (!write(savepoint, snapshot, entries, unsavedEntries)) {
+                        // the journal is gone, e.g. deleted by a save
+                        writeLost(savepoint, null);
+                    }
+                } catch (Exception e) {
+                    Timber.e(e);
+                    writeLost(savepoint, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs on the writer thread when the journal of the savepoint doesn't have the last changes,
+     * so that the next savepoint is a full snapshot with the answers on the screen.
+     */
+    private void writeLost(final File savepoint, final String message) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (savepoint.equals(journaledSavePoint)) {
+                    journaledSavePoint = null;
+                }
+                if (stopped) {
+                    return;
+                }
+                if (message != null) {
+                    listener.onSavePointError(message);
+                }
+                fullSnapshotNeeded = true;
+                screenReadNeeded = true;
+                changed();
+            }
+        });
+    }
+
+    /**
+     * Returns the journal entries of the answers on the screen that differ from the form
+     * controller's, and of those journaled before that no longer do, e.g. because they have
+     * been saved to the form controller or changed back since.
+     */
+    private Map<TreeReference, String> getScreenEntries(FormController formController) {
+        Map<TreeReference, String> entries = new LinkedHashMap<>();
+        Set<TreeReference> differing = new HashSet<>();
+        for (Map.Entry<FormIndex, IAnswerData> answer
+                : listener.getCurrentAnswers().entrySet()) {
+            TreeReference ref = answer.getKey().getReference();
+            TreeElement element = getElement(formController, ref);
+            String entry = SavePointJournal.formatEntry(ref, answer.getValue());
+            if (element != null
+                    && !entry.equals(SavePointJournal.formatEntry(ref, element.getValue()))) {
+                entries.put(ref, entry);
+                differing.add(ref);
+            }
+        }
+
+        for (TreeReference ref : journaledScreenAnswers) {
+            TreeElement element = getElement(formController, ref);
+            if (!differing.contains(ref) && element != null) {
+                entries.put(ref, SavePointJournal.formatEntry(ref, element.getValue()));
+            }
+        }
+        journaledScreenAnswers = differing;
+        return entries;
+    }
+
+    private static TreeElement getElement(FormController formController, TreeReference ref) {
+        return formController.getFormDef().getMainInstance().resolveReference(ref);
+    }
+
+    /**
+     * Runs on the writer thread. Writes the given snapshot, if any, or else appends the entries
+     * to the journal, and returns false if there was no journal to append them to. The unsaved
+     * entries, read from the screen, aren't in the form controller, so they are journaled even
+     * after a full snapshot.
+     */
+    private static boolean write(File savepoint, ByteArrayPayload snapshot, List<String> entries,
+                                 List<String> unsavedEntries) throws IOException {
+        Span span = Tracer.start("savepoint");
+        try {
+            if (snapshot != null) {
+                // write next to the savepoint first, so that a crash can't leave half of it
+                File temp = new File(savepoint.getPath() + ".tmp");
+                SaveToDiskTask.exportXmlFile(snapshot, temp.getAbsolutePath());
+                if (!temp.renameTo(savepoint)) {
+                    throw new IOException("Unable to replace " + savepoint.getAbsolutePath());
+                }
+                SavePointJournal.start(savepoint);
+                span.count("snapshots", 1);
+                entries = unsavedEntries;
+            } else if (!SavePointJournal.isStarted(savepoint)) {
+                return false;
+            } else {
+                entries.addAll(unsavedEntries);
+            }
+            if (!entries.isEmpty()) {
+                SavePointJournal.append(savepoint, entries);
+                span.count("journal entries", entries.size());
+            }
+            return true;
+        } finally {
+            span.end();
+        }
+    }
+
+    private static synchronized Handler getWriter() {
+        if (writer == null) {
+            HandlerThread thread = new HandlerThread("SavePointWriter",
+                    Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            writer = new Handler(thread.getLooper());
+        }
+        return writer;
+    }
+}
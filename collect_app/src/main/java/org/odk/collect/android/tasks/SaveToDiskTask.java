@@ -27,17 +27,20 @@ import org.odk.collect.android.dao.InstancesDao;
 import org.odk.collect.android.exception.EncryptionException;
 import org.odk.collect.android.listeners.FormSavedListener;
 import org.odk.collect.android.logic.FormController;
+import org.odk.collect.android.logic.SavePointJournal;
 import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
 import org.odk.collect.android.provider.InstanceProviderAPI;
 import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
+import org.odk.collect.android.tracing.Span;
+import org.odk.collect.android.tracing.Tracer;
 import org.odk.collect.android.utilities.EncryptionUtils;
 import org.odk.collect.android.utilities.EncryptionUtils.EncryptedFormInformation;
-import org.odk.collect.android.utilities.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.util.Arrays;
 
 import timber.log.Timber;
 
@@ -78,6 +81,15 @@ public class SaveToDiskTask extends AsyncTask<Void, String, SaveResult> {
      */
     @Override
     protected SaveResult doInBackground(Void... nothing) {
+        Span span = Tracer.start("save");
+        try {
+            return save();
+        } finally {
+            span.end();
+        }
+    }
+
+    private SaveResult save() {
         SaveResult saveResult = new SaveResult();
 
         FormController formController = Collect.getInstance().getFormController();
@@ -128,10 +140,7 @@ public class SaveToDiskTask extends AsyncTask<Void, String, SaveResult> {
             exportData(markCompleted);
 
             // attempt to remove any scratch file
-            File shadowInstance = savepointFile(formController.getInstancePath());
-            if (shadowInstance.exists()) {
-                FileUtils.deleteAndReport(shadowInstance);
-            }
+            SavePointJournal.delete(savepointFile(formController.getInstancePath()));
 
             saveResult.setSaveResult(save ? SAVED_AND_EXIT : SAVED, markCompleted);
         } catch (EncryptionException e) {
@@ -249,13 +258,14 @@ public class SaveToDiskTask extends AsyncTask<Void, String, SaveResult> {
 
         publishProgress(Collect.getInstance().getString(R.string.survey_saving_collecting_message));
 
-        ByteArrayPayload payload = formController.getFilledInFormXml();
+        // serialize the instance once, the bytes are reused for the submission when possible
+        byte[] instanceData = getPayloadBytes(formController.getFilledInFormXml());
         // write out xml
         String instancePath = formController.getInstancePath().getAbsolutePath();
 
         publishProgress(Collect.getInstance().getString(R.string.survey_saving_saving_message));
 
-        exportXmlFile(payload, instancePath);
+        exportXmlFile(instanceData, instancePath);
 
         // update the uri. We have exported the reloadable instance, so update status...
         // Since we saved a reloadable instance, it is flagged as re-openable so that if any error
@@ -276,15 +286,15 @@ public class SaveToDiskTask extends AsyncTask<Void, String, SaveResult> {
             File instanceXml = formController.getInstancePath();
             File submissionXml = new File(instanceXml.getParentFile(), "submission.xml");
 
-            payload = formController.getSubmissionXml();
-
-            // write out submission.xml -- the data to actually submit to aggregate
+            // when the entire form is submitted the submission is the instance we just wrote,
+            // so only serialize again for a submission profile that picks part of it
+            byte[] submissionData = canEditAfterCompleted
+                    ? instanceData
+                    : getPayloadBytes(formController.getSubmissionXml());
 
             publishProgress(
                     Collect.getInstance().getString(R.string.survey_saving_finalizing_message));
 
-            exportXmlFile(payload, submissionXml.getAbsolutePath());
-
             // see if the form is encrypted and we can encrypt it...
             EncryptedFormInformation formInfo = EncryptionUtils.getEncryptedFormInformation(uri,
                     formController.getSubmissionMetadata());
@@ -296,14 +306,21 @@ public class SaveToDiskTask extends AsyncTask<Void, String, SaveResult> {
                 publishProgress(
                         Collect.getInstance().getString(R.string.survey_saving_encrypting_message));
 
-                EncryptionUtils.generateEncryptedSubmission(instanceXml, submissionXml, formInfo);
+                // the plaintext submission goes straight into the cipher, submission.xml ends up
+                // holding the manifest
+                EncryptionUtils.generateEncryptedSubmission(instanceXml, submissionXml,
+                        submissionData, formInfo);
                 isEncrypted = true;
+            } else if (!canEditAfterCompleted) {
+                // write out submission.xml -- the data to actually submit to aggregate
+                exportXmlFile(submissionData, submissionXml.getAbsolutePath());
             }
 
             // At this point, we have:
             // 1. the saved original instanceXml,
             // 2. all the plaintext attachments
-            // 2. the submission.xml that is the completed xml (whether encrypting or not)
+            // 2. the submission.xml that is the completed xml (whether encrypting or not),
+            //    unless it is identical to instanceXml
             // 3. all the encrypted attachments if encrypting (isEncrypted = true).
             //
             // NEXT:
@@ -339,10 +356,10 @@ public class SaveToDiskTask extends AsyncTask<Void, String, SaveResult> {
                     throw new IOException(msg);
                 }
             } else {
-                // try to delete the submissionXml file, since it is
-                // identical to the existing instanceXml file
+                // submission.xml would be identical to the existing instanceXml file so it
+                // wasn't written, but remove any left over from an earlier finalization
                 // (we don't need to delete and rename anything).
-                if (!submissionXml.delete()) {
+                if (submissionXml.exists() && !submissionXml.delete()) {
                     String msg = "Error deleting " + submissionXml.getAbsolutePath()
                             + " (instance is re-openable)";
                     Timber.w(msg);
@@ -364,20 +381,27 @@ public class SaveToDiskTask extends AsyncTask<Void, String, SaveResult> {
      * This method actually writes the xml to disk.
      */
     static void exportXmlFile(ByteArrayPayload payload, String path) throws IOException {
-        File file = new File(path);
-        if (file.exists() && !file.delete()) {
-            throw new IOException("Cannot overwrite " + path + ". Perhaps the file is locked?");
-        }
+        exportXmlFile(getPayloadBytes(payload), path);
+    }
 
+    private static byte[] getPayloadBytes(ByteArrayPayload payload) throws IOException {
         // create data stream
         InputStream is = payload.getPayloadStream();
         int len = (int) payload.getLength();
 
         // read from data stream
         byte[] data = new byte[len];
-        // try {
         int read = is.read(data, 0, len);
-        if (read > 0) {
+        return read == len ? data : Arrays.copyOf(data, Math.max(read, 0));
+    }
+
+    private static void exportXmlFile(byte[] data, String path) throws IOException {
+        File file = new File(path);
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot overwrite " + path + ". Perhaps the file is locked?");
+        }
+
+        if (data.length > 0) {
             // write xml file
             RandomAccessFile randomAccessFile = null;
             try {
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.tasks;
+
+import android.os.AsyncTask;
+
+import org.odk.collect.android.listeners.ImageScalingListener;
+import org.odk.collect.android.utilities.ImageDownscaler;
+
+import java.io.File;
+
+/**
+ * Scales a captured image down to the max-pixels of its question in the background.
+ *
+ * <p>Like the other tasks of FormEntryActivity it's retained across configuration changes, so
+ * the listener is detached while the activity is recreated. A result that arrives in the
+ * meantime is kept and handed to the next listener that's set.</p>
+ */
+public class ScaleImageTask extends AsyncTask<File, Void, File> {
+
+    private final int maxPixels;
+    private ImageScalingListener scalingListener;
+    private File pendingResult;
+
+    public ScaleImageTask(int maxPixels) {
+        this.maxPixels = maxPixels;
+    }
+
+    @Override
+    protected File doInBackground(File... files) {
+        ImageDownscaler.scaleDownImage(files[0], maxPixels);
+        return files[0];
+    }
+
+    @Override
+    protected void onPostExecute(File image) {
+        synchronized (this) {
+            if (scalingListener != null) {
+                scalingListener.scalingComplete(image);
+            } else {
+                pendingResult = image;
+            }
+        }
+    }
+
+    public void setImageScalingListener(ImageScalingListener listener) {
+        synchronized (this) {
+            scalingListener = listener;
+            if (scalingListener != null && pendingResult != null) {
+                File image = pendingResult;
+                pendingResult = null;
+                scalingListener.scalingComplete(image);
+            }
+        }
+    }
+}
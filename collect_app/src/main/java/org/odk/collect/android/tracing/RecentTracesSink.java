@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.tracing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the last few traces in memory, for the diagnostics screen.
+ */
+public class RecentTracesSink implements TraceSink {
+
+    private final int capacity;
+    private final Deque<Span> traces;
+
+    public RecentTracesSink(int capacity) {
+        this.capacity = capacity;
+        traces = new ArrayDeque<>(capacity);
+    }
+
+    @Override
+    public synchronized void onTraceFinished(Span trace) {
+        if (traces.size() == capacity) {
+            traces.removeLast();
+        }
+        traces.addFirst(trace);
+    }
+
+    /**
+     * Returns the traces kept, the most recent first.
+     */
+    public synchronized List<Span> getTraces() {
+        return new ArrayList<>(traces);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.tracing;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A timed piece of work, with the spans of its phases and counters of what it went through.
+ * Spans are started with {@link Tracer#start(String)} and must be ended on the same thread.
+ *
+ * <p>When no sink is listening, {@link Tracer#start(String)} hands out the same span every time
+ * and nothing is recorded, so tracing costs nothing unless it's used.</p>
+ */
+public class Span {
+
+    static final Span NONE = new Span(null, null);
+
+    private final String name;
+    private final Span parent;
+    private final long startTime;
+    private final long startNanos;
+    private long durationNanos = -1;
+
+    private List<Span> children;
+    private String[] counterNames;
+    private long[] counterValues;
+    private int counterCount;
+
+    Span(String name, Span parent) {
+        this.name = name;
+        this.parent = parent;
+        // only the root needs the wall clock time, its phases are timed relative to it
+        startTime = parent == null ? System.currentTimeMillis() : 0;
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Adds the given amount to the span's counter of the given name.
+     */
+    public void count(String counter, long delta) {
+        if (this == NONE) {
+            return;
+        }
+
+        for (int i = 0; i < counterCount; i++) {
+            if (counterNames[i].equals(counter)) {
+                counterValues[i] += delta;
+                return;
+            }
+        }
+
+        if (counterNames == null) {
+            counterNames = new String[2];
+            counterValues = new long[2];
+        } else if (counterCount == counterNames.length) {
+            counterNames = Arrays.copyOf(counterNames, counterCount * 2);
+            counterValues = Arrays.copyOf(counterValues, counterCount * 2);
+        }
+        counterNames[counterCount] = counter;
+        counterValues[counterCount] = delta;
+        counterCount++;
+    }
+
+    /**
+     * Ends the span. Phases that are still running stop being current, and are recorded in the
+     * trace as unfinished. Ending a span again does nothing.
+     */
+    public void end() {
+        if (this == NONE || durationNanos >= 0) {
+            return;
+        }
+        durationNanos = System.nanoTime() - startNanos;
+        Tracer.ended(this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    Span getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns when the trace this span is part of started, in milliseconds since the epoch.
+     */
+    public long getStartTime() {
+        return parent == null ? startTime : parent.getStartTime();
+    }
+
+    /**
+     * Returns how long the span took, in milliseconds, or -1 if it hasn't ended.
+     */
+    public long getDurationMs() {
+        return durationNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(durationNanos);
+    }
+
+    /**
+     * Returns the spans of the phases of this one, in the order they were started.
+     */
+    public List<Span> getChildren() {
+        return children == null
+                ? Collections.<Span>emptyList()
+                : Collections.unmodifiableList(children);
+    }
+
+    public int getCounterCount() {
+        return counterCount;
+    }
+
+    public String getCounterName(int index) {
+        return counterNames[index];
+    }
+
+    public long getCounterValue(int index) {
+        return counterValues[index];
+    }
+
+    void addChild(Span child) {
+        if (children == null) {
+            children = new ArrayList<>(4);
+        }
+        children.add(child);
+    }
+
+    /**
+     * Returns the span and its phases, one per line, the phases indented under it.
+     */
+    public String format() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US)
+                .format(new Date(getStartTime())));
+        builder.append(' ');
+        format(builder, 0);
+        return builder.toString();
+    }
+
+    private void format(StringBuilder builder, int depth) {
+        for (int i = 0; i < depth; i++) {
+            builder.append("    ");
+        }
+        builder.append(name);
+        if (durationNanos < 0) {
+            builder.append(" unfinished");
+        } else {
+            builder.append(' ').append(getDurationMs()).append(" ms");
+        }
+        for (int i = 0; i < counterCount; i++) {
+            builder.append(i == 0 ? " [" : ", ")
+                    .append(counterNames[i]).append('=').append(counterValues[i]);
+        }
+        if (counterCount > 0) {
+            builder.append(']');
+        }
+        builder.append('\n');
+
+        for (Span child : getChildren()) {
+            child.format(builder, depth + 1);
+        }
+    }
+}
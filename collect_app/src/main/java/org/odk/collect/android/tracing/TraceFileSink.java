@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.tracing;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import timber.log.Timber;
+
+/**
+ * Appends the traces to a local file. Once the file reaches its maximum size it's moved aside,
+ * replacing the one moved aside before it, so at most twice the maximum size is kept.
+ */
+public class TraceFileSink implements TraceSink {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final File previousFile;
+    private final long maxBytes;
+    private boolean failed;
+
+    public TraceFileSink(File file, long maxBytes) {
+        this.file = file;
+        previousFile = new File(file.getPath() + ".1");
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public synchronized void onTraceFinished(Span trace) {
+        byte[] data = trace.format().getBytes(UTF_8);
+
+        OutputStream out = null;
+        try {
+            if (file.length() + data.length > maxBytes && file.exists()) {
+                if (previousFile.exists() && !previousFile.delete()
+                        || !file.renameTo(previousFile)) {
+                    throw new IOException("Unable to rotate " + file.getAbsolutePath());
+                }
+            }
+
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Unable to create " + parent.getAbsolutePath());
+            }
+
+            out = new FileOutputStream(file, true);
+            out.write(data);
+            failed = false;
+        } catch (IOException e) {
+            // no storage is common enough that once is enough to say so
+            if (!failed) {
+                Timber.w(e, "Unable to write the %s trace", trace.getName());
+                failed = true;
+            }
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.tracing;
+
+/**
+ * Receives the traces recorded by the {@link Tracer}.
+ */
+public interface TraceSink {
+
+    /**
+     * Called on the thread that ended the trace's outermost span, so it should be quick. The
+     * trace isn't changed afterwards.
+     */
+    void onTraceFinished(Span trace);
+}
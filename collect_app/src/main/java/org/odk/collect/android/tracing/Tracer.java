@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.tracing;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import timber.log.Timber;
+
+/**
+ * Times what the app spends its time on, as trees of {@link Span}s.
+ *
+ * <p>A span started while another one is running on the same thread becomes one of its phases,
+ * so the work done deep inside a task ends up in the task's trace without having to pass the
+ * span around. Once the outermost span of a thread ends, the whole trace is handed to the
+ * registered {@link TraceSink}s. The usual pattern is:</p>
+ *
+ * <pre>
+ * Span span = Tracer.start("parse");
+ * try {
+ *     ...
+ * } finally {
+ *     span.end();
+ * }
+ * </pre>
+ */
+public final class Tracer {
+
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+    private static final CopyOnWriteArrayList<TraceSink> SINKS = new CopyOnWriteArrayList<>();
+
+    private Tracer() {
+    }
+
+    /**
+     * Adds a sink for the traces finished from now on. Adding a sink again does nothing.
+     */
+    public static void addSink(TraceSink sink) {
+        SINKS.addIfAbsent(sink);
+    }
+
+    public static void removeSink(TraceSink sink) {
+        SINKS.remove(sink);
+    }
+
+    /**
+     * Starts a span, as a phase of the span running on this thread if there is one.
+     */
+    public static Span start(String name) {
+        if (SINKS.isEmpty()) {
+            return Span.NONE;
+        }
+
+        Span parent = CURRENT.get();
+        Span span = new Span(name, parent);
+        if (parent != null) {
+            parent.addChild(span);
+        }
+        CURRENT.set(span);
+        return span;
+    }
+
+    /**
+     * Adds the given amount to a counter of the span running on this thread, if there is one.
+     */
+    public static void count(String counter, long delta) {
+        Span span = CURRENT.get();
+        if (span != null) {
+            span.count(counter, delta);
+        }
+    }
+
+    static void ended(Span span) {
+        // phases left running stop being current with their span, and stay unfinished
+        Span current = CURRENT.get();
+        while (current != null && current != span) {
+            current = current.getParent();
+        }
+        if (current == span) {
+            if (span.getParent() == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(span.getParent());
+            }
+        }
+
+        if (span.getParent() == null) {
+            for (TraceSink sink : SINKS) {
+                try {
+                    sink.onTraceFinished(span);
+                } catch (RuntimeException e) {
+                    Timber.w(e, "Unable to record the %s trace", span.getName());
+                }
+            }
+        }
+    }
+}
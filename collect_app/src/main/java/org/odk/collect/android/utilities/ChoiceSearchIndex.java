@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.utilities;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Searches the labels of a select question's choices.
+ *
+ * <p>Labels are normalized (lower cased, accents and punctuation removed) and split into
+ * words once, when the index is built, so each query only compares strings. Choices whose
+ * label starts with the query come first, then choices where every word of the query starts a
+ * word of the label, then choices that merely contain the query. Within each group the form
+ * order is kept.</p>
+ *
+ * <p>When a query extends the previous one, as it does while the user types, only the
+ * previous matches are searched again.</p>
+ */
+public class ChoiceSearchIndex {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final String[] labels;
+    private final String[][] words;
+
+    private String lastQuery;
+    private int[] lastMatches;
+
+    public ChoiceSearchIndex(List<String> labels) {
+        int size = labels.size();
+        this.labels = new String[size];
+        this.words = new String[size][];
+        for (int i = 0; i < size; i++) {
+            this.labels[i] = normalize(labels.get(i));
+            this.words[i] = split(this.labels[i]);
+        }
+    }
+
+    public int size() {
+        return labels.length;
+    }
+
+    /**
+     * Returns the indices of the choices matching the query, best matches first. An empty
+     * query matches every choice in form order.
+     */
+    public List<Integer> search(String query) {
+        String normalizedQuery = normalize(query);
+        if (normalizedQuery.isEmpty()) {
+            lastQuery = null;
+            lastMatches = null;
+            List<Integer> all = new ArrayList<>(labels.length);
+            for (int i = 0; i < labels.length; i++) {
+                all.add(i);
+            }
+            return all;
+        }
+
+        String[] queryWords = split(normalizedQuery);
+        boolean narrowing = lastQuery != null && normalizedQuery.startsWith(lastQuery);
+        int candidateCount = narrowing ? lastMatches.length : labels.length;
+
+        List<Integer> prefixMatches = new ArrayList<>();
+        List<Integer> wordMatches = new ArrayList<>();
+        List<Integer> substringMatches = new ArrayList<>();
+        // every match in form order, which is what the next narrowing search starts from
+        int[] inFormOrder = new int[candidateCount];
+        int matchCount = 0;
+        for (int c = 0; c < candidateCount; c++) {
+            int i = narrowing ? lastMatches[c] : c;
+            String label = labels[i];
+            if (label.startsWith(normalizedQuery)) {
+                prefixMatches.add(i);
+            } else if (wordsMatch(words[i], queryWords)) {
+                wordMatches.add(i);
+            } else if (label.contains(normalizedQuery)) {
+                substringMatches.add(i);
+            } else {
+                continue;
+            }
+            inFormOrder[matchCount++] = i;
+        }
+        lastQuery = normalizedQuery;
+        lastMatches = Arrays.copyOf(inFormOrder, matchCount);
+
+        List<Integer> matches = new ArrayList<>(prefixMatches.size() + wordMatches.size()
+                + substringMatches.size());
+        matches.addAll(prefixMatches);
+        matches.addAll(wordMatches);
+        matches.addAll(substringMatches);
+        return matches;
+    }
+
+    /**
+     * Lower cases the text, strips accents and turns punctuation and runs of whitespace into
+     * single spaces, so that "St-Jean" and "st  jean" compare equal.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String stripped = DIACRITICS.matcher(decomposed).replaceAll("");
+        return SEPARATORS.matcher(stripped.toLowerCase(Locale.getDefault())).replaceAll(" ")
+                .trim();
+    }
+
+    private static String[] split(String normalized) {
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+
+    /**
+     * Returns true if every query word is the start of some word of the label.
+     */
+    private static boolean wordsMatch(String[] labelWords, String[] queryWords) {
+        for (String queryWord : queryWords) {
+            boolean found = false;
+            for (String labelWord : labelWords) {
+                if (labelWord.startsWith(queryWord)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.utilities;
+
+import android.database.Cursor;
+import android.os.Bundle;
+import android.support.v4.app.LoaderManager;
+import android.support.v4.content.CursorLoader;
+import android.support.v4.content.Loader;
+import android.widget.AbsListView;
+import android.widget.CursorAdapter;
+import android.widget.ListView;
+
+/**
+ * Fills a list backed by a cursor on a background thread, a page of rows at a time.
+ *
+ * <p>{@link #reload()} loads the first page. More rows are loaded as the list is scrolled
+ * towards the end of the rows loaded so far. The loaded cursor is swapped into the adapter, and
+ * reloaded when the content it came from changes.</p>
+ */
+public class CursorListPager implements LoaderManager.LoaderCallbacks<Cursor>,
+        AbsListView.OnScrollListener {
+
+    static final int PAGE_SIZE = 100;
+
+    public interface Callbacks {
+
+        /**
+         * Returns the loader of the first rows of the list, or of all of them if the limit is 0.
+         */
+        CursorLoader onCreateCursorLoader(int limit);
+
+        /**
+         * Called once the adapter has the loaded rows.
+         */
+        void onCursorLoaded();
+    }
+
+    private final LoaderManager loaderManager;
+    private final int loaderId;
+    private final CursorAdapter adapter;
+    private final Callbacks callbacks;
+
+    private int limit = PAGE_SIZE;
+    private boolean loading;
+    private Runnable whenAllLoaded;
+
+    public CursorListPager(LoaderManager loaderManager, int loaderId, ListView listView,
+                           CursorAdapter adapter, Callbacks callbacks) {
+        this.loaderManager = loaderManager;
+        this.loaderId = loaderId;
+        this.adapter = adapter;
+        this.callbacks = callbacks;
+        listView.setOnScrollListener(this);
+    }
+
+    /**
+     * Loads the list again from its first page, for instance after the filter or the sorting
+     * order changed.
+     */
+    public void reload() {
+        limit = PAGE_SIZE;
+        whenAllLoaded = null;
+        restart();
+    }
+
+    /**
+     * Runs the action once every row of the list is loaded, right away if it already is. Used
+     * before acting on the whole list, such as selecting all of it.
+     */
+    public void loadAll(Runnable action) {
+        Cursor cursor = adapter.getCursor();
+        if (!loading && (limit <= 0 || cursor != null && cursor.getCount() < limit)) {
+            action.run();
+        } else {
+            limit = 0;
+            whenAllLoaded = action;
+            restart();
+        }
+    }
+
+    private void restart() {
+        loading = true;
+        loaderManager.restartLoader(loaderId, null, this);
+    }
+
+    @Override
+    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+        return callbacks.onCreateCursorLoader(limit);
+    }
+
+    @Override
+    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
+        loading = false;
+        adapter.swapCursor(cursor);
+        callbacks.onCursorLoaded();
+
+        if (whenAllLoaded != null && limit <= 0) {
+            Runnable action = whenAllLoaded;
+            whenAllLoaded = null;
+            action.run();
+        }
+    }
+
+    @Override
+    public void onLoaderReset(Loader<Cursor> loader) {
+        adapter.swapCursor(null);
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                         int totalItemCount) {
+        // a full page means there may be more rows
+        if (!loading && limit > 0 && totalItemCount >= limit
+                && firstVisibleItem + visibleItemCount >= totalItemCount - PAGE_SIZE / 2) {
+            limit += PAGE_SIZE;
+            restart();
+        }
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+    }
+}
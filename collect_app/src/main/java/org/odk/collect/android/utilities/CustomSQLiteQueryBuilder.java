@@ -97,4 +97,14 @@ public class CustomSQLiteQueryBuilder {
         query.append("INSERT INTO").append(SPACE).append(table);
         return this;
     }
-}
\ No newline at end of file
+
+    public CustomSQLiteQueryBuilder createIndexIfNotExists(String index) {
+        query.append("CREATE INDEX IF NOT EXISTS").append(SPACE).append(index).append(SPACE);
+        return this;
+    }
+
+    public CustomSQLiteQueryBuilder on(String table) {
+        query.append("ON").append(SPACE).append(table);
+        return this;
+    }
+}
@@ -30,16 +30,18 @@ import org.odk.collect.android.exception.EncryptionException;
 import org.odk.collect.android.logic.FormController.InstanceMetadata;
 import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
 import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
+import org.odk.collect.android.tracing.Span;
+import org.odk.collect.android.tracing.Tracer;
 
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
-import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.KeyFactory;
@@ -55,7 +57,6 @@ import java.util.List;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.CipherOutputStream;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.IvParameterSpec;
@@ -398,6 +399,24 @@ public class EncryptionUtils {
 
     private static void encryptFile(File file, EncryptedFormInformation formInfo)
             throws IOException, EncryptionException {
+        // add elementSignatureSource for this file...
+        formInfo.appendFileSignatureSource(file);
+
+        InputStream fin = new FileInputStream(file);
+        try {
+            encryptStream(fin, file, formInfo);
+        } finally {
+            IOUtils.closeQuietly(fin);
+        }
+    }
+
+    /**
+     * Encrypts the data of the given plaintext file, which doesn't have to exist on disk, into
+     * its .enc file. The cipher output is written to the file as it is produced rather than
+     * collected in memory first.
+     */
+    private static void encryptStream(InputStream in, File file, EncryptedFormInformation formInfo)
+            throws IOException, EncryptionException {
         File encryptedFile = new File(file.getParentFile(), file.getName()
                 + ".enc");
 
@@ -406,29 +425,24 @@ public class EncryptionUtils {
                     + ". Perhaps the file is locked?");
         }
 
-        // add elementSignatureSource for this file...
-        formInfo.appendFileSignatureSource(file);
-
-        RandomAccessFile randomAccessFile = null;
-        CipherOutputStream cipherOutputStream = null;
+        FileOutputStream fout = null;
         try {
             Cipher c = formInfo.getCipher();
 
-            randomAccessFile = new RandomAccessFile(encryptedFile, "rws");
-            ByteArrayOutputStream encryptedData = new ByteArrayOutputStream();
-            cipherOutputStream = new CipherOutputStream(encryptedData, c);
-            InputStream fin = new FileInputStream(file);
-            byte[] buffer = new byte[2048];
-            int len = fin.read(buffer);
+            fout = new FileOutputStream(encryptedFile);
+            byte[] buffer = new byte[8192];
+            int len = in.read(buffer);
             while (len != -1) {
-                cipherOutputStream.write(buffer, 0, len);
-                len = fin.read(buffer);
+                byte[] encrypted = c.update(buffer, 0, len);
+                if (encrypted != null) {
+                    fout.write(encrypted);
+                }
+                len = in.read(buffer);
             }
-            fin.close();
-            cipherOutputStream.flush();
-            cipherOutputStream.close();
-
-            randomAccessFile.write(encryptedData.toByteArray());
+            fout.write(c.doFinal());
+            fout.getChannel().force(true);
+            fout.close();
+            fout = null;
 
             Timber.i("Encrpyted:%s -> %s", file.getName(), encryptedFile.getName());
         } catch (Exception e) {
@@ -437,11 +451,7 @@ public class EncryptionUtils {
             Timber.e(e, "%s due to %s ", msg, e.getMessage());
             throw new EncryptionException(msg, e);
         } finally {
-            IOUtils.closeQuietly(cipherOutputStream);
-
-            if (randomAccessFile != null) {
-                randomAccessFile.close();
-            }
+            IOUtils.closeQuietly(fout);
         }
     }
 
@@ -471,7 +481,7 @@ public class EncryptionUtils {
     }
 
     private static List<File> encryptSubmissionFiles(File instanceXml,
-            File submissionXml, EncryptedFormInformation formInfo)
+            File submissionXml, byte[] submissionData, EncryptedFormInformation formInfo)
             throws IOException, EncryptionException {
         // NOTE: assume the directory containing the instanceXml contains ONLY
         // files related to this one instance.
@@ -505,8 +515,11 @@ public class EncryptionUtils {
             encryptFile(f, formInfo);
         }
 
-        // encrypt the submission.xml as the last file...
-        encryptFile(submissionXml, formInfo);
+        // encrypt the submission.xml as the last file, straight from memory since the
+        // plaintext never needs to be on disk...
+        formInfo.appendElementSignatureSource(submissionXml.getName() + "::"
+                + getMd5Hash(submissionData));
+        encryptStream(new ByteArrayInputStream(submissionData), submissionXml, formInfo);
 
         return filesToProcess;
     }
@@ -515,25 +528,41 @@ public class EncryptionUtils {
      * Constructs the encrypted attachments, encrypted form xml, and the
      * plaintext submission manifest (with signature) for the form submission.
      *
-     * Does not delete any of the original files.
+     * The submission data is encrypted as submissionXml.enc without being written to
+     * submissionXml first. Does not delete any of the original files.
      */
     public static void generateEncryptedSubmission(File instanceXml,
-            File submissionXml, EncryptedFormInformation formInfo)
+            File submissionXml, byte[] submissionData, EncryptedFormInformation formInfo)
             throws IOException, EncryptionException {
-        // submissionXml is the submission data to be published to Aggregate
-        if (!submissionXml.exists() || !submissionXml.isFile()) {
-            throw new IOException("No submission.xml found");
-        }
-
         // TODO: confirm that this xml is not already encrypted...
 
-        // Step 1: encrypt the submission and all the media files...
-        List<File> mediaFiles = encryptSubmissionFiles(instanceXml,
-                submissionXml, formInfo);
+        Span span = Tracer.start("encrypt");
+        try {
+            // Step 1: encrypt the submission and all the media files...
+            List<File> mediaFiles = encryptSubmissionFiles(instanceXml,
+                    submissionXml, submissionData, formInfo);
+            span.count("media files", mediaFiles.size());
+
+            // Step 2: build the encrypted-submission manifest (overwrites
+            // submission.xml)...
+            writeSubmissionManifest(formInfo, submissionXml, mediaFiles);
+        } finally {
+            span.end();
+        }
+    }
 
-        // Step 2: build the encrypted-submission manifest (overwrites
-        // submission.xml)...
-        writeSubmissionManifest(formInfo, submissionXml, mediaFiles);
+    /**
+     * Returns the zero-padded hex md5 hash of the data, the same as
+     * {@link FileUtils#getMd5Hash(File)} gives for a file holding it.
+     */
+    private static String getMd5Hash(byte[] data) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            return String.format("%032x", new BigInteger(1, md.digest(data)));
+        } catch (NoSuchAlgorithmException e) {
+            Timber.e(e);
+            return null;
+        }
     }
 
     private static void writeSubmissionManifest(
@@ -16,6 +16,7 @@ package org.odk.collect.android.utilities;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Point;
 
 import org.apache.commons.io.IOUtils;
 import org.javarosa.xform.parse.XFormParser;
@@ -209,8 +210,8 @@ public class FileUtils {
     }
 
     /**
-     * With this method we do not care about efficient decoding and focus
-     * more on a precise scaling to maximize use of space on the screen
+     * With this method we focus on a precise scaling to maximize use of space on the screen.
+     * The image is decoded subsampled first so the full size bitmap is never loaded.
      */
     public static Bitmap getBitmapAccuratelyScaledToDisplay(File f, int screenHeight,
                                                             int screenWidth) {
@@ -218,12 +219,9 @@ public class FileUtils {
         BitmapFactory.Options o = new BitmapFactory.Options();
         o.inJustDecodeBounds = true;
         getBitmap(f.getAbsolutePath(), o);
-
-        // Load full size bitmap image
-        BitmapFactory.Options options = new BitmapFactory.Options();
-        options.inInputShareable = true;
-        options.inPurgeable = true;
-        Bitmap bitmap = getBitmap(f.getAbsolutePath(), options);
+        if (o.outWidth <= 0 || o.outHeight <= 0) {
+            return null;
+        }
 
         // Figure out scale
         double heightScale = ((double) (o.outHeight)) / screenHeight;
@@ -233,7 +231,9 @@ public class FileUtils {
         double newHeight = Math.ceil(o.outHeight / scale);
         double newWidth = Math.ceil(o.outWidth / scale);
 
-        bitmap = Bitmap.createScaledBitmap(bitmap, (int) newWidth, (int) newHeight, false);
+        // the bounds are already known, so don't decode them again
+        Bitmap bitmap = ImageDownscaler.decodeScaledBitmap(f, new Point(o.outWidth, o.outHeight),
+                (int) newWidth, (int) newHeight);
 
         if (bitmap != null) {
             Timber.i("Screen is %dx%d.  Image has been scaled down by %f to %dx%d",
@@ -243,7 +243,6 @@ public class FileUtils {
         return bitmap;
     }
 
-
     public static String copyFile(File sourceFile, File destFile) {
         if (sourceFile.exists()) {
             String errorMessage = actualCopy(sourceFile, destFile);
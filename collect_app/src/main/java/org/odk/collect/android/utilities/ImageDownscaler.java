@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.utilities;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Point;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import timber.log.Timber;
+
+/**
+ * Scales images down without ever holding the full resolution bitmap in memory.
+ *
+ * <p>The image is first decoded with the largest power-of-two {@code inSampleSize} that
+ * keeps it at least as big as the target, which the decoder does cheaply while reading the
+ * file, and only that much smaller bitmap is resized to the exact target size.</p>
+ */
+public class ImageDownscaler {
+
+    private static final int JPEG_QUALITY = 100;
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private ImageDownscaler() {
+    }
+
+    /**
+     * Decodes the image scaled to exactly the given size.
+     */
+    @Nullable
+    public static Bitmap decodeScaledBitmap(File file, int width, int height) {
+        Point size = getImageSize(file);
+        return size != null ? decodeScaledBitmap(file, size, width, height) : null;
+    }
+
+    /**
+     * Decodes the image, whose size is already known, scaled to exactly the given size.
+     */
+    @Nullable
+    static Bitmap decodeScaledBitmap(File file, Point size, int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = calculateInSampleSize(size.x, size.y, width, height);
+        Bitmap decoded = FileUtils.getBitmap(file.getAbsolutePath(), options);
+        if (decoded == null) {
+            return null;
+        }
+        if (decoded.getWidth() == width && decoded.getHeight() == height) {
+            return decoded;
+        }
+
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, height, true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        return scaled;
+    }
+
+    /**
+     * Reduces the image in place so that its long edge is at most maxPixels, the short edge
+     * is scaled proportionately. Returns true if the file was rewritten.
+     */
+    public static boolean scaleDownImage(File file, int maxPixels) {
+        Point size = getImageSize(file);
+        if (size == null) {
+            return false;
+        }
+
+        Point scaledSize = getScaledSize(size.x, size.y, maxPixels);
+        if (scaledSize == null) {
+            return false;
+        }
+
+        Bitmap scaledImage = decodeScaledBitmap(file, size, scaledSize.x, scaledSize.y);
+        if (scaledImage == null) {
+            return false;
+        }
+
+        try {
+            return writeBitmap(scaledImage, Bitmap.CompressFormat.JPEG, JPEG_QUALITY, file);
+        } finally {
+            scaledImage.recycle();
+        }
+    }
+
+    /**
+     * Returns the size of an image whose long edge is limited to maxPixels, or null if the
+     * image is already small enough.
+     */
+    @Nullable
+    static Point getScaledSize(int width, int height, int maxPixels) {
+        if (width > height && width > maxPixels) {
+            return new Point(maxPixels, (int) (height / ((double) width / maxPixels)));
+        } else if (height > maxPixels) {
+            return new Point((int) (width / ((double) height / maxPixels)), maxPixels);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the largest power of two that still decodes the source at least as big as the
+     * requested size.
+     */
+    static int calculateInSampleSize(int sourceWidth, int sourceHeight, int width, int height) {
+        int inSampleSize = 1;
+        while (sourceWidth / (inSampleSize * 2) >= width
+                && sourceHeight / (inSampleSize * 2) >= height) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    @Nullable
+    private static Point getImageSize(File file) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getAbsolutePath(), bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+        return new Point(bounds.outWidth, bounds.outHeight);
+    }
+
+    /**
+     * Streams the encoded image into a temporary file and only replaces the file once the
+     * encoding has succeeded. Returns true if the file was written.
+     */
+    static boolean writeBitmap(Bitmap bitmap, Bitmap.CompressFormat format, int quality,
+                               File file) {
+        File tempFile = new File(file.getPath() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(tempFile), OUTPUT_BUFFER_SIZE);
+            if (!bitmap.compress(format, quality, out)) {
+                return false;
+            }
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(file)) {
+                Timber.e("Unable to replace %s", file.getAbsolutePath());
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            Timber.e(e, "Unable to write %s", file.getAbsolutePath());
+            return false;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    Timber.e(e);
+                }
+            }
+            if (tempFile.exists() && !tempFile.delete()) {
+                Timber.w("Unable to delete %s", tempFile.getAbsolutePath());
+            }
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.utilities;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Point;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import org.odk.collect.android.application.Collect;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import timber.log.Timber;
+
+/**
+ * Decodes form media images off the UI thread and keeps the scaled-down results in a
+ * memory cache sized to the heap and in a thumbnail cache on disk.
+ *
+ * <p>Thumbnails are keyed by the source file path, its last modified time and the
+ * requested size, so editing a media file or asking for a different size never returns
+ * a stale image. All methods that take an {@link ImageView} must be called from the
+ * UI thread.</p>
+ */
+public class ImageLoader {
+
+    public static final String THUMBNAIL_CACHE_PATH = Collect.CACHE_PATH + File.separator
+            + "thumbnails";
+
+    private static final int DECODING_THREADS = 2;
+    private static final long DISK_CACHE_MAX_BYTES = 20 * 1024 * 1024;
+    private static final int DISK_CACHE_TRIM_INTERVAL = 50;
+    private static final int JPEG_QUALITY = 90;
+
+    private static ImageLoader instance;
+
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ExecutorService executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<ImageView, Request> requests = new WeakHashMap<>();
+    private final File diskCacheDir;
+    private int writesSinceTrim;
+
+    public interface OnImageLoadedListener {
+        void onImageLoaded(ImageView view, Bitmap bitmap);
+    }
+
+    private ImageLoader(File diskCacheDir) {
+        this.diskCacheDir = diskCacheDir;
+
+        // use an eighth of the available heap for decoded images
+        int cacheSizeInKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / 8);
+        memoryCache = new LruCache<String, Bitmap>(cacheSizeInKb) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount() / 1024;
+            }
+        };
+
+        executor = Executors.newFixedThreadPool(DECODING_THREADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "ImageLoader");
+            }
+        });
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                trimDiskCache();
+            }
+        });
+    }
+
+    public static synchronized ImageLoader getInstance() {
+        if (instance == null) {
+            instance = new ImageLoader(new File(THUMBNAIL_CACHE_PATH));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the size {@link FileUtils#getBitmapScaledToDisplay(File, int, int)} would scale
+     * the given image to, reading only the image header. Returns null if the file can't be
+     * decoded as an image.
+     */
+    @Nullable
+    public static Point getScaledToDisplaySize(File file, int screenHeight, int screenWidth) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getAbsolutePath(), bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        int scale = Math.max(1, Math.max(bounds.outHeight / screenHeight,
+                bounds.outWidth / screenWidth));
+        return new Point(Math.max(1, bounds.outWidth / scale),
+                Math.max(1, bounds.outHeight / scale));
+    }
+
+    /**
+     * Displays the image scaled to exactly the given size in the view, decoding it on a
+     * background thread unless it is already in the memory cache. Any earlier request for the
+     * same view is cancelled, so recycled views never show a stale image.
+     */
+    public void loadInto(ImageView view, File file, int width, int height,
+                         @Nullable OnImageLoadedListener listener) {
+        cancel(view);
+
+        String key = getCacheKey(file, width, height);
+        Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            setBitmap(view, cached, listener);
+            return;
+        }
+
+        view.setImageDrawable(null);
+        Request request = new Request(view, file, width, height, key, listener);
+        requests.put(view, request);
+        request.future = executor.submit(request);
+    }
+
+    /**
+     * Cancels any pending load for the given view.
+     */
+    public void cancel(ImageView view) {
+        Request request = requests.remove(view);
+        if (request != null) {
+            request.cancelled = true;
+            request.future.cancel(false);
+        }
+    }
+
+    /**
+     * Synchronously returns the image scaled to exactly the given size, going through the
+     * memory and disk caches. Must not be called from the UI thread.
+     */
+    @Nullable
+    public Bitmap getBitmap(File file, int width, int height) {
+        String key = getCacheKey(file, width, height);
+        Bitmap bitmap = memoryCache.get(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+
+        File thumbnail = new File(diskCacheDir, md5(key));
+        if (thumbnail.exists()) {
+            bitmap = FileUtils.getBitmap(thumbnail.getAbsolutePath(), new BitmapFactory.Options());
+        }
+        if (bitmap == null) {
+            bitmap = ImageDownscaler.decodeScaledBitmap(file, width, height);
+            if (bitmap != null) {
+                writeThumbnail(bitmap, thumbnail);
+            }
+        }
+        if (bitmap != null) {
+            memoryCache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Decodes the image into the caches in the background at the size
+     * {@link #getScaledToDisplaySize(File, int, int)} gives, so that a later
+     * {@link #loadInto(ImageView, File, int, int, OnImageLoadedListener)} for it doesn't have to
+     * wait. The returned future can be cancelled if the image turns out not to be needed.
+     */
+    public Future<?> preloadScaledToDisplay(final File file, final int screenHeight,
+                                            final int screenWidth) {
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                Point size = getScaledToDisplaySize(file, screenHeight, screenWidth);
+                if (size != null) {
+                    getBitmap(file, size.x, size.y);
+                }
+            }
+        });
+    }
+
+    public void clearMemoryCache() {
+        memoryCache.evictAll();
+    }
+
+    static String getCacheKey(File file, int width, int height) {
+        return file.getAbsolutePath() + ':' + file.lastModified() + ':' + width + 'x' + height;
+    }
+
+    private void setBitmap(ImageView view, Bitmap bitmap, OnImageLoadedListener listener) {
+        view.setImageBitmap(bitmap);
+        if (listener != null) {
+            listener.onImageLoaded(view, bitmap);
+        }
+    }
+
+    private void writeThumbnail(Bitmap bitmap, File thumbnail) {
+        if (!diskCacheDir.exists() && !diskCacheDir.mkdirs()) {
+            return;
+        }
+
+        // keep transparency for icons, photos are fine as JPEG
+        boolean written = bitmap.hasAlpha()
+                ? ImageDownscaler.writeBitmap(bitmap, Bitmap.CompressFormat.PNG, 100, thumbnail)
+                : ImageDownscaler.writeBitmap(bitmap, Bitmap.CompressFormat.JPEG, JPEG_QUALITY,
+                        thumbnail);
+        if (!written) {
+            Timber.w("Unable to store thumbnail %s", thumbnail.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Deletes the least recently written thumbnails until the cache fits its budget.
+     */
+    private void trimDiskCache() {
+        File[] thumbnails = diskCacheDir.listFiles();
+        if (thumbnails == null) {
+            return;
+        }
+
+        long totalSize = 0;
+        for (File thumbnail : thumbnails) {
+            totalSize += thumbnail.length();
+        }
+        if (totalSize <= DISK_CACHE_MAX_BYTES) {
+            return;
+        }
+
+        Arrays.sort(thumbnails, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long lhsModified = lhs.lastModified();
+                long rhsModified = rhs.lastModified();
+                return lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+            }
+        });
+        for (File thumbnail : thumbnails) {
+            if (totalSize <= DISK_CACHE_MAX_BYTES) {
+                break;
+            }
+            long length = thumbnail.length();
+            if (thumbnail.delete()) {
+                totalSize -= length;
+            }
+        }
+    }
+
+    private static String md5(String value) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] digest = md.digest(value.getBytes("UTF-8"));
+            return String.format("%032x", new BigInteger(1, digest));
+        } catch (NoSuchAlgorithmException | IOException e) {
+            // fall back to something that is still a valid file name
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+
+    private class Request implements Runnable {
+        private final ImageView view;
+        private final File file;
+        private final int width;
+        private final int height;
+        private final String key;
+        private final OnImageLoadedListener listener;
+        private volatile boolean cancelled;
+        private Future<?> future;
+
+        Request(ImageView view, File file, int width, int height, String key,
+                OnImageLoadedListener listener) {
+            this.view = view;
+            this.file = file;
+            this.width = width;
+            this.height = height;
+            this.key = key;
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+
+            final Bitmap bitmap = getBitmap(file, width, height);
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    // the view may have been given a new request in the meantime
+                    if (cancelled || requests.get(view) != Request.this) {
+                        return;
+                    }
+                    requests.remove(view);
+                    if (bitmap != null) {
+                        setBitmap(view, bitmap, listener);
+                    } else {
+                        Timber.e("Unable to decode %s", file.getAbsolutePath());
+                    }
+                }
+            });
+        }
+    }
+}
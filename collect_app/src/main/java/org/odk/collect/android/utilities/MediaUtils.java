@@ -142,6 +142,68 @@ public class MediaUtils {
         return count;
     }
 
+    /**
+     * Removes the images, audio and video in the given folders from the media providers with a
+     * few queries and deletes per media type, instead of several for every folder.
+     *
+     * @return the number of media entries removed
+     */
+    public static int deleteMediaInFoldersFromMediaProvider(List<File> folders) {
+        return deleteInFoldersFromMediaProvider(Images.Media.EXTERNAL_CONTENT_URI, folders)
+                + deleteInFoldersFromMediaProvider(Audio.Media.EXTERNAL_CONTENT_URI, folders)
+                + deleteInFoldersFromMediaProvider(Video.Media.EXTERNAL_CONTENT_URI, folders);
+    }
+
+    private static int deleteInFoldersFromMediaProvider(Uri contentUri, List<File> folders) {
+        ContentResolver cr = Collect.getInstance().getContentResolver();
+        int maxArgs = ApplicationConstants.SQLITE_MAX_VARIABLE_NUMBER;
+        int count = 0;
+        try {
+            List<String> ids = new ArrayList<>();
+            for (int start = 0; start < folders.size(); start += maxArgs) {
+                List<File> chunk = folders.subList(start, Math.min(folders.size(),
+                        start + maxArgs));
+                StringBuilder select = new StringBuilder();
+                String[] selectArgs = new String[chunk.size()];
+                for (int i = 0; i < chunk.size(); i++) {
+                    if (i > 0) {
+                        select.append(" or ");
+                    }
+                    select.append(MediaStore.MediaColumns.DATA).append(" like ? escape '!'");
+                    selectArgs[i] = escapePath(chunk.get(i).getAbsolutePath())
+                            + File.separator + "%";
+                }
+
+                Cursor cursor = cr.query(contentUri, new String[]{MediaStore.MediaColumns._ID},
+                        select.toString(), selectArgs, null);
+                if (cursor != null) {
+                    try {
+                        while (cursor.moveToNext()) {
+                            ids.add(cursor.getString(0));
+                        }
+                    } finally {
+                        cursor.close();
+                    }
+                }
+            }
+
+            for (int start = 0; start < ids.size(); start += maxArgs) {
+                List<String> chunk = ids.subList(start, Math.min(ids.size(), start + maxArgs));
+                StringBuilder select = new StringBuilder(MediaStore.MediaColumns._ID)
+                        .append(" in (");
+                for (int i = 0; i < chunk.size(); i++) {
+                    select.append(i > 0 ? ",?" : "?");
+                }
+                count += cr.delete(contentUri, select.append(')').toString(),
+                        chunk.toArray(new String[chunk.size()]));
+            }
+        } catch (Exception e) {
+            Timber.e(e, "Unable to delete media in %d folders from %s", folders.size(),
+                    contentUri);
+        }
+        return count;
+    }
+
     public static final int deleteImagesInFolderFromMediaProvider(File folder) {
         ContentResolver cr = Collect.getInstance().getContentResolver();
         // images
@@ -35,7 +35,7 @@ public class VersionHidingCursorAdapter extends SimpleCursorAdapter {
 
     public VersionHidingCursorAdapter(String versionColumnName, Context context, int layout,
             Cursor c, String[] from, int[] to) {
-        super(context, layout, c, from, to);
+        super(context, layout, c, from, to, 0);
         this.versionColumnName = versionColumnName;
         ctxt = context;
         originalBinder = getViewBinder();
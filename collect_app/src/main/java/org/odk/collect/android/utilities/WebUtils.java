@@ -21,6 +21,8 @@ import org.kxml2.io.KXmlParser;
 import org.kxml2.kdom.Document;
 import org.odk.collect.android.BuildConfig;
 import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.tracing.Span;
+import org.odk.collect.android.tracing.Tracer;
 import org.opendatakit.httpclientandroidlib.Header;
 import org.opendatakit.httpclientandroidlib.HttpEntity;
 import org.opendatakit.httpclientandroidlib.HttpHost;
@@ -39,6 +41,7 @@ import org.opendatakit.httpclientandroidlib.client.config.RequestConfig;
 import org.opendatakit.httpclientandroidlib.client.methods.HttpGet;
 import org.opendatakit.httpclientandroidlib.client.methods.HttpHead;
 import org.opendatakit.httpclientandroidlib.client.methods.HttpPost;
+import org.opendatakit.httpclientandroidlib.client.methods.HttpUriRequest;
 import org.opendatakit.httpclientandroidlib.client.protocol.HttpClientContext;
 import org.opendatakit.httpclientandroidlib.config.SocketConfig;
 import org.opendatakit.httpclientandroidlib.impl.auth.BasicScheme;
@@ -260,6 +263,19 @@ public final class WebUtils {
      * stream to allow its re-use.  Please add more details or bug ID here if
      * you know them.
      */
+    /**
+     * Executes the request, timed as an http phase of the trace running on this thread.
+     */
+    public static HttpResponse execute(HttpClient httpclient, HttpUriRequest request,
+                                       HttpContext localContext) throws IOException {
+        Span span = Tracer.start("http " + request.getMethod());
+        try {
+            return httpclient.execute(request, localContext);
+        } finally {
+            span.end();
+        }
+    }
+
     public static final void discardEntityBytes(HttpResponse response) {
         HttpEntity entity = response.getEntity();
         if (entity != null) {
@@ -315,7 +331,7 @@ public final class WebUtils {
 
         HttpResponse response;
         try {
-            response = httpclient.execute(req, localContext);
+            response = execute(httpclient, req, localContext);
             int statusCode = response.getStatusLine().getStatusCode();
 
             HttpEntity entity = response.getEntity();
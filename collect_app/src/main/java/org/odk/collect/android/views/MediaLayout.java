@@ -20,6 +20,7 @@ import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Color;
+import android.graphics.Point;
 import android.media.MediaPlayer;
 import android.media.MediaPlayer.OnCompletionListener;
 import android.net.Uri;
@@ -41,7 +42,7 @@ import org.javarosa.core.reference.ReferenceManager;
 import org.odk.collect.android.R;
 import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.listeners.AudioPlayListener;
-import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.android.utilities.ImageLoader;
 import org.odk.collect.android.utilities.ToastUtils;
 import org.odk.collect.android.utilities.ViewIds;
 
@@ -75,6 +76,10 @@ public class MediaLayout extends RelativeLayout implements OnClickListener {
 
     private CharSequence originalText;
 
+    private File imageFile;
+    private Point imageSize;
+    private boolean imageLoadCancelled;
+
 
     public MediaLayout(Context c, MediaPlayer player) {
         super(c);
@@ -90,6 +95,41 @@ public class MediaLayout extends RelativeLayout implements OnClickListener {
         playTextColor = Color.BLUE;
     }
 
+    /**
+     * Decodes the image off the UI thread. Until it arrives the view keeps the height the
+     * image will have so that the layout doesn't jump.
+     */
+    private void loadImage() {
+        imageView.setMinimumHeight(imageSize.y + imageView.getPaddingTop()
+                + imageView.getPaddingBottom());
+        ImageLoader.getInstance().loadInto(imageView, imageFile, imageSize.x, imageSize.y,
+                new ImageLoader.OnImageLoadedListener() {
+                    @Override
+                    public void onImageLoaded(ImageView view, Bitmap bitmap) {
+                        view.setMinimumHeight(0);
+                    }
+                });
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (imageLoadCancelled) {
+            imageLoadCancelled = false;
+            loadImage();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        if (imageView != null && imageView.getDrawable() == null) {
+            // don't decode images for a layout that is no longer shown
+            ImageLoader.getInstance().cancel(imageView);
+            imageLoadCancelled = true;
+        }
+        super.onDetachedFromWindow();
+    }
+
     public void playAudio() {
         if (audioButton != null) {
             // have to call toString() to remove the html formatting
@@ -224,13 +264,15 @@ public class MediaLayout extends RelativeLayout implements OnClickListener {
                     DisplayMetrics metrics = context.getResources().getDisplayMetrics();
                     int screenWidth = metrics.widthPixels;
                     int screenHeight = metrics.heightPixels;
-                    Bitmap b = FileUtils.getBitmapScaledToDisplay(imageFile, screenHeight,
+                    Point imageSize = ImageLoader.getScaledToDisplaySize(imageFile, screenHeight,
                             screenWidth);
-                    if (b != null) {
+                    if (imageSize != null) {
                         imageView = new ImageView(getContext());
                         imageView.setPadding(2, 2, 2, 2);
-                        imageView.setImageBitmap(b);
                         imageView.setId(imageId);
+                        this.imageFile = imageFile;
+                        this.imageSize = imageSize;
+                        loadImage();
 
                         imageView.setOnClickListener(new OnClickListener() {
                             @Override
@@ -27,12 +27,14 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.view.View.OnLongClickListener;
 import android.widget.Button;
+import android.widget.FrameLayout;
 import android.widget.LinearLayout;
 import android.widget.ScrollView;
 import android.widget.TableLayout;
 import android.widget.TextView;
 
 import org.javarosa.core.model.Constants;
+import org.javarosa.core.model.FormDef;
 import org.javarosa.core.model.FormIndex;
 import org.javarosa.core.model.IFormElement;
 import org.javarosa.core.model.QuestionDef;
@@ -46,6 +48,7 @@ import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.exception.ExternalParamsException;
 import org.odk.collect.android.exception.JavaRosaException;
 import org.odk.collect.android.external.ExternalAppsUtils;
+import org.odk.collect.android.listeners.WidgetCreatedListener;
 import org.odk.collect.android.logic.FormController;
 import org.odk.collect.android.utilities.ToastUtils;
 import org.odk.collect.android.utilities.ViewIds;
@@ -63,7 +66,15 @@ import java.util.Set;
 import timber.log.Timber;
 
 /**
- * This class is
+ * The scrolling view of a single question, or of all the questions of a field-list, below the
+ * groups they are in.
+ *
+ * <p>Field-lists with many questions are virtualized: every question gets a placeholder, but
+ * widgets are only created for the questions near the visible part of the screen and released
+ * again once they are scrolled far away. The answers of released widgets are kept in
+ * {@link #releasedAnswers}, not written to the form, until the screen is saved, and are shown
+ * again when their widget is recreated. {@link #getWidgets()} only returns the widgets that
+ * currently exist, while {@link #getAnswers()} returns the answers to all the questions.</p>
  *
  * @author carlhartung
  */
@@ -76,10 +87,25 @@ public class ODKView extends ScrollView implements OnLongClickListener {
 
     public static final String FIELD_LIST = "field-list";
 
+    // field-lists with at least this many questions only create the widgets near the screen
+    private static final int VIRTUALIZATION_THRESHOLD = 25;
+    private static final int ESTIMATED_WIDGET_HEIGHT_DP = 100;
+
+    private final FormEntryPrompt[] questionPrompts;
+    private final boolean readOnlyOverride;
+    private final boolean virtualized;
+    private FrameLayout[] slots;
+    private QuestionWidget[] slotWidgets;
+    private final Map<FormIndex, IAnswerData> releasedAnswers = new HashMap<>();
+    private OnFocusChangeListener focusChangeListener;
+    private WidgetCreatedListener widgetCreatedListener;
+    private boolean visibilityUpdatePending;
+
     public ODKView(Context context, final FormEntryPrompt[] questionPrompts,
             FormEntryCaption[] groups, boolean advancingPage) {
         super(context);
 
+        this.questionPrompts = questionPrompts;
         widgets = new ArrayList<>();
 
         view = new LinearLayout(getContext());
@@ -98,6 +124,7 @@ public class ODKView extends ScrollView implements OnLongClickListener {
 
         // when the grouped fields are populated by an external app, this will get true.
         boolean readOnlyOverride = false;
+        virtualized = questionPrompts.length >= VIRTUALIZATION_THRESHOLD;
 
         // get the group we are showing -- it will be the last of the groups in the groups list
         if (groups != null && groups.length > 0) {
@@ -180,8 +207,17 @@ public class ODKView extends ScrollView implements OnLongClickListener {
             }
         }
 
+        this.readOnlyOverride = readOnlyOverride;
+        int estimatedWidgetHeight = (int) (ESTIMATED_WIDGET_HEIGHT_DP
+                * getResources().getDisplayMetrics().density);
+        if (virtualized) {
+            slots = new FrameLayout[questionPrompts.length];
+            slotWidgets = new QuestionWidget[questionPrompts.length];
+        }
+
         boolean first = true;
-        for (FormEntryPrompt p : questionPrompts) {
+        for (int i = 0; i < questionPrompts.length; i++) {
+            FormEntryPrompt p = questionPrompts[i];
             if (!first) {
                 View divider = new View(getContext());
                 divider.setBackgroundResource(android.R.drawable.divider_horizontal_bright);
@@ -191,19 +227,31 @@ public class ODKView extends ScrollView implements OnLongClickListener {
                 first = false;
             }
 
-            // if question or answer type is not supported, use text widget
-            QuestionWidget qw =
-                    WidgetFactory.createWidgetFromPrompt(p, getContext(), readOnlyOverride);
-            qw.setLongClickable(true);
-            qw.setOnLongClickListener(this);
-            qw.setId(ViewIds.generateViewId());
-
-            widgets.add(qw);
-            view.addView(qw, layout);
+            if (virtualized) {
+                FrameLayout slot = new FrameLayout(getContext());
+                slot.setMinimumHeight(estimatedWidgetHeight);
+                slot.addOnLayoutChangeListener(slotLayoutListener);
+                slots[i] = slot;
+                view.addView(slot, layout);
+            } else {
+                QuestionWidget qw = createWidget(p);
+                widgets.add(qw);
+                view.addView(qw, layout);
+            }
         }
 
         addView(view);
 
+        if (virtualized) {
+            // fill the first screen right away, the rest is created once the view is laid out
+            int screenHeight = getResources().getDisplayMetrics().heightPixels;
+            int initialCount = Math.min(questionPrompts.length,
+                    screenHeight / estimatedWidgetHeight + 1);
+            for (int i = 0; i < initialCount; i++) {
+                createSlotWidget(i);
+            }
+        }
+
         // see if there is an autoplay option. 
         // Only execute it during forward swipes through the form 
         if (advancingPage && widgets.size() == 1) {
@@ -225,6 +273,134 @@ public class ODKView extends ScrollView implements OnLongClickListener {
         }
     }
 
+    private QuestionWidget createWidget(FormEntryPrompt p) {
+        // if question or answer type is not supported, use text widget
+        QuestionWidget qw =
+                WidgetFactory.createWidgetFromPrompt(p, getContext(), readOnlyOverride);
+        qw.setLongClickable(true);
+        qw.setOnLongClickListener(this);
+        qw.setId(ViewIds.generateViewId());
+        return qw;
+    }
+
+    private void createSlotWidget(int position) {
+        FormEntryPrompt p = questionPrompts[position];
+        if (releasedAnswers.containsKey(p.getIndex())) {
+            FormDef formDef = Collect.getInstance().getFormController().getFormDef();
+            p = new ReleasedAnswerPrompt(formDef, p.getIndex(),
+                    releasedAnswers.remove(p.getIndex()));
+        }
+        QuestionWidget qw = createWidget(p);
+        if (focusChangeListener != null) {
+            qw.setOnFocusChangeListener(focusChangeListener);
+        }
+
+        FrameLayout slot = slots[position];
+        slot.setMinimumHeight(0);
+        slot.addView(qw, new FrameLayout.LayoutParams(FrameLayout.LayoutParams.MATCH_PARENT,
+                FrameLayout.LayoutParams.WRAP_CONTENT));
+        slotWidgets[position] = qw;
+        updateWidgetList();
+
+        if (widgetCreatedListener != null) {
+            widgetCreatedListener.widgetCreated(qw);
+        }
+    }
+
+    /**
+     * Releases the widget at the given position, keeping its answer until the screen is saved.
+     * Widgets that are being edited or are waiting for data from another app are kept.
+     */
+    private void releaseSlotWidget(int position) {
+        QuestionWidget qw = slotWidgets[position];
+        if (qw.hasFocus() || qw instanceof BinaryWidget
+                && ((BinaryWidget) qw).isWaitingForBinaryData()
+                || Collect.getInstance().getFormController() == null) {
+            return;
+        }
+
+        releasedAnswers.put(questionPrompts[position].getIndex(), qw.getAnswer());
+
+        FrameLayout slot = slots[position];
+        slot.setMinimumHeight(slot.getHeight());
+        qw.stopAudio();
+        qw.recycleDrawables();
+        slot.removeView(qw);
+        slotWidgets[position] = null;
+        updateWidgetList();
+    }
+
+    private void updateWidgetList() {
+        widgets.clear();
+        for (QuestionWidget qw : slotWidgets) {
+            if (qw != null) {
+                widgets.add(qw);
+            }
+        }
+    }
+
+    /**
+     * Creates the widgets within a screen of the visible area and releases those more than
+     * three screens away, so that scrolling back and forth doesn't keep recreating them.
+     */
+    private void updateVisibleWidgets() {
+        visibilityUpdatePending = false;
+        int viewportHeight = getHeight();
+        if (viewportHeight == 0) {
+            return;
+        }
+
+        int scrollY = getScrollY();
+        int createTop = scrollY - viewportHeight;
+        int createBottom = scrollY + 2 * viewportHeight;
+        int releaseTop = scrollY - 3 * viewportHeight;
+        int releaseBottom = scrollY + 4 * viewportHeight;
+        for (int i = 0; i < slots.length; i++) {
+            int top = slots[i].getTop();
+            int bottom = slots[i].getBottom();
+            if (slotWidgets[i] == null) {
+                if (bottom >= createTop && top <= createBottom) {
+                    createSlotWidget(i);
+                }
+            } else if (bottom < releaseTop || top > releaseBottom) {
+                releaseSlotWidget(i);
+            }
+        }
+    }
+
+    private void scheduleVisibilityUpdate() {
+        if (virtualized && !visibilityUpdatePending) {
+            visibilityUpdatePending = true;
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    updateVisibleWidgets();
+                }
+            });
+        }
+    }
+
+    /**
+     * Keeps the content on screen in place when a question above it changes height, e.g.
+     * because its widget was just created in place of the placeholder.
+     */
+    private final OnLayoutChangeListener slotLayoutListener = new OnLayoutChangeListener() {
+        @Override
+        public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                   int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            int delta = (bottom - top) - (oldBottom - oldTop);
+            if (delta != 0 && oldBottom != 0 && oldBottom <= getScrollY()) {
+                scrollBy(0, delta);
+            }
+        }
+    };
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        scheduleVisibilityUpdate();
+    }
+
     /**
      * http://code.google.com/p/android/issues/detail?id=8488
      */
@@ -238,6 +414,7 @@ public class ODKView extends ScrollView implements OnLongClickListener {
 
     protected void onScrollChanged(int l, int t, int oldl, int oldt) {
         Collect.getInstance().getActivityLogger().logScrollAction(this, t - oldt);
+        scheduleVisibilityUpdate();
     }
 
     /**
@@ -245,6 +422,22 @@ public class ODKView extends ScrollView implements OnLongClickListener {
      */
     public HashMap<FormIndex, IAnswerData> getAnswers() {
         HashMap<FormIndex, IAnswerData> answers = new LinkedHashMap<>();
+        if (virtualized) {
+            for (int i = 0; i < questionPrompts.length; i++) {
+                FormEntryPrompt p = questionPrompts[i];
+                QuestionWidget q = slotWidgets[i];
+                if (q != null) {
+                    answers.put(p.getIndex(), q.getAnswer());
+                } else if (releasedAnswers.containsKey(p.getIndex())) {
+                    answers.put(p.getIndex(), releasedAnswers.get(p.getIndex()));
+                } else {
+                    // never shown, so not changed either
+                    answers.put(p.getIndex(), p.getAnswerValue());
+                }
+            }
+            return answers;
+        }
+
         for (QuestionWidget q : widgets) {
             /*
              * The FormEntryPrompt has the FormIndex, which is where the answer gets stored. The
@@ -304,20 +497,16 @@ public class ODKView extends ScrollView implements OnLongClickListener {
      */
     public void setBinaryData(Object answer) {
         boolean set = false;
-        for (QuestionWidget q : widgets) {
-            if (q instanceof BinaryWidget) {
-                if (((BinaryWidget) q).isWaitingForBinaryData()) {
-                    try {
-                        ((BinaryWidget) q).setBinaryData(answer);
-                    } catch (Exception e) {
-                        Timber.e(e);
-                        ToastUtils.showLongToast(getContext().getString(R.string.error_attaching_binary_file,
-                                        e.getMessage()));
-                    }
-                    set = true;
-                    break;
-                }
+        QuestionWidget q = getWidgetWaitingForBinaryData();
+        if (q != null) {
+            try {
+                ((BinaryWidget) q).setBinaryData(answer);
+            } catch (Exception e) {
+                Timber.e(e);
+                ToastUtils.showLongToast(getContext().getString(R.string.error_attaching_binary_file,
+                                e.getMessage()));
             }
+            set = true;
         }
 
         if (!set) {
@@ -325,6 +514,33 @@ public class ODKView extends ScrollView implements OnLongClickListener {
         }
     }
 
+    /**
+     * Returns the widget waiting for data from another app, creating it if it has been
+     * released in the meantime.
+     */
+    public QuestionWidget getWidgetWaitingForBinaryData() {
+        for (QuestionWidget q : widgets) {
+            if (q instanceof BinaryWidget && ((BinaryWidget) q).isWaitingForBinaryData()) {
+                return q;
+            }
+        }
+
+        FormController formController = Collect.getInstance().getFormController();
+        if (virtualized && formController != null) {
+            FormIndex waitingIndex = formController.getIndexWaitingForData();
+            for (int i = 0; i < questionPrompts.length; i++) {
+                if (questionPrompts[i].getIndex().equals(waitingIndex)) {
+                    if (slotWidgets[i] == null) {
+                        createSlotWidget(i);
+                    }
+                    QuestionWidget q = slotWidgets[i];
+                    return q instanceof BinaryWidget ? q : null;
+                }
+            }
+        }
+        return null;
+    }
+
     public void setDataForFields(Bundle bundle) throws JavaRosaException {
         if (bundle == null) {
             return;
@@ -332,8 +548,7 @@ public class ODKView extends ScrollView implements OnLongClickListener {
         FormController formController = Collect.getInstance().getFormController();
         Set<String> keys = bundle.keySet();
         for (String key : keys) {
-            for (QuestionWidget questionWidget : widgets) {
-                FormEntryPrompt prompt = questionWidget.getPrompt();
+            for (FormEntryPrompt prompt : questionPrompts) {
                 TreeReference treeReference =
                         (TreeReference) prompt.getFormElement().getBind().getReference();
                 
@@ -375,6 +590,18 @@ public class ODKView extends ScrollView implements OnLongClickListener {
             }
         }
 
+        FormController formController = Collect.getInstance().getFormController();
+        if (count == 0 && virtualized && formController != null) {
+            // the waiting widget may have been released, nothing else refers to it
+            for (FormEntryPrompt p : questionPrompts) {
+                if (p.getIndex().equals(formController.getIndexWaitingForData())) {
+                    formController.setIndexWaitingForData(null);
+                    ++count;
+                    break;
+                }
+            }
+        }
+
         if (count != 1) {
             Timber.w("Attempting to cancel waiting for binary data to a widget or set of widgets "
                             + "not looking for data");
@@ -397,7 +624,8 @@ public class ODKView extends ScrollView implements OnLongClickListener {
     public boolean clearAnswer() {
         // If there's only one widget, clear the answer.
         // If there are more, then force a long-press to clear the answer.
-        if (widgets.size() == 1 && !widgets.get(0).getPrompt().isReadOnly()) {
+        if (questionPrompts.length == 1 && widgets.size() == 1
+                && !widgets.get(0).getPrompt().isReadOnly()) {
             widgets.get(0).clearAnswer();
             return true;
         } else {
@@ -411,8 +639,16 @@ public class ODKView extends ScrollView implements OnLongClickListener {
     }
 
 
+    /**
+     * Sets the listener notified of widgets created after the view was first shown.
+     */
+    public void setWidgetCreatedListener(WidgetCreatedListener listener) {
+        widgetCreatedListener = listener;
+    }
+
     @Override
     public void setOnFocusChangeListener(OnFocusChangeListener l) {
+        focusChangeListener = l;
         for (int i = 0; i < widgets.size(); i++) {
             QuestionWidget qw = widgets.get(i);
             qw.setOnFocusChangeListener(l);
@@ -435,7 +671,33 @@ public class ODKView extends ScrollView implements OnLongClickListener {
     }
 
     public void stopAudio() {
-        widgets.get(0).stopAudio();
+        if (virtualized) {
+            // any of the widgets that exist may be playing
+            for (QuestionWidget qw : widgets) {
+                qw.stopAudio();
+            }
+        } else {
+            widgets.get(0).stopAudio();
+        }
+    }
+
+    /**
+     * The prompt of a question whose widget was released, giving the answer the widget had
+     * rather than the one in the form, so that the recreated widget shows it.
+     */
+    private static class ReleasedAnswerPrompt extends FormEntryPrompt {
+
+        private final IAnswerData answer;
+
+        ReleasedAnswerPrompt(FormDef formDef, FormIndex index, IAnswerData answer) {
+            super(formDef, index);
+            this.answer = answer;
+        }
+
+        @Override
+        public IAnswerData getAnswerValue() {
+            return answer;
+        }
     }
 
 }
@@ -39,6 +39,8 @@ import org.odk.collect.android.logic.FormController;
 import org.odk.collect.android.preferences.PreferenceKeys;
 import org.odk.collect.android.utilities.PlayServicesUtil;
 
+import timber.log.Timber;
+
 /**
  * GeoShapeTrace is the widget that allows the user to get Collect multiple GPS points based on the
  * locations.
@@ -53,6 +55,7 @@ public class GeoTraceWidget extends QuestionWidget implements BinaryWidget {
 
     public static final String GOOGLE_MAP_KEY = "google_maps";
     public static final String TRACE_LOCATION = "gp";
+    public static final String SIMPLIFY_TOLERANCE = "simplifyTolerance";
 
     public SharedPreferences sharedPreferences;
     public String mapSDK;
@@ -121,6 +124,17 @@ public class GeoTraceWidget extends QuestionWidget implements BinaryWidget {
         if (s.length() != 0) {
             i.putExtra(TRACE_LOCATION, s);
         }
+
+        // forms can ask for the trace to be simplified to the given tolerance in meters on save
+        String tolerance = formEntryPrompt.getQuestion().getAdditionalAttribute(null,
+                SIMPLIFY_TOLERANCE);
+        if (tolerance != null && tolerance.length() != 0) {
+            try {
+                i.putExtra(SIMPLIFY_TOLERANCE, Double.parseDouble(tolerance));
+            } catch (NumberFormatException e) {
+                Timber.w("Invalid %s: %s", SIMPLIFY_TOLERANCE, tolerance);
+            }
+        }
         ((Activity) getContext()).startActivityForResult(i, FormEntryActivity.GEOTRACE_CAPTURE);
     }
 
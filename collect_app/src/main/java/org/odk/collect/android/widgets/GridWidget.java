@@ -16,8 +16,8 @@ package org.odk.collect.android.widgets;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
-import android.graphics.Bitmap;
 import android.graphics.Color;
+import android.graphics.Point;
 import android.support.annotation.Nullable;
 import android.util.DisplayMetrics;
 import android.util.TypedValue;
@@ -48,7 +48,7 @@ import org.odk.collect.android.application.Collect;
 import org.odk.collect.android.external.ExternalDataUtil;
 import org.odk.collect.android.external.ExternalSelectChoice;
 import org.odk.collect.android.listeners.AdvanceToNextListener;
-import org.odk.collect.android.utilities.FileUtils;
+import org.odk.collect.android.utilities.ImageLoader;
 import org.odk.collect.android.views.AudioButton.AudioHandler;
 import org.odk.collect.android.views.ExpandedHeightGridView;
 
@@ -107,8 +107,7 @@ public class GridWidget extends QuestionWidget implements MultiChoiceWidget {
         super(context, prompt);
 
         // SurveyCTO-added support for dynamic select content (from .csv files)
-        XPathFuncExpr xpathFuncExpr = ExternalDataUtil.getSearchXPathExpression(
-                prompt.getAppearanceHint());
+        XPathFuncExpr xpathFuncExpr = ExternalDataUtil.getSearchXPathExpression(prompt);
         if (xpathFuncExpr != null) {
             items = ExternalDataUtil.populateExternalChoices(prompt, xpathFuncExpr);
         } else {
@@ -185,27 +184,29 @@ public class GridWidget extends QuestionWidget implements MultiChoiceWidget {
 
                     final File imageFile = new File(imageFilename);
                     if (imageFile.exists()) {
-                        Bitmap b =
-                                FileUtils
-                                        .getBitmapScaledToDisplay(imageFile, screenHeight,
-                                                screenWidth);
-                        if (b != null) {
-
-                            if (b.getWidth() > maxColumnWidth) {
-                                maxColumnWidth = b.getWidth();
+                        Point imageSize = ImageLoader.getScaledToDisplaySize(imageFile,
+                                screenHeight, screenWidth);
+                        if (imageSize != null) {
+
+                            if (imageSize.x > maxColumnWidth) {
+                                maxColumnWidth = imageSize.x;
                             }
 
                             ImageView imageView = (ImageView) imageViews[i];
 
-
                             if (numColumns > 0) {
-                                int resizeHeight = (b.getHeight() * resizeWidth) / b.getWidth();
-                                b = Bitmap.createScaledBitmap(b, resizeWidth, resizeHeight, false);
+                                imageSize.y = Math.max(1,
+                                        (imageSize.y * resizeWidth) / imageSize.x);
+                                imageSize.x = resizeWidth;
                             }
 
                             imageView.setPadding(IMAGE_PADDING, IMAGE_PADDING, IMAGE_PADDING,
                                     IMAGE_PADDING);
-                            imageView.setImageBitmap(b);
+                            // Reserve the space of the image while it is decoded in the background
+                            imageView.setMinimumWidth(imageSize.x + 2 * IMAGE_PADDING);
+                            imageView.setMinimumHeight(imageSize.y + 2 * IMAGE_PADDING);
+                            ImageLoader.getInstance().loadInto(imageView, imageFile, imageSize.x,
+                                    imageSize.y, null);
                             imageView.setLayoutParams(
                                     new ListView.LayoutParams(ListView.LayoutParams.WRAP_CONTENT,
                                             ListView.LayoutParams.WRAP_CONTENT));
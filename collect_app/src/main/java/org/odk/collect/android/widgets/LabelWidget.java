@@ -65,8 +65,7 @@ public class LabelWidget extends QuestionWidget {
         super(context, prompt);
 
         // SurveyCTO-added support for dynamic select content (from .csv files)
-        XPathFuncExpr xpathFuncExpr = ExternalDataUtil.getSearchXPathExpression(
-                prompt.getAppearanceHint());
+        XPathFuncExpr xpathFuncExpr = ExternalDataUtil.getSearchXPathExpression(prompt);
         if (xpathFuncExpr != null) {
             items = ExternalDataUtil.populateExternalChoices(prompt, xpathFuncExpr);
         } else {
@@ -80,8 +80,7 @@ public class ListMultiWidget extends QuestionWidget implements MultiChoiceWidget
         super(context, prompt);
 
         // SurveyCTO-added support for dynamic select content (from .csv files)
-        XPathFuncExpr xpathFuncExpr = ExternalDataUtil.getSearchXPathExpression(
-                prompt.getAppearanceHint());
+        XPathFuncExpr xpathFuncExpr = ExternalDataUtil.getSearchXPathExpression(prompt);
         if (xpathFuncExpr != null) {
             items = ExternalDataUtil.populateExternalChoices(prompt, xpathFuncExpr);
         } else {
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 Nafundi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.odk.collect.android.widgets;
+
+import android.view.View;
+
+import java.util.Collection;
+
+/**
+ * A select widget whose choices are picked from the results of a search box, see
+ * {@link SelectWidget#setUpSearchBox(SearchableChoiceWidget)}.
+ */
+public interface SearchableChoiceWidget {
+
+    /**
+     * Returns the row shown for the choice at the given index, reusing convertView when it
+     * isn't null.
+     */
+    View getChoiceView(int index, View convertView);
+
+    /**
+     * Returns the indexes of the selected choices, in order. The widget keeps them rather than
+     * having every choice asked whether it is selected.
+     */
+    Collection<Integer> getSelectedChoices();
+}
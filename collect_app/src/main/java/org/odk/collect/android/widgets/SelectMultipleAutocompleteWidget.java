@@ -17,28 +17,38 @@
 package org.odk.collect.android.widgets;
 
 import android.content.Context;
+import android.view.View;
 import android.view.inputmethod.InputMethodManager;
+import android.widget.CheckBox;
 import android.widget.CompoundButton;
 
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.data.SelectMultiData;
+import org.javarosa.core.model.data.helper.Selection;
 import org.javarosa.form.api.FormEntryPrompt;
 import org.odk.collect.android.listeners.AudioPlayListener;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Shows the choices of a select multiple question in a searchable, recycling list. Only the
+ * check boxes on screen exist, so the selection is kept separately from them.
+ */
+public class SelectMultipleAutocompleteWidget extends SelectMultiWidget
+        implements CompoundButton.OnCheckedChangeListener, AudioPlayListener,
+        SearchableChoiceWidget {
+    // assigned in createLayout, which runs before this class's field initializers would
+    private SortedSet<Integer> selected;
+    private OnLongClickListener longClickListener;
 
-public class SelectMultipleAutocompleteWidget extends SelectMultiWidget implements CompoundButton.OnCheckedChangeListener, AudioPlayListener {
     public SelectMultipleAutocompleteWidget(Context context, FormEntryPrompt prompt) {
         super(context, prompt);
     }
 
-    @Override
-    protected void addButtonsToLayout(List<Integer> tagList) {
-        for (int i = 0; i < checkBoxes.size(); i++) {
-            if (tagList == null || tagList.contains(i)) {
-                answerLayout.addView(checkBoxes.get(i));
-            }
-        }
-    }
-
     @Override
     public void setFocus(Context context) {
         // Put focus on text input field and display soft keyboard if appropriate.
@@ -49,16 +59,78 @@ public class SelectMultipleAutocompleteWidget extends SelectMultiWidget implemen
 
     @Override
     protected void createLayout() {
-        if (items != null) {
-            for (int i = 0; i < items.size(); i++) {
-                checkBoxes.add(createCheckBox(i));
+        selected = new TreeSet<>();
+        if (items != null && getPrompt().getAnswerValue() != null) {
+            //noinspection unchecked
+            for (Selection selection : (List<Selection>) getPrompt().getAnswerValue().getValue()) {
+                int index = indexOfValue(selection.getValue());
+                if (index != -1) {
+                    selected.add(index);
+                }
             }
         }
 
-        setUpSearchBox();
+        setUpSearchBox(this);
+    }
+
+    @Override
+    public View getChoiceView(int index, View convertView) {
+        CheckBox checkBox = convertView instanceof CheckBox
+                ? (CheckBox) convertView : createCheckBox(index);
+        checkBox.setOnCheckedChangeListener(null);
+        checkBox.setText(getChoiceDisplayName(index));
+        checkBox.setTag(index);
+        checkBox.setChecked(selected.contains(index));
+        checkBox.setOnCheckedChangeListener(this);
+        checkBox.setOnLongClickListener(longClickListener);
+        return checkBox;
     }
 
     @Override
     public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+        // read only check boxes are disabled, so this is always the user's choice
+        setChoiceSelected((Integer) buttonView.getTag(), isChecked);
+    }
+
+    @Override
+    public Collection<Integer> getSelectedChoices() {
+        return selected;
+    }
+
+    @Override
+    public void clearAnswer() {
+        selected.clear();
+        refreshSearchResults();
+    }
+
+    @Override
+    public IAnswerData getAnswer() {
+        List<Selection> vc = new ArrayList<>();
+        for (int index : selected) {
+            vc.add(new Selection(items.get(index)));
+        }
+
+        return vc.size() == 0 ? null : new SelectMultiData(vc);
+    }
+
+    @Override
+    public void setOnLongClickListener(OnLongClickListener l) {
+        longClickListener = l;
+        refreshSearchResults();
+    }
+
+    @Override
+    public int getChoiceCount() {
+        return items == null ? 0 : items.size();
+    }
+
+    @Override
+    public void setChoiceSelected(int choiceIndex, boolean isSelected) {
+        if (isSelected) {
+            selected.add(choiceIndex);
+        } else {
+            selected.remove(choiceIndex);
+        }
+        refreshSearchResults();
     }
-}
\ No newline at end of file
+}
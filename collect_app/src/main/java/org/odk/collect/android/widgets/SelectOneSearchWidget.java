@@ -16,13 +16,20 @@ package org.odk.collect.android.widgets;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.view.View;
 import android.view.inputmethod.InputMethodManager;
+import android.widget.CompoundButton;
 import android.widget.CompoundButton.OnCheckedChangeListener;
+import android.widget.RadioButton;
 
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.data.SelectOneData;
+import org.javarosa.core.model.data.helper.Selection;
 import org.javarosa.form.api.FormEntryPrompt;
 import org.odk.collect.android.listeners.AudioPlayListener;
 
-import java.util.List;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * SelectOneSearchWidget allows the user to enter a value in an editable text box and based on
@@ -30,23 +37,22 @@ import java.util.List;
  * options only appear which can then be chosen. This is used to narrow down the Select One options
  * For now, audio/video/image etc will be ignored
  *
+ * <p>The choices are shown in a recycling list, so only the radio buttons on screen exist and
+ * the selection is kept as an index rather than in the buttons.</p>
+ *
  * @author Raghu Mittal (raghu.mittal@handsrel.com)
  */
 @SuppressLint("ViewConstructor")
-public class SelectOneSearchWidget extends SelectOneWidget implements OnCheckedChangeListener, AudioPlayListener {
+public class SelectOneSearchWidget extends SelectOneWidget implements OnCheckedChangeListener,
+        AudioPlayListener, SearchableChoiceWidget {
+    // assigned in createLayout, which runs before this class's field initializers would
+    private int selectedIndex;
+    private OnLongClickListener longClickListener;
+
     public SelectOneSearchWidget(Context context, FormEntryPrompt prompt) {
         super(context, prompt);
     }
 
-    @Override
-    protected void addButtonsToLayout(List<Integer> tagList) {
-        for (int i = 0; i < buttons.size(); i++) {
-            if (tagList == null || tagList.contains(i)) {
-                answerLayout.addView(buttons.get(i));
-            }
-        }
-    }
-
     @Override
     public void setFocus(Context context) {
         // Put focus on text input field and display soft keyboard if appropriate.
@@ -57,12 +63,79 @@ public class SelectOneSearchWidget extends SelectOneWidget implements OnCheckedC
 
     @Override
     protected void createLayout() {
-        if (items != null) {
-            for (int i = 0; i < items.size(); i++) {
-                buttons.add(createRadioButton(i));
+        selectedIndex = -1;
+        if (items != null && selectedValue != null) {
+            selectedIndex = indexOfValue(selectedValue);
+        }
+
+        setUpSearchBox(this);
+    }
+
+    @Override
+    public View getChoiceView(int index, View convertView) {
+        RadioButton radioButton = convertView instanceof RadioButton
+                ? (RadioButton) convertView : createRadioButton(index);
+        radioButton.setOnCheckedChangeListener(null);
+        radioButton.setText(getChoiceDisplayName(index));
+        radioButton.setTag(index);
+        radioButton.setChecked(index == selectedIndex);
+        radioButton.setOnCheckedChangeListener(this);
+        radioButton.setOnLongClickListener(longClickListener);
+        return radioButton;
+    }
+
+    @Override
+    public void clearAnswer() {
+        if (selectedIndex != -1) {
+            selectedIndex = -1;
+            clearNextLevelsOfCascadingSelect();
+            refreshSearchResults();
+        }
+    }
+
+    @Override
+    public IAnswerData getAnswer() {
+        return selectedIndex == -1 ? null : new SelectOneData(new Selection(items.get(selectedIndex)));
+    }
+
+    @Override
+    public int getCheckedId() {
+        return selectedIndex;
+    }
+
+    @Override
+    public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+        int index = (Integer) buttonView.getTag();
+        if (isChecked && index != selectedIndex) {
+            if (selectedIndex != -1) {
+                clearNextLevelsOfCascadingSelect();
             }
+            selectedIndex = index;
+            refreshSearchResults();
+            hideSearchResults();
         }
+    }
+
+    @Override
+    public Collection<Integer> getSelectedChoices() {
+        return selectedIndex == -1 ? Collections.<Integer>emptyList()
+                : Collections.singletonList(selectedIndex);
+    }
+
+    @Override
+    public void setOnLongClickListener(OnLongClickListener l) {
+        longClickListener = l;
+        refreshSearchResults();
+    }
 
-        setUpSearchBox();
+    @Override
+    public int getChoiceCount() {
+        return items == null ? 0 : items.size();
+    }
+
+    @Override
+    public void setChoiceSelected(int choiceIndex, boolean isSelected) {
+        selectedIndex = isSelected ? choiceIndex : -1;
+        refreshSearchResults();
     }
-}
\ No newline at end of file
+}
@@ -27,7 +27,6 @@ import org.javarosa.core.model.data.SelectOneData;
 import org.javarosa.core.model.data.helper.Selection;
 import org.javarosa.form.api.FormEntryPrompt;
 import org.odk.collect.android.listeners.AudioPlayListener;
-import org.odk.collect.android.utilities.TextUtils;
 import org.odk.collect.android.utilities.ViewIds;
 
 import java.util.ArrayList;
@@ -113,13 +112,7 @@ public class SelectOneWidget
     }
 
     protected RadioButton createRadioButton(int index) {
-        String choiceName = getPrompt().getSelectChoiceText(items.get(index));
-        CharSequence choiceDisplayName;
-        if (choiceName != null) {
-            choiceDisplayName = TextUtils.textToHtml(choiceName);
-        } else {
-            choiceDisplayName = "";
-        }
+        CharSequence choiceDisplayName = getChoiceDisplayName(index);
 
         RadioButton radioButton = new RadioButton(getContext());
         radioButton.setTextSize(TypedValue.COMPLEX_UNIT_DIP, answerFontsize);
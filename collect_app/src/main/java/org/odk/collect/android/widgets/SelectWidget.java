@@ -21,11 +21,15 @@ import android.media.MediaPlayer;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.util.TypedValue;
+import android.view.View;
 import android.view.ViewGroup;
 import android.view.inputmethod.InputMethodManager;
+import android.widget.BaseAdapter;
 import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
+import android.widget.ListPopupWindow;
+import android.widget.ListView;
 import android.widget.RelativeLayout;
 import android.widget.TableLayout;
 import android.widget.TextView;
@@ -37,20 +41,38 @@ import org.javarosa.form.api.FormEntryPrompt;
 import org.javarosa.xpath.expr.XPathFuncExpr;
 import org.odk.collect.android.external.ExternalDataUtil;
 import org.odk.collect.android.external.ExternalSelectChoice;
+import org.odk.collect.android.external.PagedSelectChoices;
+import org.odk.collect.android.utilities.ChoiceSearchIndex;
+import org.odk.collect.android.utilities.TextUtils;
 import org.odk.collect.android.utilities.ViewIds;
 import org.odk.collect.android.views.MediaLayout;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 
 public abstract class SelectWidget extends QuestionWidget {
+    // wait for a pause in typing before filtering, long choice lists take a while to search
+    private static final long SEARCH_DELAY_MS = 250;
+
     protected List<SelectChoice> items;
     protected ArrayList<MediaLayout> playList;
     protected LinearLayout answerLayout;
     protected EditText searchStr;
+    protected ListPopupWindow searchResults;
     private int playcounter = 0;
 
+    private SearchableChoiceWidget choiceRows;
+    private LinearLayout selectedChoicesLayout;
+    private ChoiceSearchIndex searchIndex;
+    private List<Integer> visibleChoices = new ArrayList<>();
+    private BaseAdapter searchResultsAdapter;
+    private final Runnable pendingSearch = new Runnable() {
+        @Override
+        public void run() {
+            doSearch(searchStr.getText().toString());
+        }
+    };
+
     public SelectWidget(Context context, FormEntryPrompt prompt) {
         super(context, prompt);
         answerLayout = new LinearLayout(context);
@@ -58,8 +80,7 @@ public abstract class SelectWidget extends QuestionWidget {
         playList = new ArrayList<>();
 
         // SurveyCTO-added support for dynamic select content (from .csv files)
-        XPathFuncExpr xpathFuncExpr = ExternalDataUtil.getSearchXPathExpression(
-                prompt.getAppearanceHint());
+        XPathFuncExpr xpathFuncExpr = ExternalDataUtil.getSearchXPathExpression(prompt);
         if (xpathFuncExpr != null) {
             items = ExternalDataUtil.populateExternalChoices(prompt, xpathFuncExpr);
         } else {
@@ -135,6 +156,15 @@ public abstract class SelectWidget extends QuestionWidget {
         }
     }
 
+    protected CharSequence getChoiceDisplayName(int index) {
+        String choiceName = getPrompt().getSelectChoiceText(items.get(index));
+        if (choiceName != null) {
+            return TextUtils.textToHtml(choiceName);
+        } else {
+            return "";
+        }
+    }
+
     protected MediaLayout createMediaLayout(int index, TextView textView) {
         String audioURI = getPrompt().getSpecialFormSelectChoiceText(items.get(index), FormEntryCaption.TEXT_FORM_AUDIO);
 
@@ -167,22 +197,66 @@ public abstract class SelectWidget extends QuestionWidget {
         return mediaLayout;
     }
 
+    /**
+     * Returns the index of the choice with the given value, or -1 if there is none.
+     */
+    protected int indexOfValue(String value) {
+        if (items instanceof PagedSelectChoices) {
+            return ((PagedSelectChoices) items).indexOfValue(value);
+        }
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).getValue().equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Shows the choices matching the given text. The choices found by a search() are searched
+     * by their data set, which is only case insensitive, rather than by creating every one of
+     * them to index its label.
+     */
     protected void doSearch(String searchStr) {
-        // First check if there is nothing on search
-        if (searchStr == null || searchStr.trim().length() == 0) {
-            createFilteredOptions(items, null);
-        } else { // Create a List with items that are relevant to the search text
-            List<SelectChoice> searchedItems = new ArrayList<>();
-            List<Integer> tagList = new ArrayList<>();
-            searchStr = searchStr.toLowerCase(Locale.US);
-            for (int i = 0; i < items.size(); i++) {
-                String choiceText = getPrompt().getSelectChoiceText(items.get(i)).toLowerCase(Locale.US);
-                if (choiceText.contains(searchStr)) {
-                    searchedItems.add(items.get(i));
-                    tagList.add(i);
+        if (items instanceof PagedSelectChoices) {
+            visibleChoices = ((PagedSelectChoices) items).search(searchStr);
+            searchResultsAdapter.notifyDataSetChanged();
+            showSearchResults();
+            return;
+        }
+        if (searchIndex == null) {
+            // normalize every label once per prompt rather than on every keystroke
+            List<String> labels = new ArrayList<>(items == null ? 0 : items.size());
+            if (items != null) {
+                for (SelectChoice item : items) {
+                    labels.add(getPrompt().getSelectChoiceText(item));
                 }
             }
-            createFilteredOptions(searchedItems, tagList);
+            searchIndex = new ChoiceSearchIndex(labels);
+        }
+
+        visibleChoices = searchIndex.search(searchStr);
+        searchResultsAdapter.notifyDataSetChanged();
+        showSearchResults();
+    }
+
+    /**
+     * Shows the matching choices under the search box while it has the focus. The results are
+     * in a popup rather than in the widget, so that the list recycles its rows instead of being
+     * laid out in full inside the form's scroll view.
+     */
+    private void showSearchResults() {
+        if (searchStr.hasFocus() && !visibleChoices.isEmpty() && getWindowToken() != null) {
+            searchResults.show();
+            searchResults.setSelection(0);
+        } else {
+            hideSearchResults();
+        }
+    }
+
+    protected void hideSearchResults() {
+        if (searchResults != null && searchResults.isShowing()) {
+            searchResults.dismiss();
         }
     }
 
@@ -193,7 +267,8 @@ public abstract class SelectWidget extends QuestionWidget {
             @Override
             public void afterTextChanged(Editable s) {
                 if (!s.toString().equals(oldText)) {
-                    doSearch(s.toString());
+                    removeCallbacks(pendingSearch);
+                    postDelayed(pendingSearch, SEARCH_DELAY_MS);
                 }
             }
 
@@ -208,7 +283,12 @@ public abstract class SelectWidget extends QuestionWidget {
         });
     }
 
-    protected void setUpSearchBox() {
+    /**
+     * Adds a search box whose matching choices are offered in a popup, and under it the rows of
+     * the choices that are selected.
+     */
+    protected void setUpSearchBox(SearchableChoiceWidget choiceRows) {
+        this.choiceRows = choiceRows;
         searchStr = new EditText(getContext());
         searchStr.setId(ViewIds.generateViewId());
         searchStr.setTextSize(TypedValue.COMPLEX_UNIT_DIP, answerFontsize);
@@ -217,26 +297,103 @@ public abstract class SelectWidget extends QuestionWidget {
         params.setMargins(7, 5, 7, 5);
         searchStr.setLayoutParams(params);
         setupChangeListener();
+        searchStr.setOnFocusChangeListener(new OnFocusChangeListener() {
+            @Override
+            public void onFocusChange(View v, boolean hasFocus) {
+                if (hasFocus) {
+                    showSearchResults();
+                } else {
+                    hideSearchResults();
+                }
+            }
+        });
         addAnswerView(searchStr);
 
+        searchResultsAdapter = new BaseAdapter() {
+            @Override
+            public int getCount() {
+                return visibleChoices.size();
+            }
+
+            @Override
+            public Object getItem(int position) {
+                return items.get(visibleChoices.get(position));
+            }
+
+            @Override
+            public long getItemId(int position) {
+                return visibleChoices.get(position);
+            }
+
+            @Override
+            public View getView(int position, View convertView, ViewGroup parent) {
+                return SelectWidget.this.choiceRows.getChoiceView(visibleChoices.get(position),
+                        convertView);
+            }
+        };
+
+        // only the rows on screen get views, so thousands of choices stay cheap
+        searchResults = new ListPopupWindow(getContext());
+        searchResults.setAdapter(searchResultsAdapter);
+        searchResults.setAnchorView(searchStr);
+        // keep the keyboard up while the results are shown
+        searchResults.setInputMethodMode(ListPopupWindow.INPUT_METHOD_NEEDED);
+
+        selectedChoicesLayout = new LinearLayout(getContext());
+        selectedChoicesLayout.setOrientation(LinearLayout.VERTICAL);
+        selectedChoicesLayout.setId(ViewIds.generateViewId());
+        RelativeLayout.LayoutParams selectedParams = new RelativeLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        selectedParams.addRule(RelativeLayout.ALIGN_PARENT_LEFT, RelativeLayout.TRUE);
+        selectedParams.addRule(RelativeLayout.BELOW, searchStr.getId());
+        selectedParams.setMargins(10, 0, 10, 0);
+        addView(selectedChoicesLayout, selectedParams);
+
         doSearch("");
+        refreshSelectedChoices();
     }
 
-    private void createFilteredOptions(List<SelectChoice> searchedItems, List<Integer> tagList) {
-        removeView(answerLayout);
-        answerLayout.removeAllViews();
+    /**
+     * Refreshes the choices shown in the search results, e.g. after the selection changed.
+     */
+    protected void refreshSearchResults() {
+        if (searchResultsAdapter != null) {
+            searchResultsAdapter.notifyDataSetChanged();
+            refreshSelectedChoices();
+        }
+    }
 
-        if (searchedItems != null && !searchedItems.isEmpty()) {
-            addButtonsToLayout(tagList);
+    /**
+     * Lists the selected choices under the search box, there are only ever a few of them.
+     */
+    private void refreshSelectedChoices() {
+        selectedChoicesLayout.removeAllViews();
+        for (int index : choiceRows.getSelectedChoices()) {
+            selectedChoicesLayout.addView(choiceRows.getChoiceView(index, null));
         }
+    }
 
-        RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
-        params.addRule(RelativeLayout.ALIGN_PARENT_LEFT, RelativeLayout.TRUE);
-        params.addRule(RelativeLayout.BELOW, searchStr.getId());
-        params.setMargins(10, 0, 10, 0);
-        addView(answerLayout, params);
+    @Override
+    public void cancelLongPress() {
+        super.cancelLongPress();
+        if (selectedChoicesLayout != null) {
+            for (int i = 0; i < selectedChoicesLayout.getChildCount(); i++) {
+                selectedChoicesLayout.getChildAt(i).cancelLongPress();
+            }
+        }
+        ListView resultsView = searchResults != null ? searchResults.getListView() : null;
+        if (resultsView != null) {
+            for (int i = 0; i < resultsView.getChildCount(); i++) {
+                resultsView.getChildAt(i).cancelLongPress();
+            }
+        }
     }
 
-    protected void addButtonsToLayout(List<Integer> tagList) {
+    @Override
+    protected void onDetachedFromWindow() {
+        removeCallbacks(pendingSearch);
+        // the popup would leak the window otherwise
+        hideSearchResults();
+        super.onDetachedFromWindow();
     }
 }
@@ -0,0 +1,106 @@
+package org.odk.collect.android.application;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StartupInitializerTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void phasesShouldRunAfterTheirDependenciesAndBeTimed() {
+        final CountDownLatch release = new CountDownLatch(1);
+        StartupInitializer initializer = new StartupInitializer(executor);
+
+        StartupInitializer.Phase first = new RecordingPhase("first", false);
+        StartupInitializer.Phase slow = new RecordingPhase("slow", true, first) {
+            @Override
+            protected void run() {
+                awaitQuietly(release);
+                super.run();
+            }
+        };
+        StartupInitializer.Phase afterSlow = new RecordingPhase("afterSlow", true, slow);
+        StartupInitializer.Phase last = new RecordingPhase("last", false, first);
+
+        initializer.start(first, slow, afterSlow, last);
+        // the foreground phases don't wait for the background ones they don't depend on
+        assertEquals(Arrays.asList("first", "last"), ran);
+
+        release.countDown();
+        initializer.awaitAll();
+        assertEquals(Arrays.asList("first", "last", "slow", "afterSlow"), ran);
+        assertEquals(Arrays.asList("first", "slow", "afterSlow", "last"),
+                new ArrayList<>(initializer.getTimings().keySet()));
+        for (long duration : initializer.getTimings().values()) {
+            assertTrue(duration >= 0);
+        }
+    }
+
+    @Test
+    public void awaitingAFailedPhaseShouldThrow() {
+        final RuntimeException failure = new RuntimeException();
+        StartupInitializer initializer = new StartupInitializer(executor);
+        StartupInitializer.Phase failing = new StartupInitializer.Phase("failing", true) {
+            @Override
+            protected void run() {
+                throw failure;
+            }
+        };
+
+        initializer.start(failing);
+        try {
+            initializer.await(failing);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(failure, e.getCause());
+        }
+        assertTrue(initializer.getTimings().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dependenciesShouldBeStartedFirst() {
+        StartupInitializer initializer = new StartupInitializer(executor);
+        StartupInitializer.Phase first = new RecordingPhase("first", false);
+
+        initializer.start(new RecordingPhase("second", false, first), first);
+    }
+
+    private class RecordingPhase extends StartupInitializer.Phase {
+
+        RecordingPhase(String name, boolean background, StartupInitializer.Phase... dependencies) {
+            super(name, background, dependencies);
+        }
+
+        @Override
+        protected void run() {
+            ran.add(getName());
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
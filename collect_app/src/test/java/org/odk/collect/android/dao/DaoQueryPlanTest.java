@@ -0,0 +1,234 @@
+package org.odk.collect.android.dao;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.net.Uri;
+import android.support.v4.content.CursorLoader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.BuildConfig;
+import org.odk.collect.android.database.helpers.FormsDatabaseHelper;
+import org.odk.collect.android.database.helpers.InstancesDatabaseHelper;
+import org.odk.collect.android.provider.FormsProviderAPI;
+import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
+import org.odk.collect.android.provider.InstanceProviderAPI;
+import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.odk.collect.android.database.helpers.FormsDatabaseHelper.FORMS_TABLE_NAME;
+import static org.odk.collect.android.database.helpers.InstancesDatabaseHelper.INSTANCES_TABLE_NAME;
+
+/**
+ * Checks with EXPLAIN QUERY PLAN that the queries of the DAOs, and the lookups the tasks make
+ * through them, search an index instead of scanning the whole instances or forms table. The
+ * queries go to providers that explain them against empty databases with the real schema.
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(RobolectricTestRunner.class)
+public class DaoQueryPlanTest {
+
+    private static final String SORT_ORDER = InstanceColumns.DISPLAY_NAME + " ASC";
+
+    private SQLiteDatabase instancesDb;
+    private SQLiteDatabase formsDb;
+    private QueryPlanProvider instancesProvider;
+    private QueryPlanProvider formsProvider;
+
+    @Before
+    public void setUp() {
+        instancesDb = SQLiteDatabase.create(null);
+        new InstancesDatabaseHelper().onCreate(instancesDb);
+        instancesProvider = new QueryPlanProvider(instancesDb, INSTANCES_TABLE_NAME);
+        ShadowContentResolver.registerProviderInternal(InstanceProviderAPI.AUTHORITY,
+                instancesProvider);
+
+        formsDb = SQLiteDatabase.create(null);
+        new FormsDatabaseHelper().onCreate(formsDb);
+        formsProvider = new QueryPlanProvider(formsDb, FORMS_TABLE_NAME);
+        ShadowContentResolver.registerProviderInternal(FormsProviderAPI.AUTHORITY, formsProvider);
+    }
+
+    @After
+    public void tearDown() {
+        instancesDb.close();
+        formsDb.close();
+    }
+
+    @Test
+    public void instanceQueriesShouldUseAnIndex() {
+        InstancesDao dao = new InstancesDao();
+
+        dao.getSentInstancesCursor().close();
+        assertUsesIndex(INSTANCES_TABLE_NAME, instancesProvider.lastPlan);
+        dao.getUnsentInstancesCursor().close();
+        assertUsesIndex(INSTANCES_TABLE_NAME, instancesProvider.lastPlan);
+        dao.getSavedInstancesCursor(SORT_ORDER).close();
+        assertUsesIndex(INSTANCES_TABLE_NAME, instancesProvider.lastPlan);
+        dao.getFinalizedInstancesCursor().close();
+        assertUsesIndex(INSTANCES_TABLE_NAME, instancesProvider.lastPlan);
+        dao.getAllCompletedUndeletedInstancesCursor().close();
+        assertUsesIndex(INSTANCES_TABLE_NAME, instancesProvider.lastPlan);
+        dao.getInstancesCursorForFilePath("/sdcard/odk/instances/a/a.xml").close();
+        assertUsesIndex(INSTANCES_TABLE_NAME, instancesProvider.lastPlan);
+        dao.getInstancesCursorForId("1").close();
+        assertUsesIndex(INSTANCES_TABLE_NAME, instancesProvider.lastPlan);
+    }
+
+    @Test
+    public void instanceListLoadersShouldUseAnIndex() {
+        InstancesDao dao = new InstancesDao();
+        // no filter, a filter that goes through the full-text index and one that can't
+        for (String filter : Arrays.asList("", "household", "%")) {
+            assertUsesIndex(instancesDb, INSTANCES_TABLE_NAME,
+                    dao.getSentInstancesCursorLoader(filter, SORT_ORDER, 100));
+            assertUsesIndex(instancesDb, INSTANCES_TABLE_NAME,
+                    dao.getUnsentInstancesCursorLoader(filter, SORT_ORDER, 100));
+            assertUsesIndex(instancesDb, INSTANCES_TABLE_NAME,
+                    dao.getSavedInstancesCursorLoader(filter, SORT_ORDER, 100));
+            assertUsesIndex(instancesDb, INSTANCES_TABLE_NAME,
+                    dao.getFinalizedInstancesCursorLoader(filter, SORT_ORDER, 100));
+            assertUsesIndex(instancesDb, INSTANCES_TABLE_NAME,
+                    dao.getCompletedUndeletedInstancesCursorLoader(filter, SORT_ORDER, 100));
+        }
+    }
+
+    @Test
+    public void instanceUpdatesAndDeletesShouldUseAnIndex() {
+        InstancesDao dao = new InstancesDao();
+
+        // as done by SaveToDiskTask
+        ContentValues values = new ContentValues();
+        values.put(InstanceColumns.STATUS, InstanceProviderAPI.STATUS_COMPLETE);
+        dao.updateInstance(values, InstanceColumns.INSTANCE_FILE_PATH + "=?",
+                new String[]{"/sdcard/odk/instances/a/a.xml"});
+        assertUsesIndex(INSTANCES_TABLE_NAME, instancesProvider.lastPlan);
+
+        // as done by InstanceSyncTask
+        dao.deleteInstancesFromIDs(Arrays.asList("/sdcard/odk/instances/a/a.xml",
+                "/sdcard/odk/instances/b/b.xml"));
+        assertUsesIndex(INSTANCES_TABLE_NAME, instancesProvider.lastPlan);
+    }
+
+    @Test
+    public void formQueriesShouldUseAnIndex() {
+        FormsDao dao = new FormsDao();
+
+        dao.getFormsCursorForFormId("household").close();
+        assertUsesIndex(FORMS_TABLE_NAME, formsProvider.lastPlan);
+        dao.getFormsCursorForFormFilePath("/sdcard/odk/forms/household.xml").close();
+        assertUsesIndex(FORMS_TABLE_NAME, formsProvider.lastPlan);
+        dao.getFormsCursorForMd5Hash("d41d8cd98f00b204e9800998ecf8427e").close();
+        assertUsesIndex(FORMS_TABLE_NAME, formsProvider.lastPlan);
+
+        // as done by FormEntryActivity and EncryptionUtils
+        dao.getFormsCursor(FormsColumns.JR_FORM_ID + "=? AND " + FormsColumns.JR_VERSION + "=?",
+                new String[]{"household", "2017"}).close();
+        assertUsesIndex(FORMS_TABLE_NAME, formsProvider.lastPlan);
+        dao.getFormsCursor(FormsColumns.JR_FORM_ID + "=? AND " + FormsColumns.JR_VERSION
+                + " IS NULL", new String[]{"household"}).close();
+        assertUsesIndex(FORMS_TABLE_NAME, formsProvider.lastPlan);
+
+        dao.deleteFormsFromIDs(new String[]{"1", "2"});
+        assertUsesIndex(FORMS_TABLE_NAME, formsProvider.lastPlan);
+
+        // listing every form scans the table, but searching it by name shouldn't
+        assertUsesIndex(formsDb, FORMS_TABLE_NAME,
+                dao.getFormsCursorLoader("household", SORT_ORDER, 100));
+    }
+
+    private static void assertUsesIndex(SQLiteDatabase db, String table, CursorLoader loader) {
+        assertUsesIndex(table, explain(db, table, loader.getSelection(),
+                loader.getSelectionArgs(), loader.getSortOrder()));
+    }
+
+    /**
+     * Fails if the plan reads every row of the table, even through an index used for sorting.
+     */
+    private static void assertUsesIndex(String table, List<String> plan) {
+        assertFalse("No query was made", plan.isEmpty());
+        for (String step : plan) {
+            assertFalse(table + " is scanned: " + plan,
+                    step.matches("SCAN (TABLE )?" + table + "( .*)?"));
+        }
+    }
+
+    private static List<String> explain(SQLiteDatabase db, String table, String selection,
+                                        String[] selectionArgs, String sortOrder) {
+        String query = SQLiteQueryBuilder.buildQueryString(false, table, null, selection, null,
+                null, sortOrder, null);
+        List<String> plan = new ArrayList<>();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query, selectionArgs);
+        try {
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(cursor.getColumnIndex("detail")));
+            }
+        } finally {
+            cursor.close();
+        }
+        return plan;
+    }
+
+    /**
+     * Stands in for the instances or forms provider, explaining each query instead of running
+     * it. Updates and deletes are explained as the query finding the rows they change.
+     */
+    private static class QueryPlanProvider extends ContentProvider {
+
+        private final SQLiteDatabase db;
+        private final String table;
+        private List<String> lastPlan = new ArrayList<>();
+
+        QueryPlanProvider(SQLiteDatabase db, String table) {
+            this.db = db;
+            this.table = table;
+        }
+
+        @Override
+        public boolean onCreate() {
+            return true;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection,
+                            String[] selectionArgs, String sortOrder) {
+            lastPlan = explain(db, table, selection, selectionArgs, sortOrder);
+            return db.query(table, projection, selection, selectionArgs, null, null, sortOrder);
+        }
+
+        @Override
+        public String getType(Uri uri) {
+            return null;
+        }
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            return null;
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            lastPlan = explain(db, table, selection, selectionArgs, null);
+            return 0;
+        }
+
+        @Override
+        public int update(Uri uri, ContentValues values, String selection,
+                          String[] selectionArgs) {
+            lastPlan = explain(db, table, selection, selectionArgs, null);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.odk.collect.android.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FullTextIndexTest {
+
+    @Test
+    public void everyWordShouldBeMatchedAsAPrefix() {
+        assertEquals("\"house*\"", FullTextIndex.getMatchQuery("house"));
+        assertEquals("\"house*\" \"12*\"", FullTextIndex.getMatchQuery("  house 12 "));
+    }
+
+    @Test
+    public void punctuationAndOperatorsShouldNotReachTheQuery() {
+        assertEquals("\"St*\" \"Mary*\" \"s*\"", FullTextIndex.getMatchQuery("St. Mary's"));
+        assertEquals("\"a*\" \"OR*\" \"b*\"", FullTextIndex.getMatchQuery("a OR -b"));
+        assertEquals("\"h\u00f4pital*\"", FullTextIndex.getMatchQuery("\"h\u00f4pital\""));
+    }
+
+    @Test
+    public void textWithoutWordsShouldFallBackToLike() {
+        assertNull(FullTextIndex.getMatchQuery("%_*"));
+        assertEquals("displayName LIKE ?",
+                FullTextIndex.getSelection("instances", "displayName", "%_*"));
+        assertEquals("%%_*%", FullTextIndex.getSelectionArg("%_*"));
+    }
+
+    @Test
+    public void selectionShouldMatchTheIndexOfTheTable() {
+        assertEquals("_id IN (SELECT docid FROM instances_fts WHERE instances_fts MATCH ?)",
+                FullTextIndex.getSelection("instances", "displayName", "household"));
+        assertEquals("\"household*\"", FullTextIndex.getSelectionArg("household"));
+    }
+}
@@ -0,0 +1,64 @@
+package org.odk.collect.android.external;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnarDataSetWriterTest {
+
+    private static final List<String> COLUMNS = Arrays.asList("name_key", "district");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void repeatedValuesShouldOnlyBeHeldOnce() throws Exception {
+        // room for the rows, but only for a few distinct values
+        ColumnarDataSet.Writer writer = new ColumnarDataSet.Writer(COLUMNS, 0, 1000);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(writer.addRow(new String[]{"same", "district"}, i));
+        }
+
+        File file = folder.newFile("same.columnar");
+        writer.write(file);
+        ColumnarDataSet dataSet = ColumnarDataSet.open(file);
+        assertEquals(20, dataSet.getRowCount());
+        assertEquals(1, dataSet.getDictionarySize(0));
+    }
+
+    @Test
+    public void rowsShouldBeRefusedOnceTheirDistinctValuesAreOverTheLimit() throws Exception {
+        ColumnarDataSet.Writer writer = new ColumnarDataSet.Writer(COLUMNS, 0, 1000);
+        int added = 0;
+        while (writer.addRow(new String[]{"key" + added, "district"}, added)) {
+            added++;
+        }
+        assertTrue(added > 0);
+        assertTrue(added < 20);
+        // a row of values that are already held still fits
+        assertTrue(writer.addRow(new String[]{"key0", "district"}, added));
+
+        File file = folder.newFile("unique.columnar");
+        writer.write(file);
+        assertEquals(added + 1, ColumnarDataSet.open(file).getRowCount());
+    }
+
+    @Test
+    public void noMoreThanTheMaximumNumberOfRowsShouldBeAdded() {
+        ColumnarDataSet.Writer writer = new ColumnarDataSet.Writer(COLUMNS, 0, Long.MAX_VALUE);
+        String[] values = {"same", "district"};
+        for (int i = 0; i < ColumnarDataSet.Writer.MAX_ROWS; i++) {
+            assertTrue(writer.addRow(values, i));
+        }
+
+        assertFalse(writer.addRow(values, ColumnarDataSet.Writer.MAX_ROWS));
+    }
+}
@@ -0,0 +1,79 @@
+package org.odk.collect.android.external;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.BuildConfig;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.performance.Budget;
+import org.odk.collect.android.performance.PerformanceTest;
+import org.odk.collect.android.performance.SyntheticData;
+import org.odk.collect.android.tasks.FormLoaderTask;
+import org.odk.collect.android.test.TestStorage;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Importing a large CSV of external data into its database, timed against the budgets of the
+ * performance tests.
+ */
+@Category(PerformanceTest.class)
+@Config(constants = BuildConfig.class)
+@RunWith(RobolectricTestRunner.class)
+public class ExternalDataImportPerformanceTest {
+
+    private static final int ROWS = 500000;
+    private static final int COLUMNS = 8;
+
+    @Before
+    public void setUp() {
+        TestStorage.setUp();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        TestStorage.tearDown();
+    }
+
+    @Test
+    public void largeCsvShouldBeImportedWithinBudget() throws Exception {
+        File mediaDir = new File(Collect.FORMS_PATH, "external-media");
+        final File csv = new File(mediaDir, "households.csv");
+        SyntheticData.writeExternalDataCsv(csv, ROWS, COLUMNS);
+
+        final ExternalSQLiteOpenHelper helper =
+                new ExternalSQLiteOpenHelper(new File(mediaDir, "households.db"));
+        Budget.check("importExternalData", new Budget.Work() {
+            @Override
+            public void run() {
+                helper.importFromCSV(csv, new ExternalDataReader() {
+                    @Override
+                    public void doImport(Map<String, File> externalDataMap) {
+                    }
+                }, new FormLoaderTask(null, null, null));
+            }
+        });
+
+        SQLiteDatabase db = helper.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM "
+                + ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, null);
+        try {
+            cursor.moveToFirst();
+            // every thousandth row is empty and skipped
+            assertEquals(ROWS - ROWS / 1000, cursor.getInt(0));
+        } finally {
+            cursor.close();
+            helper.close();
+        }
+    }
+}
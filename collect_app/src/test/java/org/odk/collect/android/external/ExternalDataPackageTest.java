@@ -0,0 +1,134 @@
+package org.odk.collect.android.external;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExternalDataPackageTest {
+
+    private static final byte[] CONTENTS = "SQLite format 3 and the rows".getBytes();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File tempMediaDir;
+    private File mediaDir;
+
+    @Before
+    public void setUp() throws Exception {
+        tempMediaDir = folder.newFolder("temp");
+        mediaDir = folder.newFolder("form-media");
+    }
+
+    @Test
+    public void packagesShouldBeRecognizedByTheirExtension() {
+        assertTrue(ExternalDataPackage.isPackage("facilities.db"));
+        assertTrue(ExternalDataPackage.isPackage("facilities.db.gz"));
+        assertTrue(ExternalDataPackage.isPackage("facilities.columnar.gz"));
+        assertFalse(ExternalDataPackage.isPackage("facilities.csv"));
+        assertFalse(ExternalDataPackage.isPackage("photo.jpg.gz"));
+
+        assertEquals("facilities", ExternalDataPackage.getDataSetName("facilities.db.gz"));
+        assertEquals("facilities", ExternalDataPackage.getDataSetName("facilities.columnar"));
+
+        assertTrue(ExternalDataPackage.isFallback("facilities.csv",
+                Collections.singleton("facilities")));
+        assertTrue(ExternalDataPackage.isFallback("facilities.columnar.csv",
+                Collections.singleton("facilities")));
+        assertFalse(ExternalDataPackage.isFallback("villages.csv",
+                Collections.singleton("facilities")));
+    }
+
+    @Test
+    public void aGzippedPackageShouldBeVerifiedAndDecompressed() throws Exception {
+        File download = new File(tempMediaDir, "facilities.db.gz");
+        gzip(CONTENTS, download);
+        String hash = "md5:" + md5Hex(FileUtils.readFileToByteArray(download));
+
+        assertTrue(ExternalDataPackage.unpack(download, hash));
+
+        assertFalse(download.exists());
+        assertArrayEquals(CONTENTS,
+                FileUtils.readFileToByteArray(new File(tempMediaDir, "facilities.db")));
+    }
+
+    @Test
+    public void aPackageNotMatchingItsHashShouldBeDeleted() throws Exception {
+        File download = new File(tempMediaDir, "facilities.db.gz");
+        gzip(CONTENTS, download);
+
+        String hash = "md5:" + md5Hex("something else".getBytes());
+        assertFalse(ExternalDataPackage.unpack(download, hash));
+
+        assertEquals(0, tempMediaDir.list().length);
+    }
+
+    @Test
+    public void installingShouldReplaceThePreviousDataSetAndRetireItsCsv() throws Exception {
+        FileUtils.writeStringToFile(new File(mediaDir, "facilities.columnar"), "old", "UTF-8");
+        FileUtils.writeStringToFile(new File(mediaDir, "facilities.db"), "old", "UTF-8");
+        FileUtils.writeStringToFile(new File(mediaDir, "facilities.db-journal"), "old", "UTF-8");
+        FileUtils.writeStringToFile(new File(mediaDir, "facilities.csv"), "a,b", "UTF-8");
+
+        File download = new File(tempMediaDir, "facilities.db");
+        FileUtils.writeByteArrayToFile(download, CONTENTS);
+        String hash = "md5:" + md5Hex(CONTENTS);
+        assertFalse(ExternalDataPackage.isInstalled(mediaDir, "facilities.db", hash));
+        assertTrue(ExternalDataPackage.unpack(download, hash));
+
+        ExternalDataPackage.install(tempMediaDir, mediaDir);
+
+        assertEquals(0, tempMediaDir.list().length);
+        String[] files = mediaDir.list();
+        Arrays.sort(files);
+        assertArrayEquals(new String[] {"facilities.csv.imported", "facilities.db",
+                "facilities.db.md5"}, files);
+        assertArrayEquals(CONTENTS,
+                FileUtils.readFileToByteArray(new File(mediaDir, "facilities.db")));
+        assertTrue(ExternalDataPackage.isInstalled(mediaDir, "facilities.db", hash));
+        assertFalse(ExternalDataPackage.isInstalled(mediaDir, "facilities.db", "md5:0"));
+    }
+
+    @Test
+    public void aCsvDownloadedLaterShouldBeRetiredWhileThePackageIsInstalled() throws Exception {
+        FileUtils.writeByteArrayToFile(new File(mediaDir, "facilities.columnar"), CONTENTS);
+        FileUtils.writeStringToFile(new File(mediaDir, "facilities.columnar.md5"), "md5:1",
+                "UTF-8");
+        FileUtils.writeStringToFile(new File(mediaDir, "facilities.columnar.csv"), "a,b", "UTF-8");
+
+        ExternalDataPackage.install(tempMediaDir, mediaDir);
+
+        assertTrue(new File(mediaDir, "facilities.columnar.csv.imported").exists());
+        assertTrue(new File(mediaDir, "facilities.columnar").exists());
+    }
+
+    private static void gzip(byte[] contents, File file) throws Exception {
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+        try {
+            out.write(contents);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String md5Hex(byte[] contents) throws Exception {
+        byte[] digest = MessageDigest.getInstance("MD5").digest(contents);
+        return String.format("%032x", new BigInteger(1, digest));
+    }
+}
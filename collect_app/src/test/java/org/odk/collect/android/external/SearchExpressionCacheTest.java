@@ -0,0 +1,38 @@
+package org.odk.collect.android.external;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.xpath.expr.XPathFuncExpr;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SearchExpressionCacheTest {
+
+    private static final String APPEARANCE =
+            "quick search('villages', 'matches', 'district', /data/district)";
+
+    @Test
+    public void eachAppearanceShouldBeParsedOncePerForm() {
+        FormDef formDef = new FormDef();
+
+        XPathFuncExpr expression = SearchExpressionCache.get(formDef, APPEARANCE);
+        assertNotNull(expression);
+        assertEquals(4, expression.args.length);
+        assertSame(expression, SearchExpressionCache.get(formDef, APPEARANCE));
+
+        assertNotSame(expression, SearchExpressionCache.get(new FormDef(), APPEARANCE));
+    }
+
+    @Test
+    public void appearancesWithoutSearchShouldHaveNoExpression() {
+        FormDef formDef = new FormDef();
+
+        assertNull(SearchExpressionCache.get(formDef, "minimal"));
+        assertNull(SearchExpressionCache.get(formDef, null));
+        assertNull(SearchExpressionCache.get(null, "minimal"));
+    }
+}
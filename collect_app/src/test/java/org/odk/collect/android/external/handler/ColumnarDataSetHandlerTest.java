@@ -0,0 +1,189 @@
+package org.odk.collect.android.external.handler;
+
+import org.apache.commons.io.FileUtils;
+import org.javarosa.core.model.SelectChoice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.BuildConfig;
+import org.odk.collect.android.external.ColumnarDataSet;
+import org.odk.collect.android.external.ExternalDataManager;
+import org.odk.collect.android.external.ExternalDataReader;
+import org.odk.collect.android.external.ExternalSQLiteOpenHelper;
+import org.odk.collect.android.external.PagedSelectChoices;
+import org.odk.collect.android.tasks.FormLoaderTask;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The same data set imported into a table and into a columnar file should give the same answers
+ * to pulldata() and search().
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(RobolectricTestRunner.class)
+public class ColumnarDataSetHandlerTest {
+
+    private static final int ROW_COUNT = 250;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExternalSQLiteOpenHelper table;
+    private ExternalSQLiteOpenHelper columnar;
+
+    @Before
+    public void setUp() throws Exception {
+        StringBuilder csv = new StringBuilder("name_key,label,district,sortby\n");
+        // in the reverse of the sort order, so that the position doesn't give the order away
+        for (int i = ROW_COUNT - 1; i >= 0; i--) {
+            csv.append("v").append(i).append(",Village ").append(i).append(',')
+                    .append(i % 2 == 0 ? "north" : "South").append(',').append(i).append('\n');
+        }
+        // duplicate values that sort after their first row, and one differing only in case
+        csv.append("v0,Duplicate,north,").append(ROW_COUNT).append('\n');
+        csv.append("v1,Duplicate,south,").append(ROW_COUNT + 1).append('\n');
+        csv.append("V2,Upper case,north,").append(ROW_COUNT + 2).append('\n');
+        csv.append("v3,\u00dcn\u00efc\u00f6d\u00e9,east,") // accents
+                .append(ROW_COUNT + 3).append('\n');
+
+        File csvFile = folder.newFile("villages.csv");
+        FileUtils.writeStringToFile(csvFile, csv.toString(), "UTF-8");
+        ExternalDataReader reader = new ExternalDataReader() {
+            @Override
+            public void doImport(Map<String, File> externalDataMap) {
+            }
+        };
+
+        table = new ExternalSQLiteOpenHelper(new File(folder.getRoot(), "table.db"));
+        table.importFromCSV(csvFile, reader, new FormLoaderTask(null, null, null));
+        columnar = new ExternalSQLiteOpenHelper(new File(folder.getRoot(), "columnar.db"));
+        columnar.importFromCSVToColumnar(csvFile, reader, new FormLoaderTask(null, null, null));
+    }
+
+    @After
+    public void tearDown() {
+        table.close();
+        columnar.close();
+    }
+
+    @Test
+    public void onlyTheColumnarDataSetShouldBeMapped() {
+        assertNull(table.getColumnarDataSet());
+        assertNotNull(columnar.getColumnarDataSet());
+        assertFalse(new File(folder.getRoot(), "columnar.db").exists());
+        assertEquals(ROW_COUNT + 4, columnar.getColumnarDataSet().getRowCount());
+    }
+
+    @Test
+    public void pulldataShouldFindTheSameValues() {
+        String[][] lookups = {
+                {"label", "name_key", "v2"},
+                {"label", "name_key", "V2"},
+                {"label", "name_key", "v0"},
+                {"label", "name_key", "v249"},
+                {"label", "name_key", "missing"},
+                {"name_key", "label", "duplicate"},
+                {"label", "district", "NORTH"},
+                {"label", "district", "\u00dcN\u00cfC\u00d6D\u00c9"}, // upper case accents
+                {"district", "label", "\u00fcn\u00efc\u00f6d\u00e9"}, // lower case accents
+                {"sortby", "name_key", "v7"},
+                {"label", "no_such_column", "v7"},
+        };
+
+        for (String[] lookup : lookups) {
+            Object[] args = {"villages", lookup[0], lookup[1], lookup[2]};
+            assertEquals(lookup[1] + "=" + lookup[2],
+                    new ExternalDataHandlerPull(manager(table)).eval(args, null),
+                    new ExternalDataHandlerPull(manager(columnar)).eval(args, null));
+        }
+    }
+
+    @Test
+    public void searchShouldFindTheSameChoicesInTheSameOrder() {
+        Object[][] searches = {
+                {"villages"},
+                {"villages", "startsWith", "label", "Village 1", "district", "south"},
+                {"villages", "contains", "label district", "uth"},
+                {"villages", "matches", "name_key", "V2"},
+                {"villages", "endsWith", "label", "E"},
+                {"villages", "contains", "label", "9_"},
+                {"villages", "contains", "", "", "district", "NORTH"},
+        };
+
+        for (Object[] args : searches) {
+            List<SelectChoice> expected = search(table, args);
+            List<SelectChoice> actual = search(columnar, args);
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getValue(), actual.get(i).getValue());
+                assertEquals(expected.get(i).getLabelInnerText(),
+                        actual.get(i).getLabelInnerText());
+                assertEquals(i, actual.get(i).getIndex());
+            }
+        }
+    }
+
+    @Test
+    public void theChoicesShouldBeSearchedWithoutCreatingThem() {
+        Object[][] searches = {
+                {"villages"},
+                {"villages", "startsWith", "label", "Village 1", "district", "south"},
+        };
+        String[] texts = {"", "village 1", "SOUTH", "upper", "duplicate", "9", "nothing"};
+
+        for (ExternalSQLiteOpenHelper helper : new ExternalSQLiteOpenHelper[]{table, columnar}) {
+            for (Object[] args : searches) {
+                PagedSelectChoices choices = (PagedSelectChoices) search(helper, args);
+                for (String text : texts) {
+                    List<Integer> expected = new ArrayList<>();
+                    for (int i = 0; i < choices.size(); i++) {
+                        if (ColumnarDataSet.foldCase(choices.get(i).getLabelInnerText())
+                                .contains(ColumnarDataSet.foldCase(text))) {
+                            expected.add(i);
+                        }
+                    }
+                    assertEquals(text, expected, new ArrayList<>(choices.search(text)));
+                }
+
+                for (int i = 0; i < choices.size(); i++) {
+                    assertEquals(i, choices.indexOfValue(choices.get(i).getValue()));
+                }
+                assertEquals(-1, choices.indexOfValue("missing"));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<SelectChoice> search(ExternalSQLiteOpenHelper helper, Object[] args) {
+        ExternalDataHandlerSearch handler = new ExternalDataHandlerSearch(manager(helper),
+                "label, district", "name_key", null);
+        return (List<SelectChoice>) handler.eval(args, null);
+    }
+
+    private static ExternalDataManager manager(final ExternalSQLiteOpenHelper helper) {
+        return new ExternalDataManager() {
+            @Override
+            public ExternalSQLiteOpenHelper getDatabase(String dataSetName, boolean required) {
+                return helper;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,119 @@
+package org.odk.collect.android.external.handler;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.javarosa.core.model.SelectChoice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.BuildConfig;
+import org.odk.collect.android.external.ExternalDataManager;
+import org.odk.collect.android.external.ExternalDataUtil;
+import org.odk.collect.android.external.ExternalSQLiteOpenHelper;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@Config(constants = BuildConfig.class)
+@RunWith(RobolectricTestRunner.class)
+public class ExternalDataHandlerSearchTest {
+
+    private static final int ROW_COUNT = 250;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExternalSQLiteOpenHelper sqLiteOpenHelper;
+    private ExternalDataManager externalDataManager;
+
+    @Before
+    public void setUp() {
+        File dbFile = new File(folder.getRoot(), "villages.db");
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(dbFile, null);
+        db.execSQL("CREATE TABLE " + ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME
+                + " (c_name text collate nocase, c_label text collate nocase,"
+                + " c_district text collate nocase, " + ExternalDataUtil.SORT_COLUMN_NAME
+                + " real)");
+        // inserted in the reverse of the sort order, so that row ids don't give the order away
+        for (int i = ROW_COUNT - 1; i >= 0; i--) {
+            insert(db, "v" + i, "Village " + i, i % 2 == 0 ? "north" : "south", i);
+        }
+        // duplicate values that sort after their first row, and one differing only in case
+        insert(db, "v0", "Duplicate", "north", ROW_COUNT);
+        insert(db, "v1", "Duplicate", "south", ROW_COUNT + 1);
+        insert(db, "V2", "Upper case", "north", ROW_COUNT + 2);
+        db.setVersion(1);
+        db.close();
+
+        sqLiteOpenHelper = new ExternalSQLiteOpenHelper(dbFile);
+        externalDataManager = new ExternalDataManager() {
+            @Override
+            public ExternalSQLiteOpenHelper getDatabase(String dataSetName, boolean required) {
+                return sqLiteOpenHelper;
+            }
+
+            @Override
+            public void close() {
+                sqLiteOpenHelper.close();
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        externalDataManager.close();
+    }
+
+    @Test
+    public void choicesShouldHaveOneChoicePerValueInSortOrder() {
+        List<SelectChoice> choices = search(new Object[]{"villages"});
+
+        assertEquals(ROW_COUNT + 1, choices.size());
+        // read them backwards so that every page is loaded after the ones following it
+        for (int i = ROW_COUNT - 1; i >= 0; i--) {
+            SelectChoice choice = choices.get(i);
+            assertEquals("v" + i, choice.getValue());
+            assertEquals("Village " + i, choice.getLabelInnerText());
+            assertEquals(i, choice.getIndex());
+        }
+        assertEquals("V2", choices.get(ROW_COUNT).getValue());
+        assertEquals(ROW_COUNT, choices.get(ROW_COUNT).getIndex());
+    }
+
+    @Test
+    public void choicesShouldOnlyIncludeMatchingRows() {
+        List<SelectChoice> choices = search(new Object[]{"villages", "startsWith", "label",
+                "Village 1", "district", "south"});
+
+        // Village 1, 11, 13, ..., 19, 101, 103, ..., 199
+        assertEquals(1 + 5 + 50, choices.size());
+        assertEquals("v1", choices.get(0).getValue());
+        assertEquals("v11", choices.get(1).getValue());
+        assertEquals("v199", choices.get(choices.size() - 1).getValue());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<SelectChoice> search(Object[] args) {
+        ExternalDataHandlerSearch handler = new ExternalDataHandlerSearch(externalDataManager,
+                "label", "name", null);
+        return (List<SelectChoice>) handler.eval(args, null);
+    }
+
+    private static void insert(SQLiteDatabase db, String name, String label, String district,
+                               int sortBy) {
+        ContentValues values = new ContentValues();
+        values.put("c_name", name);
+        values.put("c_label", label);
+        values.put("c_district", district);
+        values.put(ExternalDataUtil.SORT_COLUMN_NAME, sortBy);
+        db.insert(ExternalDataUtil.EXTERNAL_DATA_TABLE_NAME, null, values);
+    }
+}
@@ -0,0 +1,201 @@
+package org.odk.collect.android.logic;
+
+import org.apache.commons.io.FileUtils;
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.core.model.data.IntegerData;
+import org.javarosa.form.api.FormEntryController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.BuildConfig;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.tasks.FormLoaderTask;
+import org.odk.collect.android.test.TestStorage;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Finalizing only checks the constraints of answers that changed or that depend on other
+ * nodes, but has to catch the same failures as the full validation, which forms with repeat
+ * counts or volatile functions still go through.
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(RobolectricTestRunner.class)
+public class FormControllerValidationTest {
+
+    private FormController formController;
+
+    @Before
+    public void setUp() {
+        TestStorage.setUp();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Collect.getInstance().setFormController(null);
+        TestStorage.tearDown();
+    }
+
+    @Test
+    public void aChangedAnswerShouldBeCheckedAgain() throws Exception {
+        load("<a/>",
+                "<bind nodeset=\"/data/a\" type=\"int\" constraint=\". &lt; 10\"/>",
+                "<input ref=\"/data/a\"><label>A</label></input>");
+        // the incremental validation is the one under test
+        assertFalse(formController.usesVolatileFunctions());
+        answer("/data/a", 5);
+        assertEquals(FormEntryController.ANSWER_OK, formController.validateAnswers(true));
+
+        // saved without checking its constraint, as jumping around the form does
+        formController.saveAnswer(indexOf("/data/a"), new IntegerData(50));
+
+        assertEquals(FormEntryController.ANSWER_CONSTRAINT_VIOLATED,
+                formController.validateAnswers(true));
+        FormIndex failed = formController.getFormIndex();
+        assertEquals(indexOf("/data/a"), failed);
+    }
+
+    @Test
+    public void aConstraintOnAnotherNodeShouldBeCheckedWhenThatNodeChanges() throws Exception {
+        load("<a/><b/>",
+                "<bind nodeset=\"/data/a\" type=\"int\"/>"
+                        + "<bind nodeset=\"/data/b\" type=\"int\" constraint=\". &gt; /data/a\"/>",
+                "<input ref=\"/data/a\"><label>A</label></input>"
+                        + "<input ref=\"/data/b\"><label>B</label></input>");
+        answer("/data/a", 1);
+        answer("/data/b", 2);
+        assertEquals(FormEntryController.ANSWER_OK, formController.validateAnswers(true));
+
+        answer("/data/a", 5);
+
+        assertEquals(FormEntryController.ANSWER_CONSTRAINT_VIOLATED,
+                formController.validateAnswers(true));
+        FormIndex failed = formController.getFormIndex();
+        assertEquals(indexOf("/data/b"), failed);
+    }
+
+    @Test
+    public void aCalculatedAnswerShouldBeCheckedAgainWhenItChanges() throws Exception {
+        load("<a/><b/>",
+                "<bind nodeset=\"/data/a\" type=\"int\"/>"
+                        + "<bind nodeset=\"/data/b\" type=\"int\" calculate=\"/data/a * 2\""
+                        + " readonly=\"true()\" constraint=\". &lt; 10\"/>",
+                "<input ref=\"/data/a\"><label>A</label></input>"
+                        + "<input ref=\"/data/b\"><label>B</label></input>");
+        answer("/data/a", 1);
+        assertEquals(FormEntryController.ANSWER_OK, formController.validateAnswers(true));
+
+        // only the calculation changes the answer of b
+        answer("/data/a", 10);
+
+        assertEquals(FormEntryController.ANSWER_CONSTRAINT_VIOLATED,
+                formController.validateAnswers(true));
+        FormIndex failed = formController.getFormIndex();
+        assertEquals(indexOf("/data/b"), failed);
+    }
+
+    @Test
+    public void aFormUsingTodayShouldBeFullyValidated() throws Exception {
+        load("<a/>",
+                "<bind nodeset=\"/data/a\" type=\"date\" constraint=\". &lt;= today()\"/>",
+                "<input ref=\"/data/a\"><label>A</label></input>");
+
+        assertTrue(formController.usesVolatileFunctions());
+        assertEquals(FormEntryController.ANSWER_OK, formController.validateAnswers(true));
+    }
+
+    @Test
+    public void aRequiredQuestionThatBecomesRelevantShouldBeAnswered() throws Exception {
+        load("<a/><b/>",
+                "<bind nodeset=\"/data/a\" type=\"int\"/>"
+                        + "<bind nodeset=\"/data/b\" type=\"int\" required=\"true()\""
+                        + " relevant=\"/data/a &gt; 10\"/>",
+                "<input ref=\"/data/a\"><label>A</label></input>"
+                        + "<input ref=\"/data/b\"><label>B</label></input>");
+        answer("/data/a", 1);
+        assertEquals(FormEntryController.ANSWER_OK, formController.validateAnswers(true));
+
+        answer("/data/a", 20);
+
+        assertEquals(FormEntryController.ANSWER_REQUIRED_BUT_EMPTY,
+                formController.validateAnswers(true));
+        FormIndex failed = formController.getFormIndex();
+        assertEquals(indexOf("/data/b"), failed);
+    }
+
+    @Test
+    public void draftsShouldCreateTheRepeatsOfARepeatCount() throws Exception {
+        load("<n/><r jr:template=\"\"><x/></r>",
+                "<bind nodeset=\"/data/n\" type=\"int\"/>"
+                        + "<bind nodeset=\"/data/r/x\" type=\"string\"/>",
+                "<input ref=\"/data/n\"><label>N</label></input>"
+                        + "<group ref=\"/data/r\"><label>R</label>"
+                        + "<repeat nodeset=\"/data/r\" jr:count=\"/data/n\">"
+                        + "<input ref=\"/data/r/x\"><label>X</label></input>"
+                        + "</repeat></group>");
+        answer("/data/n", 3);
+        assertEquals(0, countRepeats());
+
+        assertEquals(FormEntryController.ANSWER_OK, formController.validateAnswers(false));
+        assertEquals(3, countRepeats());
+
+        // the same as the full validation, which finalizing falls back to
+        assertEquals(FormEntryController.ANSWER_OK, formController.validateAnswers(true));
+        assertEquals(3, countRepeats());
+    }
+
+    private void load(String instance, String binds, String body) throws Exception {
+        File form = new File(Collect.FORMS_PATH, "validation.xml");
+        FileUtils.writeStringToFile(form, "<?xml version=\"1.0\"?>"
+                + "<h:html xmlns=\"http://www.w3.org/2002/xforms\""
+                + " xmlns:h=\"http://www.w3.org/1999/xhtml\""
+                + " xmlns:jr=\"http://openrosa.org/javarosa\">"
+                + "<h:head><h:title>validation</h:title><model>"
+                + "<instance><data id=\"validation\">" + instance + "</data></instance>"
+                + binds
+                + "</model></h:head>"
+                + "<h:body>" + body + "</h:body></h:html>", "UTF-8");
+
+        FormLoaderTask.FECWrapper wrapper = new FormLoaderTask(null, null, null)
+                .doInBackground(form.getAbsolutePath());
+        assertNotNull(wrapper);
+        formController = wrapper.getController();
+        Collect.getInstance().setFormController(formController);
+    }
+
+    private void answer(String xpath, int value) throws Exception {
+        assertEquals(FormEntryController.ANSWER_OK,
+                formController.answerQuestion(indexOf(xpath), new IntegerData(value)));
+    }
+
+    /**
+     * Returns the index of the question with the given reference, leaving the form at the
+     * beginning.
+     */
+    private FormIndex indexOf(String xpath) throws Exception {
+        formController.jumpToIndex(FormIndex.createBeginningOfFormIndex());
+        while (formController.stepToNextEvent(FormController.STEP_INTO_GROUP)
+                != FormEntryController.EVENT_END_OF_FORM) {
+            FormIndex index = formController.getFormIndex();
+            if (formController.getEvent() == FormEntryController.EVENT_QUESTION
+                    && index.getReference().genericize().toString(false).equals(xpath)) {
+                formController.jumpToIndex(FormIndex.createBeginningOfFormIndex());
+                return index;
+            }
+        }
+        throw new AssertionError(xpath + " not found");
+    }
+
+    private int countRepeats() {
+        return formController.getFormDef().getMainInstance().getRoot()
+                .getChildrenWithName("r").size();
+    }
+}
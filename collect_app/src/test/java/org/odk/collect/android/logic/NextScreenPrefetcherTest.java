@@ -0,0 +1,177 @@
+package org.odk.collect.android.logic;
+
+import android.graphics.Bitmap;
+import android.graphics.Point;
+import android.widget.ImageView;
+
+import org.apache.commons.io.FileUtils;
+import org.javarosa.core.model.data.StringData;
+import org.javarosa.form.api.FormEntryPrompt;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.BuildConfig;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.tasks.FormLoaderTask;
+import org.odk.collect.android.test.TestStorage;
+import org.odk.collect.android.utilities.ImageLoader;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The prompts and images of the screen after the current one should be ready before it is
+ * shown.
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(RobolectricTestRunner.class)
+public class NextScreenPrefetcherTest {
+
+    private static final int SCREEN_WIDTH = 480;
+    private static final int SCREEN_HEIGHT = 800;
+
+    private FormController formController;
+    private File nextImage;
+    private File laterImage;
+    private NextScreenPrefetcher prefetcher;
+
+    @Before
+    public void setUp() throws Exception {
+        TestStorage.setUp();
+
+        File form = new File(Collect.FORMS_PATH, "prefetch.xml");
+        writeForm(form);
+        File mediaDir = new File(Collect.FORMS_PATH, "prefetch-media");
+        nextImage = new File(mediaDir, "next.png");
+        laterImage = new File(mediaDir, "later.png");
+        FileUtils.writeByteArrayToFile(nextImage, new byte[] {1});
+        FileUtils.writeByteArrayToFile(laterImage, new byte[] {2});
+
+        FormLoaderTask.FECWrapper wrapper = new FormLoaderTask(null, null, null)
+                .doInBackground(form.getAbsolutePath());
+        assertNotNull(wrapper);
+        formController = wrapper.getController();
+        Collect.getInstance().setFormController(formController);
+        formController.stepToNextScreenEvent();
+
+        prefetcher = new NextScreenPrefetcher(SCREEN_WIDTH, SCREEN_HEIGHT);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        prefetcher.cancel();
+        Collect.getInstance().setFormController(null);
+        TestStorage.tearDown();
+    }
+
+    @Test
+    public void theImagesOfTheNextScreenShouldBeDecodedIntoTheCache() throws Exception {
+        prefetcher.prefetch();
+        assertEquals(1, prefetcher.getPreloads().size());
+        for (Future<?> preload : prefetcher.getPreloads()) {
+            preload.get(10, TimeUnit.SECONDS);
+        }
+
+        assertTrue(isInMemoryCache(nextImage));
+        assertFalse(isInMemoryCache(laterImage));
+    }
+
+    @Test
+    public void theNextScreenShouldBeTakenWhenItIsBuilt() throws Exception {
+        prefetcher.prefetch();
+        formController.stepToNextScreenEvent();
+
+        FormEntryPrompt[] prompts = prefetcher.take(formController.getFormIndex());
+        assertNotNull(prompts);
+        assertEquals(1, prompts.length);
+        assertEquals(formController.getFormIndex(), prompts[0].getIndex());
+        assertTrue(prefetcher.getPreloads().isEmpty());
+    }
+
+    @Test
+    public void anotherScreenShouldCancelThePrefetch() throws Exception {
+        prefetcher.prefetch();
+
+        assertNull(prefetcher.take(formController.getFormIndex()));
+        assertTrue(prefetcher.getPreloads().isEmpty());
+    }
+
+    @Test
+    public void aChangedAnswerShouldOnlyKeepTheDecoding() throws Exception {
+        prefetcher.prefetch();
+        List<Future<?>> preloads = new ArrayList<>(prefetcher.getPreloads());
+        assertEquals(1, preloads.size());
+
+        formController.answerQuestion(formController.getFormIndex(), new StringData("changed"));
+        formController.stepToNextScreenEvent();
+
+        assertNull(prefetcher.take(formController.getFormIndex()));
+        // not cancelled
+        preloads.get(0).get(10, TimeUnit.SECONDS);
+        assertTrue(isInMemoryCache(nextImage));
+    }
+
+    /**
+     * Returns whether loading the image at screen size is answered from the memory cache,
+     * without waiting for a decode.
+     */
+    private static boolean isInMemoryCache(File image) {
+        Point size = ImageLoader.getScaledToDisplaySize(image, SCREEN_HEIGHT, SCREEN_WIDTH);
+        assertNotNull(size);
+        final boolean[] loaded = new boolean[1];
+        ImageView view = new ImageView(RuntimeEnvironment.application);
+        ImageLoader.getInstance().loadInto(view, image, size.x, size.y,
+                new ImageLoader.OnImageLoadedListener() {
+                    @Override
+                    public void onImageLoaded(ImageView view, Bitmap bitmap) {
+                        loaded[0] = true;
+                    }
+                });
+        ImageLoader.getInstance().cancel(view);
+        return loaded[0];
+    }
+
+    private static void writeForm(File file) throws Exception {
+        StringBuilder itext = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+        String[] images = {null, "next.png", "later.png"};
+        for (int i = 0; i < images.length; i++) {
+            itext.append("<text id=\"q").append(i).append("\"><value>Question ").append(i)
+                    .append("</value>");
+            if (images[i] != null) {
+                itext.append("<value form=\"image\">jr://images/").append(images[i])
+                        .append("</value>");
+            }
+            itext.append("</text>");
+            body.append("<input ref=\"/data/q").append(i).append("\"><label ref=\"jr:itext('q")
+                    .append(i).append("')\"/></input>");
+        }
+
+        FileUtils.writeStringToFile(file, "<?xml version=\"1.0\"?>"
+                + "<h:html xmlns=\"http://www.w3.org/2002/xforms\""
+                + " xmlns:h=\"http://www.w3.org/1999/xhtml\""
+                + " xmlns:jr=\"http://openrosa.org/javarosa\">"
+                + "<h:head><h:title>prefetch</h:title><model>"
+                + "<itext><translation lang=\"English\" default=\"true()\">" + itext
+                + "</translation></itext>"
+                + "<instance><data id=\"prefetch\"><q0/><q1/><q2/></data></instance>"
+                + "<bind nodeset=\"/data/q0\" type=\"string\"/>"
+                + "<bind nodeset=\"/data/q1\" type=\"string\"/>"
+                + "<bind nodeset=\"/data/q2\" type=\"string\"/>"
+                + "</model></h:head>"
+                + "<h:body>" + body + "</h:body></h:html>", "UTF-8");
+    }
+}
@@ -0,0 +1,119 @@
+package org.odk.collect.android.logic;
+
+import org.javarosa.core.model.data.StringData;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.core.model.instance.TreeReference;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SavePointJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File savepoint;
+    private TreeElement root;
+
+    @Before
+    public void setUp() throws IOException {
+        savepoint = folder.newFile("instance.xml.save");
+        write(savepoint, "<data/>", false);
+
+        root = new TreeElement("data");
+        root.addChild(new TreeElement("name"));
+        TreeElement group = new TreeElement("household");
+        group.addChild(new TreeElement("size"));
+        root.addChild(group);
+    }
+
+    @Test
+    public void replayShouldApplyTheEntriesInOrder() throws IOException {
+        SavePointJournal.start(savepoint);
+        SavePointJournal.append(savepoint, Arrays.asList(
+                SavePointJournal.formatEntry(ref("name"), new StringData("Ann")),
+                SavePointJournal.formatEntry(ref("household", "size"), new StringData("3"))));
+        SavePointJournal.append(savepoint, Arrays.asList(
+                SavePointJournal.formatEntry(ref("name"), new StringData("Jo\tAnn\n\\")),
+                SavePointJournal.formatEntry(ref("household", "size"), null)));
+
+        assertEquals(4, SavePointJournal.replay(savepoint, root));
+        assertEquals("Jo\tAnn\n\\", root.getChild("name", 0).getValue().uncast().getString());
+        assertNull(root.getChild("household", 0).getChild("size", 0).getValue());
+    }
+
+    @Test
+    public void entriesForMissingNodesShouldBeSkipped() throws IOException {
+        SavePointJournal.start(savepoint);
+        SavePointJournal.append(savepoint, Arrays.asList(
+                SavePointJournal.formatEntry(ref("missing"), new StringData("x")),
+                SavePointJournal.formatEntry(ref("name"), new StringData("Ann"))));
+
+        assertEquals(1, SavePointJournal.replay(savepoint, root));
+        assertEquals("Ann", root.getChild("name", 0).getValue().uncast().getString());
+    }
+
+    @Test
+    public void partlyWrittenLastEntryShouldBeIgnored() throws IOException {
+        SavePointJournal.start(savepoint);
+        SavePointJournal.append(savepoint, Collections.singletonList(
+                SavePointJournal.formatEntry(ref("name"), new StringData("Ann"))));
+        String entry = SavePointJournal.formatEntry(ref("household", "size"), new StringData("3"));
+        write(SavePointJournal.getJournalFile(savepoint), entry.substring(0, entry.length() - 2),
+                true);
+
+        assertEquals(1, SavePointJournal.replay(savepoint, root));
+        assertNull(root.getChild("household", 0).getChild("size", 0).getValue());
+    }
+
+    @Test
+    public void journalOfAnEarlierSavepointShouldBeIgnored() throws IOException {
+        SavePointJournal.start(savepoint);
+        SavePointJournal.append(savepoint, Collections.singletonList(
+                SavePointJournal.formatEntry(ref("name"), new StringData("Ann"))));
+        assertTrue(SavePointJournal.isStarted(savepoint));
+
+        write(savepoint, "<data><name/></data>", false);
+
+        assertFalse(SavePointJournal.isStarted(savepoint));
+        assertEquals(-1, SavePointJournal.replay(savepoint, root));
+        assertNull(root.getChild("name", 0).getValue());
+    }
+
+    @Test
+    public void escapingShouldRoundTrip() {
+        String value = "a\\tb\t\r\n\\";
+        assertEquals(value, SavePointJournal.unescape(SavePointJournal.escape(value)));
+        assertFalse(SavePointJournal.escape(value).contains("\t"));
+    }
+
+    private static TreeReference ref(String... path) {
+        TreeReference ref = TreeReference.rootRef();
+        ref.add("data", TreeReference.INDEX_UNBOUND);
+        for (String name : path) {
+            ref.add(name, 0);
+        }
+        return ref;
+    }
+
+    private static void write(File file, String text, boolean append) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, append);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
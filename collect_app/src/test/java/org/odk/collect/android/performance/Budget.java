@@ -0,0 +1,168 @@
+package org.odk.collect.android.performance;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.Properties;
+
+import timber.log.Timber;
+
+/**
+ * Measures a piece of work and fails when it takes longer, or allocates more, than its budget,
+ * or than it did in a baseline run.
+ *
+ * <p>The budgets in budgets.properties are ceilings that hold on any machine. Regressions are
+ * caught by comparing with the measurements of an earlier run on the same machine: every run
+ * writes its measurements to the file named by the {@code performance.measurements} system
+ * property, and a run given such a file as {@code performance.baseline} fails when a
+ * measurement is over the baseline by more than the tolerance in budgets.properties.</p>
+ */
+public final class Budget {
+
+    private static final long MB = 1024 * 1024;
+
+    private static Properties budgets;
+    private static Properties baseline;
+    private static final Properties MEASUREMENTS = new Properties();
+
+    /**
+     * The work to measure.
+     */
+    public interface Work {
+        void run() throws Exception;
+    }
+
+    private Budget() {
+    }
+
+    /**
+     * Runs the work on this thread, and throws an {@link AssertionError} when its wall time is
+     * over {@code <name>.ms} or the memory it allocated is over {@code <name>.mb}, in
+     * budgets.properties or beyond the tolerance of the baseline. Allocations are only measured
+     * on JVMs that can count them per thread.
+     */
+    public static void check(String name, Work work) throws Exception {
+        final long budgetMs = getBudget(name + ".ms");
+        final long budgetMb = getBudget(name + ".mb");
+
+        final long allocatedBefore = getAllocatedBytes();
+        long start = System.nanoTime();
+        work.run();
+        long ms = (System.nanoTime() - start) / 1000000;
+        long allocatedAfter = getAllocatedBytes();
+        long mb = allocatedBefore < 0 ? -1 : (allocatedAfter - allocatedBefore) / MB;
+
+        String report = String.format(Locale.US,
+                "%s took %d ms of %d ms and allocated %d MB of %d MB",
+                name, ms, budgetMs, mb, budgetMb);
+        Timber.i(report);
+        record(name + ".ms", ms);
+        record(name + ".mb", mb);
+
+        if (ms > budgetMs || mb > budgetMb) {
+            throw new AssertionError("Over budget: " + report);
+        }
+        checkBaseline(name + ".ms", ms, "baseline.tolerance.ms");
+        if (mb >= 0) {
+            checkBaseline(name + ".mb", mb, "baseline.tolerance.mb");
+        }
+    }
+
+    private static void checkBaseline(String key, long measured, String toleranceKey)
+            throws IOException {
+        Long before = getBaseline(key);
+        // allocations the baseline JVM couldn't count are -1
+        if (before == null || before < 0) {
+            return;
+        }
+        long tolerance = Math.max(before * getBudget("baseline.tolerance.percent") / 100,
+                getBudget(toleranceKey));
+        if (measured > before + tolerance) {
+            throw new AssertionError(String.format(Locale.US,
+                    "Over the baseline: %s is %d, was %d, and may grow by %d", key, measured,
+                    before, tolerance));
+        }
+    }
+
+    private static synchronized long getBudget(String key) throws IOException {
+        if (budgets == null) {
+            budgets = new Properties();
+            InputStream in = Budget.class.getResourceAsStream("budgets.properties");
+            try {
+                budgets.load(in);
+            } finally {
+                in.close();
+            }
+        }
+
+        String budget = budgets.getProperty(key);
+        if (budget == null) {
+            throw new IllegalArgumentException("No budget for " + key);
+        }
+        return Long.parseLong(budget.trim());
+    }
+
+    /**
+     * Returns the measurement of the baseline run, or null if there is no baseline or it
+     * doesn't have this measurement.
+     */
+    private static synchronized Long getBaseline(String key) throws IOException {
+        String path = System.getProperty("performance.baseline");
+        if (path == null) {
+            return null;
+        }
+        if (baseline == null) {
+            baseline = new Properties();
+            InputStream in = new FileInputStream(path);
+            try {
+                baseline.load(in);
+            } finally {
+                in.close();
+            }
+        }
+
+        String measurement = baseline.getProperty(key);
+        return measurement == null ? null : Long.parseLong(measurement.trim());
+    }
+
+    /**
+     * Adds the measurement to the measurements file, which is written again each time so that
+     * it is complete whichever test is the last.
+     */
+    private static synchronized void record(String key, long measurement) throws IOException {
+        String path = System.getProperty("performance.measurements");
+        if (path == null) {
+            return;
+        }
+        MEASUREMENTS.setProperty(key, Long.toString(measurement));
+        File file = new File(path);
+        FileUtils.forceMkdir(file.getParentFile());
+        OutputStream out = new FileOutputStream(file);
+        try {
+            MEASUREMENTS.store(out, "Measurements of the performance tests");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspotThreads =
+                    (com.sun.management.ThreadMXBean) threads;
+            if (hotspotThreads.isThreadAllocatedMemorySupported()
+                    && hotspotThreads.isThreadAllocatedMemoryEnabled()) {
+                return hotspotThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,10 @@
+package org.odk.collect.android.performance;
+
+/**
+ * JUnit category of the tests that check the time taken and memory allocated by the heavy work
+ * of the app against the budgets in budgets.properties, on synthetic large forms and data.
+ * They're left out of the unit tests and run on their own with
+ * {@code ./gradlew testDebugUnitTest -PperformanceTests}.
+ */
+public interface PerformanceTest {
+}
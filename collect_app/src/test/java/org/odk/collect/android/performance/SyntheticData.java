@@ -0,0 +1,256 @@
+package org.odk.collect.android.performance;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Writes large forms, instances and CSV files for the performance tests. Everything is generated
+ * from fixed seeds so that each run measures the same work.
+ */
+public final class SyntheticData {
+
+    private static final String HEAD = "<?xml version=\"1.0\"?>"
+            + "<h:html xmlns=\"http://www.w3.org/2002/xforms\""
+            + " xmlns:h=\"http://www.w3.org/1999/xhtml\""
+            + " xmlns:jr=\"http://openrosa.org/javarosa\">";
+    private static final String META_BIND = "<bind nodeset=\"/data/meta/instanceID\""
+            + " type=\"string\" readonly=\"true()\" calculate=\"concat('uuid:', uuid())\"/>";
+    private static final int CHOICES = 5;
+
+    private SyntheticData() {
+    }
+
+    /**
+     * Writes a form cycling through integer, text and select one questions, each with a label in
+     * two languages, the integers with a constraint and the texts relevant on the integer before
+     * them.
+     */
+    public static void writeForm(File file, String formId, int questions) throws IOException {
+        StringBuilder itextEnglish = new StringBuilder();
+        StringBuilder itextFrench = new StringBuilder();
+        StringBuilder instance = new StringBuilder();
+        StringBuilder binds = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+
+        for (int i = 0; i < questions; i++) {
+            String ref = "/data/q" + i;
+            String labelId = ref + ":label";
+            itextEnglish.append("<text id=\"").append(labelId).append("\"><value>Question ")
+                    .append(i).append("</value></text>");
+            itextFrench.append("<text id=\"").append(labelId).append("\"><value>Question ")
+                    .append(i).append(" (fr)</value></text>");
+            instance.append("<q").append(i).append("/>");
+
+            String label = "<label ref=\"jr:itext('" + labelId + "')\"/>";
+            switch (i % 3) {
+                case 0:
+                    binds.append("<bind nodeset=\"").append(ref).append("\" type=\"int\"")
+                            .append(" constraint=\". &gt;= 0 and . &lt; 1000\"/>");
+                    body.append("<input ref=\"").append(ref).append("\">").append(label)
+                            .append("</input>");
+                    break;
+                case 1:
+                    binds.append("<bind nodeset=\"").append(ref).append("\" type=\"string\"")
+                            .append(" relevant=\"/data/q").append(i - 1).append(" &gt; 10\"/>");
+                    body.append("<input ref=\"").append(ref).append("\">").append(label)
+                            .append("</input>");
+                    break;
+                default:
+                    binds.append("<bind nodeset=\"").append(ref).append("\" type=\"select1\"/>");
+                    body.append("<select1 ref=\"").append(ref).append("\">").append(label);
+                    for (int c = 0; c < CHOICES; c++) {
+                        body.append("<item><label>Choice ").append(c)
+                                .append("</label><value>c").append(c).append("</value></item>");
+                    }
+                    body.append("</select1>");
+                    break;
+            }
+        }
+
+        write(file, HEAD
+                + "<h:head><h:title>" + formId + "</h:title><model>"
+                + "<itext>"
+                + "<translation lang=\"English\" default=\"true()\">" + itextEnglish
+                + "</translation>"
+                + "<translation lang=\"French\">" + itextFrench + "</translation>"
+                + "</itext>"
+                + "<instance><data id=\"" + formId + "\">" + instance
+                + "<meta><instanceID/></meta></data></instance>"
+                + binds + META_BIND
+                + "</model></h:head>"
+                + "<h:body>" + body + "</h:body></h:html>");
+    }
+
+    /**
+     * Writes a form with repeats nested {@code depth} deep, each with an integer question.
+     */
+    public static void writeNestedRepeatForm(File file, String formId, int depth)
+            throws IOException {
+        StringBuilder instance = new StringBuilder();
+        StringBuilder binds = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+
+        String ref = "/data";
+        for (int level = 1; level <= depth; level++) {
+            ref += "/r" + level;
+            instance.append("<r").append(level).append(" jr:template=\"\"><n").append(level)
+                    .append("/>");
+            binds.append("<bind nodeset=\"").append(ref).append("/n").append(level)
+                    .append("\" type=\"int\"/>");
+            body.append("<group ref=\"").append(ref).append("\"><label>Level ").append(level)
+                    .append("</label><repeat nodeset=\"").append(ref).append("\">")
+                    .append("<input ref=\"").append(ref).append("/n").append(level)
+                    .append("\"><label>Number ").append(level).append("</label></input>");
+        }
+        for (int level = depth; level >= 1; level--) {
+            instance.append("</r").append(level).append('>');
+            body.append("</repeat></group>");
+        }
+
+        write(file, HEAD
+                + "<h:head><h:title>" + formId + "</h:title><model>"
+                + "<instance><data id=\"" + formId + "\">" + instance
+                + "<meta><instanceID/></meta></data></instance>"
+                + binds + META_BIND
+                + "</model></h:head>"
+                + "<h:body>" + body + "</h:body></h:html>");
+    }
+
+    /**
+     * Writes an instance of {@link #writeNestedRepeatForm} with {@code count} repetitions of each
+     * repeat, so count to the power of depth repetitions of the innermost one.
+     */
+    public static void writeNestedRepeatInstance(File file, String formId, int depth, int count)
+            throws IOException {
+        StringBuilder instance = new StringBuilder();
+        instance.append("<?xml version=\"1.0\"?><data id=\"").append(formId).append("\">");
+        appendRepeats(instance, 1, depth, count);
+        instance.append("<meta><instanceID>uuid:").append(formId)
+                .append("</instanceID></meta></data>");
+        write(file, instance.toString());
+    }
+
+    private static void appendRepeats(StringBuilder instance, int level, int depth, int count) {
+        if (level > depth) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            instance.append("<r").append(level).append("><n").append(level).append('>').append(i)
+                    .append("</n").append(level).append('>');
+            appendRepeats(instance, level + 1, depth, count);
+            instance.append("</r").append(level).append('>');
+        }
+    }
+
+    /**
+     * Writes a form with a state question and a city question whose choices come from
+     * itemsets.csv, filtered on the state.
+     */
+    public static void writeItemsetForm(File file, String formId) throws IOException {
+        write(file, HEAD
+                + "<h:head><h:title>" + formId + "</h:title><model>"
+                + "<instance><data id=\"" + formId + "\"><state/><city/>"
+                + "<meta><instanceID/></meta></data></instance>"
+                + "<bind nodeset=\"/data/state\" type=\"string\"/>"
+                + "<bind nodeset=\"/data/city\" type=\"select1\"/>"
+                + META_BIND
+                + "</model></h:head>"
+                + "<h:body>"
+                + "<input ref=\"/data/state\"><label>State</label></input>"
+                + "<select1 ref=\"/data/city\""
+                + " query=\"instance('city')/root/item[state= /data/state ]\">"
+                + "<label>City</label></select1>"
+                + "</h:body></h:html>");
+    }
+
+    /**
+     * Writes an instance of {@link #writeItemsetForm} with the given state.
+     */
+    public static void writeItemsetInstance(File file, String formId, String state)
+            throws IOException {
+        write(file, "<?xml version=\"1.0\"?><data id=\"" + formId + "\"><state>" + state
+                + "</state><city/><meta><instanceID>uuid:" + formId
+                + "</instanceID></meta></data>");
+    }
+
+    /**
+     * Writes the choices of the city question of {@link #writeItemsetForm}, spread evenly over
+     * {@code states} states named s0, s1 and so on.
+     */
+    public static void writeItemsetsCsv(File file, int rows, int states) throws IOException {
+        Writer writer = open(file);
+        try {
+            writer.write("list_name,name,label,state\n");
+            for (int i = 0; i < rows; i++) {
+                writer.write("city,c" + i + ",City " + i + ",s" + (i % states) + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes external data for pulldata() and search(), with a name and a label column first and
+     * some empty and short rows, as found in the wild.
+     */
+    public static void writeExternalDataCsv(File file, int rows, int columns) throws IOException {
+        Random random = new Random(1);
+        Writer writer = open(file);
+        try {
+            StringBuilder line = new StringBuilder("name,label::English,label::French");
+            for (int i = 3; i < columns; i++) {
+                line.append(",column").append(i);
+            }
+            writer.write(line.append('\n').toString());
+
+            for (int row = 0; row < rows; row++) {
+                line.setLength(0);
+                if (row % 1000 == 999) {
+                    writer.write(",,,\n");
+                    continue;
+                }
+                line.append("name").append(row).append(",\"Label ").append(row)
+                        .append(", en\",Label ").append(row);
+                int filled = row % 10 == 0 ? columns - 2 : columns;
+                for (int i = 3; i < filled; i++) {
+                    line.append(',').append(Integer.toString(random.nextInt(100000), 36));
+                }
+                writer.write(line.append('\n').toString());
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes a small instance of the given form, as found in the instance folders.
+     */
+    public static void writeInstance(File file, String formId, int number) throws IOException {
+        write(file, "<?xml version=\"1.0\"?><data id=\"" + formId + "\"><q0>" + number
+                + "</q0><q1>answer " + number + "</q1><q2>c" + (number % CHOICES)
+                + "</q2><meta><instanceID>uuid:" + formId + "-" + number
+                + "</instanceID></meta></data>");
+    }
+
+    private static void write(File file, String text) throws IOException {
+        Writer writer = open(file);
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static Writer open(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent.getAbsolutePath());
+        }
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    }
+}
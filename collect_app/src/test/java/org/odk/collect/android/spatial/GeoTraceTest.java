@@ -0,0 +1,86 @@
+package org.odk.collect.android.spatial;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class GeoTraceTest {
+
+    // roughly one meter of latitude
+    private static final double METER = 1 / 111195.0;
+
+    @Test
+    public void answerStringShouldRoundTrip() {
+        String answer = "1.0 2.0 3.0 4.0;5.0 6.0 7.0 8.0;";
+        assertEquals(answer, GeoTrace.parse(answer).toAnswerString());
+        assertEquals(answer, GeoTrace.parse("1.0 2.0 3.0 4.0; 5.0 6.0 7.0 8.0").toAnswerString());
+    }
+
+    @Test
+    public void segmentsShouldShareTheirBoundaryPoint() {
+        GeoTrace trace = newStraightTrace(GeoTrace.SEGMENT_SIZE * 2 + 1);
+        assertEquals(3, trace.getSegmentCount());
+        assertEquals(GeoTrace.SEGMENT_SIZE, trace.getSegment(0).size());
+        assertEquals(GeoTrace.SEGMENT_SIZE + 1, trace.getSegment(1).size());
+        assertEquals(2, trace.getSegment(2).size());
+        assertEquals(trace.get(GeoTrace.SEGMENT_SIZE - 1), trace.getSegment(1).get(0));
+
+        int boundary = GeoTrace.SEGMENT_SIZE - 1;
+        assertEquals(0, trace.getFirstSegmentOf(boundary));
+        assertEquals(1, trace.getLastSegmentOf(boundary));
+        assertEquals(1, trace.getFirstSegmentOf(boundary + 1));
+        assertEquals(1, trace.getLastSegmentOf(boundary + 1));
+    }
+
+    @Test
+    public void lastPointShouldOnlyBelongToTheLastSegment() {
+        GeoTrace trace = newStraightTrace(GeoTrace.SEGMENT_SIZE);
+        assertEquals(1, trace.getSegmentCount());
+        assertEquals(0, trace.getLastSegmentOf(trace.size() - 1));
+    }
+
+    @Test
+    public void indicesWithinShouldGiveUpPastTheLimit() {
+        GeoTrace trace = newStraightTrace(10);
+        List<Integer> indices = trace.getIndicesWithin(4.5 * METER, 1.5 * METER, 1, -1, 10);
+        assertEquals(3, indices.size());
+        assertEquals(2, (int) indices.get(0));
+        assertNull(trace.getIndicesWithin(1, -1, 1, -1, 5));
+    }
+
+    @Test
+    public void simplifyShouldDropPointsWithinTheTolerance() {
+        GeoTrace trace = new GeoTrace();
+        trace.add(new GeoTrace.Point(0, 0, 0, 0));
+        trace.add(new GeoTrace.Point(50 * METER, 0.5 * METER, 0, 0));
+        trace.add(new GeoTrace.Point(100 * METER, 0, 0, 0));
+        trace.add(new GeoTrace.Point(100 * METER, 100 * METER, 0, 0));
+
+        GeoTrace simplified = trace.simplify(1);
+        assertEquals(3, simplified.size());
+        assertEquals(trace.get(0), simplified.get(0));
+        assertEquals(trace.get(2), simplified.get(1));
+        assertEquals(trace.get(3), simplified.get(2));
+
+        assertEquals(4, trace.simplify(0.1).size());
+        assertEquals(4, trace.simplify(0).size());
+    }
+
+    @Test
+    public void simplifyShouldKeepClosedTracesValidPolygons() {
+        GeoTrace trace = newStraightTrace(5);
+        trace.close();
+        assertEquals(trace.size(), trace.simplify(1000).size());
+    }
+
+    private GeoTrace newStraightTrace(int size) {
+        GeoTrace trace = new GeoTrace();
+        for (int i = 0; i < size; i++) {
+            trace.add(new GeoTrace.Point(i * METER, 0, 0, 0));
+        }
+        return trace;
+    }
+}
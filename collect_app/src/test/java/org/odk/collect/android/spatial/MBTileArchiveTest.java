@@ -0,0 +1,45 @@
+package org.odk.collect.android.spatial;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the coordinate handling of the shared MBTiles archive
+ */
+
+public class MBTileArchiveTest {
+
+    @Test
+    public void tmsRowShouldBeFlippedVertically() {
+        assertEquals(0, MBTileArchive.getTmsRow(0, 0));
+        assertEquals(1, MBTileArchive.getTmsRow(1, 0));
+        assertEquals(0, MBTileArchive.getTmsRow(1, 1));
+        assertEquals(32767, MBTileArchive.getTmsRow(15, 0));
+        assertEquals(0, MBTileArchive.getTmsRow(15, 32767));
+    }
+
+    @Test
+    public void tileKeysShouldBeUniqueAcrossZoomLevels() {
+        Set<Long> keys = new HashSet<>();
+        for (int zoom = 0; zoom <= 4; zoom++) {
+            int tilesPerSide = 1 << zoom;
+            for (int x = 0; x < tilesPerSide; x++) {
+                for (int y = 0; y < tilesPerSide; y++) {
+                    assertTrue(keys.add(MBTileArchive.getTileKey(zoom, x, y)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void tileKeysShouldNotOverlapAtHighZoomLevels() {
+        int max = (1 << 22) - 1;
+        assertTrue(MBTileArchive.getTileKey(22, max, 0) != MBTileArchive.getTileKey(22, 0, max));
+        assertTrue(MBTileArchive.getTileKey(21, max, max) != MBTileArchive.getTileKey(22, 0, 0));
+    }
+}
@@ -0,0 +1,53 @@
+package org.odk.collect.android.tasks;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AutoSendSchedulerTest {
+
+    @Test
+    public void backoffShouldDoubleWithEveryFailureUpToTheMaximum() {
+        assertEquals(AutoSendScheduler.MIN_BACKOFF_MS, AutoSendScheduler.getBackoffDelay(1));
+        assertEquals(2 * AutoSendScheduler.MIN_BACKOFF_MS, AutoSendScheduler.getBackoffDelay(2));
+        assertEquals(8 * AutoSendScheduler.MIN_BACKOFF_MS, AutoSendScheduler.getBackoffDelay(4));
+        assertEquals(AutoSendScheduler.MAX_BACKOFF_MS, AutoSendScheduler.getBackoffDelay(30));
+        assertEquals(AutoSendScheduler.MAX_BACKOFF_MS, AutoSendScheduler.getBackoffDelay(1000));
+    }
+
+    @Test
+    public void batchShouldBeCappedByCount() {
+        List<Long> sizes = new ArrayList<>(Collections.nCopies(50, 1024L));
+        assertEquals(AutoSendScheduler.MAX_BATCH_COUNT, AutoSendScheduler.getBatchCount(sizes));
+        assertEquals(3, AutoSendScheduler.getBatchCount(sizes.subList(0, 3)));
+        assertEquals(0, AutoSendScheduler.getBatchCount(Collections.<Long>emptyList()));
+    }
+
+    @Test
+    public void batchShouldBeCappedBySizeButAlwaysSendTheOldestInstance() {
+        long max = AutoSendScheduler.MAX_BATCH_BYTES;
+        assertEquals(2, AutoSendScheduler.getBatchCount(Arrays.asList(max / 2, max / 2, 1L)));
+        assertEquals(1, AutoSendScheduler.getBatchCount(Arrays.asList(max * 3, 1L)));
+        assertEquals(1, AutoSendScheduler.getBatchCount(Arrays.asList(1L, max)));
+    }
+
+    @Test
+    public void aBatchShouldBeTakenToHaveDiedAfterTheMaximumTime() {
+        long startedAt = 1000000;
+        assertFalse(AutoSendScheduler.isBatchRunning(0, startedAt));
+        assertTrue(AutoSendScheduler.isBatchRunning(startedAt, startedAt));
+        assertTrue(AutoSendScheduler.isBatchRunning(startedAt,
+                startedAt + AutoSendScheduler.MAX_BATCH_MS - 1));
+        assertFalse(AutoSendScheduler.isBatchRunning(startedAt,
+                startedAt + AutoSendScheduler.MAX_BATCH_MS));
+        // the clock was set back, don't wait for it to catch up
+        assertFalse(AutoSendScheduler.isBatchRunning(startedAt, startedAt - 1));
+    }
+}
@@ -0,0 +1,142 @@
+package org.odk.collect.android.tasks;
+
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.BuildConfig;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
+import org.odk.collect.android.test.TestStorage;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bulk deletes remove the rows a batch at a time and leave the files to the
+ * {@link FileReclaimer}, which the task waits for unless it is cancelled.
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(RobolectricTestRunner.class)
+public class DeleteInstancesTaskTest {
+
+    private final List<File> instanceDirs = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        TestStorage.setUp();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileReclaimer.getInstance().awaitIdle(null);
+        TestStorage.tearDown();
+    }
+
+    @Test
+    public void deletingMoreThanABatchShouldDeleteEveryRowAndFolder() throws Exception {
+        Long[] ids = addInstances(DeleteInstancesTask.BATCH_SIZE * 2 + 1);
+        final List<Integer> progress = new ArrayList<>();
+
+        DeleteInstancesTask task = new DeleteInstancesTask() {
+            @Override
+            protected void onProgressUpdate(Integer... values) {
+                progress.add(values[0]);
+                assertTrue(values[0] <= values[1]);
+            }
+        };
+        task.setContentResolver(RuntimeEnvironment.application.getContentResolver());
+
+        assertEquals(ids.length, (int) task.doInBackground(ids));
+        assertEquals(ids.length, task.getDeleteCount());
+        assertEquals(0, countInstances());
+        // the task has waited for the reclaimer, so the files are gone
+        for (File dir : instanceDirs) {
+            assertFalse(dir.exists());
+        }
+        assertTrue(progress.contains(DeleteInstancesTask.BATCH_SIZE));
+        assertTrue(progress.contains(ids.length));
+    }
+
+    @Test
+    public void aCancelledDeleteShouldStopBeforeTheNextBatch() throws Exception {
+        Long[] ids = addInstances(3);
+
+        DeleteInstancesTask task = new DeleteInstancesTask();
+        task.setContentResolver(RuntimeEnvironment.application.getContentResolver());
+        task.cancel(false);
+
+        assertEquals(0, (int) task.doInBackground(ids));
+        assertEquals(3, countInstances());
+        for (File dir : instanceDirs) {
+            assertTrue(dir.exists());
+        }
+    }
+
+    @Test
+    public void aSingleDeleteShouldDeleteTheFolderRightAway() throws Exception {
+        Long[] ids = addInstances(1);
+
+        int count = RuntimeEnvironment.application.getContentResolver().delete(
+                ContentUris.withAppendedId(InstanceColumns.CONTENT_URI, ids[0]), null, null);
+
+        assertEquals(1, count);
+        assertFalse(instanceDirs.get(0).exists());
+    }
+
+    @Test
+    public void theReclaimerShouldReportItsProgressUntilIdle() throws Exception {
+        addInstances(5);
+
+        FileReclaimer.getInstance().reclaim(instanceDirs);
+        FileReclaimer.getInstance().awaitIdle(new FileReclaimer.ProgressListener() {
+            @Override
+            public void onProgress(int reclaimed, int total) {
+                // nothing is reported if the files were reclaimed before the wait
+                assertTrue(reclaimed <= total);
+                assertTrue(total <= 5);
+            }
+        });
+
+        for (File dir : instanceDirs) {
+            assertFalse(dir.exists());
+        }
+    }
+
+    private Long[] addInstances(int count) throws Exception {
+        Long[] ids = new Long[count];
+        for (int i = 0; i < count; i++) {
+            File dir = new File(Collect.INSTANCES_PATH, "delete_" + i);
+            File instance = new File(dir, "delete_" + i + ".xml");
+            FileUtils.writeStringToFile(instance, "<data/>", "UTF-8");
+            FileUtils.writeByteArrayToFile(new File(dir, "photo.jpg"), new byte[] {1});
+            instanceDirs.add(dir);
+            Uri uri = TestStorage.addInstance(instance, "delete");
+            ids[i] = ContentUris.parseId(uri);
+        }
+        return ids;
+    }
+
+    private static int countInstances() {
+        Cursor cursor = RuntimeEnvironment.application.getContentResolver()
+                .query(InstanceColumns.CONTENT_URI, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
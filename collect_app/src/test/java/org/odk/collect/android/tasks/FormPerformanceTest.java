@@ -0,0 +1,124 @@
+package org.odk.collect.android.tasks;
+
+import android.net.Uri;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.BuildConfig;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.logic.FormController;
+import org.odk.collect.android.performance.Budget;
+import org.odk.collect.android.performance.PerformanceTest;
+import org.odk.collect.android.performance.SyntheticData;
+import org.odk.collect.android.test.TestStorage;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loading and saving of large forms, timed against the budgets of the performance tests.
+ */
+@Category(PerformanceTest.class)
+@Config(constants = BuildConfig.class)
+@RunWith(RobolectricTestRunner.class)
+public class FormPerformanceTest {
+
+    private static final int QUESTIONS = 5000;
+    private static final int REPEAT_DEPTH = 6;
+    private static final int REPETITIONS = 4;
+
+    @Before
+    public void setUp() {
+        TestStorage.setUp();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Collect.getInstance().setFormController(null);
+        TestStorage.tearDown();
+    }
+
+    @Test
+    public void largeFormShouldLoadWithinBudget() throws Exception {
+        final File form = new File(Collect.FORMS_PATH, "large.xml");
+        SyntheticData.writeForm(form, "large", QUESTIONS);
+
+        // the first load parses the form and caches it, the next ones read the cache
+        Budget.check("loadLargeForm.parse", new Budget.Work() {
+            @Override
+            public void run() {
+                load(form, null);
+            }
+        });
+        Budget.check("loadLargeForm.cached", new Budget.Work() {
+            @Override
+            public void run() {
+                load(form, null);
+            }
+        });
+    }
+
+    @Test
+    public void deeplyNestedRepeatsShouldLoadWithinBudget() throws Exception {
+        final File form = new File(Collect.FORMS_PATH, "repeats.xml");
+        SyntheticData.writeNestedRepeatForm(form, "repeats", REPEAT_DEPTH);
+        final File instance = new File(Collect.INSTANCES_PATH, "repeats/repeats.xml");
+        SyntheticData.writeNestedRepeatInstance(instance, "repeats", REPEAT_DEPTH, REPETITIONS);
+
+        Budget.check("loadNestedRepeats", new Budget.Work() {
+            @Override
+            public void run() {
+                FormController formController = load(form, instance);
+                assertEquals(REPETITIONS, formController.getFormDef().getMainInstance().getRoot()
+                        .getChildrenWithName("r1").size());
+            }
+        });
+    }
+
+    @Test
+    public void largeFormShouldSaveWithinBudget() throws Exception {
+        File form = new File(Collect.FORMS_PATH, "large.xml");
+        SyntheticData.writeForm(form, "large", QUESTIONS);
+        TestStorage.addForm(form, "large");
+
+        File instance = new File(Collect.INSTANCES_PATH, "large/large.xml");
+        assertTrue(instance.getParentFile().mkdirs());
+        Uri instanceUri = TestStorage.addInstance(instance, "large");
+
+        FormLoaderTask formLoaderTask = new FormLoaderTask(null, null, null);
+        FormLoaderTask.FECWrapper wrapper = formLoaderTask.doInBackground(form.getAbsolutePath());
+        assertNotNull(wrapper);
+        FormController formController = wrapper.getController();
+        formController.setInstancePath(instance);
+        Collect.getInstance().setFormController(formController);
+        Collect.getInstance().setExternalDataManager(formLoaderTask.getExternalDataManager());
+
+        final SaveToDiskTask saveToDiskTask = new SaveToDiskTask(instanceUri, false, true, null);
+        final SaveResult[] result = new SaveResult[1];
+        Budget.check("saveLargeForm", new Budget.Work() {
+            @Override
+            public void run() {
+                result[0] = saveToDiskTask.doInBackground();
+            }
+        });
+
+        assertEquals(SaveToDiskTask.SAVED, result[0].getSaveResult());
+        assertTrue(instance.length() > 0);
+    }
+
+    private static FormController load(File form, File instance) {
+        FormLoaderTask formLoaderTask = new FormLoaderTask(
+                instance == null ? null : instance.getAbsolutePath(), null, null);
+        FormLoaderTask.FECWrapper wrapper = formLoaderTask.doInBackground(form.getAbsolutePath());
+        assertNotNull(wrapper);
+        return wrapper.getController();
+    }
+}
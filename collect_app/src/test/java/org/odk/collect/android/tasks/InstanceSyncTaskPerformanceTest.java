@@ -0,0 +1,70 @@
+package org.odk.collect.android.tasks;
+
+import android.database.Cursor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.BuildConfig;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.dao.InstancesDao;
+import org.odk.collect.android.performance.Budget;
+import org.odk.collect.android.performance.PerformanceTest;
+import org.odk.collect.android.performance.SyntheticData;
+import org.odk.collect.android.test.TestStorage;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Finding the instances copied to the instances folder, timed against the budgets of the
+ * performance tests.
+ */
+@Category(PerformanceTest.class)
+@Config(constants = BuildConfig.class)
+@RunWith(RobolectricTestRunner.class)
+public class InstanceSyncTaskPerformanceTest {
+
+    private static final int INSTANCES = 2000;
+
+    @Before
+    public void setUp() {
+        TestStorage.setUp();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        TestStorage.tearDown();
+    }
+
+    @Test
+    public void manyNewInstancesShouldBeAddedWithinBudget() throws Exception {
+        File form = new File(Collect.FORMS_PATH, "sync.xml");
+        SyntheticData.writeForm(form, "sync", 3);
+        TestStorage.addForm(form, "sync");
+        for (int i = 0; i < INSTANCES; i++) {
+            String name = "sync_" + i;
+            File instance = new File(Collect.INSTANCES_PATH, name + File.separator + name + ".xml");
+            SyntheticData.writeInstance(instance, "sync", i);
+        }
+
+        Budget.check("syncInstances", new Budget.Work() {
+            @Override
+            public void run() {
+                new InstanceSyncTask().doInBackground();
+            }
+        });
+
+        Cursor cursor = new InstancesDao().getInstancesCursor(null, null);
+        try {
+            assertEquals(INSTANCES, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.odk.collect.android.tasks;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.RadioButton;
+
+import org.javarosa.form.api.FormEntryController;
+import org.javarosa.form.api.FormEntryPrompt;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.BuildConfig;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.logic.FormController;
+import org.odk.collect.android.performance.Budget;
+import org.odk.collect.android.performance.PerformanceTest;
+import org.odk.collect.android.performance.SyntheticData;
+import org.odk.collect.android.test.TestStorage;
+import org.odk.collect.android.widgets.QuestionWidget;
+import org.odk.collect.android.widgets.WidgetFactory;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Importing a large itemsets.csv when its form is loaded, and the query of the itemset widget
+ * showing its choices, timed against the budgets of the performance tests.
+ */
+@Category(PerformanceTest.class)
+@Config(constants = BuildConfig.class)
+@RunWith(RobolectricTestRunner.class)
+public class ItemsetPerformanceTest {
+
+    private static final int ROWS = 100000;
+    private static final int STATES = 1000;
+
+    @Before
+    public void setUp() {
+        TestStorage.setUp();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Collect.getInstance().setFormController(null);
+        TestStorage.tearDown();
+    }
+
+    @Test
+    public void largeItemsetShouldBeImportedAndQueriedWithinBudget() throws Exception {
+        final File form = new File(Collect.FORMS_PATH, "itemsets.xml");
+        SyntheticData.writeItemsetForm(form, "itemsets");
+        SyntheticData.writeItemsetsCsv(new File(Collect.FORMS_PATH, "itemsets-media/itemsets.csv"),
+                ROWS, STATES);
+        final File instance = new File(Collect.INSTANCES_PATH, "itemsets/itemsets.xml");
+        SyntheticData.writeItemsetInstance(instance, "itemsets", "s7");
+
+        final FormController[] formController = new FormController[1];
+        Budget.check("importItemsets", new Budget.Work() {
+            @Override
+            public void run() {
+                FormLoaderTask formLoaderTask = new FormLoaderTask(instance.getAbsolutePath(),
+                        null, null);
+                FormLoaderTask.FECWrapper wrapper =
+                        formLoaderTask.doInBackground(form.getAbsolutePath());
+                assertNotNull(wrapper);
+                formController[0] = wrapper.getController();
+            }
+        });
+        Collect.getInstance().setFormController(formController[0]);
+
+        final FormEntryPrompt prompt = getItemsetPrompt(formController[0]);
+        final QuestionWidget[] widget = new QuestionWidget[1];
+        Budget.check("queryItemset", new Budget.Work() {
+            @Override
+            public void run() {
+                widget[0] = WidgetFactory.createWidgetFromPrompt(prompt,
+                        RuntimeEnvironment.application, false);
+            }
+        });
+
+        assertEquals(ROWS / STATES, countRadioButtons(widget[0]));
+    }
+
+    private static FormEntryPrompt getItemsetPrompt(FormController formController) {
+        while (formController.stepToNextEvent(FormController.STEP_INTO_GROUP)
+                != FormEntryController.EVENT_END_OF_FORM) {
+            if (formController.getEvent() == FormEntryController.EVENT_QUESTION) {
+                FormEntryPrompt prompt = formController.getQuestionPrompt();
+                if (prompt.getQuestion().getAdditionalAttribute(null, "query") != null) {
+                    return prompt;
+                }
+            }
+        }
+        throw new AssertionError("The form has no itemset question");
+    }
+
+    private static int countRadioButtons(View view) {
+        if (view instanceof RadioButton) {
+            return 1;
+        }
+
+        int count = 0;
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                count += countRadioButtons(group.getChildAt(i));
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,131 @@
+package org.odk.collect.android.tasks;
+
+import android.net.Uri;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.javarosa.core.model.data.StringData;
+import org.javarosa.core.services.transport.payload.ByteArrayPayload;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.BuildConfig;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.logic.FormController;
+import org.odk.collect.android.test.TestStorage;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Finalizing should serialize the instance once and write what it always did.
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(RobolectricTestRunner.class)
+public class SaveToDiskTaskTest {
+
+    private FormController formController;
+    private File instance;
+    private Uri instanceUri;
+
+    @Before
+    public void setUp() {
+        TestStorage.setUp();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Collect.getInstance().setFormController(null);
+        TestStorage.tearDown();
+    }
+
+    @Test
+    public void finalizingTheEntireFormShouldSerializeTheInstanceOnce() throws Exception {
+        load("entire", null);
+
+        assertEquals(SaveToDiskTask.SAVED, finalizeInstance());
+
+        verify(formController, times(1)).getFilledInFormXml();
+        verify(formController, never()).getSubmissionXml();
+        // the instance is also what is submitted, so no submission.xml is left behind
+        assertFalse(new File(instance.getParentFile(), "submission.xml").exists());
+        assertArrayEquals(toBytes(formController.getFilledInFormXml()),
+                FileUtils.readFileToByteArray(instance));
+        assertArrayEquals(toBytes(formController.getSubmissionXml()),
+                FileUtils.readFileToByteArray(instance));
+    }
+
+    @Test
+    public void finalizingPartOfTheFormShouldReplaceTheInstanceWithTheSubmission()
+            throws Exception {
+        load("part", "<submission ref=\"/data/part\" method=\"form-data-post\""
+                + " action=\"http://example.com/submission\"/>");
+
+        assertEquals(SaveToDiskTask.SAVED, finalizeInstance());
+
+        verify(formController, times(1)).getFilledInFormXml();
+        verify(formController, times(1)).getSubmissionXml();
+        assertFalse(new File(instance.getParentFile(), "submission.xml").exists());
+        String submission = FileUtils.readFileToString(instance, "UTF-8");
+        assertArrayEquals(toBytes(formController.getSubmissionXml()),
+                FileUtils.readFileToByteArray(instance));
+        assertTrue(submission.contains("<answer>kept</answer>"));
+        assertFalse(submission.contains("left out"));
+    }
+
+    private void load(String formId, String submission) throws Exception {
+        File form = new File(Collect.FORMS_PATH, formId + ".xml");
+        FileUtils.writeStringToFile(form, "<?xml version=\"1.0\"?>"
+                + "<h:html xmlns=\"http://www.w3.org/2002/xforms\""
+                + " xmlns:h=\"http://www.w3.org/1999/xhtml\">"
+                + "<h:head><h:title>" + formId + "</h:title><model>"
+                + "<instance><data id=\"" + formId + "\"><part><answer/></part><other/>"
+                + "<meta><instanceID>uuid:" + formId + "</instanceID></meta></data></instance>"
+                + "<bind nodeset=\"/data/part/answer\" type=\"string\"/>"
+                + "<bind nodeset=\"/data/other\" type=\"string\"/>"
+                + (submission != null ? submission : "")
+                + "</model></h:head>"
+                + "<h:body><input ref=\"/data/part/answer\"><label>Answer</label></input>"
+                + "<input ref=\"/data/other\"><label>Other</label></input></h:body></h:html>",
+                "UTF-8");
+        TestStorage.addForm(form, formId);
+
+        instance = new File(Collect.INSTANCES_PATH, formId + "/" + formId + ".xml");
+        assertTrue(instance.getParentFile().mkdirs());
+        instanceUri = TestStorage.addInstance(instance, formId);
+
+        FormLoaderTask formLoaderTask = new FormLoaderTask(null, null, null);
+        FormLoaderTask.FECWrapper wrapper = formLoaderTask.doInBackground(form.getAbsolutePath());
+        assertNotNull(wrapper);
+        formController = spy(wrapper.getController());
+        formController.setInstancePath(instance);
+        formController.stepToNextScreenEvent();
+        formController.answerQuestion(formController.getFormIndex(), new StringData("kept"));
+        formController.stepToNextScreenEvent();
+        formController.answerQuestion(formController.getFormIndex(), new StringData("left out"));
+
+        Collect.getInstance().setFormController(formController);
+        Collect.getInstance().setExternalDataManager(formLoaderTask.getExternalDataManager());
+    }
+
+    private int finalizeInstance() {
+        return new SaveToDiskTask(instanceUri, false, true, null).doInBackground()
+                .getSaveResult();
+    }
+
+    private static byte[] toBytes(ByteArrayPayload payload) throws Exception {
+        return IOUtils.toByteArray(payload.getPayloadStream());
+    }
+}
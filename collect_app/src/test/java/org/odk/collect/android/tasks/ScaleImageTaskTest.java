@@ -0,0 +1,69 @@
+package org.odk.collect.android.tasks;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.BuildConfig;
+import org.odk.collect.android.listeners.ImageScalingListener;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class ScaleImageTaskTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<File> completed = new ArrayList<>();
+    private final ImageScalingListener listener = new ImageScalingListener() {
+        @Override
+        public void scalingComplete(File image) {
+            completed.add(image);
+        }
+    };
+
+    @Test
+    public void theResultShouldReachTheListener() throws Exception {
+        File image = folder.newFile("photo.jpg");
+        ScaleImageTask task = new ScaleImageTask(1024);
+        task.setImageScalingListener(listener);
+
+        run(task, image);
+
+        assertEquals(1, completed.size());
+        assertEquals(image, completed.get(0));
+    }
+
+    @Test
+    public void aResultArrivingWhileDetachedShouldReachTheNextListenerOnce() throws Exception {
+        File image = folder.newFile("photo.jpg");
+        ScaleImageTask task = new ScaleImageTask(1024);
+        task.setImageScalingListener(listener);
+        // the activity is being recreated
+        task.setImageScalingListener(null);
+
+        run(task, image);
+        assertTrue(completed.isEmpty());
+
+        task.setImageScalingListener(listener);
+        task.setImageScalingListener(listener);
+        assertEquals(1, completed.size());
+    }
+
+    private static void run(ScaleImageTask task, File image) {
+        task.execute(image);
+        Robolectric.flushBackgroundThreadScheduler();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+}
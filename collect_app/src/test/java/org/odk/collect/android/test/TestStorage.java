@@ -0,0 +1,68 @@
+package org.odk.collect.android.test;
+
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.Environment;
+
+import org.apache.commons.io.FileUtils;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.dao.FormsDao;
+import org.odk.collect.android.dao.InstancesDao;
+import org.odk.collect.android.provider.FormsProvider;
+import org.odk.collect.android.provider.FormsProviderAPI;
+import org.odk.collect.android.provider.FormsProviderAPI.FormsColumns;
+import org.odk.collect.android.provider.InstanceProvider;
+import org.odk.collect.android.provider.InstanceProviderAPI;
+import org.odk.collect.android.provider.InstanceProviderAPI.InstanceColumns;
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowEnvironment;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Gives Robolectric tests what the app has on a device: the ODK folders on a mounted SD card,
+ * and the forms and instances providers.
+ */
+public final class TestStorage {
+
+    private TestStorage() {
+    }
+
+    public static void setUp() {
+        ShadowEnvironment.setExternalStorageState(Environment.MEDIA_MOUNTED);
+        Collect.createODKDirs();
+
+        Robolectric.buildContentProvider(FormsProvider.class).create(FormsProviderAPI.AUTHORITY);
+        Robolectric.buildContentProvider(InstanceProvider.class)
+                .create(InstanceProviderAPI.AUTHORITY);
+    }
+
+    public static void tearDown() throws IOException {
+        FileUtils.deleteDirectory(new File(Collect.ODK_ROOT));
+    }
+
+    /**
+     * Adds the form to the forms provider, as the disk sync does for new forms.
+     */
+    public static Uri addForm(File formFile, String formId) {
+        ContentValues values = new ContentValues();
+        values.put(FormsColumns.FORM_FILE_PATH, formFile.getAbsolutePath());
+        values.put(FormsColumns.DISPLAY_NAME, formId);
+        values.put(FormsColumns.JR_FORM_ID, formId);
+        return new FormsDao().saveForm(values);
+    }
+
+    /**
+     * Adds an instance of the form to the instances provider, as the first save of a new
+     * instance does.
+     */
+    public static Uri addInstance(File instanceFile, String formId) {
+        ContentValues values = new ContentValues();
+        values.put(InstanceColumns.INSTANCE_FILE_PATH, instanceFile.getAbsolutePath());
+        values.put(InstanceColumns.DISPLAY_NAME, formId);
+        values.put(InstanceColumns.JR_FORM_ID, formId);
+        values.put(InstanceColumns.STATUS, InstanceProviderAPI.STATUS_INCOMPLETE);
+        return new InstancesDao().saveInstance(values);
+    }
+}
@@ -0,0 +1,126 @@
+package org.odk.collect.android.tracing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TracerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final RecentTracesSink sink = new RecentTracesSink(2);
+
+    @Before
+    public void setUp() {
+        Tracer.addSink(sink);
+    }
+
+    @After
+    public void tearDown() {
+        Tracer.removeSink(sink);
+    }
+
+    @Test
+    public void spansStartedInsideAnotherShouldBeItsPhases() {
+        Span load = Tracer.start("load form");
+        Span parse = Tracer.start("parse");
+        Tracer.count("bytes", 10);
+        Tracer.count("bytes", 5);
+        parse.end();
+        Span initialize = Tracer.start("initialize");
+        initialize.end();
+        Tracer.count("forms", 1);
+
+        assertTrue(sink.getTraces().isEmpty());
+        load.end();
+
+        List<Span> traces = sink.getTraces();
+        assertEquals(1, traces.size());
+        Span trace = traces.get(0);
+        assertSame(load, trace);
+        assertEquals(2, trace.getChildren().size());
+        assertSame(parse, trace.getChildren().get(0));
+        assertSame(initialize, trace.getChildren().get(1));
+
+        assertEquals(1, parse.getCounterCount());
+        assertEquals("bytes", parse.getCounterName(0));
+        assertEquals(15, parse.getCounterValue(0));
+        assertEquals("forms", trace.getCounterName(0));
+        assertTrue(trace.getDurationMs() >= 0);
+        assertTrue(trace.format().contains("\n    parse "));
+    }
+
+    @Test
+    public void phasesLeftRunningShouldBeRecordedAsUnfinished() {
+        Span save = Tracer.start("save");
+        Span encrypt = Tracer.start("encrypt");
+        save.end();
+
+        assertEquals(-1, encrypt.getDurationMs());
+        assertTrue(save.format().contains("encrypt unfinished"));
+
+        // the next span starts a new trace
+        Span upload = Tracer.start("upload");
+        upload.end();
+        assertSame(upload, sink.getTraces().get(0));
+        assertTrue(upload.getChildren().isEmpty());
+    }
+
+    @Test
+    public void nothingShouldBeRecordedWithoutSinks() {
+        Tracer.removeSink(sink);
+
+        Span span = Tracer.start("load form");
+        assertSame(span, Tracer.start("parse"));
+        span.count("bytes", 1);
+        span.end();
+
+        assertEquals(0, span.getCounterCount());
+        assertTrue(sink.getTraces().isEmpty());
+    }
+
+    @Test
+    public void onlyTheMostRecentTracesShouldBeKept() {
+        for (int i = 0; i < 3; i++) {
+            Tracer.start("sync forms " + i).end();
+        }
+
+        List<Span> traces = sink.getTraces();
+        assertEquals(2, traces.size());
+        assertEquals("sync forms 2", traces.get(0).getName());
+        assertEquals("sync forms 1", traces.get(1).getName());
+    }
+
+    @Test
+    public void traceFileShouldBeRotatedWhenFull() {
+        File file = new File(folder.getRoot(), "log/trace.log");
+        File previousFile = new File(folder.getRoot(), "log/trace.log.1");
+        TraceFileSink fileSink = new TraceFileSink(file, 100);
+        Tracer.addSink(fileSink);
+        try {
+            Tracer.start("first").end();
+            assertTrue(file.exists());
+            assertFalse(previousFile.exists());
+
+            for (int i = 0; i < 5; i++) {
+                Tracer.start("another").end();
+            }
+            assertTrue(previousFile.exists());
+            assertTrue(file.length() <= 100);
+            assertTrue(previousFile.length() <= 100);
+        } finally {
+            Tracer.removeSink(fileSink);
+        }
+    }
+}
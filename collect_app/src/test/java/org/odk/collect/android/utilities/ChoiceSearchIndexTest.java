@@ -0,0 +1,52 @@
+package org.odk.collect.android.utilities;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class ChoiceSearchIndexTest {
+
+    private final ChoiceSearchIndex index = new ChoiceSearchIndex(Arrays.asList(
+            "Kampala Central Hospital",
+            "St. Mary's Hospital, Lacor",
+            "H\u00f4pital Saint-Jean",
+            "Mulago National Referral",
+            null));
+
+    @Test
+    public void emptyQueryShouldMatchEverythingInFormOrder() {
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), index.search(""));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), index.search("  "));
+    }
+
+    @Test
+    public void prefixMatchesShouldComeBeforeWordAndSubstringMatches() {
+        assertEquals(Arrays.asList(2, 0, 1), index.search("ho"));
+        assertEquals(Arrays.asList(1, 0, 3), index.search("la"));
+    }
+
+    @Test
+    public void everyQueryWordShouldStartAWordOfTheLabel() {
+        assertEquals(Collections.singletonList(0), index.search("central kamp"));
+        assertEquals(Collections.singletonList(1), index.search("mary lacor"));
+        assertEquals(Collections.<Integer>emptyList(), index.search("mary central"));
+    }
+
+    @Test
+    public void accentsAndPunctuationShouldBeIgnored() {
+        assertEquals(Collections.singletonList(2), index.search("hopital saint jean"));
+        assertEquals(Collections.singletonList(1), index.search("st mary"));
+    }
+
+    @Test
+    public void narrowingAndWideningTheQueryShouldGiveConsistentResults() {
+        assertEquals(Arrays.asList(0, 1), index.search("hos"));
+        assertEquals(Arrays.asList(0, 1), index.search("hospital"));
+        assertEquals(Collections.<Integer>emptyList(), index.search("hospitalx"));
+        assertEquals(Arrays.asList(2, 0, 1), index.search("hop"));
+        assertEquals(Collections.singletonList(3), index.search("referral"));
+    }
+}
@@ -64,4 +64,14 @@ public class CustomSQLiteQueryBuilderTestCase {
     public void insertIntoTest() {
         assertEquals("INSERT INTO testTableName", new CustomSQLiteQueryBuilder().insertInto("testTableName").getQuery().toString());
     }
+
+    @Test
+    public void createIndexIfNotExistsTest() {
+        assertEquals("CREATE INDEX IF NOT EXISTS testIndexName ", new CustomSQLiteQueryBuilder().createIndexIfNotExists("testIndexName").getQuery().toString());
+    }
+
+    @Test
+    public void onTest() {
+        assertEquals("ON testTableName", new CustomSQLiteQueryBuilder().on("testTableName").getQuery().toString());
+    }
 }
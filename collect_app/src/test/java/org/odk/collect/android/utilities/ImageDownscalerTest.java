@@ -0,0 +1,114 @@
+package org.odk.collect.android.utilities;
+
+import android.graphics.Bitmap;
+import android.graphics.Point;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.BuildConfig;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowBitmapFactory;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, manifest = "src/main/AndroidManifest.xml",
+        packageName = "org.odk.collect")
+public class ImageDownscalerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void inSampleSizeShouldNeverDecodeSmallerThanRequested() {
+        assertEquals(1, ImageDownscaler.calculateInSampleSize(100, 100, 100, 100));
+        assertEquals(1, ImageDownscaler.calculateInSampleSize(100, 100, 200, 200));
+        assertEquals(2, ImageDownscaler.calculateInSampleSize(400, 300, 150, 150));
+        assertEquals(4, ImageDownscaler.calculateInSampleSize(4608, 3456, 1080, 810));
+        assertEquals(8, ImageDownscaler.calculateInSampleSize(4608, 3456, 576, 432));
+    }
+
+    @Test
+    public void inSampleSizeShouldBeLimitedByTheTighterDimension() {
+        assertEquals(2, ImageDownscaler.calculateInSampleSize(1000, 400, 100, 200));
+    }
+
+    @Test
+    public void scaledSizeShouldLimitTheLongEdge() {
+        Point landscape = ImageDownscaler.getScaledSize(4608, 3456, 1024);
+        assertEquals(1024, landscape.x);
+        assertEquals(768, landscape.y);
+
+        Point portrait = ImageDownscaler.getScaledSize(3456, 4608, 1024);
+        assertEquals(768, portrait.x);
+        assertEquals(1024, portrait.y);
+    }
+
+    @Test
+    public void scaledSizeShouldBeNullIfTheImageIsSmallEnough() {
+        assertNull(ImageDownscaler.getScaledSize(800, 600, 1024));
+        assertNull(ImageDownscaler.getScaledSize(1024, 1024, 1024));
+    }
+
+    @Test
+    public void decodedBitmapsShouldHaveExactlyTheRequestedSize() throws Exception {
+        File image = image("photo.jpg", 4608, 3456);
+
+        Bitmap bitmap = ImageDownscaler.decodeScaledBitmap(image, 1080, 810);
+
+        assertNotNull(bitmap);
+        assertEquals(1080, bitmap.getWidth());
+        assertEquals(810, bitmap.getHeight());
+    }
+
+    @Test
+    public void largeImagesShouldBeRewrittenWithoutLeavingATemporaryFile() throws Exception {
+        File image = image("photo.jpg", 4608, 3456);
+        byte[] original = FileUtils.readFileToByteArray(image);
+
+        assertTrue(ImageDownscaler.scaleDownImage(image, 1024));
+
+        assertTrue(image.exists());
+        assertFalse(new File(image.getPath() + ".tmp").exists());
+        assertFalse(Arrays.equals(original, FileUtils.readFileToByteArray(image)));
+    }
+
+    @Test
+    public void smallImagesShouldBeLeftAlone() throws Exception {
+        File image = image("photo.jpg", 800, 600);
+        byte[] original = FileUtils.readFileToByteArray(image);
+
+        assertFalse(ImageDownscaler.scaleDownImage(image, 1024));
+
+        assertTrue(Arrays.equals(original, FileUtils.readFileToByteArray(image)));
+    }
+
+    @Test
+    public void writingShouldReplaceTheFileOnlyOnceEncoded() throws Exception {
+        File file = new File(folder.getRoot(), "thumbnail.png");
+        Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+
+        assertTrue(ImageDownscaler.writeBitmap(bitmap, Bitmap.CompressFormat.PNG, 100, file));
+
+        assertTrue(file.length() > 0);
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    private File image(String name, int width, int height) throws Exception {
+        File file = folder.newFile(name);
+        FileUtils.writeStringToFile(file, "not really an image", "UTF-8");
+        ShadowBitmapFactory.provideWidthAndHeightHints(file.getAbsolutePath(), width, height);
+        return file;
+    }
+}
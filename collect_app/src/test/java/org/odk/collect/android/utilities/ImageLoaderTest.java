@@ -0,0 +1,26 @@
+package org.odk.collect.android.utilities;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.BuildConfig;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, manifest = "src/main/AndroidManifest.xml",
+        packageName = "org.odk.collect")
+public class ImageLoaderTest {
+
+    @Test
+    public void cacheKeyShouldDependOnTheRequestedSize() {
+        File file = new File("/sdcard/odk/forms/form-media/image.png");
+        assertEquals(ImageLoader.getCacheKey(file, 100, 50), ImageLoader.getCacheKey(file, 100, 50));
+        assertNotEquals(ImageLoader.getCacheKey(file, 100, 50),
+                ImageLoader.getCacheKey(file, 50, 100));
+    }
+}
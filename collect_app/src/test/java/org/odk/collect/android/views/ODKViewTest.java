@@ -0,0 +1,168 @@
+package org.odk.collect.android.views;
+
+import android.app.Activity;
+import android.view.View.MeasureSpec;
+
+import org.apache.commons.io.FileUtils;
+import org.javarosa.core.model.FormIndex;
+import org.javarosa.form.api.FormEntryPrompt;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.odk.collect.android.BuildConfig;
+import org.odk.collect.android.application.Collect;
+import org.odk.collect.android.logic.FormController;
+import org.odk.collect.android.tasks.FormLoaderTask;
+import org.odk.collect.android.test.TestStorage;
+import org.odk.collect.android.widgets.QuestionWidget;
+import org.odk.collect.android.widgets.StringWidget;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The virtualization of large field-lists: widgets are only created near the screen, and
+ * released ones keep their answers without writing them to the form.
+ */
+@Config(constants = BuildConfig.class)
+@RunWith(RobolectricTestRunner.class)
+public class ODKViewTest {
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 800;
+
+    private FormController formController;
+    private FormEntryPrompt[] prompts;
+    private ODKView odkView;
+
+    @Before
+    public void setUp() {
+        TestStorage.setUp();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ShadowLooper.unPauseMainLooper();
+        Collect.getInstance().setFormController(null);
+        TestStorage.tearDown();
+    }
+
+    @Test
+    public void smallFieldListsShouldCreateAllTheirWidgets() throws Exception {
+        show(10);
+
+        assertEquals(10, odkView.getWidgets().size());
+        assertEquals(10, odkView.getAnswers().size());
+    }
+
+    @Test
+    public void largeFieldListsShouldOnlyCreateTheWidgetsNearTheScreen() throws Exception {
+        show(100);
+
+        assertNotNull(findWidget(0));
+        assertNull(findWidget(99));
+        assertTrue(odkView.getWidgets().size() < 100);
+        assertEquals(100, odkView.getAnswers().size());
+
+        scrollTo(Integer.MAX_VALUE);
+        assertNotNull(findWidget(99));
+        assertTrue(odkView.getWidgets().size() < 100);
+    }
+
+    @Test
+    public void releasedWidgetsShouldKeepTheirAnswersWithoutSavingThem() throws Exception {
+        show(100);
+        FormIndex index = prompts[2].getIndex();
+        ((StringWidget) findWidget(2)).getAnswerTextField().setText("typed");
+
+        scrollTo(Integer.MAX_VALUE);
+        assertNull(findWidget(2));
+        assertEquals("typed", odkView.getAnswers().get(index).getDisplayText());
+        assertNull(formController.getQuestionPrompt(index).getAnswerValue());
+
+        scrollTo(0);
+        QuestionWidget recreated = findWidget(2);
+        assertNotNull(recreated);
+        assertEquals("typed", recreated.getAnswer().getDisplayText());
+        assertEquals("typed", odkView.getAnswers().get(index).getDisplayText());
+        assertNull(formController.getQuestionPrompt(index).getAnswerValue());
+    }
+
+    private void show(int questions) throws Exception {
+        File form = new File(Collect.FORMS_PATH, "fieldlist.xml");
+        writeFieldListForm(form, questions);
+        FormLoaderTask.FECWrapper wrapper = new FormLoaderTask(null, null, null)
+                .doInBackground(form.getAbsolutePath());
+        assertNotNull(wrapper);
+        formController = wrapper.getController();
+        Collect.getInstance().setFormController(formController);
+        formController.stepToNextScreenEvent();
+        prompts = formController.getQuestionPrompts();
+        assertEquals(questions, prompts.length);
+
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        // widgets are created from posted updates, which are run once the view is laid out
+        ShadowLooper.pauseMainLooper();
+        odkView = new ODKView(activity, prompts, formController.getGroupsForCurrentIndex(),
+                false);
+        activity.setContentView(odkView);
+        layOut();
+    }
+
+    private void scrollTo(int y) {
+        odkView.scrollTo(0, y);
+        layOut();
+    }
+
+    /**
+     * Lays the view out until creating and releasing widgets no longer changes the layout.
+     */
+    private void layOut() {
+        for (int i = 0; i < 5; i++) {
+            odkView.measure(MeasureSpec.makeMeasureSpec(WIDTH, MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(HEIGHT, MeasureSpec.EXACTLY));
+            odkView.layout(0, 0, WIDTH, HEIGHT);
+            ShadowLooper.runUiThreadTasks();
+        }
+    }
+
+    private QuestionWidget findWidget(int position) {
+        for (QuestionWidget qw : odkView.getWidgets()) {
+            if (qw.getPrompt().getIndex().equals(prompts[position].getIndex())) {
+                return qw;
+            }
+        }
+        return null;
+    }
+
+    private static void writeFieldListForm(File file, int questions) throws Exception {
+        StringBuilder instance = new StringBuilder();
+        StringBuilder binds = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < questions; i++) {
+            instance.append("<q").append(i).append("/>");
+            binds.append("<bind nodeset=\"/data/page/q").append(i).append("\" type=\"string\"/>");
+            body.append("<input ref=\"/data/page/q").append(i).append("\"><label>Question ")
+                    .append(i).append("</label></input>");
+        }
+
+        FileUtils.writeStringToFile(file, "<?xml version=\"1.0\"?>"
+                + "<h:html xmlns=\"http://www.w3.org/2002/xforms\""
+                + " xmlns:h=\"http://www.w3.org/1999/xhtml\">"
+                + "<h:head><h:title>fieldlist</h:title><model>"
+                + "<instance><data id=\"fieldlist\"><page>" + instance + "</page></data>"
+                + "</instance>" + binds
+                + "</model></h:head>"
+                + "<h:body><group ref=\"/data/page\" appearance=\"field-list\">" + body
+                + "</group></h:body></h:html>", "UTF-8");
+    }
+}